@@ -0,0 +1,70 @@
+package com.cyh.wifiinforeader;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.net.wifi.IWifiManager;
+import android.os.RemoteException;
+import android.os.ServiceManager;
+
+import com.cyh.wifiinforeader.collector.ConnectivitySource;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link ConnectivitySource} backed by {@link ConnectivityManager}, finding the Wi-Fi network
+ * through the hidden {@link IWifiManager}. The binder is looked up once and again only after
+ * a call on it failed.
+ */
+class AndroidConnectivitySource implements ConnectivitySource {
+
+    /** {@code getCurrentNetwork()} and {@code getNetworkCapabilities()}. */
+    static final int BINDER_CALLS_PER_LOOKUP = 2;
+
+    private final ConnectivityManager mConnectivityManager;
+    private IWifiManager mWifiManager;
+    private final AtomicLong mBinderCalls = new AtomicLong();
+
+    AndroidConnectivitySource(ConnectivityManager connectivityManager) {
+        mConnectivityManager = connectivityManager;
+    }
+
+    @Override
+    public synchronized int getWifiValidation() {
+        if (mWifiManager == null) {
+            mWifiManager = IWifiManager.Stub.asInterface(ServiceManager.getService(Context.WIFI_SERVICE));
+            mBinderCalls.incrementAndGet();
+        }
+        Network nw;
+
+        try {
+            nw = mWifiManager.getCurrentNetwork();
+        } catch (RemoteException e) {
+            // The system server restarted, look the service up again next time.
+            mWifiManager = null;
+            nw = null;
+        }
+        mBinderCalls.incrementAndGet();
+        if (nw == null) {
+            return VALIDATION_UNKNOWN;
+        }
+        NetworkCapabilities nc = mConnectivityManager.getNetworkCapabilities(nw);
+        mBinderCalls.incrementAndGet();
+        return validationOf(nc);
+    }
+
+    /**
+     * @return binder calls made, the service lookup included
+     */
+    long getBinderCallCount() {
+        return mBinderCalls.get();
+    }
+
+    static int validationOf(NetworkCapabilities nc) {
+        if (nc == null) {
+            return VALIDATION_UNKNOWN;
+        }
+        return nc.hasCapability(NetworkCapabilities.NET_CAPABILITY_VALIDATED) ? VALIDATED : NOT_VALIDATED;
+    }
+}
@@ -0,0 +1,101 @@
+package com.cyh.wifiinforeader;
+
+import android.net.wifi.ScanResult;
+import android.net.wifi.SupplicantState;
+import android.net.wifi.WifiInfo;
+import android.net.wifi.WifiManager;
+import android.os.Build;
+
+import com.cyh.wifiinforeader.collector.WifiLink;
+import com.cyh.wifiinforeader.collector.WifiSource;
+
+import java.util.List;
+
+/**
+ * {@link WifiSource} backed by {@link WifiManager}.
+ */
+class AndroidWifiSource implements WifiSource {
+
+    private final WifiManager mWifiManager;
+
+    AndroidWifiSource(WifiManager wifiManager) {
+        mWifiManager = wifiManager;
+    }
+
+    @Override
+    public boolean isWifiEnabled() {
+        return mWifiManager.isWifiEnabled();
+    }
+
+    @Override
+    public int getWifiState() {
+        return mWifiManager.getWifiState();
+    }
+
+    @Override
+    public boolean readConnectionInfo(WifiLink out) {
+        WifiInfo info = mWifiManager.getConnectionInfo();
+        if (info == null) {
+            return false;
+        }
+        out.setSsid(info.getSSID());
+        out.setBssid(info.getBSSID());
+        out.setRssi(info.getRssi());
+        out.setLinkSpeedMbps(info.getLinkSpeed());
+        out.setNetworkId(info.getNetworkId());
+        out.setIpAddress(info.getIpAddress());
+        out.setMacAddress(info.getMacAddress());
+        out.setHiddenSsid(info.getHiddenSSID());
+        SupplicantState state = info.getSupplicantState();
+        out.setSupplicantState(state != null ? state.name() : null);
+        return true;
+    }
+
+    @Override
+    public boolean startScan() {
+        return mWifiManager.startScan();
+    }
+
+    @Override
+    public int readScanResults(ScanResultSink sink) {
+        List<ScanResult> list = mWifiManager.getScanResults();
+        if (list == null) {
+            return 0;
+        }
+        for (int i = 0; i < list.size(); i++) {
+            final ScanResult scanResult = list.get(i);
+
+            if (scanResult == null) {
+                continue;
+            }
+
+            int width = 20;
+            int center = scanResult.frequency;
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M && scanResult.channelWidth != ScanResult.CHANNEL_WIDTH_20MHZ
+                    && scanResult.centerFreq0 > 0) {
+                width = channelWidthMhz(scanResult.channelWidth);
+                center = scanResult.centerFreq0;
+            }
+            sink.onScanResult(scanResult.BSSID, scanResult.SSID, scanResult.level, scanResult.frequency, scanResult.capabilities,
+                    width, center);
+        }
+        return list.size();
+    }
+
+    /**
+     * 80+80 MHz is taken as its first 80 MHz segment, which {@code centerFreq0} is the center of.
+     */
+    private static int channelWidthMhz(int channelWidth) {
+        switch (channelWidth) {
+            case ScanResult.CHANNEL_WIDTH_40MHZ:
+                return 40;
+            case ScanResult.CHANNEL_WIDTH_80MHZ:
+            case ScanResult.CHANNEL_WIDTH_80MHZ_PLUS_MHZ:
+                return 80;
+            case ScanResult.CHANNEL_WIDTH_160MHZ:
+                return 160;
+            default:
+                return 20;
+        }
+    }
+}
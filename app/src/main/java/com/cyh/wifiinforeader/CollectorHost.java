@@ -0,0 +1,379 @@
+package com.cyh.wifiinforeader;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.res.Resources;
+import android.net.ConnectivityManager;
+import android.net.LinkProperties;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.net.NetworkRequest;
+import android.net.RouteInfo;
+import android.net.wifi.WifiManager;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Message;
+import android.os.Process;
+import android.os.SystemClock;
+import android.text.TextUtils;
+import android.util.Log;
+
+import com.cyh.wifiinforeader.collector.CachedConnectivitySource;
+import com.cyh.wifiinforeader.collector.Diagnostics;
+import com.cyh.wifiinforeader.collector.EventRecorder;
+import com.cyh.wifiinforeader.collector.EventRouter;
+import com.cyh.wifiinforeader.collector.NetworkSummary;
+import com.cyh.wifiinforeader.collector.WifiCollector;
+import com.cyh.wifiinforeader.collector.WifiSource;
+import com.cyh.wifiinforeader.eventlog.EventLogWriter;
+import com.cyh.wifiinforeader.export.ExportWriter;
+import com.cyh.wifiinforeader.export.MeasurementExporter;
+import com.cyh.wifiinforeader.metrics.MetricsRegistry;
+import com.cyh.wifiinforeader.ping.PingSession;
+import com.cyh.wifiinforeader.quality.QualityMonitor;
+import com.cyh.wifiinforeader.reachability.ReachabilityTarget;
+import com.cyh.wifiinforeader.util.Clock;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The process' one {@link WifiCollector} and {@link Diagnostics}, shared by the screen and
+ * {@link CollectorService}. Broadcasts are received and scans run while anyone holds it.
+ * <p>
+ * The collector runs on its own background thread: broadcasts are routed there and its
+ * listener is called there. The host's methods are for the main thread and post to it.
+ * <p>
+ * While held, the metrics of everything it runs are exported every minute, in the Prometheus
+ * text format, to {@code files/metrics.prom}. Every event goes to the event log in
+ * {@code files/eventlog}, which keeps the last few hours, and to compressed export files in
+ * {@code files/export}, see {@link MeasurementExporter}, for taking off the device.
+ * <p>
+ * The reachability targets are the user's list, kept in preferences and defaulting to
+ * {@code R.array.reachability_targets}, followed by the gateway and DNS servers of the current
+ * Wi-Fi link.
+ */
+final class CollectorHost {
+
+    private static final String LOG_TAG = "CollectorHost";
+
+    /** Records buffered before the event log writes a batch out. */
+    private static final int EVENT_LOG_BATCH = 256;
+    /** The last five to six hours kept, the export holds the rest; at most 24 MB in a storm. */
+    private static final long EVENT_LOG_SEGMENT_BYTES = 4 * 1024 * 1024;
+    private static final long EVENT_LOG_SEGMENT_MILLIS = 60 * 60 * 1000;
+    private static final int EVENT_LOG_SEGMENTS = 6;
+    private static final long METRICS_EXPORT_MILLIS = 60000;
+    private static final int EXPORT_BATCH = 512;
+    private static final int EXPORT_QUEUE_BATCHES = 4;
+    private static final long EXPORT_FILE_BYTES = 256 * 1024;
+    private static final long EXPORT_FILE_MILLIS = 60 * 60 * 1000;
+    private static final int EXPORT_FILES = 48;
+    private static final String PREFS = "diagnostics";
+    private static final String PREF_REACHABILITY_TARGETS = "reachability_targets";
+
+    /** Monotonic and, unlike {@link Clock#SYSTEM}, still counting in deep sleep. */
+    private static final Clock ELAPSED_REALTIME = new Clock() {
+        @Override
+        public long nanoTime() {
+            return SystemClock.elapsedRealtimeNanos();
+        }
+    };
+
+    private static CollectorHost sInstance;
+
+    private final Context mContext;
+    private final SharedPreferences mPrefs;
+    private final MetricsRegistry mMetrics = new MetricsRegistry();
+    private final File mMetricsFile;
+    private final Runnable mExportMetrics = new Runnable() {
+        @Override
+        public void run() {
+            exportMetrics();
+            mWorker.postDelayed(this, METRICS_EXPORT_MILLIS);
+        }
+    };
+    private final EventRecorder mEvents;
+    private final WifiCollector mCollector;
+    private final Diagnostics mDiagnostics;
+    private final WifiEventReceiver mReceiver;
+    private final ConnectivityManager mConnectivityManager;
+    private final AndroidConnectivitySource mConnectivity;
+    private final CachedConnectivitySource mValidation;
+    private final NetworkCallback mNetworkCallback = new NetworkCallback();
+    private final Handler mWorker;
+    private final Handler mScanHandler;
+    private int mHolders = 0;
+
+    static CollectorHost get(Context context) {
+        if (sInstance == null) {
+            sInstance = new CollectorHost(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private CollectorHost(Context context) {
+        mContext = context;
+        mPrefs = context.getSharedPreferences(PREFS, Context.MODE_PRIVATE);
+
+        HandlerThread thread = new HandlerThread("collector", Process.THREAD_PRIORITY_BACKGROUND);
+        thread.start();
+        mWorker = new Handler(thread.getLooper());
+        mScanHandler = new Handler(thread.getLooper(), new Handler.Callback() {
+            @Override
+            public boolean handleMessage(Message msg) {
+                mCollector.onScanTick();
+                return true;
+            }
+        });
+
+        EventLogWriter writer = null;
+        try {
+            writer = new EventLogWriter(new File(context.getFilesDir(), "eventlog"), EVENT_LOG_BATCH,
+                    EVENT_LOG_SEGMENT_BYTES, EVENT_LOG_SEGMENT_MILLIS, EVENT_LOG_SEGMENTS);
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "event log unavailable", e);
+        }
+        MeasurementExporter exporter = null;
+        try {
+            exporter = new MeasurementExporter(new ExportWriter(new File(context.getFilesDir(), "export"),
+                    EXPORT_FILE_BYTES, EXPORT_FILE_MILLIS, EXPORT_FILES), EXPORT_BATCH, EXPORT_QUEUE_BATCHES);
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "export unavailable", e);
+        }
+        mEvents = new EventRecorder(writer, exporter, mMetrics);
+        mMetricsFile = new File(context.getFilesDir(), "metrics.prom");
+
+        mConnectivityManager = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        mConnectivity = new AndroidConnectivitySource(mConnectivityManager);
+        mValidation = new CachedConnectivitySource(mConnectivity, AndroidConnectivitySource.BINDER_CALLS_PER_LOOKUP);
+
+        Resources res = context.getResources();
+        NetworkSummary summary = new NetworkSummary(res.getStringArray(R.array.wifi_status),
+                res.getStringArray(R.array.wifi_status_with_ssid), res.getString(R.string.wifi_status_no_internet));
+        mCollector = new WifiCollector(
+                new AndroidWifiSource((WifiManager) context.getSystemService(Context.WIFI_SERVICE)),
+                mValidation, summary, new WifiCollector.ScanTimer() {
+                    @Override
+                    public void schedule(long delayMillis) {
+                        mScanHandler.removeMessages(0);
+                        mScanHandler.sendEmptyMessageDelayed(0, delayMillis);
+                    }
+
+                    @Override
+                    public void cancel() {
+                        mScanHandler.removeMessages(0);
+                    }
+                }, ELAPSED_REALTIME, mEvents, mMetrics);
+
+        List<ReachabilityTarget> targets;
+        try {
+            targets = ReachabilityTarget.parseList(getReachabilityTargets());
+        } catch (IllegalArgumentException e) {
+            Log.e(LOG_TAG, "bad saved reachability targets", e);
+            targets = Collections.emptyList();
+        }
+        if (targets.isEmpty()) {
+            targets = ReachabilityTarget.parseList(defaultReachabilityTargets());
+        }
+        mDiagnostics = new Diagnostics(targets, PingSession.RUNTIME, mEvents, mMetrics);
+        mDiagnostics.setQualityMonitor(mCollector.getQualityMonitor());
+        mReceiver = new WifiEventReceiver(mCollector, new EventRouter.Worker() {
+            @Override
+            public void post(Runnable task) {
+                mWorker.post(task);
+            }
+
+            @Override
+            public void postDelayed(Runnable task, long delayMillis) {
+                mWorker.postDelayed(task, delayMillis);
+            }
+        }, ELAPSED_REALTIME, mMetrics);
+    }
+
+    /**
+     * Starts receiving broadcasts and scanning for the first holder.
+     */
+    void acquire() {
+        if (mHolders++ == 0) {
+            mContext.registerReceiver(mReceiver, WifiEventReceiver.createFilter());
+            mConnectivityManager.registerNetworkCallback(new NetworkRequest.Builder()
+                    .addTransportType(NetworkCapabilities.TRANSPORT_WIFI).build(), mNetworkCallback);
+            startScanning();
+            mWorker.postDelayed(mExportMetrics, METRICS_EXPORT_MILLIS);
+        }
+    }
+
+    /**
+     * Stops receiving and scanning when the last holder lets go, and flushes the event log.
+     */
+    void release() {
+        if (mHolders == 0) {
+            throw new IllegalStateException("release() without acquire()");
+        }
+        if (--mHolders == 0) {
+            mContext.unregisterReceiver(mReceiver);
+            mConnectivityManager.unregisterNetworkCallback(mNetworkCallback);
+            // Nothing keeps them current while unregistered.
+            mValidation.invalidate();
+            mDiagnostics.setLinkHosts(Collections.<String>emptyList());
+            mWorker.removeCallbacks(mExportMetrics);
+            mWorker.post(new Runnable() {
+                @Override
+                public void run() {
+                    mCollector.stopScanning();
+                    mEvents.flush();
+                    exportMetrics();
+                    StringBuilder roams = new StringBuilder();
+                    mCollector.getRoamTracker().format(roams);
+                    Log.d(LOG_TAG, "roaming:\n" + roams);
+                    QualityMonitor quality = mCollector.getQualityMonitor();
+                    Log.d(LOG_TAG, "quality: " + quality.getSampleCount() + " samples, "
+                            + quality.getTransitionCount() + " transitions, " + quality.getAlertCount() + " alerts, "
+                            + quality.getDeferredCount() + " deferred");
+                }
+            });
+            StringBuilder stats = new StringBuilder();
+            mReceiver.getRouter().formatStats(stats);
+            Log.d(LOG_TAG, "broadcasts:\n" + stats);
+            Log.d(LOG_TAG, "validation: " + mValidation.getHitCount() + " cached, " + mValidation.getMissCount()
+                    + " looked up, " + mValidation.getAvoidedCalls() + " binder calls avoided, "
+                    + mConnectivity.getBinderCallCount() + " made");
+        }
+    }
+
+    /**
+     * Starts scanning if it is not running, it may still be paused by a ping test.
+     */
+    void startScanning() {
+        mWorker.post(new Runnable() {
+            @Override
+            public void run() {
+                mCollector.startScanning();
+            }
+        });
+    }
+
+    void stopScanning() {
+        mWorker.post(new Runnable() {
+            @Override
+            public void run() {
+                mCollector.stopScanning();
+            }
+        });
+    }
+
+    /**
+     * @param listener called on the collector thread, null to detach
+     */
+    void setCollectorListener(final WifiCollector.Listener listener) {
+        mWorker.post(new Runnable() {
+            @Override
+            public void run() {
+                mCollector.setListener(listener);
+            }
+        });
+    }
+
+    boolean isHeld() {
+        return mHolders > 0;
+    }
+
+    /**
+     * Safe to use from any thread.
+     */
+    WifiSource getWifiSource() {
+        return mCollector.getWifiSource();
+    }
+
+    /**
+     * Safe to use from any thread.
+     */
+    QualityMonitor getQualityMonitor() {
+        return mCollector.getQualityMonitor();
+    }
+
+    Diagnostics getDiagnostics() {
+        return mDiagnostics;
+    }
+
+    /**
+     * @return the user's reachability targets as last saved, one per line
+     */
+    String getReachabilityTargets() {
+        return mPrefs.getString(PREF_REACHABILITY_TARGETS, defaultReachabilityTargets());
+    }
+
+    /**
+     * Saves the user's reachability targets and uses them from the next test on.
+     *
+     * @param text entries separated by whitespace or commas, see {@link ReachabilityTarget#parse(String)}
+     * @throws IllegalArgumentException if an entry is bad or there are none, nothing is saved
+     */
+    void setReachabilityTargets(String text) {
+        mDiagnostics.setTargets(ReachabilityTarget.parseList(text));
+        mPrefs.edit().putString(PREF_REACHABILITY_TARGETS, text.trim()).apply();
+    }
+
+    private String defaultReachabilityTargets() {
+        return TextUtils.join("\n", mContext.getResources().getStringArray(R.array.reachability_targets));
+    }
+
+    /**
+     * @return the link's default gateways, then its DNS servers, each once
+     */
+    private static List<String> linkHostsOf(LinkProperties properties) {
+        List<String> hosts = new ArrayList<>();
+        for (RouteInfo route : properties.getRoutes()) {
+            InetAddress gateway = route.getGateway();
+            // Directly connected routes have the unspecified address.
+            if (route.isDefaultRoute() && gateway != null && !gateway.isAnyLocalAddress()
+                    && !hosts.contains(gateway.getHostAddress())) {
+                hosts.add(gateway.getHostAddress());
+            }
+        }
+        for (InetAddress dns : properties.getDnsServers()) {
+            if (!hosts.contains(dns.getHostAddress())) {
+                hosts.add(dns.getHostAddress());
+            }
+        }
+        return hosts;
+    }
+
+    /**
+     * Called on the collector thread.
+     */
+    private void exportMetrics() {
+        try {
+            mMetrics.export(mMetricsFile);
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "metrics export failed", e);
+        }
+    }
+
+    /**
+     * Keeps the validation cache and the link's reachability targets current, called on the
+     * platform's connectivity thread.
+     */
+    private class NetworkCallback extends ConnectivityManager.NetworkCallback {
+        @Override
+        public void onCapabilitiesChanged(Network network, NetworkCapabilities networkCapabilities) {
+            mValidation.update(AndroidConnectivitySource.validationOf(networkCapabilities));
+        }
+
+        @Override
+        public void onLinkPropertiesChanged(Network network, LinkProperties linkProperties) {
+            mDiagnostics.setLinkHosts(linkHostsOf(linkProperties));
+        }
+
+        @Override
+        public void onLost(Network network) {
+            mValidation.invalidate();
+            mDiagnostics.setLinkHosts(Collections.<String>emptyList());
+        }
+    }
+}
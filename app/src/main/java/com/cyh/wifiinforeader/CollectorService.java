@@ -0,0 +1,82 @@
+package com.cyh.wifiinforeader;
+
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.app.Service;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Build;
+import android.os.IBinder;
+import android.support.v4.app.NotificationCompat;
+import android.support.v4.content.ContextCompat;
+
+/**
+ * Keeps the {@link CollectorHost} held in the foreground, so scans, RSSI and state changes
+ * keep being recorded to the event log with the screen off.
+ */
+public class CollectorService extends Service {
+
+    private static final int NOTIFICATION_ID = 1;
+    private static final String CHANNEL_ID = "collector";
+
+    private static boolean sRunning = false;
+
+    static void start(Context context) {
+        ContextCompat.startForegroundService(context, new Intent(context, CollectorService.class));
+    }
+
+    static void stop(Context context) {
+        context.stopService(new Intent(context, CollectorService.class));
+    }
+
+    /**
+     * Main thread only.
+     */
+    static boolean isRunning() {
+        return sRunning;
+    }
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        sRunning = true;
+        startForeground(NOTIFICATION_ID, buildNotification());
+        CollectorHost.get(this).acquire();
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        return START_STICKY;
+    }
+
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        CollectorHost.get(this).release();
+        sRunning = false;
+    }
+
+    @Override
+    public IBinder onBind(Intent intent) {
+        return null;
+    }
+
+    private Notification buildNotification() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            NotificationManager manager = (NotificationManager) getSystemService(NOTIFICATION_SERVICE);
+            manager.createNotificationChannel(new NotificationChannel(CHANNEL_ID,
+                    getString(R.string.collector_channel_name), NotificationManager.IMPORTANCE_LOW));
+        }
+        PendingIntent contentIntent = PendingIntent.getActivity(this, 0,
+                new Intent(this, WifiStatusActivity.class), 0);
+        return new NotificationCompat.Builder(this, CHANNEL_ID)
+                .setSmallIcon(R.mipmap.ic_launcher)
+                .setContentTitle(getString(R.string.app_name))
+                .setContentText(getString(R.string.collector_running))
+                .setContentIntent(contentIntent)
+                .setOngoing(true)
+                .build();
+    }
+}
@@ -0,0 +1,104 @@
+package com.cyh.wifiinforeader;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.NetworkInfo;
+import android.net.NetworkInfo.DetailedState;
+import android.net.wifi.SupplicantState;
+import android.net.wifi.WifiManager;
+import android.util.Log;
+
+import com.cyh.wifiinforeader.collector.EventRouter;
+import com.cyh.wifiinforeader.collector.WifiCollector;
+import com.cyh.wifiinforeader.metrics.MetricsRegistry;
+import com.cyh.wifiinforeader.util.Clock;
+
+/**
+ * Unpacks the Wi-Fi broadcasts and routes them to a {@link WifiCollector} on its thread.
+ * RSSI and scan results arrive in bursts and are coalesced to the latest per frame.
+ */
+class WifiEventReceiver extends BroadcastReceiver {
+
+    private static final String LOG_TAG = "WifiEventReceiver";
+
+    private static final long FRAME_MILLIS = 16;
+
+    private final EventRouter<Intent> mRouter;
+
+    /**
+     * @param worker  runs the collector, must be the thread it is used on
+     * @param metrics where handler times are kept
+     */
+    WifiEventReceiver(final WifiCollector collector, EventRouter.Worker worker, Clock clock, MetricsRegistry metrics) {
+        mRouter = new EventRouter<>(worker, clock, FRAME_MILLIS, metrics);
+        mRouter.register(WifiManager.WIFI_STATE_CHANGED_ACTION, new EventRouter.Handler<Intent>() {
+            @Override
+            public void handle(Intent intent, long receivedNanos) {
+                collector.onWifiStateChanged(intent.getIntExtra(WifiManager.EXTRA_WIFI_STATE, WifiManager.WIFI_STATE_UNKNOWN));
+            }
+        }, false);
+        mRouter.register(WifiManager.NETWORK_STATE_CHANGED_ACTION, new EventRouter.Handler<Intent>() {
+            @Override
+            public void handle(Intent intent, long receivedNanos) {
+                NetworkInfo networkInfo = intent.getParcelableExtra(WifiManager.EXTRA_NETWORK_INFO);
+                DetailedState state = networkInfo.getDetailedState();
+                collector.onNetworkStateChanged(state.ordinal(), state == DetailedState.CONNECTED, intent.getStringExtra(WifiManager.EXTRA_BSSID));
+            }
+        }, false);
+        mRouter.register(WifiManager.SCAN_RESULTS_AVAILABLE_ACTION, new EventRouter.Handler<Intent>() {
+            @Override
+            public void handle(Intent intent, long receivedNanos) {
+                collector.onScanResultsAvailable();
+            }
+        }, true);
+        mRouter.register(WifiManager.SUPPLICANT_CONNECTION_CHANGE_ACTION, new EventRouter.Handler<Intent>() {
+            @Override
+            public void handle(Intent intent, long receivedNanos) {
+                collector.onSupplicantConnectionChanged(intent.getBooleanExtra(WifiManager.EXTRA_SUPPLICANT_CONNECTED, false));
+            }
+        }, false);
+        mRouter.register(WifiManager.SUPPLICANT_STATE_CHANGED_ACTION, new EventRouter.Handler<Intent>() {
+            @Override
+            public void handle(Intent intent, long receivedNanos) {
+                SupplicantState state = intent.getParcelableExtra(WifiManager.EXTRA_NEW_STATE);
+                collector.onSupplicantStateChanged(state != null ? state.name() : null, state != null ? state.ordinal() : -1,
+                        intent.hasExtra(WifiManager.EXTRA_SUPPLICANT_ERROR) ? intent.getIntExtra(WifiManager.EXTRA_SUPPLICANT_ERROR, 0) : -1,
+                        receivedNanos);
+            }
+        }, false);
+        mRouter.register(WifiManager.RSSI_CHANGED_ACTION, new EventRouter.Handler<Intent>() {
+            @Override
+            public void handle(Intent intent, long receivedNanos) {
+                collector.onRssiChanged(intent.getIntExtra(WifiManager.EXTRA_NEW_RSSI, 0));
+            }
+        }, true);
+        mRouter.register(WifiManager.NETWORK_IDS_CHANGED_ACTION, new EventRouter.Handler<Intent>() {
+            @Override
+            public void handle(Intent intent, long receivedNanos) {
+                collector.onNetworkIdsChanged();
+            }
+        }, false);
+    }
+
+    static IntentFilter createFilter() {
+        IntentFilter filter = new IntentFilter(WifiManager.WIFI_STATE_CHANGED_ACTION);
+        filter.addAction(WifiManager.NETWORK_STATE_CHANGED_ACTION);
+        filter.addAction(WifiManager.SCAN_RESULTS_AVAILABLE_ACTION);
+        filter.addAction(WifiManager.SUPPLICANT_STATE_CHANGED_ACTION);
+        filter.addAction(WifiManager.RSSI_CHANGED_ACTION);
+        return filter;
+    }
+
+    EventRouter<Intent> getRouter() {
+        return mRouter;
+    }
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        if (!mRouter.dispatch(intent.getAction(), intent)) {
+            Log.e(LOG_TAG, "Received an unknown Wifi Intent");
+        }
+    }
+}
@@ -19,47 +19,40 @@ package com.cyh.wifiinforeader;
 
 import android.Manifest;
 import android.app.Activity;
-import android.content.BroadcastReceiver;
-import android.content.Context;
-import android.content.Intent;
-import android.content.IntentFilter;
 import android.content.pm.PackageManager;
-import android.net.ConnectivityManager;
-import android.net.Network;
-import android.net.NetworkCapabilities;
-import android.net.NetworkInfo;
-import android.net.NetworkInfo.DetailedState;
-import android.net.wifi.IWifiManager;
-import android.net.wifi.ScanResult;
-import android.net.wifi.SupplicantState;
-import android.net.wifi.WifiInfo;
 import android.net.wifi.WifiManager;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Message;
-import android.os.RemoteException;
-import android.os.ServiceManager;
 import android.support.v4.app.ActivityCompat;
-import android.text.TextUtils;
 import android.util.Log;
+import android.view.Choreographer;
 import android.view.View;
 import android.view.View.OnClickListener;
+import android.view.View.OnLongClickListener;
 import android.widget.Button;
+import android.widget.EditText;
 import android.widget.TextView;
 import android.widget.Toast;
 
-import java.io.BufferedInputStream;
-import java.io.IOException;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.net.UnknownHostException;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
+import com.cyh.wifiinforeader.collector.Diagnostics;
+import com.cyh.wifiinforeader.collector.WifiCollector;
+import com.cyh.wifiinforeader.collector.WifiLink;
+import com.cyh.wifiinforeader.quality.QualityMonitor;
+import com.cyh.wifiinforeader.reachability.ReachabilityTable;
+import com.cyh.wifiinforeader.status.StatusModel;
+import com.cyh.wifiinforeader.status.StatusSnapshot;
+import com.cyh.wifiinforeader.util.Clock;
+
+import java.util.concurrent.TimeUnit;
 
 
 /**
  * Show the current status details of Wifi related fields
+ * <p>
+ * Collection itself runs in the shared {@link CollectorHost}, this screen holds it while
+ * resumed and renders what its listeners report. Only quality changes the {@link QualityMonitor}
+ * lets through are toasted, not every broadcast.
  */
 public class WifiStatusActivity extends Activity {
 
@@ -78,68 +71,164 @@ public class WifiStatusActivity extends Activity {
     private TextView mNetworkId;
     private TextView mLinkSpeed;
     private TextView mScanList;
+    /** The status panel by {@link StatusSnapshot} field. */
+    private final TextView[] mFieldViews = new TextView[StatusSnapshot.FIELD_COUNT];
 
     private TextView mPingHostname;
     private TextView mHttpClientTest;
     private Button pingTestButton;
     private TextView mScanCount;
+    private Button reachabilityTestButton;
+    private EditText mReachabilityTargets;
+    private TextView mReachabilityTable;
+    private Button backgroundButton;
+
+    private static final int MSG_PING_PROGRESS = 0;
+    private static final long FRAME_MILLIS = 16;
+
+    private CollectorHost mHost;
+    /** The update button's view of the connection. */
+    private final WifiLink mLink = new WifiLink();
+    private final String[] mLinkValues = new String[StatusSnapshot.FIELD_COUNT];
+    private static final int LINK_FIELDS = 1 << StatusSnapshot.WIFI_STATE | 1 << StatusSnapshot.SUPPLICANT_STATE
+            | 1 << StatusSnapshot.RSSI | 1 << StatusSnapshot.BSSID | 1 << StatusSnapshot.SSID
+            | 1 << StatusSnapshot.HIDDEN_SSID | 1 << StatusSnapshot.IP_ADDRESS | 1 << StatusSnapshot.MAC_ADDRESS
+            | 1 << StatusSnapshot.NETWORK_ID | 1 << StatusSnapshot.LINK_SPEED;
+    private Diagnostics mDiagnostics;
+    private StatusModel mStatus;
 
-    private int count = 0;
-    private StringBuffer mScanContent = new StringBuffer();
+    /**
+     * Renders the replies that arrived since the last frame, see {@link com.cyh.wifiinforeader.ping.PingProgress}.
+     */
+    private Handler mPingHandler = new Handler(new Handler.Callback() {
+        @Override
+        public boolean handleMessage(Message msg) {
+            mPingHostname.setText(mDiagnostics.getPingProgress());
+            return true;
+        }
+    });
 
-    private String mPingHostnameResult;
-    private String mHttpClientTestResult;
+    /** Brings diagnostics results and Toasts over to the main thread. */
+    private final Handler mResultHandler = new Handler();
 
 
-    private WifiManager mWifiManager;
-    private IntentFilter mWifiStateFilter;
+    /**
+     * Called on the collector thread, fields go to the status model and are drawn on the next frame.
+     */
+    private final WifiCollector.Listener mCollectorListener = new WifiCollector.Listener() {
+        @Override
+        public void onWifiStateChanged(int wifiState) {
+            mStatus.set(StatusSnapshot.WIFI_STATE, wifiStateText(wifiState));
+        }
 
-    private Handler mScanHandler = new Handler(new Handler.Callback() {
         @Override
-        public boolean handleMessage(Message msg) {
-            mWifiManager.startScan();
+        public void onNetworkStateChanged(String summary) {
+            mStatus.set(StatusSnapshot.NETWORK_STATE, summary);
+        }
 
-            ++count;
-            mScanContent.append("Time: " + System.currentTimeMillis() + " ScanCount: " + count + "\n");
-            mScanCount.setText(mScanContent.toString());
+        @Override
+        public void onSupplicantStateChanged(String state) {
+            mStatus.set(StatusSnapshot.SUPPLICANT_STATE, state);
+        }
 
-            mScanHandler.sendEmptyMessageDelayed(0, 5000);
-            return true;
+        @Override
+        public void onSupplicantConnectionChanged(boolean connected) {
         }
-    });
 
+        @Override
+        public void onNetworkIdsChanged() {
+        }
 
-    //============================
-    // Activity lifecycle
-    //============================
+        @Override
+        public void onRssiChanged(int rssi) {
+            mStatus.set(StatusSnapshot.RSSI, String.valueOf(rssi));
+        }
 
-    private final BroadcastReceiver mWifiStateReceiver = new BroadcastReceiver() {
         @Override
-        public void onReceive(Context context, Intent intent) {
-            if (intent.getAction().equals(WifiManager.WIFI_STATE_CHANGED_ACTION)) {
-                Toast.makeText(WifiStatusActivity.this, "WiFi状态改变", Toast.LENGTH_SHORT).show();
-                handleWifiStateChanged(intent.getIntExtra(WifiManager.EXTRA_WIFI_STATE, WifiManager.WIFI_STATE_UNKNOWN));
-            } else if (intent.getAction().equals(WifiManager.NETWORK_STATE_CHANGED_ACTION)) {
-                Toast.makeText(WifiStatusActivity.this, "网络状态改变", Toast.LENGTH_SHORT).show();
-                handleNetworkStateChanged((NetworkInfo) intent.getParcelableExtra(WifiManager.EXTRA_NETWORK_INFO));
-            } else if (intent.getAction().equals(WifiManager.SCAN_RESULTS_AVAILABLE_ACTION)) {
-                handleScanResultsAvailable();
-            } else if (intent.getAction().equals(WifiManager.SUPPLICANT_CONNECTION_CHANGE_ACTION)) {
-                Toast.makeText(WifiStatusActivity.this, "WiFi已连接", Toast.LENGTH_SHORT).show();
-                /* TODO: handle supplicant connection change later */
-            } else if (intent.getAction().equals(WifiManager.SUPPLICANT_STATE_CHANGED_ACTION)) {
-                handleSupplicantStateChanged((SupplicantState) intent.getParcelableExtra(WifiManager.EXTRA_NEW_STATE), intent.hasExtra(WifiManager.EXTRA_SUPPLICANT_ERROR), intent.getIntExtra(WifiManager.EXTRA_SUPPLICANT_ERROR, 0));
-            } else if (intent.getAction().equals(WifiManager.RSSI_CHANGED_ACTION)) {
-                handleSignalChanged(intent.getIntExtra(WifiManager.EXTRA_NEW_RSSI, 0));
-            } else if (intent.getAction().equals(WifiManager.NETWORK_IDS_CHANGED_ACTION)) {
-                Toast.makeText(WifiStatusActivity.this, "配置网络改变", Toast.LENGTH_SHORT).show();
-                /* TODO: handle network id change info later */
-            } else {
-                Log.e(LOG_TAG, "Received an unknown Wifi Intent");
+        public void onScanLogChanged(CharSequence log) {
+            mStatus.set(StatusSnapshot.SCAN_LOG, log.toString());
+        }
+
+        @Override
+        public void onScanListChanged(CharSequence ssids, CharSequence changes) {
+            mStatus.set(StatusSnapshot.SCAN_LIST, ssids.toString());
+        }
+    };
+
+    /**
+     * Called on the collector or ping thread, at most a few times a minute.
+     */
+    private final QualityMonitor.Listener mQualityListener = new QualityMonitor.Listener() {
+        @Override
+        public void onQualityChanged(String alert) {
+            postToast(alert);
+        }
+    };
+
+    /**
+     * Sets only the fields that changed since the last frame.
+     */
+    private final StatusModel.Renderer mStatusRenderer = new StatusModel.Renderer() {
+        @Override
+        public void render(StatusSnapshot snapshot, int changed) {
+            for (int field = 0; field < StatusSnapshot.FIELD_COUNT; field++) {
+                if ((changed & (1 << field)) != 0) {
+                    mFieldViews[field].setText(snapshot.get(field));
+                }
             }
         }
     };
 
+    /**
+     * Called on the diagnostics threads.
+     */
+    private final Diagnostics.Listener mDiagnosticsListener = new Diagnostics.Listener() {
+        @Override
+        public void onPingProgress() {
+            mPingHandler.sendEmptyMessageDelayed(MSG_PING_PROGRESS, FRAME_MILLIS);
+        }
+
+        @Override
+        public void onPingFinished(final String result) {
+            mResultHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    mPingHandler.removeMessages(MSG_PING_PROGRESS);
+                    mPingHostname.setText(result);
+                    // Scanning was paused for the ping.
+                    if (mHost.isHeld()) {
+                        mHost.startScanning();
+                    }
+                }
+            });
+        }
+
+        @Override
+        public void onHttpFinished(final String result) {
+            mResultHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    mHttpClientTest.setText(result);
+                }
+            });
+        }
+
+        @Override
+        public void onReachabilityFinished(final ReachabilityTable table) {
+            Log.d(LOG_TAG, "reachability: " + table.getElapsedMillis() + "ms\n" + table);
+            mResultHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    mReachabilityTable.setText(table.toString());
+                }
+            });
+        }
+    };
+
+    //============================
+    // Activity lifecycle
+    //============================
+
     //    private final int REQUEST_FIND_LOCATION = 0x111;
     //    private final int REQUEST_COARSE_LOCATION = 0x112;
 
@@ -156,16 +245,20 @@ public class WifiStatusActivity extends Activity {
             }
         }
 
-        mWifiManager = (WifiManager) getApplicationContext().getSystemService(WIFI_SERVICE);
-
-        mWifiStateFilter = new IntentFilter(WifiManager.WIFI_STATE_CHANGED_ACTION);
-        mWifiStateFilter.addAction(WifiManager.NETWORK_STATE_CHANGED_ACTION);
-        mWifiStateFilter.addAction(WifiManager.SCAN_RESULTS_AVAILABLE_ACTION);
-        mWifiStateFilter.addAction(WifiManager.SUPPLICANT_STATE_CHANGED_ACTION);
-        mWifiStateFilter.addAction(WifiManager.RSSI_CHANGED_ACTION);
-        mWifiStateFilter.addAction(WifiManager.WIFI_STATE_CHANGED_ACTION);
-
-        registerReceiver(mWifiStateReceiver, mWifiStateFilter);
+        mHost = CollectorHost.get(this);
+        mDiagnostics = mHost.getDiagnostics();
+        final Choreographer choreographer = Choreographer.getInstance();
+        mStatus = new StatusModel(new StatusModel.FrameScheduler() {
+            @Override
+            public void scheduleFrame(final Runnable frame) {
+                choreographer.postFrameCallback(new Choreographer.FrameCallback() {
+                    @Override
+                    public void doFrame(long frameTimeNanos) {
+                        frame.run();
+                    }
+                });
+            }
+        }, Clock.SYSTEM);
 
         setContentView(R.layout.wifi_status_test);
 
@@ -193,87 +286,125 @@ public class WifiStatusActivity extends Activity {
 
         mScanCount = (TextView) findViewById(R.id.scan_count);
 
+        reachabilityTestButton = (Button) findViewById(R.id.reachability_test);
+        reachabilityTestButton.setOnClickListener(mReachabilityButtonHandler);
+        reachabilityTestButton.setOnLongClickListener(mReachabilityIcmpButtonHandler);
+        mReachabilityTable = (TextView) findViewById(R.id.reachability_table);
+        mReachabilityTargets = (EditText) findViewById(R.id.reachability_targets);
+        mReachabilityTargets.setText(mHost.getReachabilityTargets());
+
+        mFieldViews[StatusSnapshot.WIFI_STATE] = mWifiState;
+        mFieldViews[StatusSnapshot.NETWORK_STATE] = mNetworkState;
+        mFieldViews[StatusSnapshot.SUPPLICANT_STATE] = mSupplicantState;
+        mFieldViews[StatusSnapshot.RSSI] = mRSSI;
+        mFieldViews[StatusSnapshot.BSSID] = mBSSID;
+        mFieldViews[StatusSnapshot.SSID] = mSSID;
+        mFieldViews[StatusSnapshot.HIDDEN_SSID] = mHiddenSSID;
+        mFieldViews[StatusSnapshot.IP_ADDRESS] = mIPAddr;
+        mFieldViews[StatusSnapshot.MAC_ADDRESS] = mMACAddr;
+        mFieldViews[StatusSnapshot.NETWORK_ID] = mNetworkId;
+        mFieldViews[StatusSnapshot.LINK_SPEED] = mLinkSpeed;
+        mFieldViews[StatusSnapshot.SCAN_LIST] = mScanList;
+        mFieldViews[StatusSnapshot.SCAN_LOG] = mScanCount;
+
+        backgroundButton = (Button) findViewById(R.id.background_collection);
+        backgroundButton.setOnClickListener(mBackgroundButtonHandler);
     }
 
     @Override
     protected void onResume() {
         super.onResume();
-        registerReceiver(mWifiStateReceiver, mWifiStateFilter);
-        mScanHandler.sendEmptyMessage(0);
+        mStatus.setRenderer(mStatusRenderer);
+        mHost.setCollectorListener(mCollectorListener);
+        mHost.getQualityMonitor().setListener(mQualityListener);
+        mDiagnostics.setListener(mDiagnosticsListener);
+        mHost.acquire();
+        // Scanning may still be paused by a ping test from before.
+        mHost.startScanning();
+        setBackgroundButtonText();
     }
 
     @Override
     protected void onPause() {
         super.onPause();
-        unregisterReceiver(mWifiStateReceiver);
-        mScanHandler.removeMessages(0);
+        mHost.setCollectorListener(null);
+        mHost.getQualityMonitor().setListener(null);
+        mDiagnostics.setListener(null);
+        mDiagnostics.cancelAll();
+        mPingHandler.removeMessages(MSG_PING_PROGRESS);
+        mResultHandler.removeCallbacksAndMessages(null);
+        mHost.release();
+        mStatus.setRenderer(null);
+        Log.d(LOG_TAG, "status: " + mStatus.getUpdateCount() + " updates, " + mStatus.getUnchangedUpdateCount()
+                + " unchanged, " + mStatus.getFrameCount() + " frames, " + mStatus.getFieldsRendered()
+                + " fields rendered in " + TimeUnit.NANOSECONDS.toMicros(mStatus.getRenderNanos()) + "us");
     }
 
     OnClickListener mPingButtonHandler = new OnClickListener() {
         public void onClick(View v) {
-            if (mScanHandler.hasMessages(0)) {
-                mScanHandler.removeMessages(0);
-            }
+            mHost.stopScanning();
             updatePingState();
         }
     };
 
-    OnClickListener updateButtonHandler = new OnClickListener() {
+    OnClickListener mReachabilityButtonHandler = new OnClickListener() {
+        public void onClick(View v) {
+            updateReachabilityState(false);
+        }
+    };
+
+    OnLongClickListener mReachabilityIcmpButtonHandler = new OnLongClickListener() {
+        public boolean onLongClick(View v) {
+            updateReachabilityState(true);
+            return true;
+        }
+    };
+
+    OnClickListener mBackgroundButtonHandler = new OnClickListener() {
         public void onClick(View v) {
-            final WifiInfo wifiInfo = mWifiManager.getConnectionInfo();
-
-            setWifiStateText(mWifiManager.getWifiState());
-            mBSSID.setText(wifiInfo.getBSSID());
-            mHiddenSSID.setText(String.valueOf(wifiInfo.getHiddenSSID()));
-            int ipAddr = wifiInfo.getIpAddress();
-            StringBuffer ipBuf = new StringBuffer();
-            ipBuf.append(ipAddr & 0xff).append('.').
-                    append((ipAddr >>>= 8) & 0xff).append('.').
-                    append((ipAddr >>>= 8) & 0xff).append('.').
-                    append((ipAddr >>>= 8) & 0xff);
-
-            mIPAddr.setText(ipBuf);
-            mLinkSpeed.setText(String.valueOf(wifiInfo.getLinkSpeed()) + " Mbps");
-            mMACAddr.setText(wifiInfo.getMacAddress());
-            mNetworkId.setText(String.valueOf(wifiInfo.getNetworkId()));
-            mRSSI.setText(String.valueOf(wifiInfo.getRssi()));
-            mSSID.setText(wifiInfo.getSSID());
-
-            SupplicantState supplicantState = wifiInfo.getSupplicantState();
-            setSupplicantStateText(supplicantState);
+            // The service only flips its flag once created, so show the requested state.
+            boolean start = !CollectorService.isRunning();
+            if (start) {
+                CollectorService.start(WifiStatusActivity.this);
+            } else {
+                CollectorService.stop(WifiStatusActivity.this);
+            }
+            backgroundButton.setText(start ? R.string.background_collection_stop : R.string.background_collection_start);
         }
     };
 
-    private void setSupplicantStateText(SupplicantState supplicantState) {
-        if (SupplicantState.FOUR_WAY_HANDSHAKE.equals(supplicantState)) {
-            mSupplicantState.setText("FOUR WAY HANDSHAKE");
-        } else if (SupplicantState.ASSOCIATED.equals(supplicantState)) {
-            mSupplicantState.setText("ASSOCIATED");
-        } else if (SupplicantState.ASSOCIATING.equals(supplicantState)) {
-            mSupplicantState.setText("ASSOCIATING");
-        } else if (SupplicantState.COMPLETED.equals(supplicantState)) {
-            mSupplicantState.setText("COMPLETED");
-        } else if (SupplicantState.DISCONNECTED.equals(supplicantState)) {
-            mSupplicantState.setText("DISCONNECTED");
-        } else if (SupplicantState.DORMANT.equals(supplicantState)) {
-            mSupplicantState.setText("DORMANT");
-        } else if (SupplicantState.GROUP_HANDSHAKE.equals(supplicantState)) {
-            mSupplicantState.setText("GROUP HANDSHAKE");
-        } else if (SupplicantState.INACTIVE.equals(supplicantState)) {
-            mSupplicantState.setText("INACTIVE");
-        } else if (SupplicantState.INVALID.equals(supplicantState)) {
-            mSupplicantState.setText("INVALID");
-        } else if (SupplicantState.SCANNING.equals(supplicantState)) {
-            mSupplicantState.setText("SCANNING");
-        } else if (SupplicantState.UNINITIALIZED.equals(supplicantState)) {
-            mSupplicantState.setText("UNINITIALIZED");
-        } else {
-            mSupplicantState.setText("BAD");
-            Log.e(LOG_TAG, "supplicant state is bad");
+    OnClickListener updateButtonHandler = new OnClickListener() {
+        public void onClick(View v) {
+            String wifiState = wifiStateText(mHost.getWifiSource().getWifiState());
+            if (!mHost.getWifiSource().readConnectionInfo(mLink)) {
+                mStatus.set(StatusSnapshot.WIFI_STATE, wifiState);
+                return;
+            }
+
+            // One snapshot, so a frame never shows half of the refresh.
+            String[] values = mLinkValues;
+            values[StatusSnapshot.WIFI_STATE] = wifiState;
+            values[StatusSnapshot.BSSID] = mLink.getBssid();
+            values[StatusSnapshot.HIDDEN_SSID] = String.valueOf(mLink.isHiddenSsid());
+            values[StatusSnapshot.IP_ADDRESS] = WifiLink.formatIpAddress(mLink.getIpAddress());
+            values[StatusSnapshot.LINK_SPEED] = String.valueOf(mLink.getLinkSpeedMbps()) + " Mbps";
+            values[StatusSnapshot.MAC_ADDRESS] = mLink.getMacAddress();
+            values[StatusSnapshot.NETWORK_ID] = String.valueOf(mLink.getNetworkId());
+            values[StatusSnapshot.RSSI] = String.valueOf(mLink.getRssi());
+            values[StatusSnapshot.SSID] = mLink.getSsid();
+            values[StatusSnapshot.SUPPLICANT_STATE] = WifiCollector.supplicantStateText(mLink.getSupplicantState());
+            mStatus.set(LINK_FIELDS, values);
         }
+    };
+
+    private void setBackgroundButtonText() {
+        backgroundButton.setText(CollectorService.isRunning() ? R.string.background_collection_stop : R.string.background_collection_start);
     }
 
-    private void setWifiStateText(int wifiState) {
+    /**
+     * Safe to call from any thread.
+     */
+    private String wifiStateText(int wifiState) {
         String wifiStateString;
         switch (wifiState) {
             case WifiManager.WIFI_STATE_DISABLING:
@@ -297,242 +428,64 @@ public class WifiStatusActivity extends Activity {
                 break;
         }
 
-        mWifiState.setText(wifiStateString);
-    }
-
-    private void handleSignalChanged(int rssi) {
-        mRSSI.setText(String.valueOf(rssi));
+        return wifiStateString;
     }
 
-    private void handleWifiStateChanged(int wifiState) {
-        setWifiStateText(wifiState);
-    }
-
-    private void handleScanResultsAvailable() {
-        List<ScanResult> list = mWifiManager.getScanResults();
-
-        StringBuffer scanList = new StringBuffer();
-        if (list != null) {
-            for (int i = list.size() - 1; i >= 0; i--) {
-                final ScanResult scanResult = list.get(i);
-
-                if (scanResult == null) {
-                    continue;
-                }
-
-                if (TextUtils.isEmpty(scanResult.SSID)) {
-                    continue;
-                }
-
-                scanList.append(scanResult.SSID + " ");
+    private void postToast(final String text) {
+        mResultHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                Toast.makeText(WifiStatusActivity.this, text, Toast.LENGTH_SHORT).show();
             }
-        }
-        Toast.makeText(this, scanList, Toast.LENGTH_SHORT).show();
-        mScanList.setText(scanList);
+        });
     }
 
-    private void handleSupplicantStateChanged(SupplicantState state, boolean hasError, int error) {
-        if (hasError) {
-            mSupplicantState.setText("ERROR AUTHENTICATING");
-        } else {
-            setSupplicantStateText(state);
-        }
-    }
-
-    private void handleNetworkStateChanged(NetworkInfo networkInfo) {
-        if (mWifiManager.isWifiEnabled()) {
-            WifiInfo info = mWifiManager.getConnectionInfo();
-            String summary = getSummary(networkInfo, info);
-            mNetworkState.setText(summary);
-        }
-    }
-
-    private String getSummary(NetworkInfo networkInfo, WifiInfo info) {
-        String summary;
-        DetailedState state = networkInfo.getDetailedState();
-        boolean isEphemeral = info.getNetworkId() == -1;
-        String ssid = info.getSSID();
-        String passpointProvider = null;
-        if (state == DetailedState.CONNECTED && ssid == null) {
-            if (TextUtils.isEmpty(passpointProvider) == false) {
-                // Special case for connected + passpoint networks.
-                //通过 %1$s 连接
-            } else if (isEphemeral) {
-                // Special case for connected + ephemeral networks.
-                //通过 WLAN 助手连接
-            }
+    private final void updatePingState() {
+        Log.d(LOG_TAG, "updatePingState: queue " + mDiagnostics.getScheduler().getQueueDepth()
+                + " last ping " + mDiagnostics.getScheduler().getLastRunTimeMillis(Diagnostics.TASK_PING) + "ms"
+                + " last http " + mDiagnostics.getScheduler().getLastRunTimeMillis(Diagnostics.TASK_HTTP) + "ms");
+        if (!applyReachabilityTargets()) {
+            return;
         }
 
-        // Case when there is wifi connected without internet connectivity.
-        final ConnectivityManager cm = (ConnectivityManager) WifiStatusActivity.this.getSystemService(Context.CONNECTIVITY_SERVICE);
-        if (state == DetailedState.CONNECTED) {
-            IWifiManager wifiManager = IWifiManager.Stub.asInterface(ServiceManager.getService(Context.WIFI_SERVICE));
-            Network nw;
-
-            try {
-                nw = wifiManager.getCurrentNetwork();
-            } catch (RemoteException e) {
-                nw = null;
-            }
-            NetworkCapabilities nc = cm.getNetworkCapabilities(nw);
-            if (nc != null && !nc.hasCapability(nc.NET_CAPABILITY_VALIDATED)) {
-                // no network
-                summary = "已连接，无网络";
-            }
-
+        // A test still in flight is joined rather than started again.
+        // Set the others to unknown since the tests will take a few secs to update.
+        // Progress of a joined ping keeps its pending message, dropping it would stall the updates.
+        if (mDiagnostics.runPing()) {
+            mPingHandler.removeMessages(MSG_PING_PROGRESS);
+            mPingHostname.setText(R.string.radioInfo_unknown);
         }
-        String[] formats = getResources().getStringArray((ssid == null) ? R.array.wifi_status : R.array.wifi_status_with_ssid);
-        int index = state.ordinal();
-
-        if (index >= formats.length || formats[index].length() == 0) {
-            summary = "";
+        if (mDiagnostics.runHttp()) {
+            mHttpClientTest.setText(R.string.radioInfo_unknown);
         }
-        summary = String.format(formats[index], ssid);
-        return summary;
-    }
-
-    private final void updatePingState() {
-        final Handler handler = new Handler();
-        // Set all to unknown since the threads will take a few secs to update.
-        mPingHostnameResult = getResources().getString(R.string.radioInfo_unknown);
-        mHttpClientTestResult = getResources().getString(R.string.radioInfo_unknown);
-
-        mPingHostname.setText(mPingHostnameResult);
-        mHttpClientTest.setText(mHttpClientTestResult);
-
-        final Runnable updatePingResults = new Runnable() {
-            public void run() {
-                mPingHostname.setText(mPingHostnameResult);
-                mHttpClientTest.setText(mHttpClientTestResult);
-            }
-        };
-
-        Thread hostnameThread = new Thread() {
-            @Override
-            public void run() {
-                pingHostname();
-                handler.post(updatePingResults);
-            }
-        };
-        hostnameThread.start();
-
-        Thread httpClientThread = new Thread() {
-            @Override
-            public void run() {
-                httpClientTest();
-                handler.post(updatePingResults);
-            }
-        };
-        httpClientThread.start();
     }
 
     /**
-     * Test the connectivity to the target server
-     * <p>
-     * PING www.a.shifen.com (180.97.33.108) 56(84) bytes of data.<br/>
-     * 64 bytes from 180.97.33.108: icmp_seq=1 ttl=54 time=58.6 ms<br/>
-     * <p>
-     * --- www.a.shifen.com ping statistics ---<br/>
-     * 1 packets transmitted, 1 received, 0% packet loss, time 0ms<br/>
-     * rtt min/avg/max/mdev = 58.674/58.674/58.674/0.000 ms<br/>
+     * Check the user's targets and the link's gateway and DNS servers over TCP and HTTP at once.
+     *
+     * @param icmp also ping them, a long press on the button
      */
-    private final void pingHostname() {
-        BufferedInputStream bis = null;
-        StringBuffer sb = new StringBuffer();
-        try {
-            // TODO: Hardcoded for now, make it UI configurable
-            int pingCount = 20;
-            long pingOutTime = pingCount * 100;
-            int pingPackSize = 24;
-            String pingTarget = "www.baidu.com";
-
-            Process p = Runtime.getRuntime().exec("ping -c " + pingCount + " -w " + pingOutTime + " -s " + pingPackSize + " " + pingTarget);
-            int status = p.waitFor();
-            byte[] buff = new byte[1024 * 8];
-            bis = new BufferedInputStream(p.getInputStream());
-            int length = -1;
-            while (-1 != (length = bis.read(buff, 0, buff.length))) {
-                String line = new String(Arrays.copyOf(buff, length));
-                sb.append(line);
-            }
-            Log.d(LOG_TAG, "pingHostname: status " + status);
-            if (status == 0) {
-                mPingHostnameResult = "Pass";
-                ArrayList<String> pingResponse = new ArrayList<>();
-                String[] responses = sb.toString().split("\n");
-                for (String response : responses) {
-                    pingResponse.add(response);
-                }
-                loadResponse(pingResponse, pingCount, pingOutTime, pingPackSize + 8, pingTarget);
-            } else {
-                mPingHostnameResult = "Fail: Host unreachable";
-            }
-        } catch (UnknownHostException e) {
-            mPingHostnameResult = "Fail: Unknown Host";
-        } catch (IOException e) {
-            mPingHostnameResult = "Fail: IOException";
-        } catch (InterruptedException e) {
-            mPingHostnameResult = "Fail: InterruptedException";
-        } finally {
-            if (null != bis) {
-                try {
-                    bis.close();
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
-            }
-            Log.d(LOG_TAG, "pingHostname: " + sb.toString());
+    private void updateReachabilityState(boolean icmp) {
+        if (!applyReachabilityTargets()) {
+            return;
+        }
+        if (mDiagnostics.runReachability(icmp)) {
+            mReachabilityTable.setText(R.string.radioInfo_unknown);
         }
     }
 
     /**
-     * Test whether the network is connected to the Internet
+     * Saves the targets as edited, the ping and HTTP tests use the first.
+     *
+     * @return false, after saying why, if they cannot be used
      */
-    private void httpClientTest() {
-        HttpURLConnection urlConnection = null;
+    private boolean applyReachabilityTargets() {
         try {
-            // TODO: Hardcoded for now, make it UI configurable
-            URL url = new URL("https://www.baidu.com");
-            urlConnection = (HttpURLConnection) url.openConnection();
-            if (urlConnection.getResponseCode() == 200) {
-                mHttpClientTestResult = "Pass";
-            } else {
-                mHttpClientTestResult = "Fail: Code: " + urlConnection.getResponseMessage();
-            }
-        } catch (IOException e) {
-            mHttpClientTestResult = "Fail: IOException";
-        } finally {
-            if (urlConnection != null) {
-                urlConnection.disconnect();
-            }
-        }
-    }
-
-    private void loadResponse(ArrayList<String> pingResponse, int pingCount, long pingOutTime, int pingPackSize, String pingTarget) {
-        Log.d(LOG_TAG, "pingHostname: pingResponse.size " + pingResponse.size());
-        if (null != pingResponse && pingResponse.size() > 0) {
-            for (String response : pingResponse) {
-                if (response.matches("--- .* ping statistics ---")) {
-                    //--- 10.14.11.14 ping statistics ---
-                    //--- www.a.shifen.com ping statistics ---
-                    Log.d(LOG_TAG, "pingHostname: " + "host>> " + response);
-                }
-
-                if (response.matches(pingPackSize + " bytes from \\d{0,3}[.]\\d{0,3}[.]\\d{0,3}[.]\\d{0,3}: icmp_seq=\\d* ttl=\\d* time=\\d*[.]?\\d* ms")) {
-                    //64 bytes from 10.14.11.14: icmp_seq=1 ttl=64 time=0.276 ms
-                    Log.d(LOG_TAG, "pingHostname: " + "1>> " + response);
-                }
-
-                if (response.matches("\\d* packets transmitted, \\d* received, \\d{1,3}% packet loss, time \\d*[.]?\\d*ms")) {
-                    //1 packets transmitted, 1 received, 0% packet loss, time 0ms
-                    Log.d(LOG_TAG, "pingHostname: " + "2>> " + response);
-                }
-
-                if (response.matches("rtt [a-z]{0,4}/[a-z]{0,4}/[a-z]{0,4}/[a-z]{0,4} = \\d*[.]?\\d*/\\d*[.]?\\d*/\\d*[.]?\\d*/\\d*[.]?\\d* ms")) {
-                    //rtt min/avg/max/mdev = 0.276/0.276/0.276/0.000 ms
-                    Log.d(LOG_TAG, "pingHostname: " + "3>> " + response);
-                }
-            }
+            mHost.setReachabilityTargets(mReachabilityTargets.getText().toString());
+            return true;
+        } catch (IllegalArgumentException e) {
+            mReachabilityTargets.setError(e.getMessage());
+            return false;
         }
     }
 
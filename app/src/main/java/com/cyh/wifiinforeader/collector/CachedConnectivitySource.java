@@ -0,0 +1,84 @@
+package com.cyh.wifiinforeader.collector;
+
+/**
+ * Remembers the Wi-Fi validation state instead of asking the wrapped source on every network
+ * state broadcast. The state is pushed in by {@link #update} when the platform reports a
+ * capability change, and {@link #invalidate} makes the next lookup ask again.
+ * <p>
+ * Thread-safe: lookups come from the collector thread, updates from the platform's callback
+ * thread.
+ */
+public class CachedConnectivitySource implements ConnectivitySource {
+
+    private final ConnectivitySource mSource;
+    private final int mCallsPerLookup;
+
+    private int mValidation = VALIDATION_UNKNOWN;
+    private boolean mValid = false;
+    /** Bumped by every update or invalidation, so a lookup racing one does not undo it. */
+    private long mGeneration = 0;
+    private long mHits = 0;
+    private long mMisses = 0;
+
+    /**
+     * @param callsPerLookup binder calls one lookup of {@code source} makes, for
+     *                       {@link #getAvoidedCalls()}
+     */
+    public CachedConnectivitySource(ConnectivitySource source, int callsPerLookup) {
+        mSource = source;
+        mCallsPerLookup = callsPerLookup;
+    }
+
+    @Override
+    public int getWifiValidation() {
+        long generation;
+        synchronized (this) {
+            if (mValid) {
+                mHits++;
+                return mValidation;
+            }
+            mMisses++;
+            generation = mGeneration;
+        }
+        int validation = mSource.getWifiValidation();
+        synchronized (this) {
+            if (generation == mGeneration) {
+                mValidation = validation;
+                mValid = true;
+            }
+        }
+        return validation;
+    }
+
+    /**
+     * @param validation the state the platform reported, see {@link #getWifiValidation()}
+     */
+    public synchronized void update(int validation) {
+        mValidation = validation;
+        mValid = true;
+        mGeneration++;
+    }
+
+    /**
+     * The next lookup asks the wrapped source.
+     */
+    public synchronized void invalidate() {
+        mValid = false;
+        mGeneration++;
+    }
+
+    public synchronized long getHitCount() {
+        return mHits;
+    }
+
+    public synchronized long getMissCount() {
+        return mMisses;
+    }
+
+    /**
+     * @return binder calls saved by answering from the cache
+     */
+    public synchronized long getAvoidedCalls() {
+        return mHits * mCallsPerLookup;
+    }
+}
@@ -0,0 +1,17 @@
+package com.cyh.wifiinforeader.collector;
+
+/**
+ * The parts of {@code ConnectivityManager} the collector uses.
+ */
+public interface ConnectivitySource {
+
+    int VALIDATION_UNKNOWN = 0;
+    int VALIDATED = 1;
+    int NOT_VALIDATED = 2;
+
+    /**
+     * @return whether the current Wi-Fi network passed the platform's internet check, one of
+     * {@link #VALIDATED}, {@link #NOT_VALIDATED} or {@link #VALIDATION_UNKNOWN}
+     */
+    int getWifiValidation();
+}
@@ -0,0 +1,396 @@
+package com.cyh.wifiinforeader.collector;
+
+import com.cyh.wifiinforeader.diagnostics.DiagnosticsScheduler;
+import com.cyh.wifiinforeader.eventlog.EventLog;
+import com.cyh.wifiinforeader.http.HttpTiming;
+import com.cyh.wifiinforeader.http.HttpTimingProbe;
+import com.cyh.wifiinforeader.http.HttpTimingReport;
+import com.cyh.wifiinforeader.metrics.LatencyHistogram;
+import com.cyh.wifiinforeader.metrics.MetricsRegistry;
+import com.cyh.wifiinforeader.ping.PingProgress;
+import com.cyh.wifiinforeader.ping.PingReport;
+import com.cyh.wifiinforeader.ping.PingSession;
+import com.cyh.wifiinforeader.ping.SocketPinger;
+import com.cyh.wifiinforeader.quality.ProbeStreamStats;
+import com.cyh.wifiinforeader.quality.QualityMonitor;
+import com.cyh.wifiinforeader.reachability.HttpProbe;
+import com.cyh.wifiinforeader.reachability.IcmpProbe;
+import com.cyh.wifiinforeader.reachability.ReachabilityEngine;
+import com.cyh.wifiinforeader.reachability.ReachabilityProbe;
+import com.cyh.wifiinforeader.reachability.ReachabilityResult;
+import com.cyh.wifiinforeader.reachability.ReachabilityTable;
+import com.cyh.wifiinforeader.reachability.ReachabilityTarget;
+import com.cyh.wifiinforeader.reachability.TcpProbe;
+
+import java.io.IOException;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The ping, HTTP and reachability tests, run on a {@link DiagnosticsScheduler} and recorded to
+ * the event log. Every ping reply and HTTP request also goes to the {@code ping_rtt_seconds} and
+ * {@code http_phase_seconds} histograms, and the ping result carries the jitter, loss bursts and
+ * MOS of its replies, see {@link ProbeStreamStats}. The loss of every ping test goes to an optional
+ * {@link QualityMonitor}. A test still in flight is joined rather than started again.
+ * <p>
+ * {@link Listener} callbacks come on the diagnostics threads.
+ */
+public class Diagnostics {
+
+    public interface Listener {
+        /**
+         * A ping reply arrived and {@link #getPingProgress()} is worth rendering within a frame.
+         */
+        void onPingProgress();
+
+        void onPingFinished(String result);
+
+        void onHttpFinished(String result);
+
+        void onReachabilityFinished(ReachabilityTable table);
+    }
+
+    public static final String TASK_PING = "ping";
+    public static final String TASK_HTTP = "http";
+    public static final String TASK_REACHABILITY = "reachability";
+
+    private static final int PING_COUNT = 20;
+    private static final int PING_PACK_SIZE = 24;
+    /** The ping binary's default interval, kept when falling back to TCP connects. */
+    private static final long PING_INTERVAL_MILLIS = 1000;
+    private static final long PING_TIMEOUT_MILLIS = 2000;
+    private static final int REACHABILITY_TCP_COUNT = 3;
+    private static final int REACHABILITY_ICMP_COUNT = 3;
+    private static final long REACHABILITY_TCP_INTERVAL_MILLIS = 200;
+    private static final int REACHABILITY_CONCURRENCY = 8;
+    private static final long REACHABILITY_TIMEOUT_MILLIS = 5000;
+    private static final int HTTP_PROBE_REQUESTS = 10;
+    private static final int HTTP_PROBE_TIMEOUT_MILLIS = 10000;
+
+    private final DiagnosticsScheduler mScheduler = new DiagnosticsScheduler(2, 4);
+    private final PingProgress mPingProgress = new PingProgress();
+    /** Touched on the ping thread only. */
+    private final ProbeStreamStats mPingStats = new ProbeStreamStats(1, PING_COUNT);
+    private volatile List<ReachabilityTarget> mTargets;
+    /** Gateway and DNS servers of the current link. */
+    private volatile List<String> mLinkHosts = Collections.emptyList();
+    private final PingSession.ProcessStarter mStarter;
+    private final EventRecorder mEvents;
+    private final LatencyHistogram mPingRtt;
+    private final LatencyHistogram[] mHttpPhases = new LatencyHistogram[HttpTiming.Phase.values().length];
+    private volatile Listener mListener;
+    private volatile QualityMonitor mQuality;
+    private volatile PingSession mPingSession;
+    private volatile SocketPinger mSocketPinger;
+
+    /**
+     * @param targets the first is pinged and fetched, the reachability test covers all of them and
+     *                the current link's hosts, see {@link #setLinkHosts(List)}
+     */
+    public Diagnostics(List<ReachabilityTarget> targets, PingSession.ProcessStarter starter, EventRecorder events) {
+        this(targets, starter, events, new MetricsRegistry());
+    }
+
+    /**
+     * @param metrics where ping and HTTP latencies are kept
+     */
+    public Diagnostics(List<ReachabilityTarget> targets, PingSession.ProcessStarter starter, EventRecorder events,
+                       MetricsRegistry metrics) {
+        setTargets(targets);
+        mStarter = starter;
+        mEvents = events;
+        mPingRtt = metrics.histogram("ping_rtt_seconds", "Ping round trip time");
+        for (HttpTiming.Phase phase : HttpTiming.Phase.values()) {
+            mHttpPhases[phase.ordinal()] = metrics.histogram("http_phase_seconds",
+                    "phase=\"" + phase.name().toLowerCase(Locale.US) + "\"", "HTTP request time, by phase");
+        }
+    }
+
+    /**
+     * Replaces the configured targets, from the next test on.
+     *
+     * @param targets the first is pinged and fetched
+     */
+    public void setTargets(List<ReachabilityTarget> targets) {
+        if (targets.isEmpty()) {
+            throw new IllegalArgumentException("No targets");
+        }
+        mTargets = Collections.unmodifiableList(new ArrayList<>(targets));
+    }
+
+    /**
+     * @param hosts the current link's gateway and DNS servers, checked by the reachability test
+     *              after the configured targets; empty when there is no link
+     */
+    public void setLinkHosts(List<String> hosts) {
+        mLinkHosts = Collections.unmodifiableList(new ArrayList<>(hosts));
+    }
+
+    /**
+     * @return what the reachability test covers: the configured targets, then the link's hosts
+     * not among them
+     */
+    public List<ReachabilityTarget> getTargets() {
+        List<ReachabilityTarget> configured = mTargets;
+        List<ReachabilityTarget> targets = new ArrayList<>(configured);
+        for (String host : mLinkHosts) {
+            boolean known = false;
+            for (ReachabilityTarget target : configured) {
+                known |= host.equalsIgnoreCase(target.getHost());
+            }
+            if (!known) {
+                targets.add(new ReachabilityTarget(host, null));
+            }
+        }
+        return targets;
+    }
+
+    /**
+     * @param listener null to detach
+     */
+    public void setListener(Listener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * @param quality fed the loss of every ping test, null for none
+     */
+    public void setQualityMonitor(QualityMonitor quality) {
+        mQuality = quality;
+    }
+
+    public boolean isInFlight(String task) {
+        return mScheduler.isInFlight(task);
+    }
+
+    /**
+     * Test the connectivity to the target server
+     * <p>
+     * PING www.a.shifen.com (180.97.33.108) 56(84) bytes of data.<br/>
+     * 64 bytes from 180.97.33.108: icmp_seq=1 ttl=54 time=58.6 ms<br/>
+     * <p>
+     * --- www.a.shifen.com ping statistics ---<br/>
+     * 1 packets transmitted, 1 received, 0% packet loss, time 0ms<br/>
+     * rtt min/avg/max/mdev = 58.674/58.674/58.674/0.000 ms<br/>
+     * <p>
+     * Where the ping binary cannot be run, TCP connects to the target's HTTP port are timed in
+     * its place.
+     *
+     * @return false if a ping was already in flight
+     */
+    public boolean runPing() {
+        if (mScheduler.isInFlight(TASK_PING)) {
+            return false;
+        }
+        mPingProgress.reset();
+        mPingStats.reset();
+        final ReachabilityTarget pingTarget = mTargets.get(0);
+        final String target = pingTarget.getHost();
+        mSocketPinger = null;
+        mPingSession = new PingSession(PING_COUNT, PING_COUNT * 100, PING_PACK_SIZE, target, mStarter, new PingSession.Callback() {
+            @Override
+            public void onReply(int seq, int ttl, long rttMicros) {
+                mPingRtt.record(rttMicros);
+                mPingStats.onReply(seq, rttMicros);
+                Listener listener = mListener;
+                if (mPingProgress.add(seq, rttMicros) && listener != null) {
+                    listener.onPingProgress();
+                }
+            }
+
+            @Override
+            public void onFinished(PingReport report, int exitStatus) {
+                mEvents.record(EventLog.PING, target, report.getReceived(), report.getTransmitted(),
+                        report.hasRtt() ? report.getAvgMicros() : -1);
+                QualityMonitor quality = mQuality;
+                if (quality != null && report.hasLoss()) {
+                    quality.onPingLoss(report.getTransmitted() - report.getReceived(), report.getTransmitted());
+                }
+                if (exitStatus != 0) {
+                    pingFinished("Fail: Host unreachable");
+                    return;
+                }
+                mPingStats.finish(report.getTransmitted());
+                StringBuilder result = new StringBuilder("Pass ").append(mPingProgress.snapshot()).append('\n');
+                mPingStats.format(result);
+                pingFinished(result.toString());
+            }
+
+            @Override
+            public void onFailed(Exception e) {
+                PingSession session = mPingSession;
+                if (e instanceof IOException && !(e instanceof UnknownHostException)
+                        && mSocketPinger == null && session != null && !session.isCancelled()) {
+                    // No ping binary, or not allowed to run it: measure in process instead, on
+                    // this same thread. A failure of that comes back here and is reported.
+                    // Replies the binary got before failing would mix with the new stream.
+                    mPingProgress.reset();
+                    mPingStats.reset();
+                    SocketPinger pinger = new SocketPinger(SocketPinger.Mode.TCP_CONNECT, target,
+                            TcpProbe.portOf(pingTarget, 443), PING_COUNT, PING_INTERVAL_MILLIS, PING_TIMEOUT_MILLIS,
+                            PING_PACK_SIZE, this);
+                    mSocketPinger = pinger;
+                    pinger.run();
+                    return;
+                }
+                if (e instanceof UnknownHostException) {
+                    pingFinished("Fail: Unknown Host");
+                } else if (e instanceof InterruptedException) {
+                    pingFinished("Fail: InterruptedException");
+                } else {
+                    pingFinished("Fail: IOException");
+                }
+            }
+        });
+        mScheduler.submit(TASK_PING, mPingSession);
+        return true;
+    }
+
+    /**
+     * Test whether the network is connected to the Internet
+     * <p>
+     * Makes {@link #HTTP_PROBE_REQUESTS} requests over one kept-alive connection, so the first
+     * shows the DNS/TCP/TLS setup cost and the rest the steady state latency.
+     *
+     * @return false if an HTTP test was already in flight
+     */
+    public boolean runHttp() {
+        if (mScheduler.isInFlight(TASK_HTTP)) {
+            return false;
+        }
+        mScheduler.submit(TASK_HTTP, new Runnable() {
+            @Override
+            public void run() {
+                String result = httpClientTest();
+                Listener listener = mListener;
+                if (listener != null) {
+                    listener.onHttpFinished(result);
+                }
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Check every target over TCP and HTTP at once. Connects are timed in process, a ping
+     * process per target would cost more than the round trips.
+     *
+     * @param icmp also ping every target with the ping binary, for hosts that filter the port
+     *             but still answer echo requests
+     * @return false if a reachability test was already in flight
+     */
+    public boolean runReachability(boolean icmp) {
+        if (mScheduler.isInFlight(TASK_REACHABILITY)) {
+            return false;
+        }
+        final List<ReachabilityProbe> probes = new ArrayList<>(Arrays.asList(
+                new TcpProbe(REACHABILITY_TCP_COUNT, REACHABILITY_TCP_INTERVAL_MILLIS, 443), new HttpProbe()));
+        if (icmp) {
+            probes.add(new IcmpProbe(REACHABILITY_ICMP_COUNT, PING_PACK_SIZE, mStarter));
+        }
+        final List<ReachabilityTarget> targets = getTargets();
+        mScheduler.submit(TASK_REACHABILITY, new Runnable() {
+            @Override
+            public void run() {
+                ReachabilityEngine engine = new ReachabilityEngine(REACHABILITY_CONCURRENCY, REACHABILITY_TIMEOUT_MILLIS,
+                        probes);
+                ReachabilityTable table;
+                try {
+                    table = engine.run(targets);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (ReachabilityResult result : table.getRows()) {
+                    mEvents.record(EventLog.REACHABILITY, result.getTarget().getHost(), result.getCheck().ordinal(),
+                            result.getStatus().ordinal(), result.getLatencyMicros());
+                }
+                Listener listener = mListener;
+                if (listener != null) {
+                    listener.onReachabilityFinished(table);
+                }
+            }
+        });
+        return true;
+    }
+
+    /**
+     * @return the replies of the running or last ping so far
+     */
+    public CharSequence getPingProgress() {
+        return mPingProgress.snapshot();
+    }
+
+    /**
+     * Cancels every test, a running ping process is destroyed.
+     */
+    public void cancelAll() {
+        mScheduler.cancelAll();
+        PingSession session = mPingSession;
+        if (session != null) {
+            session.cancel();
+            mPingSession = null;
+        }
+        SocketPinger pinger = mSocketPinger;
+        if (pinger != null) {
+            pinger.cancel();
+        }
+    }
+
+    public void shutdown() {
+        cancelAll();
+        mScheduler.shutdown();
+    }
+
+    public DiagnosticsScheduler getScheduler() {
+        return mScheduler;
+    }
+
+    private void pingFinished(String result) {
+        Listener listener = mListener;
+        if (listener != null) {
+            listener.onPingFinished(result);
+        }
+    }
+
+    private void recordPhases(HttpTimingReport report) {
+        HttpTiming.Phase[] phases = HttpTiming.Phase.values();
+        for (HttpTiming timing : report.getTimings()) {
+            for (HttpTiming.Phase phase : phases) {
+                // Setup phases of a reused connection did not happen, they would only drag the
+                // histograms toward 0.
+                if (timing.isReused() && phase.ordinal() < HttpTiming.Phase.TTFB.ordinal()) {
+                    continue;
+                }
+                mHttpPhases[phase.ordinal()].record(timing.get(phase));
+            }
+        }
+    }
+
+    private String httpClientTest() {
+        HttpTimingProbe probe = null;
+        try {
+            ReachabilityTarget target = mTargets.get(0);
+            String url = target.getUrl() != null ? target.getUrl() : "http://" + target.getHost();
+            probe = new HttpTimingProbe(url, HTTP_PROBE_TIMEOUT_MILLIS);
+            HttpTimingReport report = probe.run(HTTP_PROBE_REQUESTS);
+            recordPhases(report);
+            HttpTiming first = report.getFirst();
+            mEvents.record(EventLog.HTTP, url, first != null ? first.getStatus() : -1, report.getTimings().size(),
+                    report.percentile(HttpTiming.Phase.TOTAL, 50, true));
+            if (report.isAllSuccessful()) {
+                return "Pass: " + report;
+            }
+            return "Fail: Code: " + (first != null ? first.getStatus() : -1);
+        } catch (IOException e) {
+            return "Fail: IOException";
+        } finally {
+            if (probe != null) {
+                probe.close();
+            }
+        }
+    }
+}
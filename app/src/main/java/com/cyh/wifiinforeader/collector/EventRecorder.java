@@ -0,0 +1,138 @@
+package com.cyh.wifiinforeader.collector;
+
+import com.cyh.wifiinforeader.eventlog.EventLog;
+import com.cyh.wifiinforeader.eventlog.EventLogWriter;
+import com.cyh.wifiinforeader.export.MeasurementExporter;
+import com.cyh.wifiinforeader.metrics.Counter;
+import com.cyh.wifiinforeader.metrics.MetricsRegistry;
+
+import java.io.IOException;
+
+/**
+ * Appends to an optional {@link EventLogWriter} without throwing: a failing log must not take
+ * collection down with it, so failures are only counted. Every event is also counted, by type,
+ * in {@code wifi_events_total}, logged or not, and handed to an optional
+ * {@link MeasurementExporter}. Thread safe.
+ * <p>
+ * The two sinks keep different things. The event log is the recent history, a few segments the
+ * writer prunes as it goes, in fixed-width records an
+ * {@link com.cyh.wifiinforeader.eventlog.EventLogReader} indexes in place without decoding
+ * anything. The export is the longer kept record for taking off the device, over ten times
+ * smaller, but each file can only be decoded from its start. Only the log's batched appends
+ * cost the calling thread, the exporter encodes and writes on its own.
+ */
+public class EventRecorder {
+
+    /** Records nothing. */
+    public static final EventRecorder NONE = new EventRecorder(null);
+
+    private final EventLogWriter mWriter;
+    private final MeasurementExporter mExporter;
+    private final Counter[] mCounts = new Counter[EventLog.TYPE_COUNT];
+    private int mFailures = 0;
+    private IOException mLastFailure;
+
+    /**
+     * @param writer null to record nothing
+     */
+    public EventRecorder(EventLogWriter writer) {
+        this(writer, new MetricsRegistry());
+    }
+
+    /**
+     * @param writer  null to record nothing
+     * @param metrics where the events are counted
+     */
+    public EventRecorder(EventLogWriter writer, MetricsRegistry metrics) {
+        this(writer, null, metrics);
+    }
+
+    /**
+     * @param writer   null to log nothing
+     * @param exporter null to export nothing
+     * @param metrics  where the events are counted
+     */
+    public EventRecorder(EventLogWriter writer, MeasurementExporter exporter, MetricsRegistry metrics) {
+        mWriter = writer;
+        mExporter = exporter;
+        for (int type = 1; type < EventLog.TYPE_COUNT; type++) {
+            mCounts[type] = metrics.counter("wifi_events_total", "type=\"" + EventLog.typeName(type) + "\"",
+                    "Events recorded, by type");
+        }
+    }
+
+    /**
+     * @see com.cyh.wifiinforeader.eventlog.EventLog for what the arguments of each type hold
+     */
+    public void record(int type, String key, int arg0, int arg1, long arg2) {
+        if (type > 0 && type < EventLog.TYPE_COUNT) {
+            mCounts[type].increment();
+        }
+        if (mWriter == null && mExporter == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (mExporter != null) {
+            mExporter.append(now, type, key, arg0, arg1, arg2);
+        }
+        if (mWriter == null) {
+            return;
+        }
+        try {
+            mWriter.append(now, type, key, arg0, arg1, arg2);
+        } catch (IOException e) {
+            failed(e);
+        }
+    }
+
+    /**
+     * Writes out the buffered log records and hands the pending ones to the exporter thread.
+     */
+    public void flush() {
+        if (mExporter != null) {
+            mExporter.flush();
+        }
+        if (mWriter == null) {
+            return;
+        }
+        try {
+            mWriter.flush();
+        } catch (IOException e) {
+            failed(e);
+        }
+    }
+
+    public void close() {
+        if (mExporter != null) {
+            try {
+                mExporter.close();
+            } catch (IOException e) {
+                failed(e);
+            }
+        }
+        if (mWriter == null) {
+            return;
+        }
+        try {
+            mWriter.close();
+        } catch (IOException e) {
+            failed(e);
+        }
+    }
+
+    public synchronized int getFailureCount() {
+        return mFailures;
+    }
+
+    /**
+     * @return the last append, flush or close failure, null if none
+     */
+    public synchronized IOException getLastFailure() {
+        return mLastFailure;
+    }
+
+    private synchronized void failed(IOException e) {
+        mFailures++;
+        mLastFailure = e;
+    }
+}
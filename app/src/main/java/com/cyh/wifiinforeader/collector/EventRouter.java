@@ -0,0 +1,247 @@
+package com.cyh.wifiinforeader.collector;
+
+import com.cyh.wifiinforeader.metrics.LatencyHistogram;
+import com.cyh.wifiinforeader.metrics.MetricsRegistry;
+import com.cyh.wifiinforeader.util.Clock;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands events to the handler registered for their action, on a {@link Worker} thread.
+ * <p>
+ * The action is looked up once per event in a table built up front. A route registered as
+ * coalescing delivers only the latest event of each frame: the first event of a burst waits
+ * one frame, later ones replace it. Per action, the router counts events received, coalesced
+ * away and handled, and the time spent in the handler, also kept as the
+ * {@code broadcast_handler_seconds} histogram. Handlers get the time an event was dispatched,
+ * before it queued behind other work on the worker, for measuring what happened when.
+ *
+ * @param <E> the event, an {@code Intent} on a device
+ */
+public class EventRouter<E> {
+
+    public interface Handler<E> {
+        /**
+         * Called on the worker thread.
+         *
+         * @param receivedNanos {@link Clock#nanoTime()} when the event was dispatched
+         */
+        void handle(E event, long receivedNanos);
+    }
+
+    /**
+     * Runs tasks one at a time, in order, on one thread; a {@code Handler} on a
+     * {@code HandlerThread} on a device.
+     */
+    public interface Worker {
+        void post(Runnable task);
+
+        void postDelayed(Runnable task, long delayMillis);
+    }
+
+    private final Map<String, Route> mRoutes = new HashMap<>();
+    private final List<Route> mRouteList = new ArrayList<>();
+    private final Worker mWorker;
+    private final Clock mClock;
+    private final long mFrameMillis;
+    private final MetricsRegistry mMetrics;
+    private final AtomicLong mUnrouted = new AtomicLong();
+
+    /**
+     * @param frameMillis how long a coalescing route collects events before handling the latest
+     */
+    public EventRouter(Worker worker, Clock clock, long frameMillis) {
+        this(worker, clock, frameMillis, new MetricsRegistry());
+    }
+
+    /**
+     * @param metrics where handler times are kept, per action
+     */
+    public EventRouter(Worker worker, Clock clock, long frameMillis, MetricsRegistry metrics) {
+        mWorker = worker;
+        mClock = clock;
+        mFrameMillis = frameMillis;
+        mMetrics = metrics;
+    }
+
+    /**
+     * Routes must all be registered before the first {@link #dispatch}.
+     *
+     * @param coalesce whether only the latest event of each frame is handled
+     */
+    public void register(String action, Handler<E> handler, boolean coalesce) {
+        if (mRoutes.containsKey(action)) {
+            throw new IllegalArgumentException("already routed: " + action);
+        }
+        LatencyHistogram histogram = mMetrics.histogram("broadcast_handler_seconds",
+                "action=\"" + shortName(action) + "\"", "Time spent handling a broadcast, by action");
+        Route route = new Route(action, handler, coalesce, histogram);
+        mRoutes.put(action, route);
+        mRouteList.add(route);
+    }
+
+    /**
+     * May be called on any thread.
+     *
+     * @return false if nothing is registered for {@code action}
+     */
+    public boolean dispatch(String action, E event) {
+        Route route = action != null ? mRoutes.get(action) : null;
+        if (route == null) {
+            mUnrouted.incrementAndGet();
+            return false;
+        }
+        route.dispatch(event);
+        return true;
+    }
+
+    public List<String> getActions() {
+        List<String> actions = new ArrayList<>(mRouteList.size());
+        for (int i = 0; i < mRouteList.size(); i++) {
+            actions.add(mRouteList.get(i).mAction);
+        }
+        return actions;
+    }
+
+    public long getReceivedCount(String action) {
+        Route route = mRoutes.get(action);
+        return route != null ? route.mReceived.get() : 0;
+    }
+
+    /**
+     * @return events replaced by a later one of the same frame before being handled
+     */
+    public long getCoalescedCount(String action) {
+        Route route = mRoutes.get(action);
+        return route != null ? route.mCoalesced.get() : 0;
+    }
+
+    public long getHandledCount(String action) {
+        Route route = mRoutes.get(action);
+        return route != null ? route.mHandled.get() : 0;
+    }
+
+    public long getHandlerNanos(String action) {
+        Route route = mRoutes.get(action);
+        return route != null ? route.mHandlerNanos.get() : 0;
+    }
+
+    public long getMaxHandlerNanos(String action) {
+        Route route = mRoutes.get(action);
+        return route != null ? route.mMaxHandlerNanos.get() : 0;
+    }
+
+    /**
+     * @return events whose action had no route
+     */
+    public long getUnroutedCount() {
+        return mUnrouted.get();
+    }
+
+    /**
+     * Writes one line per action: received, coalesced, handled, and the average and worst
+     * handler time.
+     */
+    public void formatStats(StringBuilder out) {
+        for (int i = 0; i < mRouteList.size(); i++) {
+            Route route = mRouteList.get(i);
+            long handled = route.mHandled.get();
+            out.append(shortName(route.mAction))
+                    .append(" received ").append(route.mReceived.get())
+                    .append(" coalesced ").append(route.mCoalesced.get())
+                    .append(" handled ").append(handled)
+                    .append(" avg ").append(handled > 0 ? TimeUnit.NANOSECONDS.toMicros(route.mHandlerNanos.get() / handled) : 0)
+                    .append("us max ").append(TimeUnit.NANOSECONDS.toMicros(route.mMaxHandlerNanos.get()))
+                    .append("us\n");
+        }
+        out.append("unrouted ").append(mUnrouted.get()).append('\n');
+    }
+
+    private static String shortName(String action) {
+        return action.substring(action.lastIndexOf('.') + 1);
+    }
+
+    private final class Route implements Runnable {
+        final String mAction;
+        final Handler<E> mHandler;
+        final boolean mCoalesce;
+        final AtomicLong mReceived = new AtomicLong();
+        final AtomicLong mCoalesced = new AtomicLong();
+        final AtomicLong mHandled = new AtomicLong();
+        final AtomicLong mHandlerNanos = new AtomicLong();
+        final AtomicLong mMaxHandlerNanos = new AtomicLong();
+        final LatencyHistogram mHistogram;
+        /** The latest event of the frame and when it came, guarded by this. */
+        private E mPending;
+        private long mPendingNanos;
+        private boolean mScheduled = false;
+
+        Route(String action, Handler<E> handler, boolean coalesce, LatencyHistogram histogram) {
+            mAction = action;
+            mHandler = handler;
+            mCoalesce = coalesce;
+            mHistogram = histogram;
+        }
+
+        void dispatch(final E event) {
+            final long received = mClock.nanoTime();
+            mReceived.incrementAndGet();
+            if (!mCoalesce) {
+                mWorker.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        handle(event, received);
+                    }
+                });
+                return;
+            }
+            synchronized (this) {
+                mPending = event;
+                mPendingNanos = received;
+                if (mScheduled) {
+                    mCoalesced.incrementAndGet();
+                    return;
+                }
+                mScheduled = true;
+            }
+            mWorker.postDelayed(this, mFrameMillis);
+        }
+
+        /**
+         * End of a coalescing frame.
+         */
+        @Override
+        public void run() {
+            E event;
+            long received;
+            synchronized (this) {
+                event = mPending;
+                received = mPendingNanos;
+                mPending = null;
+                mScheduled = false;
+            }
+            handle(event, received);
+        }
+
+        private void handle(E event, long receivedNanos) {
+            long start = mClock.nanoTime();
+            try {
+                mHandler.handle(event, receivedNanos);
+            } finally {
+                long elapsed = mClock.nanoTime() - start;
+                mHandled.incrementAndGet();
+                mHandlerNanos.addAndGet(elapsed);
+                mHistogram.recordNanos(elapsed);
+                // Only the worker thread writes this, no compare-and-set loop needed.
+                if (elapsed > mMaxHandlerNanos.get()) {
+                    mMaxHandlerNanos.set(elapsed);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.cyh.wifiinforeader.collector;
+
+import java.util.Arrays;
+
+/**
+ * The one line network state shown to the user, from {@code NetworkInfo.DetailedState} and
+ * the connection's SSID, formatted with the {@code wifi_status} string arrays.
+ * <p>
+ * Formatted lines are kept for the current SSID, a state seen before costs an array lookup.
+ * Not thread-safe.
+ */
+public class NetworkSummary {
+
+    private final String[] mFormats;
+    private final String[] mFormatsWithSsid;
+    private final String mConnectedNoInternet;
+    /** Lines by state for {@link #mFormattedSsid}, null where not formatted yet. */
+    private final String[] mFormatted;
+    private String mFormattedSsid;
+
+    /**
+     * @param formats         one format per {@code DetailedState} ordinal, for an unknown SSID
+     * @param formatsWithSsid the same with a {@code %1$s} for the SSID
+     */
+    public NetworkSummary(String[] formats, String[] formatsWithSsid, String connectedNoInternet) {
+        mFormats = formats;
+        mFormatsWithSsid = formatsWithSsid;
+        mConnectedNoInternet = connectedNoInternet;
+        mFormatted = new String[Math.max(formats.length, formatsWithSsid.length)];
+    }
+
+    /**
+     * @param detailedState {@code DetailedState} ordinal
+     * @param connected     whether the state is {@code CONNECTED}
+     * @param validation    see {@link ConnectivitySource#getWifiValidation()}
+     * @return the summary, empty for a state without a message
+     */
+    public String format(int detailedState, boolean connected, String ssid, int validation) {
+        // Case when there is wifi connected without internet connectivity.
+        if (connected && validation == ConnectivitySource.NOT_VALIDATED) {
+            return mConnectedNoInternet;
+        }
+        String[] formats = ssid == null ? mFormats : mFormatsWithSsid;
+        if (detailedState < 0 || detailedState >= formats.length || formats[detailedState].length() == 0) {
+            return "";
+        }
+        if (ssid == null ? mFormattedSsid != null : !ssid.equals(mFormattedSsid)) {
+            Arrays.fill(mFormatted, null);
+            mFormattedSsid = ssid;
+        }
+        String line = mFormatted[detailedState];
+        if (line == null) {
+            line = String.format(formats[detailedState], ssid);
+            mFormatted[detailedState] = line;
+        }
+        return line;
+    }
+}
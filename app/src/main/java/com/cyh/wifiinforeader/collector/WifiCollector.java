@@ -0,0 +1,403 @@
+package com.cyh.wifiinforeader.collector;
+
+import com.cyh.wifiinforeader.eventlog.EventLog;
+import com.cyh.wifiinforeader.metrics.LatencyHistogram;
+import com.cyh.wifiinforeader.metrics.MetricsRegistry;
+import com.cyh.wifiinforeader.quality.QualityMonitor;
+import com.cyh.wifiinforeader.roam.RoamTracker;
+import com.cyh.wifiinforeader.rssi.RssiHistory;
+import com.cyh.wifiinforeader.scan.AdaptiveScanScheduler;
+import com.cyh.wifiinforeader.scan.ChannelAnalyzer;
+import com.cyh.wifiinforeader.scan.ScanDelta;
+import com.cyh.wifiinforeader.scan.ScanEntry;
+import com.cyh.wifiinforeader.scan.ScanLog;
+import com.cyh.wifiinforeader.scan.ScanStore;
+import com.cyh.wifiinforeader.util.Clock;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wi-Fi state collection without the Android framework: the {@code on*} methods take what the
+ * Wi-Fi broadcasts carry, {@link WifiSource} and {@link ConnectivitySource} stand in for the
+ * system services, and a {@link ScanTimer} drives scanning. Whoever hosts it, an Activity, a
+ * service or a test, only forwards broadcasts and timer ticks.
+ * <p>
+ * Everything is recorded to the scan store, RSSI history and event log whether or not a
+ * {@link Listener} is attached. RSSI, link speed and validation also go to a
+ * {@link QualityMonitor}, which alerts only on meaningful changes of them. All methods must be
+ * called on one thread, a background thread fed by an {@link EventRouter} on a device, and
+ * listener callbacks come on it.
+ */
+public class WifiCollector {
+
+    /**
+     * Receives what a screen would show.
+     */
+    public interface Listener {
+        /**
+         * @param wifiState one of the {@code WifiManager.WIFI_STATE_*} values
+         */
+        void onWifiStateChanged(int wifiState);
+
+        void onNetworkStateChanged(String summary);
+
+        void onSupplicantStateChanged(String state);
+
+        void onSupplicantConnectionChanged(boolean connected);
+
+        void onNetworkIdsChanged();
+
+        void onRssiChanged(int rssi);
+
+        /**
+         * @param log the newest scan events, one per line; only valid during the call
+         */
+        void onScanLogChanged(CharSequence log);
+
+        /**
+         * Called only when the set of BSSIDs or SSIDs changed.
+         *
+         * @param ssids   every SSID in the latest scan
+         * @param changes SSIDs that came (+) or went (-), empty if only BSSIDs changed
+         */
+        void onScanListChanged(CharSequence ssids, CharSequence changes);
+    }
+
+    /**
+     * Calls {@link #onScanTick()} after a delay, a {@code Handler} on a device.
+     */
+    public interface ScanTimer {
+        /**
+         * Replaces any pending tick.
+         */
+        void schedule(long delayMillis);
+
+        void cancel();
+    }
+
+    /** RSSI moves of less than this many dB between scans are not reported as changes. */
+    private static final int SCAN_RSSI_THRESHOLD = 5;
+    /** Scan events kept for, and shown in, the scan log. */
+    private static final int SCAN_LOG_CAPACITY = 256;
+    private static final int SCAN_LOG_WINDOW = 20;
+    /** Handovers longer than this are outages, not roams. */
+    private static final long ROAM_OUTAGE_MILLIS = 30000;
+
+    private final WifiSource mWifi;
+    private final ConnectivitySource mConnectivity;
+    private final NetworkSummary mSummary;
+    private final ScanTimer mTimer;
+    private final Clock mClock;
+    private final EventRecorder mEvents;
+    private Listener mListener;
+
+    private final ScanStore mScanStore = new ScanStore(SCAN_RSSI_THRESHOLD);
+    private final ChannelAnalyzer mChannelAnalyzer = new ChannelAnalyzer();
+    private final ScanLog mScanLog = new ScanLog(SCAN_LOG_CAPACITY);
+    private final StringBuilder mScanLogText = new StringBuilder();
+    /** A day of RSSI per BSSID for up to 300 access points, about 3.8 MB of columns. */
+    private final RssiHistory mRssiHistory = new RssiHistory(300, 256, 360, 144);
+    private final AdaptiveScanScheduler mScanScheduler;
+    private final WifiLink mLink = new WifiLink();
+    private final ScanSink mScanSink = new ScanSink();
+    private final RoamTracker mRoamTracker = new RoamTracker(ROAM_OUTAGE_MILLIS);
+    private final QualityMonitor mQuality;
+    private final LatencyHistogram mScanLatency;
+    private int mScanRequests = 0;
+    private boolean mScanning = false;
+
+    /**
+     * @param clock monotonic clock that keeps counting in deep sleep, RSSI history and scan
+     *              scheduling are timed with it
+     */
+    public WifiCollector(WifiSource wifi, ConnectivitySource connectivity, NetworkSummary summary,
+                         ScanTimer timer, Clock clock, EventRecorder events) {
+        this(wifi, connectivity, summary, timer, clock, events, new MetricsRegistry());
+    }
+
+    /**
+     * @param metrics where scan latencies are kept
+     */
+    public WifiCollector(WifiSource wifi, ConnectivitySource connectivity, NetworkSummary summary,
+                         ScanTimer timer, Clock clock, EventRecorder events, MetricsRegistry metrics) {
+        mWifi = wifi;
+        mConnectivity = connectivity;
+        mSummary = summary;
+        mTimer = timer;
+        mClock = clock;
+        mEvents = events;
+        mScanScheduler = new AdaptiveScanScheduler(2000, 5000, 60000, 15000, 1.0, 4.0, clock);
+        mRoamTracker.setListener(new RoamRecorder());
+        mQuality = new QualityMonitor(clock);
+        mScanLatency = metrics.histogram("wifi_scan_latency_seconds", "Scan request to results latency");
+    }
+
+    /**
+     * @param listener null to detach
+     */
+    public void setListener(Listener listener) {
+        mListener = listener;
+    }
+
+    public void onWifiStateChanged(int wifiState) {
+        mEvents.record(EventLog.WIFI_STATE, null, wifiState, 0, 0);
+        if (mListener != null) {
+            mListener.onWifiStateChanged(wifiState);
+        }
+    }
+
+    /**
+     * @param detailedState {@code NetworkInfo.DetailedState} ordinal
+     * @param connected     whether that state is {@code CONNECTED}
+     * @param bssid         the broadcast's BSSID extra, null if absent
+     */
+    public void onNetworkStateChanged(int detailedState, boolean connected, String bssid) {
+        mEvents.record(EventLog.NETWORK_STATE, bssid, detailedState, 0, 0);
+        int validation = ConnectivitySource.VALIDATION_UNKNOWN;
+        if (connected) {
+            validation = mConnectivity.getWifiValidation();
+            if (validation != ConnectivitySource.VALIDATION_UNKNOWN) {
+                mQuality.onValidation(validation == ConnectivitySource.VALIDATED);
+            }
+        } else {
+            mQuality.onDisconnected();
+        }
+        if (mListener == null || !mWifi.isWifiEnabled()) {
+            return;
+        }
+        String ssid = mWifi.readConnectionInfo(mLink) ? mLink.getSsid() : null;
+        mListener.onNetworkStateChanged(mSummary.format(detailedState, connected, ssid, validation));
+    }
+
+    /**
+     * @param state   {@code SupplicantState} name, null if the broadcast had none
+     * @param ordinal its ordinal, -1 if none
+     * @param error   the supplicant error extra, -1 if absent
+     * @param nanos   {@link Clock#nanoTime()} when the broadcast arrived, handover latency is
+     *                measured from it rather than from when this thread got to it
+     */
+    public void onSupplicantStateChanged(String state, int ordinal, int error, long nanos) {
+        mEvents.record(EventLog.SUPPLICANT_STATE, null, ordinal, error, 0);
+        if (ordinal >= 0) {
+            // The BSSID costs a binder call, only a completed connection needs it.
+            String bssid = null;
+            if (ordinal == RoamTracker.COMPLETED && mWifi.readConnectionInfo(mLink)) {
+                bssid = mLink.getBssid();
+            }
+            mRoamTracker.onStateChanged(ordinal, bssid, nanos);
+        }
+        if (mListener != null) {
+            mListener.onSupplicantStateChanged(error != -1 ? "ERROR AUTHENTICATING" : supplicantStateText(state));
+        }
+    }
+
+    public void onSupplicantConnectionChanged(boolean connected) {
+        mEvents.record(EventLog.SUPPLICANT_CONNECTION, null, connected ? 1 : 0, 0, 0);
+        if (mListener != null) {
+            mListener.onSupplicantConnectionChanged(connected);
+        }
+    }
+
+    public void onNetworkIdsChanged() {
+        mEvents.record(EventLog.NETWORK_IDS, null, 0, 0, 0);
+        if (mListener != null) {
+            mListener.onNetworkIdsChanged();
+        }
+    }
+
+    public void onRssiChanged(int rssi) {
+        if (mListener != null) {
+            mListener.onRssiChanged(rssi);
+        }
+        if (mWifi.readConnectionInfo(mLink)) {
+            mRssiHistory.record(mLink.getBssid(), nowMillis(), rssi);
+            mEvents.record(EventLog.RSSI, mLink.getBssid(), rssi, 0, 0);
+            mQuality.onLink(rssi, mLink.getLinkSpeedMbps());
+        }
+    }
+
+    public void onScanResultsAvailable() {
+        mScanSink.mNowMillis = nowMillis();
+        mScanStore.beginScan();
+        int results = mWifi.readScanResults(mScanSink);
+        ScanDelta delta = mScanStore.endScan();
+        mChannelAnalyzer.apply(delta);
+
+        mScanLog.append(System.currentTimeMillis(), mScanRequests, results);
+        boolean requested = mScanScheduler.isScanInFlight();
+        long nextScan = mScanScheduler.onScanResults(delta.isSameBssidSet(), delta.getRssiVolatility());
+        recordScanDelta(results, delta, requested);
+        if (requested) {
+            mScanLatency.record(TimeUnit.MILLISECONDS.toMicros(mScanScheduler.getLastLatencyMillis()));
+        }
+        // Only pull the next scan forward while scanning is running, the ping test pauses it.
+        if (mScanning) {
+            mTimer.schedule(nextScan);
+        }
+
+        if (mListener == null) {
+            return;
+        }
+        mScanLog.formatWindow(SCAN_LOG_WINDOW, mScanLogText);
+        mListener.onScanLogChanged(mScanLogText);
+
+        // Only the SSID list is shown, RSSI/frequency/capability changes do not touch the views.
+        if (!delta.isMembershipChanged()) {
+            return;
+        }
+        StringBuilder scanList = new StringBuilder();
+        for (ScanEntry entry : mScanStore.getEntries()) {
+            if (!isEmpty(entry.getSsid())) {
+                scanList.append(entry.getSsid()).append(' ');
+            }
+        }
+        StringBuilder scanChanges = new StringBuilder();
+        appendSsids(scanChanges, '+', delta.getAdded());
+        appendSsids(scanChanges, '-', delta.getRemoved());
+        mListener.onScanListChanged(scanList, scanChanges);
+    }
+
+    /**
+     * Starts scanning right away if it is not running.
+     */
+    public void startScanning() {
+        if (mScanning) {
+            return;
+        }
+        mScanning = true;
+        mTimer.schedule(0);
+    }
+
+    public void stopScanning() {
+        mScanning = false;
+        mTimer.cancel();
+    }
+
+    public boolean isScanning() {
+        return mScanning;
+    }
+
+    /**
+     * Requests a scan if the scheduler allows one, then schedules the next tick. Quality changes
+     * that settled since the last sample are alerted on the tick.
+     */
+    public void onScanTick() {
+        mQuality.poll();
+        if (!mScanning) {
+            return;
+        }
+        if (mScanScheduler.shouldRequestScan()) {
+            mScanScheduler.onScanRequested(mWifi.startScan());
+            mScanRequests++;
+        }
+        // Scan results reschedule this, it only fires on its own if they never arrive.
+        mTimer.schedule(mScanScheduler.getNextDelayMillis());
+    }
+
+    public WifiSource getWifiSource() {
+        return mWifi;
+    }
+
+    public EventRecorder getEventRecorder() {
+        return mEvents;
+    }
+
+    public ScanStore getScanStore() {
+        return mScanStore;
+    }
+
+    public ChannelAnalyzer getChannelAnalyzer() {
+        return mChannelAnalyzer;
+    }
+
+    public RoamTracker getRoamTracker() {
+        return mRoamTracker;
+    }
+
+    /**
+     * Safe to use from any thread.
+     */
+    public QualityMonitor getQualityMonitor() {
+        return mQuality;
+    }
+
+    public ScanLog getScanLog() {
+        return mScanLog;
+    }
+
+    public RssiHistory getRssiHistory() {
+        return mRssiHistory;
+    }
+
+    public AdaptiveScanScheduler getScanScheduler() {
+        return mScanScheduler;
+    }
+
+    /**
+     * @param state {@code SupplicantState} name, null if unknown
+     */
+    public static String supplicantStateText(String state) {
+        return state == null ? "BAD" : state.replace('_', ' ');
+    }
+
+    /**
+     * @param requested whether the scan was ours, only those have a latency
+     */
+    private void recordScanDelta(int results, ScanDelta delta, boolean requested) {
+        mEvents.record(EventLog.SCAN, null, results, delta.getAdded().size(),
+                requested ? mScanScheduler.getLastLatencyMillis() : -1);
+        List<ScanEntry> added = delta.getAdded();
+        for (int i = 0; i < added.size(); i++) {
+            ScanEntry entry = added.get(i);
+            mEvents.record(EventLog.SCAN_ENTRY, entry.getBssid(), entry.getRssi(), entry.getFrequency(), 0);
+        }
+        List<ScanEntry> changed = delta.getChanged();
+        for (int i = 0; i < changed.size(); i++) {
+            ScanEntry entry = changed.get(i);
+            mEvents.record(EventLog.SCAN_ENTRY, entry.getBssid(), entry.getRssi(), entry.getFrequency(), entry.getChanges());
+        }
+        List<ScanEntry> removed = delta.getRemoved();
+        for (int i = 0; i < removed.size(); i++) {
+            mEvents.record(EventLog.SCAN_LOST, removed.get(i).getBssid(), 0, 0, 0);
+        }
+    }
+
+    private long nowMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(mClock.nanoTime());
+    }
+
+    private static void appendSsids(StringBuilder sb, char prefix, List<ScanEntry> entries) {
+        for (int i = 0; i < entries.size(); i++) {
+            String ssid = entries.get(i).getSsid();
+            if (!isEmpty(ssid)) {
+                sb.append(prefix).append(ssid).append(' ');
+            }
+        }
+    }
+
+    private static boolean isEmpty(String s) {
+        return s == null || s.length() == 0;
+    }
+
+    private class ScanSink implements WifiSource.ScanResultSink {
+        long mNowMillis;
+
+        @Override
+        public void onScanResult(String bssid, String ssid, int rssi, int frequency, String capabilities,
+                                 int channelWidth, int centerFrequency) {
+            mScanStore.put(bssid, ssid, rssi, frequency, capabilities, channelWidth, centerFrequency);
+            mRssiHistory.record(bssid, mNowMillis, rssi);
+        }
+    }
+
+    private class RoamRecorder implements RoamTracker.Listener {
+        @Override
+        public void onRoam(String fromBssid, String toBssid, long latencyNanos, long[] phaseNanos) {
+            mEvents.record(EventLog.ROAM, toBssid, (int) TimeUnit.NANOSECONDS.toMillis(latencyNanos),
+                    (int) TimeUnit.NANOSECONDS.toMillis(phaseNanos[RoamTracker.PHASE_AUTHENTICATION]
+                            + phaseNanos[RoamTracker.PHASE_ASSOCIATION]),
+                    TimeUnit.NANOSECONDS.toMillis(phaseNanos[RoamTracker.PHASE_HANDSHAKE]));
+        }
+    }
+}
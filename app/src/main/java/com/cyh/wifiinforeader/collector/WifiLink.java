@@ -0,0 +1,108 @@
+package com.cyh.wifiinforeader.collector;
+
+/**
+ * The current Wi-Fi connection as {@code WifiInfo} reports it. Filled in place by
+ * {@link WifiSource#readConnectionInfo(WifiLink)} and reused.
+ */
+public class WifiLink {
+
+    private String mSsid;
+    private String mBssid;
+    private int mRssi;
+    private int mLinkSpeedMbps;
+    private int mNetworkId = -1;
+    private int mIpAddress;
+    private String mMacAddress;
+    private boolean mHiddenSsid;
+    private String mSupplicantState;
+
+    public String getSsid() {
+        return mSsid;
+    }
+
+    public void setSsid(String ssid) {
+        mSsid = ssid;
+    }
+
+    public String getBssid() {
+        return mBssid;
+    }
+
+    public void setBssid(String bssid) {
+        mBssid = bssid;
+    }
+
+    public int getRssi() {
+        return mRssi;
+    }
+
+    public void setRssi(int rssi) {
+        mRssi = rssi;
+    }
+
+    public int getLinkSpeedMbps() {
+        return mLinkSpeedMbps;
+    }
+
+    public void setLinkSpeedMbps(int linkSpeedMbps) {
+        mLinkSpeedMbps = linkSpeedMbps;
+    }
+
+    public int getNetworkId() {
+        return mNetworkId;
+    }
+
+    public void setNetworkId(int networkId) {
+        mNetworkId = networkId;
+    }
+
+    /**
+     * @return IPv4 address in network byte order, as {@code WifiInfo.getIpAddress()}
+     */
+    public int getIpAddress() {
+        return mIpAddress;
+    }
+
+    public void setIpAddress(int ipAddress) {
+        mIpAddress = ipAddress;
+    }
+
+    public String getMacAddress() {
+        return mMacAddress;
+    }
+
+    public void setMacAddress(String macAddress) {
+        mMacAddress = macAddress;
+    }
+
+    public boolean isHiddenSsid() {
+        return mHiddenSsid;
+    }
+
+    public void setHiddenSsid(boolean hiddenSsid) {
+        mHiddenSsid = hiddenSsid;
+    }
+
+    /**
+     * @return the {@code SupplicantState} name, null if unknown
+     */
+    public String getSupplicantState() {
+        return mSupplicantState;
+    }
+
+    public void setSupplicantState(String supplicantState) {
+        mSupplicantState = supplicantState;
+    }
+
+    /**
+     * Dotted form of an address in network byte order, 0x0100a8c0 is 192.168.0.1.
+     */
+    public static String formatIpAddress(int ipAddress) {
+        return new StringBuilder(15)
+                .append(ipAddress & 0xff).append('.')
+                .append((ipAddress >>> 8) & 0xff).append('.')
+                .append((ipAddress >>> 16) & 0xff).append('.')
+                .append((ipAddress >>> 24) & 0xff)
+                .toString();
+    }
+}
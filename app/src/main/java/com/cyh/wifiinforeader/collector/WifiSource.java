@@ -0,0 +1,45 @@
+package com.cyh.wifiinforeader.collector;
+
+/**
+ * The parts of {@code WifiManager} the collector uses, so it runs on the JVM against a fake.
+ */
+public interface WifiSource {
+
+    /**
+     * Receives one scan result at a time, so no per-scan list has to be built.
+     */
+    interface ScanResultSink {
+        /**
+         * @param channelWidth    width of the whole channel in MHz, 20 if unknown
+         * @param centerFrequency center of the whole channel in MHz, {@code frequency} if unknown
+         */
+        void onScanResult(String bssid, String ssid, int rssi, int frequency, String capabilities,
+                          int channelWidth, int centerFrequency);
+    }
+
+    boolean isWifiEnabled();
+
+    /**
+     * @return one of the {@code WifiManager.WIFI_STATE_*} values
+     */
+    int getWifiState();
+
+    /**
+     * Reads the current connection into {@code out}.
+     *
+     * @return false if there is no connection info at all
+     */
+    boolean readConnectionInfo(WifiLink out);
+
+    /**
+     * @return whether the platform accepted the request
+     */
+    boolean startScan();
+
+    /**
+     * Feeds the latest scan results to {@code sink}.
+     *
+     * @return number of results fed
+     */
+    int readScanResults(ScanResultSink sink);
+}
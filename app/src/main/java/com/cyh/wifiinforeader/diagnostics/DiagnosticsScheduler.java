@@ -0,0 +1,169 @@
+package com.cyh.wifiinforeader.diagnostics;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the ping/HTTP style diagnostics on a small fixed pool.
+ * <p>
+ * Tasks are keyed: submitting a key that is still queued or running returns the existing
+ * {@link Future} instead of starting another copy, so tapping a button repeatedly joins the
+ * test in flight. The pool and its queue are bounded, a task that does not fit is rejected.
+ */
+public class DiagnosticsScheduler {
+
+    private final ThreadPoolExecutor mExecutor;
+    private final Map<String, KeyedTask> mInFlight = new HashMap<>();
+    private final Map<String, Long> mLastRunNanos = new HashMap<>();
+    private int mJoined = 0;
+
+    /**
+     * @param threads       pool size, threads are started lazily and never exceed this
+     * @param queueCapacity tasks that may wait for a free thread
+     */
+    public DiagnosticsScheduler(int threads, int queueCapacity) {
+        mExecutor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(queueCapacity), new ThreadFactory() {
+            private final AtomicInteger mCount = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "diagnostics-" + mCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        mExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Runs {@code task} under {@code key} unless a task with that key is already in flight.
+     *
+     * @return the future of the task that will do the work, possibly one submitted earlier
+     * @throws RejectedExecutionException if the queue is full or the scheduler is shut down
+     */
+    public synchronized Future<?> submit(String key, Runnable task) {
+        KeyedTask running = mInFlight.get(key);
+        if (running != null) {
+            mJoined++;
+            return running;
+        }
+        KeyedTask keyed = new KeyedTask(key, task);
+        mExecutor.execute(keyed);
+        mInFlight.put(key, keyed);
+        return keyed;
+    }
+
+    public synchronized boolean isInFlight(String key) {
+        return mInFlight.containsKey(key);
+    }
+
+    /**
+     * Cancels every queued or running task, running ones are interrupted.
+     */
+    public void cancelAll() {
+        List<KeyedTask> tasks;
+        synchronized (this) {
+            tasks = new ArrayList<>(mInFlight.values());
+            mInFlight.clear();
+        }
+        for (KeyedTask task : tasks) {
+            task.cancel(true);
+        }
+        mExecutor.purge();
+    }
+
+    public void shutdown() {
+        cancelAll();
+        mExecutor.shutdownNow();
+    }
+
+    /**
+     * @return tasks waiting for a free thread
+     */
+    public int getQueueDepth() {
+        return mExecutor.getQueue().size();
+    }
+
+    public int getActiveCount() {
+        return mExecutor.getActiveCount();
+    }
+
+    public int getPoolSize() {
+        return mExecutor.getPoolSize();
+    }
+
+    /**
+     * @return how many submits joined a task already in flight
+     */
+    public synchronized int getJoinedCount() {
+        return mJoined;
+    }
+
+    /**
+     * @return run time of the last completed task under {@code key}, -1 if none completed yet
+     */
+    public synchronized long getLastRunTimeMillis(String key) {
+        Long nanos = mLastRunNanos.get(key);
+        return nanos == null ? -1 : TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    private synchronized void onTaskDone(KeyedTask task, long runNanos) {
+        if (mInFlight.get(task.mKey) == task) {
+            mInFlight.remove(task.mKey);
+        }
+        if (runNanos >= 0) {
+            mLastRunNanos.put(task.mKey, runNanos);
+        }
+    }
+
+    private class KeyedTask extends FutureTask<Void> {
+        final String mKey;
+        private volatile long mStartNanos = -1;
+
+        KeyedTask(String key, final Runnable task) {
+            super(task, null);
+            mKey = key;
+        }
+
+        @Override
+        public void run() {
+            mStartNanos = System.nanoTime();
+            super.run();
+        }
+
+        // FutureTask wakes up get() before done() is called, so leave the in-flight map first;
+        // a caller waiting on this task must be able to resubmit the key straight away.
+        @Override
+        protected void set(Void v) {
+            finished();
+            super.set(v);
+        }
+
+        @Override
+        protected void setException(Throwable t) {
+            finished();
+            super.setException(t);
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            onTaskDone(this, -1);
+            return super.cancel(mayInterruptIfRunning);
+        }
+
+        private void finished() {
+            onTaskDone(this, isCancelled() ? -1 : System.nanoTime() - mStartNanos);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.cyh.wifiinforeader.eventlog;
+
+/**
+ * On-disk format of the event log, a directory of segments. A segment is a subdirectory named
+ * {@value #SEGMENT_PREFIX} and the zero padded time of its first record, so names sort oldest
+ * first, holding two append-only files.
+ * <p>
+ * {@value #EVENTS_FILE} is a {@link #RECORD_BYTES} byte header (magic, version) followed by
+ * fixed-width big-endian records:
+ * <pre>
+ *  0 long time    wall clock millis
+ *  8 int  type    one of the constants below
+ * 12 int  key     id of a string in the dictionary, {@link #NO_KEY} if none
+ * 16 int  arg0
+ * 20 int  arg1
+ * 24 long arg2
+ * </pre>
+ * {@value #STRINGS_FILE} is the dictionary: a header, then every key string once as an unsigned
+ * short byte length and its UTF-8 bytes. A string's id is its position, ids are per segment.
+ * Strings are always written before the records that refer to them, and a torn record or string
+ * at the end of either file is cut off on the next open.
+ */
+public final class EventLog {
+
+    public static final String EVENTS_FILE = "events.bin";
+    public static final String STRINGS_FILE = "strings.bin";
+    public static final String SEGMENT_PREFIX = "segment-";
+
+    /** Largest segment a writer makes, well within what one mapping can hold. */
+    public static final long MAX_SEGMENT_BYTES = 1L << 30;
+
+    public static final int RECORD_BYTES = 32;
+    static final int HEADER_BYTES = RECORD_BYTES;
+    static final int STRINGS_HEADER_BYTES = 8;
+    static final int MAGIC = 0x5749454c;
+    static final int STRINGS_MAGIC = 0x57494553;
+    static final int VERSION = 1;
+
+    static final int OFFSET_TYPE = 8;
+    static final int OFFSET_KEY = 12;
+    static final int OFFSET_ARG0 = 16;
+    static final int OFFSET_ARG1 = 20;
+    static final int OFFSET_ARG2 = 24;
+
+    public static final int NO_KEY = -1;
+
+    /** arg0: WifiManager.WIFI_STATE_*. */
+    public static final int WIFI_STATE = 1;
+    /** key: BSSID if any, arg0: DetailedState ordinal. */
+    public static final int NETWORK_STATE = 2;
+    /** arg0: SupplicantState ordinal, arg1: supplicant error or -1. */
+    public static final int SUPPLICANT_STATE = 3;
+    /** arg0: 1 connected, 0 disconnected. */
+    public static final int SUPPLICANT_CONNECTION = 4;
+    /** key: BSSID, arg0: RSSI. */
+    public static final int RSSI = 5;
+    /** arg0: results, arg1: BSSIDs added, arg2: request-to-results latency millis or -1. */
+    public static final int SCAN = 6;
+    /** key: BSSID, arg0: RSSI, arg1: frequency, arg2: ScanStore change flags, 0 when new. */
+    public static final int SCAN_ENTRY = 7;
+    /** key: BSSID that left the scan results. */
+    public static final int SCAN_LOST = 8;
+    public static final int NETWORK_IDS = 9;
+    /** key: host, arg0: received, arg1: transmitted, arg2: average RTT micros or -1. */
+    public static final int PING = 10;
+    /** key: URL, arg0: first status, arg1: requests, arg2: median warm total micros or -1. */
+    public static final int HTTP = 11;
+    /** key: host, arg0: ReachabilityResult.Check ordinal, arg1: Status ordinal, arg2: micros. */
+    public static final int REACHABILITY = 12;
+    /** key: BSSID roamed to, arg0: handover millis, arg1: auth and association millis, arg2: handshake millis. */
+    public static final int ROAM = 13;
+    /** One more than the largest type. */
+    public static final int TYPE_COUNT = 14;
+
+    private static final String[] TYPE_NAMES = {
+            null, "wifi_state", "network_state", "supplicant_state", "supplicant_connection", "rssi", "scan",
+            "scan_entry", "scan_lost", "network_ids", "ping", "http", "reachability", "roam"};
+
+    private EventLog() {
+    }
+
+    /**
+     * @return lower case name of {@code type}, null if unknown
+     */
+    public static String typeName(int type) {
+        return type > 0 && type < TYPE_COUNT ? TYPE_NAMES[type] : null;
+    }
+}
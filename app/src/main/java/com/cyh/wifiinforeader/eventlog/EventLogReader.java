@@ -0,0 +1,330 @@
+package com.cyh.wifiinforeader.eventlog;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Memory-mapped view of an {@link EventLog} directory as it was when opened.
+ * <p>
+ * Every segment is mapped on its own and the records of all of them, oldest first, are read in
+ * place by index; nothing is decoded up front apart from the dictionaries, which are merged so a
+ * string has one id across segments. Records appended afterwards need a new reader. A segment
+ * past 2 GB, some 67 million records, cannot be mapped in one piece and is refused, writers
+ * never make one.
+ */
+public class EventLogReader {
+
+    /**
+     * Receives replayed records. {@code key} is a dictionary id, see {@link #getString(int)}.
+     */
+    public interface Visitor {
+        void onEvent(long timeMillis, int type, int key, int arg0, int arg1, long arg2);
+    }
+
+    private static final int[] NO_IDS = new int[0];
+
+    private final ByteBuffer[] mSegments;
+    /** Index of the first record of each segment, then the record count. */
+    private final int[] mFirst;
+    /** Merged dictionary id of each segment's string ids. */
+    private final int[][] mKeyIds;
+    private final int mCount;
+    private final String[] mStrings;
+
+    public EventLogReader(File dir) throws IOException {
+        List<ByteBuffer> segments = new ArrayList<>();
+        List<int[]> keyIds = new ArrayList<>();
+        List<String> strings = new ArrayList<>();
+        Map<String, Integer> ids = new HashMap<>();
+        long count = 0;
+        for (File segment : listSegments(dir)) {
+            if (!new File(segment, EventLog.EVENTS_FILE).exists()) {
+                // Created just before a crash.
+                continue;
+            }
+            ByteBuffer events = map(segment);
+            if (events.capacity() == EventLog.HEADER_BYTES) {
+                continue;
+            }
+            segments.add(events);
+            count += (events.capacity() - EventLog.HEADER_BYTES) / EventLog.RECORD_BYTES;
+            keyIds.add(mergeStrings(segment, strings, ids));
+        }
+        if (count > Integer.MAX_VALUE) {
+            throw new IOException("Event log too large: " + count + " records");
+        }
+        mSegments = segments.toArray(new ByteBuffer[segments.size()]);
+        mKeyIds = keyIds.toArray(new int[keyIds.size()][]);
+        mFirst = new int[mSegments.length + 1];
+        for (int i = 0; i < mSegments.length; i++) {
+            mFirst[i + 1] = mFirst[i] + (mSegments[i].capacity() - EventLog.HEADER_BYTES) / EventLog.RECORD_BYTES;
+        }
+        mCount = (int) count;
+        mStrings = strings.toArray(new String[strings.size()]);
+    }
+
+    /**
+     * @return the segment directories in {@code dir}, oldest first
+     */
+    public static List<File> listSegments(File dir) {
+        File[] segments = dir.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                return file.isDirectory() && file.getName().startsWith(EventLog.SEGMENT_PREFIX);
+            }
+        });
+        if (segments == null) {
+            return new ArrayList<>();
+        }
+        // Names carry the zero padded start time.
+        Arrays.sort(segments);
+        return new ArrayList<>(Arrays.asList(segments));
+    }
+
+    /**
+     * @return the time of the first record of {@code segment}, from its name
+     */
+    static long segmentStart(File segment) {
+        try {
+            return Long.parseLong(segment.getName().substring(EventLog.SEGMENT_PREFIX.length()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    public int size() {
+        return mCount;
+    }
+
+    /**
+     * @return segments holding records
+     */
+    public int getSegmentCount() {
+        return mSegments.length;
+    }
+
+    public long getTime(int index) {
+        int segment = segmentOf(index);
+        return mSegments[segment].getLong(offset(segment, index));
+    }
+
+    public int getType(int index) {
+        int segment = segmentOf(index);
+        return mSegments[segment].getInt(offset(segment, index) + EventLog.OFFSET_TYPE);
+    }
+
+    /**
+     * @return the dictionary id of the record's key, {@link EventLog#NO_KEY} if it has none or
+     * its segment's dictionary lost it in a crash
+     */
+    public int getKeyId(int index) {
+        int segment = segmentOf(index);
+        return keyId(segment, mSegments[segment].getInt(offset(segment, index) + EventLog.OFFSET_KEY));
+    }
+
+    /**
+     * @return the key string of the record, null if it has none
+     */
+    public String getKey(int index) {
+        return getString(getKeyId(index));
+    }
+
+    public int getArg0(int index) {
+        int segment = segmentOf(index);
+        return mSegments[segment].getInt(offset(segment, index) + EventLog.OFFSET_ARG0);
+    }
+
+    public int getArg1(int index) {
+        int segment = segmentOf(index);
+        return mSegments[segment].getInt(offset(segment, index) + EventLog.OFFSET_ARG1);
+    }
+
+    public long getArg2(int index) {
+        int segment = segmentOf(index);
+        return mSegments[segment].getLong(offset(segment, index) + EventLog.OFFSET_ARG2);
+    }
+
+    /**
+     * @return the dictionary string with this id, null for {@link EventLog#NO_KEY}
+     */
+    public String getString(int id) {
+        return id >= 0 && id < mStrings.length ? mStrings[id] : null;
+    }
+
+    public int getStringCount() {
+        return mStrings.length;
+    }
+
+    /**
+     * @return the dictionary id of {@code string}, {@link EventLog#NO_KEY} if it never occurs
+     */
+    public int findString(String string) {
+        for (int i = 0; i < mStrings.length; i++) {
+            if (mStrings[i].equals(string)) {
+                return i;
+            }
+        }
+        return EventLog.NO_KEY;
+    }
+
+    /**
+     * Visits the records in {@code [from, to)} in log order.
+     */
+    public void replay(int from, int to, Visitor visitor) {
+        if (from < 0 || to > mCount || from > to) {
+            throw new IndexOutOfBoundsException("[" + from + ", " + to + ") of " + mCount);
+        }
+        if (from == to) {
+            return;
+        }
+        for (int segment = segmentOf(from); segment < mSegments.length && mFirst[segment] < to; segment++) {
+            ByteBuffer events = mSegments[segment];
+            int[] keyIds = mKeyIds[segment];
+            int first = mFirst[segment];
+            for (int offset = EventLog.HEADER_BYTES + (Math.max(from, first) - first) * EventLog.RECORD_BYTES,
+                 end = EventLog.HEADER_BYTES + (Math.min(to, mFirst[segment + 1]) - first) * EventLog.RECORD_BYTES;
+                 offset < end; offset += EventLog.RECORD_BYTES) {
+                int key = events.getInt(offset + EventLog.OFFSET_KEY);
+                visitor.onEvent(events.getLong(offset),
+                        events.getInt(offset + EventLog.OFFSET_TYPE),
+                        key >= 0 && key < keyIds.length ? keyIds[key] : EventLog.NO_KEY,
+                        events.getInt(offset + EventLog.OFFSET_ARG0),
+                        events.getInt(offset + EventLog.OFFSET_ARG1),
+                        events.getLong(offset + EventLog.OFFSET_ARG2));
+            }
+        }
+    }
+
+    private int segmentOf(int index) {
+        if (index < 0 || index >= mCount) {
+            throw new IndexOutOfBoundsException("index " + index + " size " + mCount);
+        }
+        if (mSegments.length == 1) {
+            return 0;
+        }
+        // Segments are never empty, first indexes strictly increase.
+        int found = Arrays.binarySearch(mFirst, 0, mSegments.length, index);
+        return found >= 0 ? found : -found - 2;
+    }
+
+    private int offset(int segment, int index) {
+        return EventLog.HEADER_BYTES + (index - mFirst[segment]) * EventLog.RECORD_BYTES;
+    }
+
+    private int keyId(int segment, int key) {
+        int[] keyIds = mKeyIds[segment];
+        return key >= 0 && key < keyIds.length ? keyIds[key] : EventLog.NO_KEY;
+    }
+
+    private static ByteBuffer map(File segment) throws IOException {
+        RandomAccessFile events = new RandomAccessFile(new File(segment, EventLog.EVENTS_FILE), "r");
+        try {
+            FileChannel channel = events.getChannel();
+            long size = channel.size();
+            checkHeader(channel, size);
+            long count = (size - EventLog.HEADER_BYTES) / EventLog.RECORD_BYTES;
+            long mapped = EventLog.HEADER_BYTES + count * EventLog.RECORD_BYTES;
+            if (mapped > Integer.MAX_VALUE) {
+                throw new IOException("Event log segment too large to map: " + size + " bytes");
+            }
+            // The mapping stays valid after the file is closed.
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, mapped);
+        } finally {
+            events.close();
+        }
+    }
+
+    /**
+     * Adds the strings of {@code segment} not yet in {@code strings}.
+     *
+     * @return the merged id of each of the segment's ids
+     */
+    private static int[] mergeStrings(File segment, List<String> strings, Map<String, Integer> ids)
+            throws IOException {
+        File stringsFile = new File(segment, EventLog.STRINGS_FILE);
+        if (!stringsFile.exists()) {
+            return NO_IDS;
+        }
+        List<String> local = new ArrayList<>();
+        RandomAccessFile file = new RandomAccessFile(stringsFile, "r");
+        try {
+            readStrings(file, local);
+        } finally {
+            file.close();
+        }
+        int[] keyIds = new int[local.size()];
+        for (int i = 0; i < keyIds.length; i++) {
+            String string = local.get(i);
+            Integer id = ids.get(string);
+            if (id == null) {
+                id = strings.size();
+                ids.put(string, id);
+                strings.add(string);
+            }
+            keyIds[i] = id;
+        }
+        return keyIds;
+    }
+
+    static void checkHeader(FileChannel channel, long size) throws IOException {
+        if (size < EventLog.HEADER_BYTES) {
+            throw new IOException("Not an event log, " + size + " bytes");
+        }
+        ByteBuffer header = ByteBuffer.allocate(12);
+        while (header.hasRemaining()) {
+            if (channel.read(header, header.position()) < 0) {
+                throw new IOException("Not an event log, short header");
+            }
+        }
+        header.flip();
+        if (header.getInt() != EventLog.MAGIC) {
+            throw new IOException("Not an event log, bad magic");
+        }
+        int version = header.getInt();
+        int recordBytes = header.getInt();
+        if (version != EventLog.VERSION || recordBytes != EventLog.RECORD_BYTES) {
+            throw new IOException("Unsupported event log version " + version + ", record " + recordBytes + " bytes");
+        }
+    }
+
+    /**
+     * Reads the dictionary into {@code out}, stopping at a torn string.
+     *
+     * @return offset just past the last complete string
+     */
+    static long readStrings(RandomAccessFile file, List<String> out) throws IOException {
+        long size = file.length();
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Event log dictionary too large: " + size + " bytes");
+        }
+        byte[] bytes = new byte[(int) size];
+        file.seek(0);
+        file.readFully(bytes);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        if (size < EventLog.STRINGS_HEADER_BYTES || buffer.getInt() != EventLog.STRINGS_MAGIC
+                || buffer.getInt() != EventLog.VERSION) {
+            throw new IOException("Not an event log dictionary");
+        }
+        int end = buffer.position();
+        while (buffer.remaining() >= 2) {
+            int length = buffer.getShort() & 0xffff;
+            if (buffer.remaining() < length) {
+                break;
+            }
+            out.add(new String(bytes, buffer.position(), length, StandardCharsets.UTF_8));
+            buffer.position(buffer.position() + length);
+            end = buffer.position();
+        }
+        return end;
+    }
+}
@@ -0,0 +1,348 @@
+package com.cyh.wifiinforeader.eventlog;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Appends events to an {@link EventLog} directory, creating it or continuing its newest segment.
+ * <p>
+ * A new segment is started once the current one has reached {@code maxSegmentBytes}, never more
+ * than {@link EventLog#MAX_SEGMENT_BYTES} so every segment can be mapped, or holds records from
+ * {@code maxSegmentMillis} before the one being appended. Only the newest {@code maxSegments}
+ * are kept, older ones are deleted whole. Each segment has its own dictionary.
+ * <p>
+ * Records collect in a direct buffer and go to the file channel one batch at a time, when the
+ * buffer fills or on {@link #flush()}, so an append is a handful of puts and nothing reaches
+ * the disk in between. Key strings are interned into the dictionary the first time they are
+ * seen. Nothing is forced to storage unless {@link #sync()} is called. Thread safe.
+ */
+public class EventLogWriter implements Closeable {
+
+    private final File mDir;
+    private final long mMaxSegmentBytes;
+    private final long mMaxSegmentMillis;
+    private final int mMaxSegments;
+    private final ByteBuffer mBatch;
+    private ByteBuffer mStringBatch = ByteBuffer.allocate(1024);
+
+    /** The segment being appended to, all null until the first record if the log was empty. */
+    private RandomAccessFile mEventsFile;
+    private RandomAccessFile mStringsFile;
+    private FileChannel mEvents;
+    private FileChannel mStrings;
+    private long mSegmentStart;
+    private long mSegmentRecords;
+    private final Map<String, Integer> mIds = new HashMap<>();
+
+    private long mCount = 0;
+    private long mFlushes = 0;
+    private int mSegments = 0;
+    private boolean mClosed = false;
+
+    /**
+     * A log kept whole, in segments of {@link EventLog#MAX_SEGMENT_BYTES}.
+     *
+     * @param batchRecords records buffered before they are written out
+     */
+    public EventLogWriter(File dir, int batchRecords) throws IOException {
+        this(dir, batchRecords, EventLog.MAX_SEGMENT_BYTES, Long.MAX_VALUE, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param batchRecords     records buffered before they are written out
+     * @param maxSegmentBytes  size a segment is closed at, capped at {@link EventLog#MAX_SEGMENT_BYTES}
+     * @param maxSegmentMillis span of record times a segment is closed at
+     * @param maxSegments      segments kept, the one being appended to included
+     */
+    public EventLogWriter(File dir, int batchRecords, long maxSegmentBytes, long maxSegmentMillis, int maxSegments)
+            throws IOException {
+        if (batchRecords < 1) {
+            throw new IllegalArgumentException("batchRecords must be positive: " + batchRecords);
+        }
+        if (maxSegmentBytes <= 0 || maxSegmentMillis <= 0 || maxSegments < 1) {
+            throw new IllegalArgumentException("Limits must be positive");
+        }
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create " + dir);
+        }
+        mDir = dir;
+        mMaxSegmentBytes = Math.min(maxSegmentBytes, EventLog.MAX_SEGMENT_BYTES);
+        mMaxSegmentMillis = maxSegmentMillis;
+        mMaxSegments = maxSegments;
+        mBatch = ByteBuffer.allocateDirect(batchRecords * EventLog.RECORD_BYTES);
+
+        List<File> segments = EventLogReader.listSegments(dir);
+        for (int i = 0; i < segments.size() - 1; i++) {
+            mCount += recordsIn(segments.get(i));
+        }
+        if (!segments.isEmpty()) {
+            File newest = segments.get(segments.size() - 1);
+            openSegment(newest, EventLogReader.segmentStart(newest));
+        }
+    }
+
+    /**
+     * @param key a string such as an SSID, BSSID or host, null for none
+     * @see EventLog for what the arguments of each type hold
+     */
+    public synchronized void append(long timeMillis, int type, String key, int arg0, int arg1, long arg2)
+            throws IOException {
+        if (mClosed) {
+            throw new IOException("Event log is closed");
+        }
+        if (mEvents == null || EventLog.HEADER_BYTES + mSegmentRecords * EventLog.RECORD_BYTES >= mMaxSegmentBytes
+                || timeMillis - mSegmentStart >= mMaxSegmentMillis) {
+            rotate(timeMillis);
+        }
+        int id = key == null ? EventLog.NO_KEY : intern(key);
+        mBatch.putLong(timeMillis)
+                .putInt(type)
+                .putInt(id)
+                .putInt(arg0)
+                .putInt(arg1)
+                .putLong(arg2);
+        mCount++;
+        mSegmentRecords++;
+        if (!mBatch.hasRemaining()) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes the buffered strings, then the buffered records, to their channels.
+     */
+    public synchronized void flush() throws IOException {
+        if (mClosed || mEvents == null) {
+            return;
+        }
+        if (mStringBatch.position() > 0) {
+            writeFully(mStrings, mStringBatch);
+        }
+        if (mBatch.position() > 0) {
+            writeFully(mEvents, mBatch);
+            mFlushes++;
+        }
+    }
+
+    /**
+     * Flushes and forces both files to storage.
+     */
+    public synchronized void sync() throws IOException {
+        flush();
+        if (!mClosed && mEvents != null) {
+            mStrings.force(false);
+            mEvents.force(false);
+        }
+    }
+
+    /**
+     * @return records in the kept segments, including the ones still buffered
+     */
+    public synchronized long getCount() {
+        return mCount;
+    }
+
+    /**
+     * @return strings in the dictionary of the current segment
+     */
+    public synchronized int getStringCount() {
+        return mIds.size();
+    }
+
+    /**
+     * @return batches written to the events channel since this writer was opened
+     */
+    public synchronized long getFlushCount() {
+        return mFlushes;
+    }
+
+    /**
+     * @return segments started since this writer was opened
+     */
+    public synchronized int getSegmentCount() {
+        return mSegments;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (mClosed) {
+            return;
+        }
+        try {
+            flush();
+        } finally {
+            mClosed = true;
+            closeQuietly();
+        }
+    }
+
+    /**
+     * Closes the current segment, if any, and starts a new one named after {@code timeMillis}.
+     */
+    private void rotate(long timeMillis) throws IOException {
+        if (mEvents != null) {
+            flush();
+            RandomAccessFile events = mEventsFile;
+            RandomAccessFile strings = mStringsFile;
+            mEventsFile = null;
+            mStringsFile = null;
+            mEvents = null;
+            mStrings = null;
+            try {
+                events.close();
+            } finally {
+                strings.close();
+            }
+        }
+        long start = timeMillis;
+        while (segmentFor(start).exists()) {
+            start++;
+        }
+        File segment = segmentFor(start);
+        if (!segment.mkdir()) {
+            throw new IOException("Cannot create " + segment);
+        }
+        // Named by the first record's time, ages are measured from it.
+        openSegment(segment, timeMillis);
+        mSegments++;
+        prune();
+    }
+
+    private File segmentFor(long timeMillis) {
+        return new File(mDir, EventLog.SEGMENT_PREFIX + String.format(Locale.US, "%013d", timeMillis));
+    }
+
+    private void openSegment(File segment, long startMillis) throws IOException {
+        mIds.clear();
+        mEventsFile = new RandomAccessFile(new File(segment, EventLog.EVENTS_FILE), "rw");
+        mStringsFile = new RandomAccessFile(new File(segment, EventLog.STRINGS_FILE), "rw");
+        mEvents = mEventsFile.getChannel();
+        mStrings = mStringsFile.getChannel();
+        try {
+            openEvents();
+            openStrings();
+        } catch (IOException e) {
+            closeQuietly();
+            mEventsFile = null;
+            mStringsFile = null;
+            mEvents = null;
+            mStrings = null;
+            throw e;
+        }
+        mSegmentStart = startMillis;
+        mCount += mSegmentRecords;
+    }
+
+    /**
+     * Deletes the oldest segments past {@code maxSegments}.
+     */
+    private void prune() {
+        List<File> segments = EventLogReader.listSegments(mDir);
+        for (int i = 0; i < segments.size() - mMaxSegments; i++) {
+            File segment = segments.get(i);
+            mCount -= recordsIn(segment);
+            new File(segment, EventLog.EVENTS_FILE).delete();
+            new File(segment, EventLog.STRINGS_FILE).delete();
+            segment.delete();
+        }
+    }
+
+    private static long recordsIn(File segment) {
+        long size = new File(segment, EventLog.EVENTS_FILE).length();
+        return Math.max(0, (size - EventLog.HEADER_BYTES) / EventLog.RECORD_BYTES);
+    }
+
+    private int intern(String key) {
+        Integer id = mIds.get(key);
+        if (id != null) {
+            return id;
+        }
+        byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 0xffff) {
+            throw new IllegalArgumentException("Key longer than 65535 bytes");
+        }
+        if (mStringBatch.remaining() < 2 + bytes.length) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(mStringBatch.capacity() * 2, mStringBatch.position() + 2 + bytes.length));
+            mStringBatch.flip();
+            grown.put(mStringBatch);
+            mStringBatch = grown;
+        }
+        mStringBatch.putShort((short) bytes.length).put(bytes);
+        int newId = mIds.size();
+        mIds.put(key, newId);
+        return newId;
+    }
+
+    private void openEvents() throws IOException {
+        long size = mEvents.size();
+        if (size == 0) {
+            ByteBuffer header = ByteBuffer.allocate(EventLog.HEADER_BYTES);
+            header.putInt(EventLog.MAGIC).putInt(EventLog.VERSION).putInt(EventLog.RECORD_BYTES);
+            header.position(header.capacity());
+            writeFully(mEvents, header);
+            mSegmentRecords = 0;
+            return;
+        }
+        EventLogReader.checkHeader(mEvents, size);
+        mSegmentRecords = (size - EventLog.HEADER_BYTES) / EventLog.RECORD_BYTES;
+        long end = EventLog.HEADER_BYTES + mSegmentRecords * EventLog.RECORD_BYTES;
+        if (end != size) {
+            // A torn record from a crash mid-write.
+            mEvents.truncate(end);
+        }
+        mEvents.position(end);
+    }
+
+    private void openStrings() throws IOException {
+        long size = mStrings.size();
+        if (size == 0) {
+            ByteBuffer header = ByteBuffer.allocate(EventLog.STRINGS_HEADER_BYTES);
+            header.putInt(EventLog.STRINGS_MAGIC).putInt(EventLog.VERSION);
+            writeFully(mStrings, header);
+            return;
+        }
+        List<String> strings = new ArrayList<>();
+        long end = EventLogReader.readStrings(mStringsFile, strings);
+        for (int i = 0; i < strings.size(); i++) {
+            mIds.put(strings.get(i), i);
+        }
+        if (end != size) {
+            // A torn string from a crash mid-write.
+            mStrings.truncate(end);
+        }
+        mStrings.position(end);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private void closeQuietly() {
+        try {
+            if (mEventsFile != null) {
+                mEventsFile.close();
+            }
+        } catch (IOException ignored) {
+        }
+        try {
+            if (mStringsFile != null) {
+                mStringsFile.close();
+            }
+        } catch (IOException ignored) {
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.cyh.wifiinforeader.export;
+
+import com.cyh.wifiinforeader.eventlog.EventLog;
+
+/**
+ * Format of the measurement export, the {@link EventLog} records in a form compact enough to
+ * take off the device.
+ * <p>
+ * An export file is a series of gzip members, so {@code zcat} reads it whole, one member per
+ * batch of records. A member holds:
+ * <pre>
+ * int    magic, version        big-endian
+ * varint records, new strings
+ * new strings                  varint byte length and UTF-8 bytes each
+ * columns                      every record's time, then every type, key, arg0, arg1, arg2
+ * </pre>
+ * Times are zigzag varints of the difference to the time before. Types are varints, keys
+ * varints of the string id plus one, 0 for none; ids count the strings of the file in order.
+ * The args are zigzag varints of the difference to the same arg of the record of the same type
+ * before, so RSSI series and repeated scans come down to a byte or two a value. Both the
+ * strings and the previous values carry over from batch to batch and start afresh in every
+ * file, so a file is read from its start and a torn last member loses that batch only.
+ * <p>
+ * The file being written is named {@code measurements-<millis>}{@value #PARTIAL_SUFFIX}, after
+ * the time of its first record, and gets {@value #FILE_SUFFIX} in its place once complete.
+ */
+public final class ExportFormat {
+
+    public static final String FILE_PREFIX = "measurements-";
+    public static final String FILE_SUFFIX = ".wxz";
+    public static final String PARTIAL_SUFFIX = ".part";
+
+    static final int MAGIC = 0x5749455a;
+    static final int VERSION = 1;
+    /** Previous values are kept per type; types out of range share slot 0. */
+    static final int TYPE_SLOTS = EventLog.TYPE_COUNT;
+
+    private ExportFormat() {
+    }
+
+    static int slotOf(int type) {
+        return type > 0 && type < TYPE_SLOTS ? type : 0;
+    }
+
+    static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,209 @@
+package com.cyh.wifiinforeader.export;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * Reads export files back, on the JVM as well as on the device, see {@link ExportFormat}.
+ * <p>
+ * A batch is decoded whole before any of it is visited, so a torn last batch, in a file still
+ * being written or cut off by a crash, is skipped rather than half delivered.
+ */
+public final class ExportReader {
+
+    /**
+     * Receives the records in the order they were appended.
+     */
+    public interface Visitor {
+        void onRecord(long timeMillis, int type, String key, int arg0, int arg1, long arg2);
+    }
+
+    private ExportReader() {
+    }
+
+    /**
+     * @return the export files in {@code dir}, complete or not, oldest first
+     */
+    public static List<File> listFiles(File dir) {
+        File[] files = dir.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.startsWith(ExportFormat.FILE_PREFIX) && (name.endsWith(ExportFormat.FILE_SUFFIX)
+                        || name.endsWith(ExportFormat.PARTIAL_SUFFIX));
+            }
+        });
+        if (files == null) {
+            return new ArrayList<>();
+        }
+        // Names carry the zero padded start time.
+        Arrays.sort(files);
+        return new ArrayList<>(Arrays.asList(files));
+    }
+
+    /**
+     * Reads every export file in {@code dir}, oldest first.
+     *
+     * @return records visited
+     */
+    public static long readAll(File dir, Visitor visitor) throws IOException {
+        long records = 0;
+        for (File file : listFiles(dir)) {
+            records += read(file, visitor);
+        }
+        return records;
+    }
+
+    /**
+     * @return records visited
+     * @throws IOException if the file is not an export file or cannot be read
+     */
+    public static long read(File file, Visitor visitor) throws IOException {
+        InputStream in = new BufferedInputStream(new FileInputStream(file));
+        try {
+            return read(in, visitor);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * @param in one export file's bytes, from the start
+     * @return records visited
+     */
+    public static long read(InputStream in, Visitor visitor) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(new GZIPInputStream(in, 8192), 8192));
+        Batch batch = new Batch();
+        long records = 0;
+        while (true) {
+            try {
+                if (!batch.read(data)) {
+                    return records;
+                }
+            } catch (EOFException e) {
+                return records;
+            } catch (ZipException e) {
+                return records;
+            }
+            for (int i = 0; i < batch.mSize; i++) {
+                int keyId = batch.mKeys[i];
+                visitor.onRecord(batch.mTimes[i], batch.mTypes[i], keyId == 0 ? null : batch.mStrings.get(keyId - 1),
+                        batch.mArg0[i], batch.mArg1[i], batch.mArg2[i]);
+            }
+            records += batch.mSize;
+        }
+    }
+
+    /** Decoding state of one file: the batch last read and what later ones build on. */
+    private static final class Batch {
+        final List<String> mStrings = new ArrayList<>();
+        long mPreviousTime;
+        final int[] mPreviousArg0 = new int[ExportFormat.TYPE_SLOTS];
+        final int[] mPreviousArg1 = new int[ExportFormat.TYPE_SLOTS];
+        final long[] mPreviousArg2 = new long[ExportFormat.TYPE_SLOTS];
+
+        int mSize;
+        long[] mTimes = new long[0];
+        int[] mTypes = new int[0];
+        int[] mKeys = new int[0];
+        int[] mArg0 = new int[0];
+        int[] mArg1 = new int[0];
+        long[] mArg2 = new long[0];
+
+        /**
+         * @return false at a clean end of the file
+         */
+        boolean read(DataInputStream in) throws IOException {
+            int first = in.read();
+            if (first < 0) {
+                return false;
+            }
+            int magic = first << 24 | in.readUnsignedByte() << 16 | in.readUnsignedShort();
+            int version = in.readInt();
+            if (magic != ExportFormat.MAGIC || version != ExportFormat.VERSION) {
+                throw new IOException("Not an export batch, magic " + Integer.toHexString(magic) + " version " + version);
+            }
+            int size = (int) readVarint(in);
+            int newStrings = (int) readVarint(in);
+            List<String> strings = new ArrayList<>(newStrings);
+            for (int i = 0; i < newStrings; i++) {
+                byte[] bytes = new byte[(int) readVarint(in)];
+                in.readFully(bytes);
+                strings.add(new String(bytes, StandardCharsets.UTF_8));
+            }
+            if (mTimes.length < size) {
+                mTimes = new long[size];
+                mTypes = new int[size];
+                mKeys = new int[size];
+                mArg0 = new int[size];
+                mArg1 = new int[size];
+                mArg2 = new long[size];
+            }
+            // Decoded into copies of the running state, committed once the batch is complete.
+            long time = mPreviousTime;
+            for (int i = 0; i < size; i++) {
+                time += ExportFormat.unzigzag(readVarint(in));
+                mTimes[i] = time;
+            }
+            for (int i = 0; i < size; i++) {
+                mTypes[i] = (int) readVarint(in);
+            }
+            int known = mStrings.size() + newStrings;
+            for (int i = 0; i < size; i++) {
+                mKeys[i] = (int) readVarint(in);
+                if (mKeys[i] > known) {
+                    throw new IOException("Unknown string " + (mKeys[i] - 1));
+                }
+            }
+            int[] arg0 = mPreviousArg0.clone();
+            for (int i = 0; i < size; i++) {
+                int slot = ExportFormat.slotOf(mTypes[i]);
+                arg0[slot] += (int) ExportFormat.unzigzag(readVarint(in));
+                mArg0[i] = arg0[slot];
+            }
+            int[] arg1 = mPreviousArg1.clone();
+            for (int i = 0; i < size; i++) {
+                int slot = ExportFormat.slotOf(mTypes[i]);
+                arg1[slot] += (int) ExportFormat.unzigzag(readVarint(in));
+                mArg1[i] = arg1[slot];
+            }
+            long[] arg2 = mPreviousArg2.clone();
+            for (int i = 0; i < size; i++) {
+                int slot = ExportFormat.slotOf(mTypes[i]);
+                arg2[slot] += ExportFormat.unzigzag(readVarint(in));
+                mArg2[i] = arg2[slot];
+            }
+
+            mSize = size;
+            mStrings.addAll(strings);
+            mPreviousTime = time;
+            System.arraycopy(arg0, 0, mPreviousArg0, 0, arg0.length);
+            System.arraycopy(arg1, 0, mPreviousArg1, 0, arg1.length);
+            System.arraycopy(arg2, 0, mPreviousArg2, 0, arg2.length);
+            return true;
+        }
+
+        private static long readVarint(DataInputStream in) throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = in.readUnsignedByte();
+                value |= (long) (b & 0x7f) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Varint too long");
+        }
+    }
+}
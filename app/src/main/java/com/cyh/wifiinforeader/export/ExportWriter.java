@@ -0,0 +1,303 @@
+package com.cyh.wifiinforeader.export;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes batches of records to rotating export files in a directory, see {@link ExportFormat}.
+ * <p>
+ * A new file is started once the current one has reached {@code maxFileBytes}, so files run
+ * over by up to one batch, or holds records from {@code maxFileMillis} before the next batch.
+ * Only the newest {@code maxFiles} complete files are kept. A file left partial by a crash is
+ * taken as complete on the next open.
+ * <p>
+ * A batch is encoded into one reused buffer and deflated with one reused {@link Deflater}, so
+ * a steady stream of batches allocates little beyond new strings. Not thread safe, see
+ * {@link MeasurementExporter} for writing off the collecting thread.
+ */
+public class ExportWriter implements Closeable {
+
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    private final File mDir;
+    private final long mMaxFileBytes;
+    private final long mMaxFileMillis;
+    private final int mMaxFiles;
+    private final Deflater mDeflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    private final CRC32 mCrc = new CRC32();
+    private final byte[] mDeflated = new byte[8192];
+    private final byte[] mTrailer = new byte[8];
+    private byte[] mRaw = new byte[8192];
+    private int mRawSize;
+
+    private FileOutputStream mOut;
+    private File mPartial;
+    private long mFileStart;
+    private long mFileBytes;
+    private final Map<String, Integer> mIds = new HashMap<>();
+    private final List<String> mNewStrings = new ArrayList<>();
+    private long mPreviousTime;
+    private final int[] mPreviousArg0 = new int[ExportFormat.TYPE_SLOTS];
+    private final int[] mPreviousArg1 = new int[ExportFormat.TYPE_SLOTS];
+    private final long[] mPreviousArg2 = new long[ExportFormat.TYPE_SLOTS];
+
+    private long mRecords;
+    private long mBytes;
+    private int mFiles;
+    private boolean mClosed = false;
+
+    public ExportWriter(File dir, long maxFileBytes, long maxFileMillis, int maxFiles) throws IOException {
+        if (maxFileBytes <= 0 || maxFileMillis <= 0 || maxFiles < 1) {
+            throw new IllegalArgumentException("Limits must be positive");
+        }
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create " + dir);
+        }
+        mDir = dir;
+        mMaxFileBytes = maxFileBytes;
+        mMaxFileMillis = maxFileMillis;
+        mMaxFiles = maxFiles;
+        for (File file : ExportReader.listFiles(dir)) {
+            if (file.getName().endsWith(ExportFormat.PARTIAL_SUFFIX)) {
+                complete(file);
+            }
+        }
+    }
+
+    void write(RecordBatch batch) throws IOException {
+        if (mClosed) {
+            throw new IOException("Export writer is closed");
+        }
+        if (batch.mSize == 0) {
+            return;
+        }
+        if (mOut != null && (mFileBytes >= mMaxFileBytes || batch.mTimes[0] - mFileStart >= mMaxFileMillis)) {
+            finishFile();
+        }
+        if (mOut == null) {
+            startFile(batch.mTimes[0]);
+        }
+        encode(batch);
+        try {
+            writeMember();
+        } catch (IOException e) {
+            // The file may end in a torn member now, later batches go to a new one.
+            finishFile();
+            throw e;
+        }
+        mRecords += batch.mSize;
+    }
+
+    /**
+     * @return records written since this writer was opened
+     */
+    public long getRecordCount() {
+        return mRecords;
+    }
+
+    /**
+     * @return compressed bytes written since this writer was opened
+     */
+    public long getByteCount() {
+        return mBytes;
+    }
+
+    /**
+     * @return files started since this writer was opened
+     */
+    public int getFileCount() {
+        return mFiles;
+    }
+
+    /**
+     * Completes the current file.
+     */
+    @Override
+    public void close() throws IOException {
+        if (mClosed) {
+            return;
+        }
+        mClosed = true;
+        try {
+            finishFile();
+        } finally {
+            mDeflater.end();
+        }
+    }
+
+    private void startFile(long timeMillis) throws IOException {
+        long start = timeMillis;
+        while (fileFor(start, ExportFormat.PARTIAL_SUFFIX).exists() || fileFor(start, ExportFormat.FILE_SUFFIX).exists()) {
+            start++;
+        }
+        mPartial = fileFor(start, ExportFormat.PARTIAL_SUFFIX);
+        mOut = new FileOutputStream(mPartial);
+        mFileStart = timeMillis;
+        mFileBytes = 0;
+        mFiles++;
+        mIds.clear();
+        mPreviousTime = 0;
+        Arrays.fill(mPreviousArg0, 0);
+        Arrays.fill(mPreviousArg1, 0);
+        Arrays.fill(mPreviousArg2, 0);
+    }
+
+    private void finishFile() throws IOException {
+        if (mOut == null) {
+            return;
+        }
+        FileOutputStream out = mOut;
+        mOut = null;
+        try {
+            out.close();
+        } finally {
+            complete(mPartial);
+            prune();
+        }
+    }
+
+    private File fileFor(long timeMillis, String suffix) {
+        return new File(mDir, ExportFormat.FILE_PREFIX + String.format(Locale.US, "%013d", timeMillis) + suffix);
+    }
+
+    private static void complete(File partial) throws IOException {
+        String name = partial.getName();
+        File done = new File(partial.getParentFile(),
+                name.substring(0, name.length() - ExportFormat.PARTIAL_SUFFIX.length()) + ExportFormat.FILE_SUFFIX);
+        if (!partial.renameTo(done)) {
+            throw new IOException("Cannot rename " + partial);
+        }
+    }
+
+    private void prune() {
+        List<File> files = ExportReader.listFiles(mDir);
+        int complete = 0;
+        for (File file : files) {
+            if (file.getName().endsWith(ExportFormat.FILE_SUFFIX)) {
+                complete++;
+            }
+        }
+        for (File file : files) {
+            if (complete <= mMaxFiles) {
+                break;
+            }
+            if (file.getName().endsWith(ExportFormat.FILE_SUFFIX) && file.delete()) {
+                complete--;
+            }
+        }
+    }
+
+    private void encode(RecordBatch batch) {
+        int size = batch.mSize;
+        mNewStrings.clear();
+        for (int i = 0; i < size; i++) {
+            String key = batch.mKeys[i];
+            if (key != null && !mIds.containsKey(key)) {
+                mIds.put(key, mIds.size());
+                mNewStrings.add(key);
+            }
+        }
+
+        mRawSize = 0;
+        putInt(ExportFormat.MAGIC);
+        putInt(ExportFormat.VERSION);
+        putVarint(size);
+        putVarint(mNewStrings.size());
+        for (String string : mNewStrings) {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            putVarint(bytes.length);
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, mRaw, mRawSize, bytes.length);
+            mRawSize += bytes.length;
+        }
+        for (int i = 0; i < size; i++) {
+            putVarint(ExportFormat.zigzag(batch.mTimes[i] - mPreviousTime));
+            mPreviousTime = batch.mTimes[i];
+        }
+        for (int i = 0; i < size; i++) {
+            putVarint(batch.mTypes[i] & 0xffffffffL);
+        }
+        for (int i = 0; i < size; i++) {
+            String key = batch.mKeys[i];
+            putVarint(key == null ? 0 : mIds.get(key) + 1);
+        }
+        for (int i = 0; i < size; i++) {
+            int slot = ExportFormat.slotOf(batch.mTypes[i]);
+            putVarint(ExportFormat.zigzag((long) batch.mArg0[i] - mPreviousArg0[slot]));
+            mPreviousArg0[slot] = batch.mArg0[i];
+        }
+        for (int i = 0; i < size; i++) {
+            int slot = ExportFormat.slotOf(batch.mTypes[i]);
+            putVarint(ExportFormat.zigzag((long) batch.mArg1[i] - mPreviousArg1[slot]));
+            mPreviousArg1[slot] = batch.mArg1[i];
+        }
+        for (int i = 0; i < size; i++) {
+            int slot = ExportFormat.slotOf(batch.mTypes[i]);
+            putVarint(ExportFormat.zigzag(batch.mArg2[i] - mPreviousArg2[slot]));
+            mPreviousArg2[slot] = batch.mArg2[i];
+        }
+    }
+
+    /** Writes the encoded batch as one gzip member. */
+    private void writeMember() throws IOException {
+        mOut.write(GZIP_HEADER);
+        long written = GZIP_HEADER.length;
+        mDeflater.reset();
+        mDeflater.setInput(mRaw, 0, mRawSize);
+        mDeflater.finish();
+        while (!mDeflater.finished()) {
+            int n = mDeflater.deflate(mDeflated);
+            mOut.write(mDeflated, 0, n);
+            written += n;
+        }
+        mCrc.reset();
+        mCrc.update(mRaw, 0, mRawSize);
+        putIntLittleEndian(mTrailer, 0, (int) mCrc.getValue());
+        putIntLittleEndian(mTrailer, 4, mRawSize);
+        mOut.write(mTrailer);
+        written += mTrailer.length;
+        mFileBytes += written;
+        mBytes += written;
+    }
+
+    private static void putIntLittleEndian(byte[] out, int offset, int value) {
+        out[offset] = (byte) value;
+        out[offset + 1] = (byte) (value >>> 8);
+        out[offset + 2] = (byte) (value >>> 16);
+        out[offset + 3] = (byte) (value >>> 24);
+    }
+
+    private void putInt(int value) {
+        ensure(4);
+        mRaw[mRawSize++] = (byte) (value >>> 24);
+        mRaw[mRawSize++] = (byte) (value >>> 16);
+        mRaw[mRawSize++] = (byte) (value >>> 8);
+        mRaw[mRawSize++] = (byte) value;
+    }
+
+    private void putVarint(long value) {
+        ensure(10);
+        while ((value & ~0x7fL) != 0) {
+            mRaw[mRawSize++] = (byte) ((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        mRaw[mRawSize++] = (byte) value;
+    }
+
+    private void ensure(int bytes) {
+        if (mRawSize + bytes > mRaw.length) {
+            mRaw = Arrays.copyOf(mRaw, Math.max(mRaw.length * 2, mRawSize + bytes));
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.cyh.wifiinforeader.export;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Exports records through an {@link ExportWriter} on a background thread of its own, so the
+ * thread collecting them never waits for encoding, compression or the disk.
+ * <p>
+ * Appends fill a column batch in place; a full batch is queued for the writer thread and an
+ * empty one taken from a pool in its stead. If the writer has fallen {@code queueBatches}
+ * behind, the full batch is dropped and counted rather than waited for. Write failures are
+ * counted too, and the writer goes on with the next batch. Thread safe.
+ */
+public class MeasurementExporter implements Closeable {
+
+    private final ExportWriter mWriter;
+    private final int mBatchRecords;
+    private final BlockingQueue<RecordBatch> mQueue;
+    private final BlockingQueue<RecordBatch> mFree;
+    private final RecordBatch mStop = new RecordBatch(1);
+    private final Thread mThread;
+    private final AtomicLong mWritten = new AtomicLong();
+    private RecordBatch mBatch;
+    private long mDropped = 0;
+    private int mFailures = 0;
+    private IOException mLastFailure;
+    private boolean mClosed = false;
+
+    /**
+     * @param writer       written to on the exporter thread only from now on, closed with this
+     * @param batchRecords records encoded and compressed together
+     * @param queueBatches full batches that may wait for the writer
+     */
+    public MeasurementExporter(ExportWriter writer, int batchRecords, int queueBatches) {
+        if (batchRecords < 1 || queueBatches < 1) {
+            throw new IllegalArgumentException("batchRecords and queueBatches must be positive");
+        }
+        mWriter = writer;
+        mBatchRecords = batchRecords;
+        mQueue = new ArrayBlockingQueue<>(queueBatches + 1);
+        mFree = new ArrayBlockingQueue<>(queueBatches + 2);
+        mBatch = new RecordBatch(batchRecords);
+        mThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                drain();
+            }
+        }, "exporter");
+        mThread.setPriority(Thread.MIN_PRIORITY);
+        mThread.setDaemon(true);
+        mThread.start();
+    }
+
+    /**
+     * @see com.cyh.wifiinforeader.eventlog.EventLog for what the arguments of each type hold
+     */
+    public synchronized void append(long timeMillis, int type, String key, int arg0, int arg1, long arg2) {
+        if (mClosed) {
+            return;
+        }
+        if (mBatch.add(timeMillis, type, key, arg0, arg1, arg2)) {
+            handOver(true);
+        }
+    }
+
+    /**
+     * Queues the records appended so far for writing, unless the writer is behind, without
+     * waiting for them to be written.
+     */
+    public synchronized void flush() {
+        if (!mClosed && mBatch.mSize > 0) {
+            handOver(false);
+        }
+    }
+
+    /**
+     * Writes what is still queued, stops the exporter thread and closes the writer.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (mClosed) {
+                return;
+            }
+            mClosed = true;
+            // handOver() always leaves a slot free, so this does not wait.
+            if (mBatch.mSize > 0) {
+                try {
+                    mQueue.put(mBatch);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+        try {
+            mQueue.put(mStop);
+            mThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        mWriter.close();
+    }
+
+    /**
+     * @return records written out
+     */
+    public long getWrittenCount() {
+        return mWritten.get();
+    }
+
+    /**
+     * @return records dropped because the writer was behind
+     */
+    public synchronized long getDroppedCount() {
+        return mDropped;
+    }
+
+    public synchronized int getFailureCount() {
+        return mFailures;
+    }
+
+    /**
+     * @return the last write failure, null if none
+     */
+    public synchronized IOException getLastFailure() {
+        return mLastFailure;
+    }
+
+    /**
+     * @param dropWhenBehind false to keep filling the batch if the queue is full
+     */
+    private void handOver(boolean dropWhenBehind) {
+        // One queue slot is kept back for the stop batch.
+        if (mQueue.remainingCapacity() > 1 && mQueue.offer(mBatch)) {
+            RecordBatch next = mFree.poll();
+            mBatch = next != null ? next : new RecordBatch(mBatchRecords);
+        } else if (dropWhenBehind) {
+            mDropped += mBatch.mSize;
+            mBatch.clear();
+        }
+    }
+
+    private void drain() {
+        while (true) {
+            RecordBatch batch;
+            try {
+                batch = mQueue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (batch == mStop) {
+                return;
+            }
+            try {
+                mWriter.write(batch);
+                mWritten.addAndGet(batch.mSize);
+            } catch (IOException e) {
+                failed(e);
+            }
+            batch.clear();
+            mFree.offer(batch);
+        }
+    }
+
+    private synchronized void failed(IOException e) {
+        mFailures++;
+        mLastFailure = e;
+    }
+}
@@ -0,0 +1,46 @@
+package com.cyh.wifiinforeader.export;
+
+/**
+ * Records waiting to be exported, column by column. Not thread safe, it is handed from the
+ * collecting thread to the writing one whole.
+ */
+final class RecordBatch {
+
+    final long[] mTimes;
+    final int[] mTypes;
+    final String[] mKeys;
+    final int[] mArg0;
+    final int[] mArg1;
+    final long[] mArg2;
+    int mSize;
+
+    RecordBatch(int capacity) {
+        mTimes = new long[capacity];
+        mTypes = new int[capacity];
+        mKeys = new String[capacity];
+        mArg0 = new int[capacity];
+        mArg1 = new int[capacity];
+        mArg2 = new long[capacity];
+    }
+
+    /**
+     * @return true if the batch is full now
+     */
+    boolean add(long timeMillis, int type, String key, int arg0, int arg1, long arg2) {
+        int i = mSize++;
+        mTimes[i] = timeMillis;
+        mTypes[i] = type;
+        mKeys[i] = key;
+        mArg0[i] = arg0;
+        mArg1[i] = arg1;
+        mArg2[i] = arg2;
+        return mSize == mTimes.length;
+    }
+
+    void clear() {
+        for (int i = 0; i < mSize; i++) {
+            mKeys[i] = null;
+        }
+        mSize = 0;
+    }
+}
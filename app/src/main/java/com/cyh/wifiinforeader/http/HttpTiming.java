@@ -0,0 +1,68 @@
+package com.cyh.wifiinforeader.http;
+
+/**
+ * Phase timings of one request made by {@link HttpTimingProbe}, all in microseconds.
+ * <p>
+ * DNS, connect and TLS are 0 when the request went over a kept-alive connection. TTFB runs
+ * from the request being written to the first response byte, total from the start of the DNS
+ * lookup (or the request, on a reused connection) to the last body byte.
+ */
+public class HttpTiming {
+
+    public enum Phase {
+        DNS, CONNECT, TLS, TTFB, TOTAL
+    }
+
+    private final int mStatus;
+    private final boolean mReused;
+    private final long mDnsMicros;
+    private final long mConnectMicros;
+    private final long mTlsMicros;
+    private final long mTtfbMicros;
+    private final long mTotalMicros;
+
+    public HttpTiming(int status, boolean reused, long dnsMicros, long connectMicros, long tlsMicros, long ttfbMicros, long totalMicros) {
+        mStatus = status;
+        mReused = reused;
+        mDnsMicros = dnsMicros;
+        mConnectMicros = connectMicros;
+        mTlsMicros = tlsMicros;
+        mTtfbMicros = ttfbMicros;
+        mTotalMicros = totalMicros;
+    }
+
+    public int getStatus() {
+        return mStatus;
+    }
+
+    /**
+     * @return whether the request reused the connection of an earlier one
+     */
+    public boolean isReused() {
+        return mReused;
+    }
+
+    public long get(Phase phase) {
+        switch (phase) {
+            case DNS:
+                return mDnsMicros;
+            case CONNECT:
+                return mConnectMicros;
+            case TLS:
+                return mTlsMicros;
+            case TTFB:
+                return mTtfbMicros;
+            case TOTAL:
+                return mTotalMicros;
+            default:
+                throw new IllegalArgumentException("Unknown phase " + phase);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "HTTP " + mStatus + (mReused ? " reused" : " new")
+                + " dns=" + mDnsMicros + " connect=" + mConnectMicros + " tls=" + mTlsMicros
+                + " ttfb=" + mTtfbMicros + " total=" + mTotalMicros + "us";
+    }
+}
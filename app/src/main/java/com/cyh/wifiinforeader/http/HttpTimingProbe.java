@@ -0,0 +1,285 @@
+package com.cyh.wifiinforeader.http;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.MalformedURLException;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLPeerUnverifiedException;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+
+/**
+ * Makes GET requests over a plain {@link Socket} so each phase can be timed on its own, which
+ * {@link java.net.HttpURLConnection} does not allow.
+ * <p>
+ * The connection is kept alive between requests unless the server closes it, so the first
+ * request of a run shows the cold cost and the rest the steady state. Not thread safe.
+ */
+public class HttpTimingProbe implements Closeable {
+
+    private static final int MAX_LINE = 8 * 1024;
+
+    private final String mHost;
+    private final int mPort;
+    private final String mPath;
+    private final boolean mTls;
+    private final int mTimeoutMillis;
+    private final SSLSocketFactory mSslSocketFactory;
+    private final HostnameVerifier mHostnameVerifier;
+
+    private Socket mSocket;
+    private InputStream mIn;
+    private OutputStream mOut;
+
+    private final StringBuilder mLine = new StringBuilder();
+    private final byte[] mSkip = new byte[4096];
+
+    public HttpTimingProbe(String url, int timeoutMillis) throws MalformedURLException {
+        this(url, timeoutMillis, (SSLSocketFactory) SSLSocketFactory.getDefault(),
+                HttpsURLConnection.getDefaultHostnameVerifier());
+    }
+
+    public HttpTimingProbe(String url, int timeoutMillis, SSLSocketFactory sslSocketFactory, HostnameVerifier hostnameVerifier) throws MalformedURLException {
+        URL parsed = new URL(url);
+        if (!"http".equals(parsed.getProtocol()) && !"https".equals(parsed.getProtocol())) {
+            throw new MalformedURLException("Not an http(s) url: " + url);
+        }
+        mTls = "https".equals(parsed.getProtocol());
+        mHost = parsed.getHost();
+        mPort = parsed.getPort() != -1 ? parsed.getPort() : parsed.getDefaultPort();
+        mPath = parsed.getFile().isEmpty() ? "/" : parsed.getFile();
+        mTimeoutMillis = timeoutMillis;
+        mSslSocketFactory = sslSocketFactory;
+        mHostnameVerifier = hostnameVerifier;
+    }
+
+    /**
+     * Makes {@code count} requests back to back.
+     */
+    public HttpTimingReport run(int count) throws IOException {
+        List<HttpTiming> timings = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            timings.add(request());
+        }
+        return new HttpTimingReport(timings);
+    }
+
+    /**
+     * Makes one request, opening a connection first if there is none to reuse.
+     */
+    public HttpTiming request() throws IOException {
+        final long start = System.nanoTime();
+        long dns = 0;
+        long connect = 0;
+        long tls = 0;
+        boolean reused = mSocket != null;
+        try {
+            if (!reused) {
+                InetAddress address = InetAddress.getByName(mHost);
+                long resolved = System.nanoTime();
+                dns = resolved - start;
+
+                Socket socket = new Socket();
+                socket.setTcpNoDelay(true);
+                socket.setSoTimeout(mTimeoutMillis);
+                socket.connect(new InetSocketAddress(address, mPort), mTimeoutMillis);
+                long connected = System.nanoTime();
+                connect = connected - resolved;
+
+                if (mTls) {
+                    SSLSocket sslSocket = (SSLSocket) mSslSocketFactory.createSocket(socket, mHost, mPort, true);
+                    sslSocket.startHandshake();
+                    if (!mHostnameVerifier.verify(mHost, sslSocket.getSession())) {
+                        sslSocket.close();
+                        throw new SSLPeerUnverifiedException("Hostname " + mHost + " not verified");
+                    }
+                    socket = sslSocket;
+                    tls = System.nanoTime() - connected;
+                }
+                mSocket = socket;
+                mIn = new BufferedInputStream(socket.getInputStream());
+                mOut = socket.getOutputStream();
+            }
+
+            long sent = System.nanoTime();
+            int first;
+            try {
+                writeRequest();
+                first = mIn.read();
+            } catch (IOException e) {
+                first = -1;
+                if (!reused || e instanceof SocketTimeoutException) {
+                    throw e;
+                }
+            }
+            if (first == -1) {
+                if (reused) {
+                    // The server dropped the idle connection, that is not the target failing.
+                    close();
+                    return request();
+                }
+                throw new EOFException("Connection closed before response");
+            }
+            long ttfb = System.nanoTime() - sent;
+
+            int status = readResponse(first);
+            long total = System.nanoTime() - start;
+            return new HttpTiming(status, reused, dns / 1000, connect / 1000, tls / 1000, ttfb / 1000, total / 1000);
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() {
+        if (mSocket != null) {
+            try {
+                mSocket.close();
+            } catch (IOException ignored) {
+            }
+        }
+        mSocket = null;
+        mIn = null;
+        mOut = null;
+    }
+
+    private void writeRequest() throws IOException {
+        String hostHeader = mPort == (mTls ? 443 : 80) ? mHost : mHost + ":" + mPort;
+        String request = "GET " + mPath + " HTTP/1.1\r\n"
+                + "Host: " + hostHeader + "\r\n"
+                + "Connection: keep-alive\r\n"
+                + "Accept-Encoding: identity\r\n"
+                + "\r\n";
+        mOut.write(request.getBytes("US-ASCII"));
+        mOut.flush();
+    }
+
+    /**
+     * Reads status line, headers and body, leaving the stream at the next response.
+     */
+    private int readResponse(int first) throws IOException {
+        String statusLine = readLine(first);
+        // HTTP/1.1 200 OK
+        int space = statusLine.indexOf(' ');
+        if (!statusLine.startsWith("HTTP/") || space < 0 || statusLine.length() < space + 4) {
+            throw new IOException("Bad status line: " + statusLine);
+        }
+        int status;
+        try {
+            status = Integer.parseInt(statusLine.substring(space + 1, space + 4));
+        } catch (NumberFormatException e) {
+            throw new IOException("Bad status line: " + statusLine);
+        }
+        boolean http10 = statusLine.startsWith("HTTP/1.0");
+
+        long contentLength = -1;
+        boolean chunked = false;
+        boolean close = http10;
+        String header;
+        while (!(header = readLine(mIn.read())).isEmpty()) {
+            int colon = header.indexOf(':');
+            if (colon < 0) {
+                continue;
+            }
+            String name = header.substring(0, colon).trim();
+            String value = header.substring(colon + 1).trim();
+            if ("Content-Length".equalsIgnoreCase(name)) {
+                contentLength = Long.parseLong(value);
+            } else if ("Transfer-Encoding".equalsIgnoreCase(name)) {
+                chunked = value.toLowerCase(Locale.US).contains("chunked");
+            } else if ("Connection".equalsIgnoreCase(name)) {
+                if ("close".equalsIgnoreCase(value)) {
+                    close = true;
+                } else if ("keep-alive".equalsIgnoreCase(value)) {
+                    close = false;
+                }
+            }
+        }
+
+        if (status == 204 || status == 304 || (status >= 100 && status < 200)) {
+            contentLength = 0;
+        }
+        if (chunked) {
+            readChunked();
+        } else if (contentLength >= 0) {
+            skip(contentLength);
+        } else {
+            // No framing, the body runs to the end of the connection.
+            skip(Long.MAX_VALUE);
+            close = true;
+        }
+        if (close) {
+            close();
+        }
+        return status;
+    }
+
+    private void readChunked() throws IOException {
+        while (true) {
+            String sizeLine = readLine(mIn.read());
+            int semicolon = sizeLine.indexOf(';');
+            String hex = (semicolon < 0 ? sizeLine : sizeLine.substring(0, semicolon)).trim();
+            long size;
+            try {
+                size = Long.parseLong(hex, 16);
+            } catch (NumberFormatException e) {
+                throw new IOException("Bad chunk size: " + sizeLine);
+            }
+            if (size == 0) {
+                // Trailers up to the final empty line.
+                while (!readLine(mIn.read()).isEmpty()) {
+                }
+                return;
+            }
+            skip(size);
+            readLine(mIn.read());
+        }
+    }
+
+    private void skip(long count) throws IOException {
+        long remaining = count;
+        while (remaining > 0) {
+            int read = mIn.read(mSkip, 0, (int) Math.min(mSkip.length, remaining));
+            if (read == -1) {
+                if (count == Long.MAX_VALUE) {
+                    return;
+                }
+                throw new EOFException("Body truncated");
+            }
+            remaining -= read;
+        }
+    }
+
+    private String readLine(int first) throws IOException {
+        mLine.setLength(0);
+        int b = first;
+        while (b != '\n') {
+            if (b == -1) {
+                throw new EOFException("Connection closed mid line");
+            }
+            if (b != '\r') {
+                if (mLine.length() == MAX_LINE) {
+                    throw new IOException("Line too long");
+                }
+                mLine.append((char) b);
+            }
+            b = mIn.read();
+        }
+        return mLine.toString();
+    }
+}
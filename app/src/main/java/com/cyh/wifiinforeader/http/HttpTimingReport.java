@@ -0,0 +1,104 @@
+package com.cyh.wifiinforeader.http;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The timings of a run of requests, split into cold (new connection) and warm (reused
+ * connection) so connection setup cost can be told apart from steady state latency.
+ */
+public class HttpTimingReport {
+
+    private final List<HttpTiming> mTimings;
+
+    public HttpTimingReport(List<HttpTiming> timings) {
+        mTimings = Collections.unmodifiableList(new ArrayList<>(timings));
+    }
+
+    public List<HttpTiming> getTimings() {
+        return mTimings;
+    }
+
+    public int getColdCount() {
+        int count = 0;
+        for (HttpTiming timing : mTimings) {
+            if (!timing.isReused()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public int getWarmCount() {
+        return mTimings.size() - getColdCount();
+    }
+
+    /**
+     * @return the first request, it always pays for DNS, connect and TLS; null if there was none
+     */
+    public HttpTiming getFirst() {
+        return mTimings.isEmpty() ? null : mTimings.get(0);
+    }
+
+    /**
+     * @return whether every request got a 2xx status
+     */
+    public boolean isAllSuccessful() {
+        for (HttpTiming timing : mTimings) {
+            if (timing.getStatus() < 200 || timing.getStatus() >= 300) {
+                return false;
+            }
+        }
+        return !mTimings.isEmpty();
+    }
+
+    /**
+     * Nearest-rank percentile of {@code phase}.
+     *
+     * @param percentile 0 to 100, e.g. 50, 95, 99
+     * @param warmOnly   only count requests over a reused connection
+     * @return the percentile in microseconds, -1 if no request matches
+     */
+    public long percentile(HttpTiming.Phase phase, double percentile, boolean warmOnly) {
+        long[] values = new long[mTimings.size()];
+        int count = 0;
+        for (HttpTiming timing : mTimings) {
+            if (!warmOnly || timing.isReused()) {
+                values[count++] = timing.get(phase);
+            }
+        }
+        if (count == 0) {
+            return -1;
+        }
+        Arrays.sort(values, 0, count);
+        int rank = (int) Math.ceil(percentile / 100d * count);
+        return values[Math.min(Math.max(rank, 1), count) - 1];
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        HttpTiming first = getFirst();
+        if (first != null) {
+            sb.append("cold ").append(millis(first.get(HttpTiming.Phase.TOTAL)))
+                    .append(" ms (dns ").append(millis(first.get(HttpTiming.Phase.DNS)))
+                    .append(", tcp ").append(millis(first.get(HttpTiming.Phase.CONNECT)))
+                    .append(", tls ").append(millis(first.get(HttpTiming.Phase.TLS)))
+                    .append(", ttfb ").append(millis(first.get(HttpTiming.Phase.TTFB))).append(')');
+        }
+        if (getWarmCount() > 0) {
+            sb.append(", warm p50/p95/p99 ")
+                    .append(millis(percentile(HttpTiming.Phase.TOTAL, 50, true))).append('/')
+                    .append(millis(percentile(HttpTiming.Phase.TOTAL, 95, true))).append('/')
+                    .append(millis(percentile(HttpTiming.Phase.TOTAL, 99, true))).append(" ms");
+        }
+        return sb.toString();
+    }
+
+    private static String millis(long micros) {
+        long tenths = (micros + 50) / 100;
+        return (tenths / 10) + "." + (tenths % 10);
+    }
+}
@@ -0,0 +1,37 @@
+package com.cyh.wifiinforeader.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A monotonic count, striped so threads adding at once do not fight over one cache line.
+ * Adding is one atomic add on the calling thread's stripe; reading sums the stripes.
+ * Thread safe.
+ */
+public final class Counter {
+
+    private static final int STRIDE = Stripes.stride(1);
+
+    private final AtomicLongArray mCells = new AtomicLongArray(Stripes.COUNT * STRIDE);
+
+    Counter() {
+    }
+
+    public void increment() {
+        mCells.getAndIncrement(Stripes.index() * STRIDE);
+    }
+
+    public void add(long delta) {
+        mCells.getAndAdd(Stripes.index() * STRIDE, delta);
+    }
+
+    /**
+     * @return the sum so far, adds racing with the read may or may not be in it
+     */
+    public long get() {
+        long sum = 0;
+        for (int stripe = 0; stripe < Stripes.COUNT; stripe++) {
+            sum += mCells.get(stripe * STRIDE);
+        }
+        return sum;
+    }
+}
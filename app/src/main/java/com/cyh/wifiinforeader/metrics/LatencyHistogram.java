@@ -0,0 +1,131 @@
+package com.cyh.wifiinforeader.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Latencies in microseconds, in log-linear buckets the way HdrHistogram lays them out: values
+ * below 8 get a bucket each, every power of two above is split into 8 equal buckets, so a
+ * bucket is never wider than 1/8 of its values. Values from 2^32 us, a little over an hour, on
+ * share one overflow bucket.
+ * <p>
+ * The bucket is found with a leading-zeros count and two shifts; recording is that plus two
+ * atomic adds, bucket and sum, on the calling thread's stripe, and allocates nothing. Reads sum
+ * the stripes. Thread safe.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int MAX_EXPONENT = 31;
+    /** Buckets including the overflow one. */
+    public static final int BUCKET_COUNT = ((MAX_EXPONENT - SUB_BITS + 2) << SUB_BITS) + 1;
+    private static final int SUM = BUCKET_COUNT;
+    private static final int STRIDE = Stripes.stride(BUCKET_COUNT + 1);
+
+    private final AtomicLongArray mCells = new AtomicLongArray(Stripes.COUNT * STRIDE);
+
+    LatencyHistogram() {
+    }
+
+    /**
+     * @param micros negative values count as 0
+     */
+    public void record(long micros) {
+        if (micros < 0) {
+            micros = 0;
+        }
+        int base = Stripes.index() * STRIDE;
+        mCells.getAndIncrement(base + bucketOf(micros));
+        mCells.getAndAdd(base + SUM, micros);
+    }
+
+    public void recordNanos(long nanos) {
+        record(nanos / 1000);
+    }
+
+    /**
+     * @param out receives the count of every bucket, at least {@link #BUCKET_COUNT} long
+     * @return the sum of the values, in microseconds
+     */
+    public long snapshot(long[] out) {
+        long sum = 0;
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            out[bucket] = 0;
+        }
+        for (int stripe = 0; stripe < Stripes.COUNT; stripe++) {
+            int base = stripe * STRIDE;
+            for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+                out[bucket] += mCells.get(base + bucket);
+            }
+            sum += mCells.get(base + SUM);
+        }
+        return sum;
+    }
+
+    public long getCount() {
+        long count = 0;
+        for (int stripe = 0; stripe < Stripes.COUNT; stripe++) {
+            int base = stripe * STRIDE;
+            for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+                count += mCells.get(base + bucket);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @param fraction 0.5 for the median
+     * @return the upper bound of the bucket holding that quantile of {@code counts}, a
+     * {@link #snapshot} result; -1 if it is empty, {@link Long#MAX_VALUE} for the overflow bucket
+     */
+    public static long quantile(long[] counts, double fraction) {
+        long total = 0;
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            total += counts[bucket];
+        }
+        if (total == 0) {
+            return -1;
+        }
+        long rank = Math.max(1, (long) Math.ceil(fraction * total));
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            seen += counts[bucket];
+            if (seen >= rank) {
+                return upperBound(bucket);
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * @param micros at least 0
+     * @return the bucket {@code micros} is counted in
+     */
+    public static int bucketOf(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKET_COUNT - 1;
+        }
+        return ((exponent - SUB_BITS + 1) << SUB_BITS)
+                | (int) ((micros >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1));
+    }
+
+    /**
+     * @return the largest value, in microseconds, that lands in {@code bucket};
+     * {@link Long#MAX_VALUE} for the overflow bucket
+     */
+    public static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        if (bucket >= BUCKET_COUNT - 1) {
+            return Long.MAX_VALUE;
+        }
+        int shift = (bucket >> SUB_BITS) - 1;
+        long lower = (long) (SUB_BUCKETS + (bucket & (SUB_BUCKETS - 1))) << shift;
+        return lower + (1L << shift) - 1;
+    }
+}
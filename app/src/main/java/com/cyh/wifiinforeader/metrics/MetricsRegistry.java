@@ -0,0 +1,183 @@
+package com.cyh.wifiinforeader.metrics;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Named {@link Counter}s and {@link LatencyHistogram}s, exported in the Prometheus text
+ * exposition format.
+ * <p>
+ * Metrics are looked up once, when their owner is built, and recorded to through the returned
+ * handle; asking again for the same name and labels returns the same metric. Histograms are
+ * exported in seconds, with cumulative buckets at every power of two microseconds.
+ * Thread safe.
+ */
+public class MetricsRegistry {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final String COUNTER = "counter";
+    private static final String HISTOGRAM = "histogram";
+
+    private final Map<String, Family> mFamilies = new LinkedHashMap<>();
+    private long[] mCounts;
+
+    /**
+     * @param name   Prometheus metric name, counters should end in {@code _total}
+     * @param labels label pairs as they appear between the braces, {@code type="rssi"}; empty
+     *               for none
+     */
+    public synchronized Counter counter(String name, String labels, String help) {
+        return (Counter) family(name, COUNTER, help).get(labels);
+    }
+
+    public Counter counter(String name, String help) {
+        return counter(name, "", help);
+    }
+
+    /**
+     * @param name   Prometheus metric name, ending in {@code _seconds}
+     * @param labels as for {@link #counter(String, String, String)}
+     */
+    public synchronized LatencyHistogram histogram(String name, String labels, String help) {
+        return (LatencyHistogram) family(name, HISTOGRAM, help).get(labels);
+    }
+
+    public LatencyHistogram histogram(String name, String help) {
+        return histogram(name, "", help);
+    }
+
+    /**
+     * Appends every metric in the Prometheus text format, families in registration order.
+     */
+    public synchronized void format(StringBuilder out) {
+        if (mCounts == null) {
+            mCounts = new long[LatencyHistogram.BUCKET_COUNT];
+        }
+        for (Family family : mFamilies.values()) {
+            out.append("# HELP ").append(family.mName).append(' ').append(family.mHelp).append('\n');
+            out.append("# TYPE ").append(family.mName).append(' ').append(family.mType).append('\n');
+            for (Map.Entry<String, Object> metric : family.mMetrics.entrySet()) {
+                if (metric.getValue() instanceof Counter) {
+                    appendName(out, family.mName, "", metric.getKey(), null);
+                    out.append(' ').append(((Counter) metric.getValue()).get()).append('\n');
+                } else {
+                    formatHistogram(out, family.mName, metric.getKey(), (LatencyHistogram) metric.getValue());
+                }
+            }
+        }
+    }
+
+    /**
+     * Replaces {@code file} with the current values. The text is written next to it first and
+     * renamed over it, so a reader never sees half an export.
+     */
+    public void export(File file) throws IOException {
+        StringBuilder text = new StringBuilder(4096);
+        format(text);
+        File temp = new File(file.getPath() + ".tmp");
+        Writer writer = new OutputStreamWriter(new FileOutputStream(temp), UTF_8);
+        try {
+            writer.append(text);
+        } finally {
+            writer.close();
+        }
+        if (!temp.renameTo(file)) {
+            throw new IOException("Cannot rename " + temp + " to " + file);
+        }
+    }
+
+    private void formatHistogram(StringBuilder out, String name, String labels, LatencyHistogram histogram) {
+        long sum = histogram.snapshot(mCounts);
+        long cumulative = 0;
+        for (int bucket = 0; bucket < LatencyHistogram.BUCKET_COUNT - 1; bucket++) {
+            cumulative += mCounts[bucket];
+            long bound = LatencyHistogram.upperBound(bucket);
+            // One line per power of two, the buckets in between are too many to export.
+            if ((bound & (bound + 1)) == 0) {
+                appendName(out, name, "_bucket", labels, "");
+                appendSeconds(out, bound);
+                out.append("\"} ").append(cumulative).append('\n');
+            }
+        }
+        cumulative += mCounts[LatencyHistogram.BUCKET_COUNT - 1];
+        appendName(out, name, "_bucket", labels, "");
+        out.append("+Inf\"} ").append(cumulative).append('\n');
+        appendName(out, name, "_sum", labels, null);
+        out.append(' ');
+        appendSeconds(out, sum);
+        out.append('\n');
+        appendName(out, name, "_count", labels, null);
+        out.append(' ').append(cumulative).append('\n');
+    }
+
+    /**
+     * @param le null for no {@code le} label, otherwise the label is left open for its value
+     */
+    private static void appendName(StringBuilder out, String name, String suffix, String labels, String le) {
+        out.append(name).append(suffix);
+        if (le != null) {
+            out.append('{').append(labels).append(labels.isEmpty() ? "" : ",").append("le=\"");
+        } else if (!labels.isEmpty()) {
+            out.append('{').append(labels).append('}');
+        }
+    }
+
+    /**
+     * Appends {@code micros} as seconds in plain decimal, trailing zeros dropped.
+     */
+    static void appendSeconds(StringBuilder out, long micros) {
+        out.append(micros / 1000000);
+        long fraction = micros % 1000000;
+        if (fraction == 0) {
+            return;
+        }
+        out.append('.');
+        for (long digit = 100000; digit > fraction; digit /= 10) {
+            out.append('0');
+        }
+        while (fraction % 10 == 0) {
+            fraction /= 10;
+        }
+        out.append(fraction);
+    }
+
+    private Family family(String name, String type, String help) {
+        Family family = mFamilies.get(name);
+        if (family == null) {
+            family = new Family(name, type, help);
+            mFamilies.put(name, family);
+        } else if (!family.mType.equals(type)) {
+            throw new IllegalArgumentException(name + " is a " + family.mType);
+        }
+        return family;
+    }
+
+    private static final class Family {
+        final String mName;
+        final String mType;
+        final String mHelp;
+        final Map<String, Object> mMetrics = new LinkedHashMap<>();
+
+        Family(String name, String type, String help) {
+            mName = name;
+            mType = type;
+            mHelp = help;
+        }
+
+        Object get(String labels) {
+            Object metric = mMetrics.get(labels);
+            if (metric == null) {
+                metric = mType.equals(COUNTER) ? new Counter() : new LatencyHistogram();
+                mMetrics.put(labels, metric);
+            }
+            return metric;
+        }
+    }
+}
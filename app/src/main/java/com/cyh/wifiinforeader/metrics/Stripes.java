@@ -0,0 +1,35 @@
+package com.cyh.wifiinforeader.metrics;
+
+/**
+ * Picks the stripe of a striped cell array for the calling thread. Thread ids are handed out
+ * in sequence, so the few threads of this app land on different stripes and rarely contend.
+ */
+final class Stripes {
+
+    /** A power of two, at least the number of processors up to 8. */
+    static final int COUNT;
+    /** Longs in a 64 byte cache line, kept between stripes so they do not share one. */
+    static final int LINE = 8;
+
+    static {
+        int count = 1;
+        while (count < Runtime.getRuntime().availableProcessors() && count < 8) {
+            count <<= 1;
+        }
+        COUNT = count;
+    }
+
+    private Stripes() {
+    }
+
+    static int index() {
+        return (int) Thread.currentThread().getId() & (COUNT - 1);
+    }
+
+    /**
+     * @return the stride between stripes of {@code cells} longs, whole cache lines plus one
+     */
+    static int stride(int cells) {
+        return ((cells + LINE - 1) / LINE + 1) * LINE;
+    }
+}
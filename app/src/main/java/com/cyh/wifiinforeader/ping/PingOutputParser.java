@@ -0,0 +1,277 @@
+package com.cyh.wifiinforeader.ping;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Incremental parser for the stdout of {@code /system/bin/ping}.
+ * <p>
+ * Bytes are fed as they arrive from the process and each completed line is matched by hand
+ * against the three line shapes we care about, without building a {@link String} per line:
+ * <p>
+ * 64 bytes from 180.97.33.108: icmp_seq=1 ttl=54 time=58.6 ms<br/>
+ * 20 packets transmitted, 20 received, 0% packet loss, time 19028ms<br/>
+ * rtt min/avg/max/mdev = 58.674/58.674/58.674/0.000 ms<br/>
+ * <p>
+ * All times are reported in microseconds. Not thread safe, one instance per ping process.
+ */
+public class PingOutputParser {
+
+    /**
+     * Receives the typed records parsed out of the ping output.
+     */
+    public interface Listener {
+
+        /**
+         * One echo reply, {@code ttl} is -1 when the line does not carry one.
+         */
+        void onReply(int seq, int ttl, long rttMicros);
+
+        /**
+         * The "packets transmitted" summary line.
+         */
+        void onLoss(int transmitted, int received, double lossPercent, long timeMillis);
+
+        /**
+         * The "min/avg/max/mdev" line, {@code mdevMicros} is -1 when the ping flavour omits it.
+         */
+        void onRtt(long minMicros, long avgMicros, long maxMicros, long mdevMicros);
+    }
+
+    private static final byte[] BYTES_FROM = ascii(" bytes from ");
+    // Matches both "icmp_seq=" and the busybox "seq=".
+    private static final byte[] SEQ = ascii("seq=");
+    private static final byte[] TTL = ascii("ttl=");
+    private static final byte[] TIME = ascii("time=");
+    private static final byte[] TRANSMITTED = ascii(" packets transmitted, ");
+    private static final byte[] PACKET_LOSS = ascii("% packet loss");
+    private static final byte[] COMMA_TIME = ascii(", time ");
+    private static final byte[] MIN_AVG_MAX = ascii("min/avg/max");
+
+    private final Listener mListener;
+
+    private byte[] mLine = new byte[256];
+    private int mLineLength = 0;
+
+    /** Cursor shared by the number scanners, avoids returning a pair from each of them. */
+    private int mPos;
+
+    public PingOutputParser(Listener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * Drains {@code in} until end of stream, parsing lines as soon as they are complete.
+     */
+    public void parse(InputStream in) throws IOException {
+        byte[] buff = new byte[1024];
+        int length;
+        while (-1 != (length = in.read(buff, 0, buff.length))) {
+            feed(buff, 0, length);
+        }
+        finish();
+    }
+
+    /**
+     * Feeds the next chunk of output. Partial lines are kept until their newline arrives.
+     */
+    public void feed(byte[] buff, int offset, int length) {
+        final int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            byte b = buff[i];
+            if (b == '\n') {
+                parseLine(mLine, mLineLength);
+                mLineLength = 0;
+            } else if (b != '\r') {
+                if (mLineLength == mLine.length) {
+                    byte[] grown = new byte[mLine.length * 2];
+                    System.arraycopy(mLine, 0, grown, 0, mLineLength);
+                    mLine = grown;
+                }
+                mLine[mLineLength++] = b;
+            }
+        }
+    }
+
+    /**
+     * Flushes a trailing line that was not terminated by a newline.
+     */
+    public void finish() {
+        if (mLineLength > 0) {
+            parseLine(mLine, mLineLength);
+            mLineLength = 0;
+        }
+    }
+
+    private void parseLine(byte[] line, int length) {
+        if (length == 0) {
+            return;
+        }
+        if (isDigit(line[0])) {
+            if (indexOf(line, length, BYTES_FROM, 0) >= 0) {
+                parseReply(line, length);
+            } else if (indexOf(line, length, TRANSMITTED, 0) >= 0) {
+                parseLoss(line, length);
+            }
+        } else if (indexOf(line, length, MIN_AVG_MAX, 0) >= 0) {
+            parseRtt(line, length);
+        }
+    }
+
+    private void parseReply(byte[] line, int length) {
+        int seqAt = indexOf(line, length, SEQ, 0);
+        int timeAt = indexOf(line, length, TIME, 0);
+        if (seqAt < 0 || timeAt < 0) {
+            return;
+        }
+        mPos = seqAt + SEQ.length;
+        int seq = (int) parseLong(line, length);
+        if (seq < 0) {
+            return;
+        }
+        int ttl = -1;
+        int ttlAt = indexOf(line, length, TTL, mPos);
+        if (ttlAt >= 0) {
+            mPos = ttlAt + TTL.length;
+            ttl = (int) parseLong(line, length);
+        }
+        mPos = timeAt + TIME.length;
+        long rtt = parseMillisAsMicros(line, length);
+        if (rtt < 0) {
+            return;
+        }
+        mListener.onReply(seq, ttl, rtt);
+    }
+
+    private void parseLoss(byte[] line, int length) {
+        mPos = 0;
+        long transmitted = parseLong(line, length);
+        int transmittedAt = indexOf(line, length, TRANSMITTED, mPos);
+        if (transmitted < 0 || transmittedAt < 0) {
+            return;
+        }
+        // "3 received" on linux, "3 packets received" on bsd, either way the next number.
+        mPos = transmittedAt + TRANSMITTED.length;
+        long received = parseLong(line, length);
+        int lossAt = indexOf(line, length, PACKET_LOSS, mPos);
+        if (received < 0 || lossAt < 0) {
+            return;
+        }
+        // Skip "+5 errors" or "+1 duplicates" by reading the number right in front of the '%'.
+        int lossStart = lossAt;
+        while (lossStart > 0 && (isDigit(line[lossStart - 1]) || line[lossStart - 1] == '.')) {
+            lossStart--;
+        }
+        mPos = lossStart;
+        double loss = parseMillisAsMicros(line, lossAt) / 1000d;
+
+        long time = -1;
+        int timeAt = indexOf(line, length, COMMA_TIME, lossAt);
+        if (timeAt >= 0) {
+            mPos = timeAt + COMMA_TIME.length;
+            time = parseLong(line, length);
+        }
+        mListener.onLoss((int) transmitted, (int) received, loss, time);
+    }
+
+    private void parseRtt(byte[] line, int length) {
+        int eq = -1;
+        for (int i = 0; i < length; i++) {
+            if (line[i] == '=') {
+                eq = i;
+                break;
+            }
+        }
+        if (eq < 0) {
+            return;
+        }
+        mPos = eq + 1;
+        while (mPos < length && line[mPos] == ' ') {
+            mPos++;
+        }
+        long min = parseMillisAsMicros(line, length);
+        long avg = nextRttField(line, length);
+        long max = nextRttField(line, length);
+        if (min < 0 || avg < 0 || max < 0) {
+            return;
+        }
+        long mdev = nextRttField(line, length);
+        mListener.onRtt(min, avg, max, mdev);
+    }
+
+    private long nextRttField(byte[] line, int length) {
+        if (mPos >= length || line[mPos] != '/') {
+            return -1;
+        }
+        mPos++;
+        return parseMillisAsMicros(line, length);
+    }
+
+    /**
+     * Scans an unsigned integer at {@link #mPos}, returns -1 if there is none.
+     */
+    private long parseLong(byte[] line, int length) {
+        int i = mPos;
+        long value = 0;
+        while (i < length && isDigit(line[i])) {
+            value = value * 10 + (line[i] - '0');
+            i++;
+        }
+        if (i == mPos) {
+            return -1;
+        }
+        mPos = i;
+        return value;
+    }
+
+    /**
+     * Scans a decimal millisecond value such as {@code 58.674} at {@link #mPos} and returns it in
+     * microseconds, digits beyond the third decimal are truncated. Returns -1 if there is none.
+     */
+    private long parseMillisAsMicros(byte[] line, int length) {
+        long whole = parseLong(line, length);
+        if (whole < 0) {
+            return -1;
+        }
+        long micros = whole * 1000;
+        if (mPos < length && line[mPos] == '.') {
+            int i = mPos + 1;
+            int scale = 100;
+            while (i < length && isDigit(line[i])) {
+                if (scale > 0) {
+                    micros += (line[i] - '0') * scale;
+                    scale /= 10;
+                }
+                i++;
+            }
+            mPos = i;
+        }
+        return micros;
+    }
+
+    private static int indexOf(byte[] line, int length, byte[] token, int from) {
+        final int last = length - token.length;
+        outer:
+        for (int i = Math.max(from, 0); i <= last; i++) {
+            for (int j = 0; j < token.length; j++) {
+                if (line[i + j] != token[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    private static byte[] ascii(String s) {
+        byte[] bytes = new byte[s.length()];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) s.charAt(i);
+        }
+        return bytes;
+    }
+}
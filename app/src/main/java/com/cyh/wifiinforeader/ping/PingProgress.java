@@ -0,0 +1,68 @@
+package com.cyh.wifiinforeader.ping;
+
+/**
+ * Running totals of a ping session, written by the reading thread and read by the UI.
+ * <p>
+ * {@link #add(int, long)} returns true only for the first sample after the last
+ * {@link #snapshot()}, so the writer posts at most one UI update however fast replies arrive;
+ * the UI then renders whatever is current when it gets to run.
+ */
+public class PingProgress {
+
+    private int mReplies = 0;
+    private int mLastSeq = -1;
+    private long mLastRttMicros = -1;
+    private long mMinRttMicros = Long.MAX_VALUE;
+    private long mMaxRttMicros = -1;
+    private long mSumRttMicros = 0;
+    private boolean mPending = false;
+
+    /**
+     * @return whether the caller should schedule a render
+     */
+    public synchronized boolean add(int seq, long rttMicros) {
+        mReplies++;
+        mLastSeq = seq;
+        mLastRttMicros = rttMicros;
+        mMinRttMicros = Math.min(mMinRttMicros, rttMicros);
+        mMaxRttMicros = Math.max(mMaxRttMicros, rttMicros);
+        mSumRttMicros += rttMicros;
+        if (mPending) {
+            return false;
+        }
+        mPending = true;
+        return true;
+    }
+
+    public synchronized void reset() {
+        mReplies = 0;
+        mLastSeq = -1;
+        mLastRttMicros = -1;
+        mMinRttMicros = Long.MAX_VALUE;
+        mMaxRttMicros = -1;
+        mSumRttMicros = 0;
+        mPending = false;
+    }
+
+    /**
+     * Formats the current totals and clears the pending flag.
+     */
+    public synchronized String snapshot() {
+        mPending = false;
+        if (mReplies == 0) {
+            return "";
+        }
+        return "#" + mLastSeq + " " + formatMillis(mLastRttMicros) + " ms (" + mReplies + " replies, min/avg/max "
+                + formatMillis(mMinRttMicros) + "/" + formatMillis(mSumRttMicros / mReplies) + "/"
+                + formatMillis(mMaxRttMicros) + " ms)";
+    }
+
+    public synchronized int getReplies() {
+        return mReplies;
+    }
+
+    static String formatMillis(long micros) {
+        long tenths = (micros + 50) / 100;
+        return (tenths / 10) + "." + (tenths % 10);
+    }
+}
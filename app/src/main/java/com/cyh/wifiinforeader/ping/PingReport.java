@@ -0,0 +1,134 @@
+package com.cyh.wifiinforeader.ping;
+
+import java.util.Arrays;
+
+/**
+ * Collects everything {@link PingOutputParser} reports for one ping run.
+ * <p>
+ * Replies are kept in primitive columns so a run of a few hundred probes does not box anything.
+ */
+public class PingReport implements PingOutputParser.Listener {
+
+    private int[] mSeq = new int[32];
+    private int[] mTtl = new int[32];
+    private long[] mRttMicros = new long[32];
+    private int mReplyCount = 0;
+
+    private int mTransmitted = -1;
+    private int mReceived = -1;
+    private double mLossPercent = -1;
+    private long mTimeMillis = -1;
+
+    private long mMinMicros = -1;
+    private long mAvgMicros = -1;
+    private long mMaxMicros = -1;
+    private long mMdevMicros = -1;
+
+    @Override
+    public void onReply(int seq, int ttl, long rttMicros) {
+        if (mReplyCount == mSeq.length) {
+            int capacity = mSeq.length * 2;
+            mSeq = Arrays.copyOf(mSeq, capacity);
+            mTtl = Arrays.copyOf(mTtl, capacity);
+            mRttMicros = Arrays.copyOf(mRttMicros, capacity);
+        }
+        mSeq[mReplyCount] = seq;
+        mTtl[mReplyCount] = ttl;
+        mRttMicros[mReplyCount] = rttMicros;
+        mReplyCount++;
+    }
+
+    @Override
+    public void onLoss(int transmitted, int received, double lossPercent, long timeMillis) {
+        mTransmitted = transmitted;
+        mReceived = received;
+        mLossPercent = lossPercent;
+        mTimeMillis = timeMillis;
+    }
+
+    @Override
+    public void onRtt(long minMicros, long avgMicros, long maxMicros, long mdevMicros) {
+        mMinMicros = minMicros;
+        mAvgMicros = avgMicros;
+        mMaxMicros = maxMicros;
+        mMdevMicros = mdevMicros;
+    }
+
+    public int getReplyCount() {
+        return mReplyCount;
+    }
+
+    public int getSeq(int index) {
+        return mSeq[index];
+    }
+
+    public int getTtl(int index) {
+        return mTtl[index];
+    }
+
+    public long getRttMicros(int index) {
+        return mRttMicros[index];
+    }
+
+    /**
+     * @return whether the "packets transmitted" summary line was seen
+     */
+    public boolean hasLoss() {
+        return mTransmitted >= 0;
+    }
+
+    public int getTransmitted() {
+        return mTransmitted;
+    }
+
+    public int getReceived() {
+        return mReceived;
+    }
+
+    public double getLossPercent() {
+        return mLossPercent;
+    }
+
+    public long getTimeMillis() {
+        return mTimeMillis;
+    }
+
+    /**
+     * @return whether the "min/avg/max" line was seen
+     */
+    public boolean hasRtt() {
+        return mMinMicros >= 0;
+    }
+
+    public long getMinMicros() {
+        return mMinMicros;
+    }
+
+    public long getAvgMicros() {
+        return mAvgMicros;
+    }
+
+    public long getMaxMicros() {
+        return mMaxMicros;
+    }
+
+    public long getMdevMicros() {
+        return mMdevMicros;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("replies=").append(mReplyCount);
+        if (hasLoss()) {
+            sb.append(" transmitted=").append(mTransmitted)
+                    .append(" received=").append(mReceived)
+                    .append(" loss=").append(mLossPercent).append('%');
+        }
+        if (hasRtt()) {
+            sb.append(" rtt=").append(mMinMicros).append('/').append(mAvgMicros)
+                    .append('/').append(mMaxMicros).append('/').append(mMdevMicros).append("us");
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,156 @@
+package com.cyh.wifiinforeader.ping;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.Executor;
+
+/**
+ * One run of the {@code ping} binary whose stdout is parsed on an {@link Executor} while the
+ * process is still running, so every reply reaches the {@link Callback} about one probe
+ * interval after it was sent instead of after the whole run.
+ * <p>
+ * Callbacks are made on the executor thread. Once {@link #cancel()} is called no further
+ * callbacks are made.
+ */
+public class PingSession implements Runnable {
+
+    /**
+     * Starts the ping process, replaced in tests.
+     */
+    public interface ProcessStarter {
+        Process start(String[] command) throws IOException;
+    }
+
+    public interface Callback {
+
+        /**
+         * One echo reply, see {@link PingOutputParser.Listener#onReply(int, int, long)}.
+         */
+        void onReply(int seq, int ttl, long rttMicros);
+
+        /**
+         * The process exited, {@code report} holds everything that was parsed.
+         */
+        void onFinished(PingReport report, int exitStatus);
+
+        /**
+         * The process could not be started or its output could not be read.
+         */
+        void onFailed(Exception e);
+    }
+
+    public static final ProcessStarter RUNTIME = new ProcessStarter() {
+        @Override
+        public Process start(String[] command) throws IOException {
+            return Runtime.getRuntime().exec(command);
+        }
+    };
+
+    private final String[] mCommand;
+    private final ProcessStarter mStarter;
+    private final Callback mCallback;
+
+    private volatile boolean mCancelled = false;
+    private Process mProcess;
+
+    /**
+     * @param count    number of echo requests
+     * @param deadline seconds before ping gives up regardless of {@code count}
+     * @param packSize ICMP payload size in bytes
+     * @param target   host name or address
+     */
+    public PingSession(int count, long deadline, int packSize, String target, ProcessStarter starter, Callback callback) {
+        mCommand = new String[]{"ping", "-c", String.valueOf(count), "-w", String.valueOf(deadline), "-s", String.valueOf(packSize), target};
+        mStarter = starter;
+        mCallback = callback;
+    }
+
+    public String[] getCommand() {
+        return mCommand.clone();
+    }
+
+    public void start(Executor executor) {
+        executor.execute(this);
+    }
+
+    public boolean isCancelled() {
+        return mCancelled;
+    }
+
+    /**
+     * Kills the ping process, the reading thread sees end of stream and returns quietly.
+     */
+    public void cancel() {
+        Process process;
+        synchronized (this) {
+            mCancelled = true;
+            process = mProcess;
+        }
+        if (process != null) {
+            process.destroy();
+        }
+    }
+
+    @Override
+    public void run() {
+        if (mCancelled) {
+            return;
+        }
+        final PingReport report = new PingReport();
+        Process process = null;
+        InputStream in = null;
+        try {
+            process = mStarter.start(mCommand);
+            synchronized (this) {
+                mProcess = process;
+            }
+            if (mCancelled) {
+                return;
+            }
+            in = process.getInputStream();
+            new PingOutputParser(new PingOutputParser.Listener() {
+                @Override
+                public void onReply(int seq, int ttl, long rttMicros) {
+                    report.onReply(seq, ttl, rttMicros);
+                    if (!mCancelled) {
+                        mCallback.onReply(seq, ttl, rttMicros);
+                    }
+                }
+
+                @Override
+                public void onLoss(int transmitted, int received, double lossPercent, long timeMillis) {
+                    report.onLoss(transmitted, received, lossPercent, timeMillis);
+                }
+
+                @Override
+                public void onRtt(long minMicros, long avgMicros, long maxMicros, long mdevMicros) {
+                    report.onRtt(minMicros, avgMicros, maxMicros, mdevMicros);
+                }
+            }).parse(in);
+            int status = process.waitFor();
+            if (!mCancelled) {
+                mCallback.onFinished(report, status);
+            }
+        } catch (IOException e) {
+            if (!mCancelled) {
+                mCallback.onFailed(e);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (!mCancelled) {
+                mCallback.onFailed(e);
+            }
+        } finally {
+            if (null != in) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+            if (process != null && mCancelled) {
+                process.destroy();
+            }
+        }
+    }
+}
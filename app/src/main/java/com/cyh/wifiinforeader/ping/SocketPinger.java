@@ -0,0 +1,339 @@
+package com.cyh.wifiinforeader.ping;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.PortUnreachableException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures round trips from inside the process, for where {@link PingSession} cannot be used
+ * or its process start would cost more than the probes: UDP datagrams to an echo service, or
+ * TCP connects, whose handshake takes one round trip whether the port accepts or refuses.
+ * <p>
+ * Probes go out on a fixed schedule of {@code intervalMillis} from the start, independent of
+ * the replies, and each is lost once {@code timeoutMillis} passes without an answer. Sending,
+ * receiving and timing all happen on the thread that runs this, in one selector loop, with
+ * {@link System#nanoTime()} taken right after the reply is read.
+ * <p>
+ * Reports through the same {@link PingSession.Callback} as the ping binary, sequence numbers
+ * from 1 and TTL -1 as it is not known; exit status 0 if anything answered, 1 if nothing did.
+ * Once {@link #cancel()} is called no further callbacks are made; an interrupt ends the run with
+ * {@link PingSession.Callback#onFailed} and an {@link InterruptedException}.
+ */
+public class SocketPinger implements Runnable {
+
+    public enum Mode {
+        UDP_ECHO, TCP_CONNECT
+    }
+
+    /** Session id and sequence number at the start of every datagram. */
+    private static final int HEADER_BYTES = 8;
+
+    private final Mode mMode;
+    private final String mHost;
+    private final int mPort;
+    private final int mCount;
+    private final long mIntervalNanos;
+    private final long mTimeoutNanos;
+    private final int mPackSize;
+    private final PingSession.Callback mCallback;
+    private final int mSession = new Random().nextInt();
+
+    private volatile boolean mCancelled = false;
+    private Selector mSelector;
+
+    private long[] mSentAt;
+    private boolean[] mDone;
+    private SocketChannel[] mConnects;
+    private int mSent;
+    private int mDoneCount;
+    private PingReport mReport;
+
+    /**
+     * @param port     7 for the echo service, any port for TCP connects
+     * @param packSize UDP payload size, at least 8; unused for TCP
+     */
+    public SocketPinger(Mode mode, String host, int port, int count, long intervalMillis, long timeoutMillis,
+                        int packSize, PingSession.Callback callback) {
+        mMode = mode;
+        mHost = host;
+        mPort = port;
+        mCount = count;
+        mIntervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+        mTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        mPackSize = Math.max(HEADER_BYTES, packSize);
+        mCallback = callback;
+    }
+
+    public void start(Executor executor) {
+        executor.execute(this);
+    }
+
+    public boolean isCancelled() {
+        return mCancelled;
+    }
+
+    public void cancel() {
+        Selector selector;
+        synchronized (this) {
+            mCancelled = true;
+            selector = mSelector;
+        }
+        if (selector != null) {
+            selector.wakeup();
+        }
+    }
+
+    @Override
+    public void run() {
+        if (mCancelled) {
+            return;
+        }
+        mSentAt = new long[mCount];
+        mDone = new boolean[mCount];
+        mConnects = mMode == Mode.TCP_CONNECT ? new SocketChannel[mCount] : null;
+        mSent = 0;
+        mDoneCount = 0;
+        mReport = new PingReport();
+        Selector selector = null;
+        DatagramChannel datagram = null;
+        try {
+            InetSocketAddress remote = new InetSocketAddress(InetAddress.getByName(mHost), mPort);
+            selector = Selector.open();
+            synchronized (this) {
+                mSelector = selector;
+            }
+            ByteBuffer buffer = null;
+            if (mMode == Mode.UDP_ECHO) {
+                datagram = DatagramChannel.open();
+                datagram.configureBlocking(false);
+                datagram.connect(remote);
+                datagram.register(selector, SelectionKey.OP_READ);
+                buffer = ByteBuffer.allocate(Math.max(mPackSize, 1500));
+            }
+            long start = System.nanoTime();
+            // The selector wakes up on interrupt, which ends the run like a cancel but reported.
+            while (!mCancelled && !Thread.currentThread().isInterrupted()) {
+                long now = System.nanoTime();
+                while (mSent < mCount && now - start >= mSent * mIntervalNanos) {
+                    send(datagram, buffer, remote, selector);
+                }
+                long wait = expire(now);
+                if (mSent == mCount && mDoneCount == mCount) {
+                    break;
+                }
+                if (mSent < mCount) {
+                    wait = Math.min(wait, start + mSent * mIntervalNanos - now);
+                }
+                selector.select(Math.max(1, TimeUnit.NANOSECONDS.toMillis(wait + 999999)));
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (mMode == Mode.UDP_ECHO) {
+                        receive(datagram, buffer);
+                    } else {
+                        connected(key);
+                    }
+                }
+            }
+            if (mCancelled) {
+                return;
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                mCallback.onFailed(new InterruptedException());
+                return;
+            }
+            finish(System.nanoTime() - start);
+            mCallback.onFinished(mReport, mReport.getReplyCount() > 0 ? 0 : 1);
+        } catch (IOException e) {
+            if (!mCancelled) {
+                mCallback.onFailed(e);
+            }
+        } finally {
+            closeQuietly(datagram);
+            if (mConnects != null) {
+                for (int seq = 0; seq < mCount; seq++) {
+                    closeQuietly(mConnects[seq]);
+                }
+            }
+            if (selector != null) {
+                try {
+                    selector.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    private void send(DatagramChannel datagram, ByteBuffer buffer, InetSocketAddress remote, Selector selector)
+            throws IOException {
+        int seq = mSent++;
+        if (mMode == Mode.UDP_ECHO) {
+            buffer.clear();
+            buffer.putInt(mSession).putInt(seq);
+            while (buffer.position() < mPackSize) {
+                buffer.put((byte) 0);
+            }
+            buffer.flip();
+            mSentAt[seq] = System.nanoTime();
+            try {
+                datagram.write(buffer);
+            } catch (PortUnreachableException e) {
+                // An earlier datagram was refused; this one is lost and so will be the rest.
+            }
+            return;
+        }
+        SocketChannel channel = SocketChannel.open();
+        mConnects[seq] = channel;
+        channel.configureBlocking(false);
+        mSentAt[seq] = System.nanoTime();
+        try {
+            if (channel.connect(remote)) {
+                reply(seq, System.nanoTime());
+                return;
+            }
+        } catch (ConnectException e) {
+            refused(seq);
+            return;
+        }
+        channel.register(selector, SelectionKey.OP_CONNECT, seq);
+    }
+
+    private void receive(DatagramChannel datagram, ByteBuffer buffer) throws IOException {
+        while (true) {
+            buffer.clear();
+            int read;
+            try {
+                read = datagram.read(buffer);
+            } catch (PortUnreachableException e) {
+                // Nothing listens there, the probes in flight will time out.
+                continue;
+            }
+            long now = System.nanoTime();
+            if (read <= 0) {
+                return;
+            }
+            if (read < HEADER_BYTES || buffer.getInt(0) != mSession) {
+                continue;
+            }
+            int seq = buffer.getInt(4);
+            if (seq >= 0 && seq < mSent && !mDone[seq]) {
+                reply(seq, now);
+            }
+        }
+    }
+
+    private void connected(SelectionKey key) {
+        int seq = (Integer) key.attachment();
+        SocketChannel channel = (SocketChannel) key.channel();
+        key.cancel();
+        if (mDone[seq]) {
+            return;
+        }
+        try {
+            if (channel.finishConnect()) {
+                reply(seq, System.nanoTime());
+            }
+        } catch (ConnectException e) {
+            refused(seq);
+        } catch (IOException e) {
+            // Unreachable; counted as lost like a timeout.
+            done(seq);
+        }
+        closeQuietly(channel);
+    }
+
+    /**
+     * A refusal is the peer's reset coming back, one round trip like an accept.
+     */
+    private void refused(int seq) {
+        reply(seq, System.nanoTime());
+    }
+
+    private void reply(int seq, long now) {
+        long rttMicros = TimeUnit.NANOSECONDS.toMicros(now - mSentAt[seq]);
+        mReport.onReply(seq + 1, -1, rttMicros);
+        done(seq);
+        if (!mCancelled) {
+            mCallback.onReply(seq + 1, -1, rttMicros);
+        }
+    }
+
+    private void done(int seq) {
+        mDone[seq] = true;
+        mDoneCount++;
+        if (mConnects != null) {
+            closeQuietly(mConnects[seq]);
+        }
+    }
+
+    /**
+     * Gives up on probes past their timeout.
+     *
+     * @return nanos until the next probe in flight times out
+     */
+    private long expire(long now) {
+        long wait = mTimeoutNanos;
+        for (int seq = 0; seq < mSent; seq++) {
+            if (mDone[seq]) {
+                continue;
+            }
+            long left = mSentAt[seq] + mTimeoutNanos - now;
+            if (left <= 0) {
+                done(seq);
+            } else {
+                wait = Math.min(wait, left);
+            }
+        }
+        return wait;
+    }
+
+    /**
+     * Fills in what the ping binary prints at the end: the replies, loss and min/avg/max/mdev.
+     */
+    private void finish(long elapsedNanos) {
+        int received = mReport.getReplyCount();
+        long sum = 0;
+        long squares = 0;
+        long min = Long.MAX_VALUE;
+        long max = 0;
+        for (int i = 0; i < received; i++) {
+            long rtt = mReport.getRttMicros(i);
+            sum += rtt;
+            squares += rtt * rtt;
+            min = Math.min(min, rtt);
+            max = Math.max(max, rtt);
+        }
+        mReport.onLoss(mSent, received, mSent > 0 ? 100.0 * (mSent - received) / mSent : 0,
+                TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+        if (received > 0) {
+            long avg = sum / received;
+            long mdev = (long) Math.sqrt(Math.max(0, (double) squares / received - (double) avg * avg));
+            mReport.onRtt(min, avg, max, mdev);
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
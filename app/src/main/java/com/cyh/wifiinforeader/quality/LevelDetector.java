@@ -0,0 +1,113 @@
+package com.cyh.wifiinforeader.quality;
+
+/**
+ * Turns a noisy stream of samples into a level, 0 the best, that only changes on a meaningful
+ * move: the sample must clear the threshold between two levels by the hysteresis margin, and the
+ * new level must then hold for the debounce time before it is committed. A level that is only
+ * passed through on the way elsewhere, or a dip shorter than the debounce, is never reported.
+ * <p>
+ * Before the first sample, and after {@link #clear()}, the level is unknown; the first sample
+ * sets it without counting as a change. Not thread safe.
+ */
+class LevelDetector {
+
+    static final int UNKNOWN = -1;
+
+    private final int[] mThresholds;
+    private final boolean mHigherIsBetter;
+    private final int mHysteresis;
+    private final long mDebounceMillis;
+
+    private int mLevel = UNKNOWN;
+    private int mCandidate = UNKNOWN;
+    private long mCandidateSince;
+    private int mValue;
+
+    /**
+     * @param thresholds     boundaries from the best level to the worst, a sample at a boundary
+     *                       is on its better side; {@code thresholds.length + 1} levels
+     * @param higherIsBetter whether higher samples are better, as RSSI, or worse, as loss
+     * @param hysteresis     how far past a boundary a sample must be to change level
+     */
+    LevelDetector(int[] thresholds, boolean higherIsBetter, int hysteresis, long debounceMillis) {
+        for (int i = 1; i < thresholds.length; i++) {
+            if (higherIsBetter ? thresholds[i] >= thresholds[i - 1] : thresholds[i] <= thresholds[i - 1]) {
+                throw new IllegalArgumentException("Thresholds out of order");
+            }
+        }
+        mThresholds = thresholds.clone();
+        mHigherIsBetter = higherIsBetter;
+        mHysteresis = hysteresis;
+        mDebounceMillis = debounceMillis;
+    }
+
+    /**
+     * @return whether the committed level changed
+     */
+    boolean sample(int value, long nowMillis) {
+        mValue = value;
+        if (mLevel == UNKNOWN) {
+            mLevel = levelOf(value);
+            mCandidate = mLevel;
+            return false;
+        }
+        int level = mLevel;
+        // Worse even when given the margin, or better even when charged it.
+        int worse = levelOf(mHigherIsBetter ? value + mHysteresis : value - mHysteresis);
+        int better = levelOf(mHigherIsBetter ? value - mHysteresis : value + mHysteresis);
+        if (worse > mLevel) {
+            level = worse;
+        } else if (better < mLevel) {
+            level = better;
+        }
+        if (level != mCandidate) {
+            mCandidate = level;
+            mCandidateSince = nowMillis;
+        }
+        return poll(nowMillis);
+    }
+
+    /**
+     * Commits a candidate level that has held for the debounce time with no sample since.
+     *
+     * @return whether the committed level changed
+     */
+    boolean poll(long nowMillis) {
+        if (mCandidate == mLevel || nowMillis - mCandidateSince < mDebounceMillis) {
+            return false;
+        }
+        mLevel = mCandidate;
+        return true;
+    }
+
+    /**
+     * Back to unknown, e.g. once disconnected; not a change.
+     */
+    void clear() {
+        mLevel = UNKNOWN;
+        mCandidate = UNKNOWN;
+    }
+
+    /**
+     * @return the committed level, or {@link #UNKNOWN}
+     */
+    int getLevel() {
+        return mLevel;
+    }
+
+    /**
+     * @return the latest sample
+     */
+    int getValue() {
+        return mValue;
+    }
+
+    private int levelOf(int value) {
+        int level = 0;
+        while (level < mThresholds.length
+                && (mHigherIsBetter ? value < mThresholds[level] : value > mThresholds[level])) {
+            level++;
+        }
+        return level;
+    }
+}
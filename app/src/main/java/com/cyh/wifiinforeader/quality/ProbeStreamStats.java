@@ -0,0 +1,271 @@
+package com.cyh.wifiinforeader.quality;
+
+import java.util.Locale;
+
+/**
+ * Running quality statistics over a stream of probe replies, each O(1) and allocation free so
+ * they can follow a continuous, fast probe stream:
+ * <ul>
+ * <li>interarrival jitter as RFC 3550 6.4.1 defines it, J += (|D| - J) / 16, where D is the
+ * difference between the round trips of consecutive replies;</li>
+ * <li>loss and loss bursts, runs of consecutive lost sequence numbers;</li>
+ * <li>replies that arrive after a later sequence number (reordered), twice (duplicate) or after
+ * the reorder window has passed them (late, still counted lost);</li>
+ * <li>round trip percentiles over the last replies, see {@link RollingQuantiles};</li>
+ * <li>the {@link QualityScore} those add up to.</li>
+ * </ul>
+ * The last {@link #REORDER_WINDOW} sequence numbers are tracked in one bit mask; a sequence
+ * number leaving it is final, lost if it never arrived. {@link #finish} makes the rest final.
+ * Sequence numbers do not wrap. Not thread safe.
+ */
+public class ProbeStreamStats {
+
+    /** Sequence numbers a reply can fall behind the newest one and still count. */
+    public static final int REORDER_WINDOW = 64;
+
+    private final int mFirstSeq;
+    private final RollingQuantiles mQuantiles;
+
+    /** Bit i set: reply {@code mHighest - i} arrived. */
+    private long mWindow;
+    private int mHighest;
+    /** Oldest sequence number not yet final. */
+    private int mNextFinal;
+    private int mLastSeq;
+
+    private int mReceived;
+    private int mReordered;
+    private int mDuplicates;
+    private int mLate;
+    private int mFinalLost;
+    private int mRun;
+    private int mBursts;
+    private int mMaxBurst;
+
+    private long mRttSum;
+    private long mMinRtt;
+    private long mMaxRtt;
+    private long mPreviousRtt;
+    private double mJitter;
+
+    /**
+     * @param firstSeq       sequence number of the first probe sent
+     * @param quantileWindow replies the percentiles cover
+     */
+    public ProbeStreamStats(int firstSeq, int quantileWindow) {
+        mFirstSeq = firstSeq;
+        mQuantiles = new RollingQuantiles(quantileWindow);
+        reset();
+    }
+
+    public void reset() {
+        mWindow = 0;
+        mHighest = mFirstSeq - 1;
+        mNextFinal = mFirstSeq;
+        mLastSeq = mFirstSeq - 1;
+        mReceived = 0;
+        mReordered = 0;
+        mDuplicates = 0;
+        mLate = 0;
+        mFinalLost = 0;
+        mRun = 0;
+        mBursts = 0;
+        mMaxBurst = 0;
+        mRttSum = 0;
+        mMinRtt = Long.MAX_VALUE;
+        mMaxRtt = 0;
+        mPreviousRtt = -1;
+        mJitter = 0;
+        mQuantiles.clear();
+    }
+
+    /**
+     * @param seq       sequence number of the probe answered
+     * @param rttMicros its round trip time
+     */
+    public void onReply(int seq, long rttMicros) {
+        if (seq < mNextFinal) {
+            mLate++;
+            return;
+        }
+        if (seq <= mHighest) {
+            long bit = 1L << (mHighest - seq);
+            if ((mWindow & bit) != 0) {
+                mDuplicates++;
+                return;
+            }
+            mWindow |= bit;
+            mReordered++;
+        } else {
+            advance(seq);
+        }
+
+        mReceived++;
+        mRttSum += rttMicros;
+        mMinRtt = Math.min(mMinRtt, rttMicros);
+        mMaxRtt = Math.max(mMaxRtt, rttMicros);
+        if (mPreviousRtt >= 0) {
+            mJitter += (Math.abs(rttMicros - mPreviousRtt) - mJitter) / 16;
+        }
+        mPreviousRtt = rttMicros;
+        mQuantiles.record(rttMicros);
+    }
+
+    /**
+     * Makes every sequence number up to {@code lastSeq} final: those that did not arrive are
+     * lost, and a burst still open is closed.
+     *
+     * @param lastSeq sequence number of the last probe sent
+     */
+    public void finish(int lastSeq) {
+        mLastSeq = Math.max(mLastSeq, lastSeq);
+        finalizeUpTo(mHighest + 1);
+        if (mLastSeq > mHighest) {
+            lose(mLastSeq - mHighest);
+            mNextFinal = mLastSeq + 1;
+        }
+        closeBurst();
+    }
+
+    /** Moves the window so {@code seq} is its newest bit. */
+    private void advance(int seq) {
+        finalizeUpTo(Math.max(mNextFinal, seq - REORDER_WINDOW + 1));
+        int shift = seq - mHighest;
+        mWindow = shift >= REORDER_WINDOW ? 1 : mWindow << shift | 1;
+        mHighest = seq;
+    }
+
+    /** Makes the sequence numbers before {@code end} final, each one once over the stream. */
+    private void finalizeUpTo(int end) {
+        int tracked = Math.min(end, mHighest + 1);
+        for (int seq = mNextFinal; seq < tracked; seq++) {
+            if ((mWindow & 1L << (mHighest - seq)) != 0) {
+                closeBurst();
+            } else {
+                lose(1);
+            }
+        }
+        if (end > tracked) {
+            // Never seen, skipped by a jump past the whole window.
+            lose(end - Math.max(tracked, mNextFinal));
+        }
+        mNextFinal = Math.max(mNextFinal, end);
+    }
+
+    private void lose(int count) {
+        mFinalLost += count;
+        mRun += count;
+    }
+
+    private void closeBurst() {
+        if (mRun > 0) {
+            mBursts++;
+            mMaxBurst = Math.max(mMaxBurst, mRun);
+            mRun = 0;
+        }
+    }
+
+    /**
+     * @return probes from the first to the last sent, or to the newest answered before
+     * {@link #finish}
+     */
+    public int getExpected() {
+        return Math.max(mHighest, mLastSeq) - mFirstSeq + 1;
+    }
+
+    public int getReceived() {
+        return mReceived;
+    }
+
+    /**
+     * @return lost probes, including the not yet final ones still missing from the window
+     */
+    public int getLost() {
+        int span = mHighest - mNextFinal + 1;
+        if (span <= 0) {
+            return mFinalLost;
+        }
+        long mask = span == 64 ? -1L : (1L << span) - 1;
+        return mFinalLost + span - Long.bitCount(mWindow & mask);
+    }
+
+    public double getLossPercent() {
+        int expected = getExpected();
+        return expected <= 0 ? 0 : 100.0 * getLost() / expected;
+    }
+
+    /**
+     * @return runs of consecutive lost probes among the final sequence numbers
+     */
+    public int getBurstCount() {
+        return mBursts;
+    }
+
+    /**
+     * @return longest of them, or of the run still open
+     */
+    public int getMaxBurst() {
+        return Math.max(mMaxBurst, mRun);
+    }
+
+    public int getReordered() {
+        return mReordered;
+    }
+
+    public int getDuplicates() {
+        return mDuplicates;
+    }
+
+    public int getLate() {
+        return mLate;
+    }
+
+    /**
+     * @return -1 without replies
+     */
+    public long getMinRttMicros() {
+        return mReceived == 0 ? -1 : mMinRtt;
+    }
+
+    public long getMaxRttMicros() {
+        return mMaxRtt;
+    }
+
+    public double getMeanRttMicros() {
+        return mReceived == 0 ? 0 : (double) mRttSum / mReceived;
+    }
+
+    public double getJitterMicros() {
+        return mJitter;
+    }
+
+    /**
+     * @param fraction 0.95 for the 95th percentile
+     * @return see {@link RollingQuantiles#quantile}
+     */
+    public long getRttQuantileMicros(double fraction) {
+        return mQuantiles.quantile(fraction);
+    }
+
+    public double getRFactor() {
+        return QualityScore.rFactor(getMeanRttMicros() / 1000, mJitter / 1000, getLossPercent());
+    }
+
+    public double getMos() {
+        return QualityScore.mos(getRFactor());
+    }
+
+    /**
+     * Appends e.g. "jitter 1.20 ms, p50 12.3 ms, p95 20.5 ms, loss 5.0% (2 bursts, max 1),
+     * reordered 0, MOS 4.31".
+     */
+    public void format(StringBuilder out) {
+        out.append(String.format(Locale.US, "jitter %.2f ms", mJitter / 1000));
+        if (mReceived > 0) {
+            out.append(String.format(Locale.US, ", p50 %.1f ms, p95 %.1f ms",
+                    getRttQuantileMicros(0.5) / 1000.0, getRttQuantileMicros(0.95) / 1000.0));
+        }
+        out.append(String.format(Locale.US, ", loss %.1f%% (%d bursts, max %d), reordered %d, MOS %.2f",
+                getLossPercent(), mBursts, getMaxBurst(), mReordered, getMos()));
+    }
+}
@@ -0,0 +1,271 @@
+package com.cyh.wifiinforeader.quality;
+
+import com.cyh.wifiinforeader.util.Clock;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches the RSSI, link speed, validation and ping loss of the connection and reports only
+ * meaningful quality transitions, at a bounded rate, instead of every broadcast.
+ * <p>
+ * Each stream goes through a {@link LevelDetector}, so a level change needs a move past a
+ * threshold by a margin that then lasts for a debounce time. Transitions are alerted at most
+ * {@code burst} at once and then one per {@code minIntervalMillis}; ones that come faster are
+ * held and go out together with the next allowed alert, and a stream that went back to where
+ * it was last alerted from by then is left out. A held transition goes out at the next sample
+ * or {@link #poll()}.
+ * <p>
+ * Thread safe. The {@link Listener} is called on whichever thread fed the sample, outside the
+ * monitor's lock.
+ */
+public class QualityMonitor {
+
+    public interface Listener {
+        /**
+         * @param alert one line per stream that changed level since the last alert
+         */
+        void onQualityChanged(String alert);
+    }
+
+    public static final int RSSI = 0;
+    public static final int LINK_SPEED = 1;
+    public static final int VALIDATION = 2;
+    public static final int PING_LOSS = 3;
+    public static final int STREAM_COUNT = 4;
+
+    private static final String[] NAMES = {"Signal", "Link speed", "Internet", "Ping loss"};
+    private static final String[][] LEVEL_NAMES = {
+            {"good", "fair", "poor"},
+            {"good", "fair", "poor"},
+            {"validated", "not validated"},
+            {"low", "moderate", "high"}};
+    private static final String[] UNITS = {" dBm", " Mbps", null, "%"};
+
+    private static final long DEFAULT_MIN_INTERVAL_MILLIS = 30000;
+    private static final int DEFAULT_BURST = 3;
+
+    private final Clock mClock;
+    private final long mMinIntervalMillis;
+    private final int mBurst;
+    private final LevelDetector[] mDetectors = new LevelDetector[STREAM_COUNT];
+    /** Level per stream as of the last alert, what the next one reports changes from. */
+    private final int[] mAlerted = new int[STREAM_COUNT];
+    private volatile Listener mListener;
+
+    /** A transition is waiting to be alerted. */
+    private boolean mPending = false;
+    /** It already had to wait for the rate limit. */
+    private boolean mHeld = false;
+    /** When the next alert would be allowed with no burst left, per GCRA; set by the first alert. */
+    private long mAlertTat;
+    private final StringBuilder mText = new StringBuilder();
+
+    private long mSamples = 0;
+    private int mTransitions = 0;
+    private int mAlerts = 0;
+    private int mDeferred = 0;
+
+    public QualityMonitor(Clock clock) {
+        this(clock, DEFAULT_MIN_INTERVAL_MILLIS, DEFAULT_BURST);
+    }
+
+    /**
+     * @param minIntervalMillis sustained spacing of alerts
+     * @param burst             alerts allowed back to back after a quiet spell
+     */
+    public QualityMonitor(Clock clock, long minIntervalMillis, int burst) {
+        if (burst < 1) {
+            throw new IllegalArgumentException("burst < 1");
+        }
+        mClock = clock;
+        mMinIntervalMillis = minIntervalMillis;
+        mBurst = burst;
+        // -67 dBm is where voice and video start to suffer, below -75 dBm the link is marginal.
+        mDetectors[RSSI] = new LevelDetector(new int[]{-67, -75}, true, 3, 5000);
+        mDetectors[LINK_SPEED] = new LevelDetector(new int[]{54, 12}, true, 2, 5000);
+        // Captive portal checks flap while the platform re-evaluates.
+        mDetectors[VALIDATION] = new LevelDetector(new int[]{1}, true, 0, 3000);
+        // One ping test is already 20 probes, no need to wait for a second.
+        mDetectors[PING_LOSS] = new LevelDetector(new int[]{2, 10}, false, 1, 0);
+        for (int stream = 0; stream < STREAM_COUNT; stream++) {
+            mAlerted[stream] = LevelDetector.UNKNOWN;
+        }
+    }
+
+    /**
+     * @param listener null to detach
+     */
+    public void setListener(Listener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * @param linkSpeedMbps negative if unknown
+     */
+    public void onLink(int rssi, int linkSpeedMbps) {
+        String alert;
+        synchronized (this) {
+            long now = nowMillis();
+            sample(RSSI, rssi, now);
+            if (linkSpeedMbps >= 0) {
+                sample(LINK_SPEED, linkSpeedMbps, now);
+            }
+            alert = takeAlert(now);
+        }
+        deliver(alert);
+    }
+
+    public void onValidation(boolean validated) {
+        String alert;
+        synchronized (this) {
+            long now = nowMillis();
+            sample(VALIDATION, validated ? 1 : 0, now);
+            alert = takeAlert(now);
+        }
+        deliver(alert);
+    }
+
+    /**
+     * @param lost        probes of one ping test that got no reply
+     * @param transmitted probes sent, nothing is sampled if none were
+     */
+    public void onPingLoss(int lost, int transmitted) {
+        if (transmitted <= 0) {
+            return;
+        }
+        String alert;
+        synchronized (this) {
+            long now = nowMillis();
+            sample(PING_LOSS, (int) (100L * lost / transmitted), now);
+            alert = takeAlert(now);
+        }
+        deliver(alert);
+    }
+
+    /**
+     * Forgets the link streams, the next connection starts from unknown levels. Ping loss is
+     * kept, it is measured end to end and not by connection.
+     */
+    public void onDisconnected() {
+        synchronized (this) {
+            for (int stream = RSSI; stream <= VALIDATION; stream++) {
+                mDetectors[stream].clear();
+                mAlerted[stream] = LevelDetector.UNKNOWN;
+            }
+        }
+    }
+
+    /**
+     * Commits levels whose debounce ran out with no sample since, and sends held alerts the rate
+     * limit now allows.
+     */
+    public void poll() {
+        String alert;
+        synchronized (this) {
+            long now = nowMillis();
+            for (int stream = 0; stream < STREAM_COUNT; stream++) {
+                if (mDetectors[stream].poll(now)) {
+                    mTransitions++;
+                    mPending = true;
+                }
+            }
+            alert = takeAlert(now);
+        }
+        deliver(alert);
+    }
+
+    /**
+     * @return the committed level of a stream, 0 the best, -1 if unknown
+     */
+    public synchronized int getLevel(int stream) {
+        return mDetectors[stream].getLevel();
+    }
+
+    public synchronized long getSampleCount() {
+        return mSamples;
+    }
+
+    /**
+     * @return level changes committed, alerted or not
+     */
+    public synchronized int getTransitionCount() {
+        return mTransitions;
+    }
+
+    public synchronized int getAlertCount() {
+        return mAlerts;
+    }
+
+    /**
+     * @return alerts that had to wait for the rate limit, including ones that then had nothing
+     * left to report
+     */
+    public synchronized int getDeferredCount() {
+        return mDeferred;
+    }
+
+    private void sample(int stream, int value, long now) {
+        mSamples++;
+        LevelDetector detector = mDetectors[stream];
+        boolean wasKnown = detector.getLevel() != LevelDetector.UNKNOWN;
+        if (detector.sample(value, now)) {
+            mTransitions++;
+            mPending = true;
+        } else if (!wasKnown) {
+            // The first level is where alerts start from, not a change.
+            mAlerted[stream] = detector.getLevel();
+        }
+    }
+
+    /**
+     * @return the alert text if a transition is pending and the rate limit allows it, else null
+     */
+    private String takeAlert(long now) {
+        if (!mPending) {
+            return null;
+        }
+        if (mAlerts > 0 && now < mAlertTat - (mBurst - 1) * mMinIntervalMillis) {
+            if (!mHeld) {
+                mHeld = true;
+                mDeferred++;
+            }
+            return null;
+        }
+        mPending = false;
+        mHeld = false;
+        mText.setLength(0);
+        for (int stream = 0; stream < STREAM_COUNT; stream++) {
+            int level = mDetectors[stream].getLevel();
+            if (level == mAlerted[stream] || level == LevelDetector.UNKNOWN || mAlerted[stream] == LevelDetector.UNKNOWN) {
+                continue;
+            }
+            if (mText.length() > 0) {
+                mText.append('\n');
+            }
+            mText.append(NAMES[stream]).append(' ').append(LEVEL_NAMES[stream][mAlerted[stream]])
+                    .append(" -> ").append(LEVEL_NAMES[stream][level]);
+            if (UNITS[stream] != null) {
+                mText.append(" (").append(mDetectors[stream].getValue()).append(UNITS[stream]).append(')');
+            }
+            mAlerted[stream] = level;
+        }
+        if (mText.length() == 0) {
+            // Everything went back before it could be alerted.
+            return null;
+        }
+        mAlerts++;
+        mAlertTat = (mAlerts == 1 ? now : Math.max(mAlertTat, now)) + mMinIntervalMillis;
+        return mText.toString();
+    }
+
+    private void deliver(String alert) {
+        Listener listener = mListener;
+        if (alert != null && listener != null) {
+            listener.onQualityChanged(alert);
+        }
+    }
+
+    private long nowMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(mClock.nanoTime());
+    }
+}
@@ -0,0 +1,35 @@
+package com.cyh.wifiinforeader.quality;
+
+/**
+ * Call quality estimated from latency, jitter and loss with the simplified E-model of ITU-T
+ * G.107 that VoIP monitors use: the R-factor, 0 to 100, and the mean opinion score it maps to,
+ * 1 to 4.5. Above R 80 (MOS 4) calls are good, below R 60 (MOS 3.1) many users complain.
+ */
+public final class QualityScore {
+
+    private QualityScore() {
+    }
+
+    /**
+     * @param rttMillis    mean round trip time
+     * @param jitterMillis interarrival jitter
+     * @param lossPercent  0 to 100
+     */
+    public static double rFactor(double rttMillis, double jitterMillis, double lossPercent) {
+        // Jitter counts double, buffering for it adds delay; 10 ms for codec processing.
+        double effectiveLatency = rttMillis + 2 * jitterMillis + 10;
+        double r = effectiveLatency < 160 ? 93.2 - effectiveLatency / 40 : 93.2 - (effectiveLatency - 120) / 10;
+        r -= 2.5 * lossPercent;
+        return Math.max(0, Math.min(100, r));
+    }
+
+    public static double mos(double rFactor) {
+        if (rFactor <= 0) {
+            return 1;
+        }
+        if (rFactor >= 100) {
+            return 4.5;
+        }
+        return 1 + 0.035 * rFactor + 0.000007 * rFactor * (rFactor - 60) * (100 - rFactor);
+    }
+}
@@ -0,0 +1,77 @@
+package com.cyh.wifiinforeader.quality;
+
+import com.cyh.wifiinforeader.metrics.LatencyHistogram;
+
+import java.util.Arrays;
+
+/**
+ * Quantiles of the last {@code window} samples in constant memory: a ring of the samples'
+ * {@link LatencyHistogram} buckets, one byte each, and a count per bucket. Adding a sample
+ * takes the oldest one's bucket out, so it is O(1); a quantile walks the bucket counts.
+ * <p>
+ * Answers are bucket upper bounds, within 1/8 of the exact sample at that rank. Not thread
+ * safe.
+ */
+public class RollingQuantiles {
+
+    private final byte[] mRing;
+    private final int[] mCounts = new int[LatencyHistogram.BUCKET_COUNT];
+    private int mNext = 0;
+    private int mSize = 0;
+
+    public RollingQuantiles(int window) {
+        if (window <= 0) {
+            throw new IllegalArgumentException("window " + window);
+        }
+        mRing = new byte[window];
+    }
+
+    public void record(long micros) {
+        int bucket = LatencyHistogram.bucketOf(Math.max(0, micros));
+        if (mSize == mRing.length) {
+            mCounts[mRing[mNext] & 0xff]--;
+        } else {
+            mSize++;
+        }
+        mRing[mNext] = (byte) bucket;
+        mCounts[bucket]++;
+        mNext = mNext + 1 == mRing.length ? 0 : mNext + 1;
+    }
+
+    public void clear() {
+        Arrays.fill(mCounts, 0);
+        mNext = 0;
+        mSize = 0;
+    }
+
+    /**
+     * @return samples in the window
+     */
+    public int size() {
+        return mSize;
+    }
+
+    public int getWindow() {
+        return mRing.length;
+    }
+
+    /**
+     * @param fraction 0.5 for the median
+     * @return upper bound, in microseconds, of the bucket holding the sample of rank
+     * {@code ceil(fraction * size)}, at least 1; -1 if the window is empty
+     */
+    public long quantile(double fraction) {
+        if (mSize == 0) {
+            return -1;
+        }
+        long rank = Math.max(1, (long) Math.ceil(fraction * mSize));
+        long seen = 0;
+        for (int bucket = 0; bucket < mCounts.length; bucket++) {
+            seen += mCounts[bucket];
+            if (seen >= rank) {
+                return LatencyHistogram.upperBound(bucket);
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+}
@@ -0,0 +1,45 @@
+package com.cyh.wifiinforeader.reachability;
+
+import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+
+/**
+ * Requests {@link ReachabilityTarget#getUrl()}, any 2xx or 3xx status counts as reachable.
+ */
+public class HttpProbe implements ReachabilityProbe {
+
+    @Override
+    public ReachabilityResult.Check getCheck() {
+        return ReachabilityResult.Check.HTTP;
+    }
+
+    @Override
+    public boolean accepts(ReachabilityTarget target) {
+        return target.getUrl() != null;
+    }
+
+    @Override
+    public ReachabilityResult probe(ReachabilityTarget target, long timeoutMillis) throws Exception {
+        HttpURLConnection urlConnection = null;
+        long start = System.nanoTime();
+        try {
+            urlConnection = (HttpURLConnection) new URL(target.getUrl()).openConnection();
+            urlConnection.setConnectTimeout((int) timeoutMillis);
+            urlConnection.setReadTimeout((int) timeoutMillis);
+            urlConnection.setInstanceFollowRedirects(false);
+            int code = urlConnection.getResponseCode();
+            long elapsedMicros = (System.nanoTime() - start) / 1000;
+            if (code >= 200 && code < 400) {
+                return ReachabilityResult.ok(target, getCheck(), elapsedMicros, "HTTP " + code);
+            }
+            return ReachabilityResult.failed(target, getCheck(), "HTTP " + code);
+        } catch (SocketTimeoutException e) {
+            return ReachabilityResult.timeout(target, getCheck());
+        } finally {
+            if (urlConnection != null) {
+                urlConnection.disconnect();
+            }
+        }
+    }
+}
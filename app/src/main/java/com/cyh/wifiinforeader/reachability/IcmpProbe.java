@@ -0,0 +1,75 @@
+package com.cyh.wifiinforeader.reachability;
+
+import com.cyh.wifiinforeader.ping.PingReport;
+import com.cyh.wifiinforeader.ping.PingSession;
+
+/**
+ * Pings {@link ReachabilityTarget#getHost()} with the system ping binary.
+ */
+public class IcmpProbe implements ReachabilityProbe {
+
+    private final int mCount;
+    private final int mPackSize;
+    private final PingSession.ProcessStarter mStarter;
+
+    public IcmpProbe(int count, int packSize, PingSession.ProcessStarter starter) {
+        mCount = count;
+        mPackSize = packSize;
+        mStarter = starter;
+    }
+
+    @Override
+    public ReachabilityResult.Check getCheck() {
+        return ReachabilityResult.Check.ICMP;
+    }
+
+    @Override
+    public boolean accepts(ReachabilityTarget target) {
+        return target.getHost() != null;
+    }
+
+    @Override
+    public ReachabilityResult probe(ReachabilityTarget target, long timeoutMillis) throws Exception {
+        // ping only takes a deadline in whole seconds.
+        long deadline = Math.max(1, (timeoutMillis + 999) / 1000);
+        final PingReport[] report = new PingReport[1];
+        final int[] status = new int[]{-1};
+        final Exception[] failure = new Exception[1];
+        new PingSession(mCount, deadline, mPackSize, target.getHost(), mStarter, new PingSession.Callback() {
+            @Override
+            public void onReply(int seq, int ttl, long rttMicros) {
+            }
+
+            @Override
+            public void onFinished(PingReport r, int exitStatus) {
+                report[0] = r;
+                status[0] = exitStatus;
+            }
+
+            @Override
+            public void onFailed(Exception e) {
+                failure[0] = e;
+            }
+        }).run();
+
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+        PingReport r = report[0];
+        if (r == null || r.getReplyCount() == 0) {
+            return ReachabilityResult.failed(target, getCheck(), "Host unreachable");
+        }
+        long latency;
+        if (r.hasRtt()) {
+            latency = r.getAvgMicros();
+        } else {
+            long sum = 0;
+            for (int i = 0; i < r.getReplyCount(); i++) {
+                sum += r.getRttMicros(i);
+            }
+            latency = sum / r.getReplyCount();
+        }
+        String detail = r.hasLoss() ? "loss " + r.getLossPercent() + "%" : r.getReplyCount() + " replies";
+        return ReachabilityResult.ok(target, getCheck(), latency, detail);
+    }
+}
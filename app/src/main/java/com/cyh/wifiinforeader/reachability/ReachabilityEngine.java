@@ -0,0 +1,140 @@
+package com.cyh.wifiinforeader.reachability;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs every probe against every target it accepts, at most {@code maxConcurrency} checks at a
+ * time, so a long target list costs about {@code targets / maxConcurrency} timeouts in the worst
+ * case instead of {@code targets}.
+ * <p>
+ * Each check gets {@code timeoutMillis} from the moment it starts running; a check still running
+ * after that is interrupted and reported as {@link ReachabilityResult.Status#TIMEOUT}.
+ */
+public class ReachabilityEngine {
+
+    private final int mMaxConcurrency;
+    private final long mTimeoutMillis;
+    private final List<ReachabilityProbe> mProbes;
+
+    public ReachabilityEngine(int maxConcurrency, long timeoutMillis, List<ReachabilityProbe> probes) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("maxConcurrency must be positive: " + maxConcurrency);
+        }
+        mMaxConcurrency = maxConcurrency;
+        mTimeoutMillis = timeoutMillis;
+        mProbes = new ArrayList<>(probes);
+    }
+
+    public int getMaxConcurrency() {
+        return mMaxConcurrency;
+    }
+
+    /**
+     * Blocks until every check finished or timed out.
+     *
+     * @throws InterruptedException if the calling thread is interrupted, outstanding checks are
+     *                              cancelled
+     */
+    public ReachabilityTable run(List<ReachabilityTarget> targets) throws InterruptedException {
+        final long start = System.nanoTime();
+        List<Check> checks = new ArrayList<>();
+        for (ReachabilityTarget target : targets) {
+            for (ReachabilityProbe probe : mProbes) {
+                if (probe.accepts(target)) {
+                    checks.add(new Check(probe, target));
+                }
+            }
+        }
+
+        List<ReachabilityResult> rows = new ArrayList<>(checks.size());
+        if (checks.isEmpty()) {
+            return new ReachabilityTable(rows, 0);
+        }
+
+        ExecutorService executor = newExecutor(Math.min(mMaxConcurrency, checks.size()));
+        try {
+            List<Future<ReachabilityResult>> futures = new ArrayList<>(checks.size());
+            for (Check check : checks) {
+                futures.add(executor.submit(check));
+            }
+            for (int i = 0; i < checks.size(); i++) {
+                rows.add(await(checks.get(i), futures.get(i)));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return new ReachabilityTable(rows, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    private ReachabilityResult await(Check check, Future<ReachabilityResult> future) throws InterruptedException {
+        while (true) {
+            long startedAt = check.mStartedAt;
+            // Not started yet, a thread frees up at the latest one timeout from now.
+            long deadline = (startedAt == 0 ? System.nanoTime() : startedAt)
+                    + TimeUnit.MILLISECONDS.toNanos(mTimeoutMillis);
+            long remaining = deadline - System.nanoTime();
+            try {
+                return future.get(Math.max(remaining, 0), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                if (check.mStartedAt != 0 && System.nanoTime() - deadline >= 0) {
+                    future.cancel(true);
+                    return ReachabilityResult.timeout(check.mTarget, check.mProbe.getCheck());
+                }
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                return ReachabilityResult.failed(check.mTarget, check.mProbe.getCheck(),
+                        cause.getClass().getSimpleName());
+            } catch (CancellationException e) {
+                return ReachabilityResult.timeout(check.mTarget, check.mProbe.getCheck());
+            } catch (InterruptedException e) {
+                future.cancel(true);
+                throw e;
+            }
+        }
+    }
+
+    private static ExecutorService newExecutor(int threads) {
+        return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            private final AtomicInteger mCount = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "reachability-" + mCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    private class Check implements Callable<ReachabilityResult> {
+        final ReachabilityProbe mProbe;
+        final ReachabilityTarget mTarget;
+        volatile long mStartedAt = 0;
+
+        Check(ReachabilityProbe probe, ReachabilityTarget target) {
+            mProbe = probe;
+            mTarget = target;
+        }
+
+        @Override
+        public ReachabilityResult call() throws Exception {
+            long now = System.nanoTime();
+            // nanoTime may legitimately be 0, keep 0 free to mean "not started".
+            mStartedAt = now == 0 ? 1 : now;
+            return mProbe.probe(mTarget, mTimeoutMillis);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.cyh.wifiinforeader.reachability;
+
+/**
+ * One kind of check run by {@link ReachabilityEngine}.
+ */
+public interface ReachabilityProbe {
+
+    ReachabilityResult.Check getCheck();
+
+    /**
+     * @return whether {@code target} has what this probe needs, a host or a url
+     */
+    boolean accepts(ReachabilityTarget target);
+
+    /**
+     * Runs the check on the calling thread. Implementations should give up by themselves once
+     * {@code timeoutMillis} has passed, the engine only interrupts as a last resort.
+     */
+    ReachabilityResult probe(ReachabilityTarget target, long timeoutMillis) throws Exception;
+}
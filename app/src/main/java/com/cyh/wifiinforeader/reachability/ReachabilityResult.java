@@ -0,0 +1,64 @@
+package com.cyh.wifiinforeader.reachability;
+
+/**
+ * Outcome of one check against one target.
+ */
+public class ReachabilityResult {
+
+    public enum Check {
+        ICMP, HTTP, TCP
+    }
+
+    public enum Status {
+        OK, FAILED, TIMEOUT
+    }
+
+    private final ReachabilityTarget mTarget;
+    private final Check mCheck;
+    private final Status mStatus;
+    private final long mLatencyMicros;
+    private final String mDetail;
+
+    public ReachabilityResult(ReachabilityTarget target, Check check, Status status, long latencyMicros, String detail) {
+        mTarget = target;
+        mCheck = check;
+        mStatus = status;
+        mLatencyMicros = latencyMicros;
+        mDetail = detail;
+    }
+
+    public static ReachabilityResult ok(ReachabilityTarget target, Check check, long latencyMicros, String detail) {
+        return new ReachabilityResult(target, check, Status.OK, latencyMicros, detail);
+    }
+
+    public static ReachabilityResult failed(ReachabilityTarget target, Check check, String detail) {
+        return new ReachabilityResult(target, check, Status.FAILED, -1, detail);
+    }
+
+    public static ReachabilityResult timeout(ReachabilityTarget target, Check check) {
+        return new ReachabilityResult(target, check, Status.TIMEOUT, -1, "Timeout");
+    }
+
+    public ReachabilityTarget getTarget() {
+        return mTarget;
+    }
+
+    public Check getCheck() {
+        return mCheck;
+    }
+
+    public Status getStatus() {
+        return mStatus;
+    }
+
+    /**
+     * @return round trip or request time in microseconds, -1 unless {@link Status#OK}
+     */
+    public long getLatencyMicros() {
+        return mLatencyMicros;
+    }
+
+    public String getDetail() {
+        return mDetail;
+    }
+}
@@ -0,0 +1,70 @@
+package com.cyh.wifiinforeader.reachability;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Results of one {@link ReachabilityEngine#run(List)}, one row per target and check, in the
+ * order the targets were given.
+ */
+public class ReachabilityTable {
+
+    private final List<ReachabilityResult> mRows;
+    private final long mElapsedMillis;
+
+    ReachabilityTable(List<ReachabilityResult> rows, long elapsedMillis) {
+        mRows = Collections.unmodifiableList(new ArrayList<>(rows));
+        mElapsedMillis = elapsedMillis;
+    }
+
+    public List<ReachabilityResult> getRows() {
+        return mRows;
+    }
+
+    /**
+     * @return the row for {@code target} and {@code check}, null if that check was not run
+     */
+    public ReachabilityResult get(ReachabilityTarget target, ReachabilityResult.Check check) {
+        for (ReachabilityResult row : mRows) {
+            if (row.getTarget() == target && row.getCheck() == check) {
+                return row;
+            }
+        }
+        return null;
+    }
+
+    public int count(ReachabilityResult.Status status) {
+        int count = 0;
+        for (ReachabilityResult row : mRows) {
+            if (row.getStatus() == status) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return wall clock time of the whole run
+     */
+    public long getElapsedMillis() {
+        return mElapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (ReachabilityResult row : mRows) {
+            sb.append(row.getCheck()).append(' ').append(row.getTarget()).append(": ").append(row.getStatus());
+            if (row.getLatencyMicros() >= 0) {
+                sb.append(' ').append(row.getLatencyMicros() / 1000).append('.')
+                        .append(row.getLatencyMicros() % 1000 / 100).append(" ms");
+            }
+            if (row.getDetail() != null) {
+                sb.append(" (").append(row.getDetail()).append(')');
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,71 @@
+package com.cyh.wifiinforeader.reachability;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A host to check. ICMP and TCP go to {@link #getHost()}, HTTP to {@link #getUrl()}; either may be null
+ * to skip that check.
+ */
+public class ReachabilityTarget {
+
+    private final String mHost;
+    private final String mUrl;
+
+    public ReachabilityTarget(String host, String url) {
+        mHost = host;
+        mUrl = url;
+    }
+
+    /**
+     * Parses one configured entry: a URL is checked over HTTP and its host is pinged, anything
+     * else is taken as a bare host and only pinged.
+     */
+    public static ReachabilityTarget parse(String entry) {
+        String trimmed = entry.trim();
+        if (trimmed.startsWith("http://") || trimmed.startsWith("https://")) {
+            String host;
+            try {
+                host = new URI(trimmed).getHost();
+            } catch (URISyntaxException e) {
+                throw new IllegalArgumentException("Bad target url: " + trimmed, e);
+            }
+            if (host == null) {
+                throw new IllegalArgumentException("No host in target url: " + trimmed);
+            }
+            return new ReachabilityTarget(host, trimmed);
+        }
+        return new ReachabilityTarget(trimmed, null);
+    }
+
+    /**
+     * Parses a list as the user types it, entries separated by whitespace or commas.
+     *
+     * @return the entries in order, empty if there are none
+     * @throws IllegalArgumentException naming the first bad entry
+     */
+    public static List<ReachabilityTarget> parseList(String text) {
+        List<ReachabilityTarget> targets = new ArrayList<>();
+        for (String entry : text.split("[\\s,]+")) {
+            if (!entry.isEmpty()) {
+                targets.add(parse(entry));
+            }
+        }
+        return targets;
+    }
+
+    public String getHost() {
+        return mHost;
+    }
+
+    public String getUrl() {
+        return mUrl;
+    }
+
+    @Override
+    public String toString() {
+        return mUrl != null ? mUrl : mHost;
+    }
+}
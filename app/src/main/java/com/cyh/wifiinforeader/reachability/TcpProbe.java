@@ -0,0 +1,87 @@
+package com.cyh.wifiinforeader.reachability;
+
+import com.cyh.wifiinforeader.ping.PingReport;
+import com.cyh.wifiinforeader.ping.PingSession;
+import com.cyh.wifiinforeader.ping.SocketPinger;
+
+import java.net.URI;
+
+/**
+ * Times TCP connects to {@link ReachabilityTarget#getHost()} from inside the process, on the
+ * port of its URL or the default one. Unlike {@link IcmpProbe} nothing is forked, so checking
+ * many targets costs only the round trips; ICMP is the opt-in extra for hosts that filter ports.
+ */
+public class TcpProbe implements ReachabilityProbe {
+
+    private final int mCount;
+    private final long mIntervalMillis;
+    private final int mDefaultPort;
+
+    /**
+     * @param defaultPort for targets without a URL
+     */
+    public TcpProbe(int count, long intervalMillis, int defaultPort) {
+        mCount = count;
+        mIntervalMillis = intervalMillis;
+        mDefaultPort = defaultPort;
+    }
+
+    @Override
+    public ReachabilityResult.Check getCheck() {
+        return ReachabilityResult.Check.TCP;
+    }
+
+    @Override
+    public boolean accepts(ReachabilityTarget target) {
+        return target.getHost() != null;
+    }
+
+    @Override
+    public ReachabilityResult probe(ReachabilityTarget target, long timeoutMillis) throws Exception {
+        final PingReport[] report = new PingReport[1];
+        final Exception[] failure = new Exception[1];
+        // Every connect gets what is left of the timeout after the later ones are sent.
+        long probeTimeout = Math.max(1, timeoutMillis - (mCount - 1) * mIntervalMillis);
+        new SocketPinger(SocketPinger.Mode.TCP_CONNECT, target.getHost(), portOf(target, mDefaultPort), mCount,
+                mIntervalMillis, probeTimeout, 0, new PingSession.Callback() {
+            @Override
+            public void onReply(int seq, int ttl, long rttMicros) {
+            }
+
+            @Override
+            public void onFinished(PingReport r, int exitStatus) {
+                report[0] = r;
+            }
+
+            @Override
+            public void onFailed(Exception e) {
+                failure[0] = e;
+            }
+        }).run();
+
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+        PingReport r = report[0];
+        if (r == null || r.getReplyCount() == 0) {
+            return ReachabilityResult.timeout(target, getCheck());
+        }
+        String detail = r.hasLoss() && r.getLossPercent() > 0 ? "loss " + r.getLossPercent() + "%" : r.getReplyCount() + " replies";
+        return ReachabilityResult.ok(target, getCheck(), r.getAvgMicros(), detail);
+    }
+
+    /**
+     * @return the explicit port of the target's URL, else 443 for https and 80 for http, else
+     * {@code defaultPort}
+     */
+    public static int portOf(ReachabilityTarget target, int defaultPort) {
+        if (target.getUrl() == null) {
+            return defaultPort;
+        }
+        URI uri = URI.create(target.getUrl());
+        if (uri.getPort() != -1) {
+            return uri.getPort();
+        }
+        return "https".equalsIgnoreCase(uri.getScheme()) ? 443 : "http".equalsIgnoreCase(uri.getScheme()) ? 80 : defaultPort;
+    }
+}
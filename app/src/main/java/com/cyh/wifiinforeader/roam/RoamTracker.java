@@ -0,0 +1,245 @@
+package com.cyh.wifiinforeader.roam;
+
+import com.cyh.wifiinforeader.util.Histogram;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times handovers from supplicant state transitions.
+ * <p>
+ * A handover starts when the supplicant leaves {@link #COMPLETED} and ends at the next
+ * {@link #COMPLETED}. If the BSSID then differs from the one before, it was a roam: its total
+ * latency and the time spent searching, authenticating, associating and in the key handshakes
+ * go to histograms. Coming back to the same BSSID is a reconnect; a handover longer than the
+ * outage limit, or the first connection, is not a roam either.
+ * <p>
+ * Timestamps must come from one monotonic clock. Not thread safe.
+ */
+public class RoamTracker {
+
+    // SupplicantState ordinals, the order has not changed since API 1.
+    public static final int DISCONNECTED = 0;
+    public static final int INTERFACE_DISABLED = 1;
+    public static final int INACTIVE = 2;
+    public static final int SCANNING = 3;
+    public static final int AUTHENTICATING = 4;
+    public static final int ASSOCIATING = 5;
+    public static final int ASSOCIATED = 6;
+    public static final int FOUR_WAY_HANDSHAKE = 7;
+    public static final int GROUP_HANDSHAKE = 8;
+    public static final int COMPLETED = 9;
+    public static final int DORMANT = 10;
+    public static final int UNINITIALIZED = 11;
+    public static final int INVALID = 12;
+
+    public static final int PHASE_SEARCH = 0;
+    public static final int PHASE_AUTHENTICATION = 1;
+    public static final int PHASE_ASSOCIATION = 2;
+    public static final int PHASE_HANDSHAKE = 3;
+    public static final int PHASE_COUNT = 4;
+
+    private static final String[] PHASE_NAMES = {"search", "auth", "assoc", "handshake"};
+
+    public interface Listener {
+        /**
+         * @param phaseNanos time per {@code PHASE_*}, only valid during the call
+         */
+        void onRoam(String fromBssid, String toBssid, long latencyNanos, long[] phaseNanos);
+    }
+
+    private final long mOutageNanos;
+    private Listener mListener;
+
+    private int mState = -1;
+    private long mStateSince;
+    /** BSSID of the last COMPLETED, null before the first or once Wi-Fi is off. */
+    private String mBssid;
+    private boolean mConnected = false;
+
+    private long mHandoverStart = -1;
+    private String mFromBssid;
+    private final long[] mPhaseNanos = new long[PHASE_COUNT];
+
+    private final Histogram mLatency = new Histogram(Histogram.LATENCY_MILLIS);
+    private final Histogram[] mPhases = new Histogram[PHASE_COUNT];
+    private int mRoams = 0;
+    private int mUntimedRoams = 0;
+    private int mReconnects = 0;
+    private int mConnects = 0;
+    private int mOutages = 0;
+
+    /**
+     * @param outageMillis handovers that take longer are counted as outages, not roams
+     */
+    public RoamTracker(long outageMillis) {
+        mOutageNanos = TimeUnit.MILLISECONDS.toNanos(outageMillis);
+        for (int i = 0; i < PHASE_COUNT; i++) {
+            mPhases[i] = new Histogram(Histogram.LATENCY_MILLIS);
+        }
+    }
+
+    /**
+     * @param listener null to detach
+     */
+    public void setListener(Listener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * @param state one of the state constants, a {@code SupplicantState} ordinal
+     * @param bssid the BSSID connected to, needed only for {@link #COMPLETED}; null if unknown
+     * @param nanos monotonic time of the transition
+     */
+    public void onStateChanged(int state, String bssid, long nanos) {
+        if (mHandoverStart >= 0 && mState >= 0) {
+            int phase = phaseOf(mState);
+            if (phase >= 0) {
+                mPhaseNanos[phase] += nanos - mStateSince;
+            }
+        }
+
+        if (state == INTERFACE_DISABLED) {
+            // Wi-Fi turned off, whatever was in progress is not a handover.
+            mHandoverStart = -1;
+            mConnected = false;
+            mBssid = null;
+        } else if (state == COMPLETED) {
+            onCompleted(bssid, nanos);
+        } else if (mHandoverStart < 0) {
+            mHandoverStart = nanos;
+            mFromBssid = mConnected ? mBssid : null;
+            mConnected = false;
+            Arrays.fill(mPhaseNanos, 0);
+        }
+
+        mState = state;
+        mStateSince = nanos;
+    }
+
+    private void onCompleted(String bssid, long nanos) {
+        if (mHandoverStart < 0) {
+            // COMPLETED to COMPLETED on another BSSID, a roam the supplicant did not report the
+            // steps of.
+            if (mConnected && bssid != null && mBssid != null && !bssid.equals(mBssid)) {
+                mUntimedRoams++;
+            }
+        } else {
+            long latency = nanos - mHandoverStart;
+            if (mFromBssid == null) {
+                mConnects++;
+            } else if (latency > mOutageNanos) {
+                mOutages++;
+            } else if (bssid == null || bssid.equals(mFromBssid)) {
+                mReconnects++;
+            } else {
+                recordRoam(mFromBssid, bssid, latency);
+            }
+            mHandoverStart = -1;
+        }
+        mConnected = true;
+        if (bssid != null) {
+            mBssid = bssid;
+        }
+    }
+
+    private void recordRoam(String from, String to, long latencyNanos) {
+        mRoams++;
+        mLatency.record(TimeUnit.NANOSECONDS.toMillis(latencyNanos));
+        for (int i = 0; i < PHASE_COUNT; i++) {
+            mPhases[i].record(TimeUnit.NANOSECONDS.toMillis(mPhaseNanos[i]));
+        }
+        if (mListener != null) {
+            mListener.onRoam(from, to, latencyNanos, mPhaseNanos);
+        }
+    }
+
+    /**
+     * @return the {@code PHASE_*} time in {@code state} counts toward, -1 for none
+     */
+    public static int phaseOf(int state) {
+        switch (state) {
+            case AUTHENTICATING:
+                return PHASE_AUTHENTICATION;
+            case ASSOCIATING:
+            case ASSOCIATED:
+                return PHASE_ASSOCIATION;
+            case FOUR_WAY_HANDSHAKE:
+            case GROUP_HANDSHAKE:
+                return PHASE_HANDSHAKE;
+            case COMPLETED:
+            case INTERFACE_DISABLED:
+                return -1;
+            default:
+                return PHASE_SEARCH;
+        }
+    }
+
+    public boolean isHandoverInProgress() {
+        return mHandoverStart >= 0;
+    }
+
+    /**
+     * @return BSSID of the last completed connection, null if none
+     */
+    public String getBssid() {
+        return mBssid;
+    }
+
+    /**
+     * @return roam latencies in millis
+     */
+    public Histogram getLatencyHistogram() {
+        return mLatency;
+    }
+
+    /**
+     * @return millis per roam spent in {@code phase}
+     */
+    public Histogram getPhaseHistogram(int phase) {
+        return mPhases[phase];
+    }
+
+    public int getRoamCount() {
+        return mRoams;
+    }
+
+    /**
+     * @return BSSID changes seen only as COMPLETED to COMPLETED, not in the histograms
+     */
+    public int getUntimedRoamCount() {
+        return mUntimedRoams;
+    }
+
+    public int getReconnectCount() {
+        return mReconnects;
+    }
+
+    /**
+     * @return connections not preceded by one, after start or Wi-Fi being turned on
+     */
+    public int getConnectCount() {
+        return mConnects;
+    }
+
+    public int getOutageCount() {
+        return mOutages;
+    }
+
+    /**
+     * Appends the counts and, per line, the latency and phase histograms in millis.
+     */
+    public void format(StringBuilder out) {
+        out.append("roams ").append(mRoams).append(" untimed ").append(mUntimedRoams)
+                .append(" reconnects ").append(mReconnects).append(" connects ").append(mConnects)
+                .append(" outages ").append(mOutages).append('\n');
+        out.append("latency ");
+        mLatency.format(out);
+        out.append('\n');
+        for (int i = 0; i < PHASE_COUNT; i++) {
+            out.append(PHASE_NAMES[i]).append(' ');
+            mPhases[i].format(out);
+            out.append('\n');
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.cyh.wifiinforeader.rssi;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * RSSI time series per BSSID, kept raw and rolled up into one and ten minute buckets.
+ * <p>
+ * Every tier is a fixed ring of primitive columns, so a series costs the same memory from its
+ * first sample on and nothing is boxed. Times are milliseconds on a monotonic clock such as
+ * {@code SystemClock.elapsedRealtime()}; a sample older than the last one of its BSSID is
+ * dropped. Once {@code maxSeries} BSSIDs are tracked the least recently used series is recycled
+ * for the next new one. Not thread safe.
+ */
+public class RssiHistory {
+
+    public enum Resolution {
+        RAW(0), MINUTE(60 * 1000), TEN_MINUTES(10 * 60 * 1000);
+
+        private final long mMillis;
+
+        Resolution(long millis) {
+            mMillis = millis;
+        }
+
+        public long getMillis() {
+            return mMillis;
+        }
+    }
+
+    /**
+     * Receives the points of a range query. Raw samples report the same value three times.
+     */
+    public interface Visitor {
+        void onPoint(long timeMillis, int min, int avg, int max);
+    }
+
+    private final int mMaxSeries;
+    private final int mRawCapacity;
+    private final int mMinuteCapacity;
+    private final int mTenMinuteCapacity;
+    private final Map<String, RssiSeries> mSeries = new LinkedHashMap<>(16, 0.75f, true);
+    private final List<RssiSeries> mFree = new ArrayList<>();
+    private long mDropped = 0;
+    private long mEvicted = 0;
+
+    /**
+     * @param rawCapacity       raw samples kept per BSSID
+     * @param minuteCapacity    one minute buckets kept per BSSID
+     * @param tenMinuteCapacity ten minute buckets kept per BSSID, 144 covers a day
+     */
+    public RssiHistory(int maxSeries, int rawCapacity, int minuteCapacity, int tenMinuteCapacity) {
+        if (maxSeries < 1 || rawCapacity < 1 || minuteCapacity < 1 || tenMinuteCapacity < 1) {
+            throw new IllegalArgumentException("Capacities must be positive");
+        }
+        mMaxSeries = maxSeries;
+        mRawCapacity = rawCapacity;
+        mMinuteCapacity = minuteCapacity;
+        mTenMinuteCapacity = tenMinuteCapacity;
+    }
+
+    /**
+     * @return false if the sample was older than the last one of this BSSID and dropped
+     */
+    public boolean record(String bssid, long timeMillis, int rssi) {
+        if (bssid == null) {
+            return false;
+        }
+        RssiSeries series = mSeries.get(bssid);
+        if (series == null) {
+            series = obtain();
+            mSeries.put(bssid, series);
+        } else if (timeMillis < series.mLastMillis) {
+            mDropped++;
+            return false;
+        }
+        series.add(timeMillis, rssi);
+        return true;
+    }
+
+    /**
+     * Visits the points of one BSSID at one resolution in {@code [from, to)}, oldest first.
+     * Rollup buckets are matched by their start time.
+     *
+     * @return number of points visited
+     */
+    public int forEach(String bssid, Resolution resolution, long from, long to, Visitor visitor) {
+        RssiSeries series = mSeries.get(bssid);
+        if (series == null) {
+            return 0;
+        }
+        switch (resolution) {
+            case RAW:
+                return series.forEachRaw(from, to, visitor);
+            case MINUTE:
+                return series.mMinutes.forEach(from, to, visitor);
+            default:
+                return series.mTenMinutes.forEach(from, to, visitor);
+        }
+    }
+
+    /**
+     * Aggregates one BSSID over {@code [from, to)} into {@code out}, from the finest tier that
+     * still reaches back to {@code from}, or from the ten minute tier if none does.
+     *
+     * @return the resolution that answered, null if the BSSID is unknown
+     */
+    public Resolution aggregate(String bssid, long from, long to, RssiStats out) {
+        out.reset();
+        RssiSeries series = mSeries.get(bssid);
+        if (series == null) {
+            return null;
+        }
+        if (series.getRawOldestMillis() <= from) {
+            series.aggregateRaw(from, to, out);
+            return Resolution.RAW;
+        }
+        // A bucket starting before from still covers it.
+        if (series.mMinutes.getOldestMillis() <= from) {
+            series.mMinutes.aggregate(floor(from, Resolution.MINUTE), to, out);
+            return Resolution.MINUTE;
+        }
+        series.mTenMinutes.aggregate(floor(from, Resolution.TEN_MINUTES), to, out);
+        return Resolution.TEN_MINUTES;
+    }
+
+    public boolean contains(String bssid) {
+        return mSeries.containsKey(bssid);
+    }
+
+    public int size() {
+        return mSeries.size();
+    }
+
+    public long getDroppedCount() {
+        return mDropped;
+    }
+
+    public long getEvictedCount() {
+        return mEvicted;
+    }
+
+    /**
+     * @return bytes held by the columns of every allocated series, object headers aside
+     */
+    public long getFootprintBytes() {
+        long bytes = 0;
+        for (RssiSeries series : mSeries.values()) {
+            bytes += series.footprintBytes();
+        }
+        for (RssiSeries series : mFree) {
+            bytes += series.footprintBytes();
+        }
+        return bytes;
+    }
+
+    public void clear() {
+        for (RssiSeries series : mSeries.values()) {
+            series.clear();
+            mFree.add(series);
+        }
+        mSeries.clear();
+    }
+
+    private RssiSeries obtain() {
+        if (!mFree.isEmpty()) {
+            return mFree.remove(mFree.size() - 1);
+        }
+        if (mSeries.size() < mMaxSeries) {
+            return new RssiSeries(mRawCapacity, mMinuteCapacity, mTenMinuteCapacity);
+        }
+        Iterator<RssiSeries> eldest = mSeries.values().iterator();
+        RssiSeries series = eldest.next();
+        eldest.remove();
+        series.clear();
+        mEvicted++;
+        return series;
+    }
+
+    private static long floor(long time, Resolution resolution) {
+        return time - time % resolution.getMillis();
+    }
+}
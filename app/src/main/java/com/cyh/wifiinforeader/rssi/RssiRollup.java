@@ -0,0 +1,126 @@
+package com.cyh.wifiinforeader.rssi;
+
+/**
+ * Ring of fixed-resolution buckets holding the min, max, sum and count of the samples that fell
+ * into them. Bucket {@code b} covers {@code [b * resolution, (b + 1) * resolution)}.
+ */
+final class RssiRollup {
+
+    /** Bytes one bucket takes across the columns. */
+    static final int BUCKET_BYTES = 8 + 2 + 2 + 4 + 4;
+
+    private final long mResolutionMillis;
+    private final long[] mBuckets;
+    private final short[] mMin;
+    private final short[] mMax;
+    private final int[] mSum;
+    private final int[] mCount;
+    private int mHead = 0;
+    private int mSize = 0;
+
+    RssiRollup(long resolutionMillis, int capacity) {
+        mResolutionMillis = resolutionMillis;
+        mBuckets = new long[capacity];
+        mMin = new short[capacity];
+        mMax = new short[capacity];
+        mSum = new int[capacity];
+        mCount = new int[capacity];
+    }
+
+    void clear() {
+        mHead = 0;
+        mSize = 0;
+    }
+
+    /**
+     * Samples must come in time order, the caller drops older ones.
+     */
+    void add(long time, int rssi) {
+        long bucket = time / mResolutionMillis;
+        int last = mHead == 0 ? mBuckets.length - 1 : mHead - 1;
+        if (mSize > 0 && mBuckets[last] == bucket) {
+            if (rssi < mMin[last]) {
+                mMin[last] = (short) rssi;
+            }
+            if (rssi > mMax[last]) {
+                mMax[last] = (short) rssi;
+            }
+            mSum[last] += rssi;
+            mCount[last]++;
+            return;
+        }
+        mBuckets[mHead] = bucket;
+        mMin[mHead] = (short) rssi;
+        mMax[mHead] = (short) rssi;
+        mSum[mHead] = rssi;
+        mCount[mHead] = 1;
+        mHead = (mHead + 1) % mBuckets.length;
+        if (mSize < mBuckets.length) {
+            mSize++;
+        }
+    }
+
+    int size() {
+        return mSize;
+    }
+
+    int capacity() {
+        return mBuckets.length;
+    }
+
+    /**
+     * @return start of the oldest retained bucket, {@code Long.MAX_VALUE} when empty
+     */
+    long getOldestMillis() {
+        return mSize == 0 ? Long.MAX_VALUE : mBuckets[slot(0)] * mResolutionMillis;
+    }
+
+    /**
+     * Visits the buckets starting in {@code [from, to)}, oldest first.
+     */
+    int forEach(long from, long to, RssiHistory.Visitor visitor) {
+        int visited = 0;
+        for (int i = lowerBound(from); i < mSize; i++) {
+            int slot = slot(i);
+            long start = mBuckets[slot] * mResolutionMillis;
+            if (start >= to) {
+                break;
+            }
+            visitor.onPoint(start, mMin[slot], mSum[slot] / mCount[slot], mMax[slot]);
+            visited++;
+        }
+        return visited;
+    }
+
+    void aggregate(long from, long to, RssiStats out) {
+        for (int i = lowerBound(from); i < mSize; i++) {
+            int slot = slot(i);
+            if (mBuckets[slot] * mResolutionMillis >= to) {
+                break;
+            }
+            out.add(mMin[slot], mMax[slot], mSum[slot], mCount[slot]);
+        }
+    }
+
+    /**
+     * @return index of the first bucket starting at or after {@code from}
+     */
+    private int lowerBound(long from) {
+        int low = 0;
+        int high = mSize;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (mBuckets[slot(mid)] * mResolutionMillis < from) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private int slot(int index) {
+        int slot = mHead - mSize + index;
+        return slot < 0 ? slot + mBuckets.length : slot;
+    }
+}
@@ -0,0 +1,95 @@
+package com.cyh.wifiinforeader.rssi;
+
+/**
+ * RSSI history of one BSSID: a ring of raw samples plus the minute and ten minute rollups.
+ */
+final class RssiSeries {
+
+    private final long[] mRawTimes;
+    private final short[] mRawRssi;
+    private int mRawHead = 0;
+    private int mRawSize = 0;
+    final RssiRollup mMinutes;
+    final RssiRollup mTenMinutes;
+    long mLastMillis = Long.MIN_VALUE;
+
+    RssiSeries(int rawCapacity, int minuteCapacity, int tenMinuteCapacity) {
+        mRawTimes = new long[rawCapacity];
+        mRawRssi = new short[rawCapacity];
+        mMinutes = new RssiRollup(RssiHistory.Resolution.MINUTE.getMillis(), minuteCapacity);
+        mTenMinutes = new RssiRollup(RssiHistory.Resolution.TEN_MINUTES.getMillis(), tenMinuteCapacity);
+    }
+
+    void clear() {
+        mRawHead = 0;
+        mRawSize = 0;
+        mMinutes.clear();
+        mTenMinutes.clear();
+        mLastMillis = Long.MIN_VALUE;
+    }
+
+    void add(long time, int rssi) {
+        mRawTimes[mRawHead] = time;
+        mRawRssi[mRawHead] = (short) rssi;
+        mRawHead = (mRawHead + 1) % mRawTimes.length;
+        if (mRawSize < mRawTimes.length) {
+            mRawSize++;
+        }
+        mMinutes.add(time, rssi);
+        mTenMinutes.add(time, rssi);
+        mLastMillis = time;
+    }
+
+    long getRawOldestMillis() {
+        return mRawSize == 0 ? Long.MAX_VALUE : mRawTimes[rawSlot(0)];
+    }
+
+    int forEachRaw(long from, long to, RssiHistory.Visitor visitor) {
+        int visited = 0;
+        for (int i = rawLowerBound(from); i < mRawSize; i++) {
+            int slot = rawSlot(i);
+            if (mRawTimes[slot] >= to) {
+                break;
+            }
+            int rssi = mRawRssi[slot];
+            visitor.onPoint(mRawTimes[slot], rssi, rssi, rssi);
+            visited++;
+        }
+        return visited;
+    }
+
+    void aggregateRaw(long from, long to, RssiStats out) {
+        for (int i = rawLowerBound(from); i < mRawSize; i++) {
+            int slot = rawSlot(i);
+            if (mRawTimes[slot] >= to) {
+                break;
+            }
+            int rssi = mRawRssi[slot];
+            out.add(rssi, rssi, rssi, 1);
+        }
+    }
+
+    int footprintBytes() {
+        return mRawTimes.length * (8 + 2)
+                + (mMinutes.capacity() + mTenMinutes.capacity()) * RssiRollup.BUCKET_BYTES;
+    }
+
+    private int rawLowerBound(long from) {
+        int low = 0;
+        int high = mRawSize;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (mRawTimes[rawSlot(mid)] < from) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private int rawSlot(int index) {
+        int slot = mRawHead - mRawSize + index;
+        return slot < 0 ? slot + mRawTimes.length : slot;
+    }
+}
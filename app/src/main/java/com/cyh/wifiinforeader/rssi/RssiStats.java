@@ -0,0 +1,62 @@
+package com.cyh.wifiinforeader.rssi;
+
+/**
+ * Min, average and max RSSI over a range, filled by {@link RssiHistory#aggregate}. Reuse one
+ * instance across queries.
+ */
+public class RssiStats {
+
+    private int mMin;
+    private int mMax;
+    private long mSum;
+    private int mCount;
+
+    public RssiStats() {
+        reset();
+    }
+
+    public void reset() {
+        mMin = Integer.MAX_VALUE;
+        mMax = Integer.MIN_VALUE;
+        mSum = 0;
+        mCount = 0;
+    }
+
+    void add(int min, int max, long sum, int count) {
+        mMin = Math.min(mMin, min);
+        mMax = Math.max(mMax, max);
+        mSum += sum;
+        mCount += count;
+    }
+
+    public boolean isEmpty() {
+        return mCount == 0;
+    }
+
+    public int getMin() {
+        return mMin;
+    }
+
+    public int getMax() {
+        return mMax;
+    }
+
+    /**
+     * @return mean of all samples in the range, not of the bucket averages
+     */
+    public double getAverage() {
+        return mCount == 0 ? Double.NaN : (double) mSum / mCount;
+    }
+
+    public int getCount() {
+        return mCount;
+    }
+
+    @Override
+    public String toString() {
+        if (mCount == 0) {
+            return "no samples";
+        }
+        return mMin + "/" + Math.round(getAverage()) + "/" + mMax + " dBm (" + mCount + ")";
+    }
+}
@@ -0,0 +1,175 @@
+package com.cyh.wifiinforeader.scan;
+
+import com.cyh.wifiinforeader.util.Clock;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides when to call {@code WifiManager.startScan()}.
+ * <p>
+ * Only one scan is in flight at a time: the next one is requested once the results of the last
+ * arrived, or once {@code timeoutMillis} passed without them (the platform throttles scans and
+ * then simply never answers). The interval doubles while scans keep returning the same BSSIDs
+ * with quiet RSSIs, halves when RSSIs get volatile, and otherwise drifts back to the base.
+ * <p>
+ * Request-to-results latency is recorded for every scan we asked for. Not thread safe.
+ */
+public class AdaptiveScanScheduler {
+
+    private final long mMinIntervalMillis;
+    private final long mBaseIntervalMillis;
+    private final long mMaxIntervalMillis;
+    private final long mTimeoutMillis;
+    private final double mQuietVolatility;
+    private final double mBusyVolatility;
+    private final Clock mClock;
+
+    private long mIntervalMillis;
+    private long mRequestedAt;
+    private boolean mInFlight = false;
+
+    private int mRequests = 0;
+    private int mRejected = 0;
+    private int mTimeouts = 0;
+    private int mResults = 0;
+    private int mLatencyCount = 0;
+    private long mLatencySumMillis = 0;
+    private long mLastLatencyMillis = -1;
+    private long mMaxLatencyMillis = -1;
+
+    /**
+     * @param quietVolatility RSSI volatility, in dB, below which an unchanged scan backs off
+     * @param busyVolatility  RSSI volatility, in dB, above which scans speed up
+     */
+    public AdaptiveScanScheduler(long minIntervalMillis, long baseIntervalMillis, long maxIntervalMillis,
+                                 long timeoutMillis, double quietVolatility, double busyVolatility, Clock clock) {
+        if (minIntervalMillis > baseIntervalMillis || baseIntervalMillis > maxIntervalMillis) {
+            throw new IllegalArgumentException("Need min <= base <= max interval");
+        }
+        mMinIntervalMillis = minIntervalMillis;
+        mBaseIntervalMillis = baseIntervalMillis;
+        mMaxIntervalMillis = maxIntervalMillis;
+        mTimeoutMillis = timeoutMillis;
+        mQuietVolatility = quietVolatility;
+        mBusyVolatility = busyVolatility;
+        mClock = clock;
+        mIntervalMillis = baseIntervalMillis;
+    }
+
+    /**
+     * @return whether a scan may be requested now; a scan that has been in flight longer than
+     * the timeout is written off and the interval backs off
+     */
+    public boolean shouldRequestScan() {
+        if (!mInFlight) {
+            return true;
+        }
+        if (elapsedMillis(mRequestedAt) >= mTimeoutMillis) {
+            mInFlight = false;
+            mTimeouts++;
+            backOff();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @param accepted what {@code startScan()} returned, false means the platform refused
+     */
+    public void onScanRequested(boolean accepted) {
+        mRequests++;
+        if (accepted) {
+            mInFlight = true;
+            mRequestedAt = mClock.nanoTime();
+        } else {
+            mRejected++;
+            backOff();
+        }
+    }
+
+    /**
+     * Feeds the outcome of a scan, ours or one another app asked for.
+     *
+     * @return milliseconds until the next scan should be requested
+     */
+    public long onScanResults(boolean sameBssidSet, double rssiVolatility) {
+        mResults++;
+        if (mInFlight) {
+            mInFlight = false;
+            long latency = elapsedMillis(mRequestedAt);
+            mLastLatencyMillis = latency;
+            mMaxLatencyMillis = Math.max(mMaxLatencyMillis, latency);
+            mLatencySumMillis += latency;
+            mLatencyCount++;
+        }
+
+        if (rssiVolatility >= mBusyVolatility) {
+            mIntervalMillis = Math.max(mMinIntervalMillis, mIntervalMillis / 2);
+        } else if (sameBssidSet && rssiVolatility < mQuietVolatility) {
+            backOff();
+        } else if (mIntervalMillis > mBaseIntervalMillis) {
+            mIntervalMillis = Math.max(mBaseIntervalMillis, mIntervalMillis / 2);
+        } else if (mIntervalMillis < mBaseIntervalMillis) {
+            mIntervalMillis = Math.min(mBaseIntervalMillis, mIntervalMillis * 2);
+        }
+        return mIntervalMillis;
+    }
+
+    /**
+     * @return milliseconds until {@link #shouldRequestScan()} is worth asking again: the rest of
+     * the timeout while a scan is in flight, the current interval otherwise
+     */
+    public long getNextDelayMillis() {
+        if (mInFlight) {
+            return Math.max(0, mTimeoutMillis - elapsedMillis(mRequestedAt));
+        }
+        return mIntervalMillis;
+    }
+
+    public boolean isScanInFlight() {
+        return mInFlight;
+    }
+
+    public long getIntervalMillis() {
+        return mIntervalMillis;
+    }
+
+    public int getRequestCount() {
+        return mRequests;
+    }
+
+    public int getRejectedCount() {
+        return mRejected;
+    }
+
+    public int getTimeoutCount() {
+        return mTimeouts;
+    }
+
+    public int getResultCount() {
+        return mResults;
+    }
+
+    /**
+     * @return request-to-results latency of the last scan we asked for, -1 if none completed
+     */
+    public long getLastLatencyMillis() {
+        return mLastLatencyMillis;
+    }
+
+    public long getMaxLatencyMillis() {
+        return mMaxLatencyMillis;
+    }
+
+    public long getMeanLatencyMillis() {
+        return mLatencyCount == 0 ? -1 : mLatencySumMillis / mLatencyCount;
+    }
+
+    private void backOff() {
+        mIntervalMillis = Math.min(mMaxIntervalMillis, mIntervalMillis * 2);
+    }
+
+    private long elapsedMillis(long since) {
+        return TimeUnit.NANOSECONDS.toMillis(mClock.nanoTime() - since);
+    }
+}
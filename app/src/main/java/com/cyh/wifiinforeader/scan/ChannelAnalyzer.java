@@ -0,0 +1,247 @@
+package com.cyh.wifiinforeader.scan;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Per channel access point density and congestion of the 2.4 and 5 GHz bands, kept up to
+ * date from {@link ScanDelta}s.
+ * <p>
+ * Every access point occupies its whole channel, {@code centerFrequency +/- width / 2}, and
+ * counts against each 20 MHz channel it overlaps. The congestion of a channel is the sum, over
+ * the access points overlapping it, of how many dB they are heard above a -95 dBm noise floor,
+ * so one loud neighbour weighs as much as several faint ones.
+ * <p>
+ * Counts live in int arrays indexed by channel slot and change only for the entries a scan
+ * added, removed, moved or changed the reported RSSI of; an unchanged scan costs nothing here.
+ * Not thread safe.
+ */
+public class ChannelAnalyzer {
+
+    public static final int BAND_24_GHZ = 0;
+    public static final int BAND_5_GHZ = 1;
+
+    private static final int NOISE_FLOOR = -95;
+
+    private static final int[] CHANNELS = {
+            1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14,
+            36, 40, 44, 48, 52, 56, 60, 64,
+            100, 104, 108, 112, 116, 120, 124, 128, 132, 136, 140, 144,
+            149, 153, 157, 161, 165};
+    /** First 5 GHz slot, the 2.4 GHz ones come before it. */
+    private static final int FIRST_5_GHZ = 14;
+    /** The non-overlapping 2.4 GHz channels, the only sensible ones to recommend there. */
+    private static final int[] CANDIDATES_24_GHZ = {0, 5, 10};
+    private static final int[] CENTERS = new int[CHANNELS.length];
+    private static final int[] SLOTS = new int[CHANNELS[CHANNELS.length - 1] + 1];
+
+    static {
+        Arrays.fill(SLOTS, -1);
+        for (int slot = 0; slot < CHANNELS.length; slot++) {
+            CENTERS[slot] = frequencyOf(CHANNELS[slot]);
+            SLOTS[CHANNELS[slot]] = slot;
+        }
+    }
+
+    private final int[] mApCount = new int[CHANNELS.length];
+    private final int[] mOverlapCount = new int[CHANNELS.length];
+    private final int[] mCongestion = new int[CHANNELS.length];
+    private int mAnalyzed = 0;
+    private int mUpdates = 0;
+
+    /**
+     * Applies the changes of one scan of the store this analyzer follows. Must be called for
+     * every scan, before the next {@link ScanStore#beginScan()}.
+     */
+    public void apply(ScanDelta delta) {
+        List<ScanEntry> removed = delta.getRemoved();
+        for (int i = 0; i < removed.size(); i++) {
+            remove(removed.get(i));
+        }
+        List<ScanEntry> changed = delta.getChanged();
+        for (int i = 0; i < changed.size(); i++) {
+            ScanEntry entry = changed.get(i);
+            if ((entry.mChanges & (ScanStore.CHANGED_RSSI | ScanStore.CHANGED_FREQUENCY | ScanStore.CHANGED_WIDTH)) != 0) {
+                remove(entry);
+                add(entry);
+            }
+        }
+        List<ScanEntry> added = delta.getAdded();
+        for (int i = 0; i < added.size(); i++) {
+            add(added.get(i));
+        }
+    }
+
+    /**
+     * Starts over from every entry of {@code store}, for an analyzer that did not see all of
+     * its scans.
+     */
+    public void rebuild(ScanStore store) {
+        clear();
+        for (ScanEntry entry : store.getEntries()) {
+            add(entry);
+        }
+    }
+
+    public void clear() {
+        for (int slot = 0; slot < CHANNELS.length; slot++) {
+            mApCount[slot] = 0;
+            mOverlapCount[slot] = 0;
+            mCongestion[slot] = 0;
+        }
+        mAnalyzed = 0;
+    }
+
+    public int getSlotCount() {
+        return CHANNELS.length;
+    }
+
+    public int getChannel(int slot) {
+        return CHANNELS[slot];
+    }
+
+    public int getBand(int slot) {
+        return slot < FIRST_5_GHZ ? BAND_24_GHZ : BAND_5_GHZ;
+    }
+
+    /**
+     * @return access points whose primary channel this is
+     */
+    public int getApCount(int slot) {
+        return mApCount[slot];
+    }
+
+    /**
+     * @return access points whose channel overlaps this one, the co-channel ones included
+     */
+    public int getOverlapCount(int slot) {
+        return mOverlapCount[slot];
+    }
+
+    public int getCongestion(int slot) {
+        return mCongestion[slot];
+    }
+
+    /**
+     * @return access points counted, those on channels outside the table are not
+     */
+    public int getAnalyzedCount() {
+        return mAnalyzed;
+    }
+
+    /**
+     * @return entries added or removed since construction, re-counting a changed one is two
+     */
+    public int getUpdateCount() {
+        return mUpdates;
+    }
+
+    /**
+     * @return the least congested channel of {@code band}, ties going to fewer overlapping
+     * access points and then the lower channel; only 1, 6 and 11 on 2.4 GHz
+     */
+    public int recommendChannel(int band) {
+        int best = -1;
+        if (band == BAND_24_GHZ) {
+            for (int i = 0; i < CANDIDATES_24_GHZ.length; i++) {
+                best = better(best, CANDIDATES_24_GHZ[i]);
+            }
+        } else {
+            for (int slot = FIRST_5_GHZ; slot < CHANNELS.length; slot++) {
+                best = better(best, slot);
+            }
+        }
+        return CHANNELS[best];
+    }
+
+    /**
+     * @return the slot of {@code channel}, -1 if it is not in the table
+     */
+    public static int slotOf(int channel) {
+        return channel >= 0 && channel < SLOTS.length ? SLOTS[channel] : -1;
+    }
+
+    /**
+     * @return the 20 MHz channel number of {@code frequency} in MHz, -1 outside 2.4 and 5 GHz
+     */
+    public static int channelOf(int frequency) {
+        if (frequency == 2484) {
+            return 14;
+        }
+        if (frequency >= 2412 && frequency < 2484) {
+            return (frequency - 2407) / 5;
+        }
+        if (frequency >= 5000 && frequency < 5900) {
+            return (frequency - 5000) / 5;
+        }
+        return -1;
+    }
+
+    /**
+     * Appends one line per occupied channel: channel, primary and overlapping access points,
+     * congestion.
+     */
+    public void format(StringBuilder out) {
+        for (int slot = 0; slot < CHANNELS.length; slot++) {
+            if (mOverlapCount[slot] == 0) {
+                continue;
+            }
+            out.append("ch ").append(CHANNELS[slot])
+                    .append(" aps ").append(mApCount[slot])
+                    .append(" overlapping ").append(mOverlapCount[slot])
+                    .append(" congestion ").append(mCongestion[slot]).append('\n');
+        }
+    }
+
+    private int better(int best, int slot) {
+        if (best < 0 || mCongestion[slot] < mCongestion[best]
+                || mCongestion[slot] == mCongestion[best] && mOverlapCount[slot] < mOverlapCount[best]) {
+            return slot;
+        }
+        return best;
+    }
+
+    private void add(ScanEntry entry) {
+        int primary = slotOf(channelOf(entry.mFrequency));
+        entry.mAnalyzedSlot = primary;
+        if (primary < 0) {
+            return;
+        }
+        int width = entry.mChannelWidth > 20 && entry.mCenterFrequency > 0 ? entry.mChannelWidth : 20;
+        int center = width > 20 ? entry.mCenterFrequency : entry.mFrequency;
+        entry.mAnalyzedLow = center - width / 2;
+        entry.mAnalyzedHigh = center + width / 2;
+        entry.mAnalyzedWeight = Math.max(0, entry.mReportedRssi - NOISE_FLOOR);
+        count(entry, primary, 1);
+    }
+
+    private void remove(ScanEntry entry) {
+        if (entry.mAnalyzedSlot < 0) {
+            return;
+        }
+        count(entry, entry.mAnalyzedSlot, -1);
+        entry.mAnalyzedSlot = -1;
+    }
+
+    private void count(ScanEntry entry, int primary, int sign) {
+        mApCount[primary] += sign;
+        mAnalyzed += sign;
+        mUpdates++;
+        int first = primary < FIRST_5_GHZ ? 0 : FIRST_5_GHZ;
+        int last = primary < FIRST_5_GHZ ? FIRST_5_GHZ : CHANNELS.length;
+        int weight = sign * entry.mAnalyzedWeight;
+        for (int slot = first; slot < last; slot++) {
+            if (entry.mAnalyzedLow < CENTERS[slot] + 10 && entry.mAnalyzedHigh > CENTERS[slot] - 10) {
+                mOverlapCount[slot] += sign;
+                mCongestion[slot] += weight;
+            }
+        }
+    }
+
+    private static int frequencyOf(int channel) {
+        if (channel == 14) {
+            return 2484;
+        }
+        return channel < 14 ? 2407 + channel * 5 : 5000 + channel * 5;
+    }
+}
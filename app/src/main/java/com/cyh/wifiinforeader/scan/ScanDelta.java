@@ -0,0 +1,78 @@
+package com.cyh.wifiinforeader.scan;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * What changed between two scans of a {@link ScanStore}. The store reuses one instance, it is
+ * only valid until the next scan begins.
+ */
+public class ScanDelta {
+
+    final List<ScanEntry> mAdded = new ArrayList<>();
+    final List<ScanEntry> mRemoved = new ArrayList<>();
+    final List<ScanEntry> mChanged = new ArrayList<>();
+    long mRssiMoveSum = 0;
+    int mRssiMoveCount = 0;
+
+    public List<ScanEntry> getAdded() {
+        return mAdded;
+    }
+
+    public List<ScanEntry> getRemoved() {
+        return mRemoved;
+    }
+
+    /**
+     * @return entries present in both scans whose {@link ScanEntry#getChanges()} is not 0
+     */
+    public List<ScanEntry> getChanged() {
+        return mChanged;
+    }
+
+    /**
+     * @return whether the scan reported exactly the BSSIDs of the one before
+     */
+    public boolean isSameBssidSet() {
+        return mAdded.isEmpty() && mRemoved.isEmpty();
+    }
+
+    /**
+     * Mean absolute RSSI move, in dB, of the BSSIDs seen in both scans, threshold or not.
+     */
+    public double getRssiVolatility() {
+        return mRssiMoveCount == 0 ? 0 : (double) mRssiMoveSum / mRssiMoveCount;
+    }
+
+    public boolean isEmpty() {
+        return mAdded.isEmpty() && mRemoved.isEmpty() && mChanged.isEmpty();
+    }
+
+    /**
+     * @return whether the set of BSSIDs or any SSID changed, i.e. a list of names needs redrawing
+     */
+    public boolean isMembershipChanged() {
+        if (!mAdded.isEmpty() || !mRemoved.isEmpty()) {
+            return true;
+        }
+        for (int i = 0; i < mChanged.size(); i++) {
+            if ((mChanged.get(i).mChanges & ScanStore.CHANGED_SSID) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    void clear() {
+        mAdded.clear();
+        mRemoved.clear();
+        mChanged.clear();
+        mRssiMoveSum = 0;
+        mRssiMoveCount = 0;
+    }
+
+    @Override
+    public String toString() {
+        return "+" + mAdded.size() + " -" + mRemoved.size() + " ~" + mChanged.size();
+    }
+}
@@ -0,0 +1,77 @@
+package com.cyh.wifiinforeader.scan;
+
+/**
+ * The last seen state of one BSSID in a {@link ScanStore}.
+ * <p>
+ * Entries are owned and recycled by the store: read them while handling a {@link ScanDelta},
+ * do not keep them across scans.
+ */
+public class ScanEntry {
+
+    String mBssid;
+    String mSsid;
+    int mRssi;
+    int mFrequency;
+    int mChannelWidth;
+    int mCenterFrequency;
+    String mCapabilities;
+
+    /** RSSI at the last time this entry was reported, changes are measured against it. */
+    int mReportedRssi;
+    int mGeneration;
+    int mChanges;
+    /** Already listed in the delta of the current scan, as added or changed. */
+    boolean mInDelta;
+
+    /** What a {@link ChannelAnalyzer} counted for this entry, mAnalyzedSlot is -1 if nothing. */
+    int mAnalyzedSlot = -1;
+    int mAnalyzedLow;
+    int mAnalyzedHigh;
+    int mAnalyzedWeight;
+
+    public String getBssid() {
+        return mBssid;
+    }
+
+    public String getSsid() {
+        return mSsid;
+    }
+
+    public int getRssi() {
+        return mRssi;
+    }
+
+    public int getFrequency() {
+        return mFrequency;
+    }
+
+    /**
+     * @return the width of the whole channel in MHz, 20 when the platform does not report it
+     */
+    public int getChannelWidth() {
+        return mChannelWidth;
+    }
+
+    /**
+     * @return the center of the whole channel in MHz, the primary frequency for 20 MHz
+     */
+    public int getCenterFrequency() {
+        return mCenterFrequency;
+    }
+
+    public String getCapabilities() {
+        return mCapabilities;
+    }
+
+    /**
+     * @return the {@code ScanStore.CHANGED_*} bits of the last scan, 0 if nothing changed
+     */
+    public int getChanges() {
+        return mChanges;
+    }
+
+    @Override
+    public String toString() {
+        return mBssid + " " + mSsid + " " + mRssi + "dBm " + mFrequency + "MHz/" + mChannelWidth + " " + mCapabilities;
+    }
+}
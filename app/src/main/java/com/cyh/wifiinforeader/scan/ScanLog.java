@@ -0,0 +1,93 @@
+package com.cyh.wifiinforeader.scan;
+
+/**
+ * Fixed capacity log of scan events in primitive columns. Appending overwrites the oldest event
+ * once full, so memory and per-event cost stay the same however long the app runs.
+ * <p>
+ * Index 0 is the oldest retained event. Not thread safe.
+ */
+public class ScanLog {
+
+    private final long[] mTimestamps;
+    private final int[] mCounts;
+    private final int[] mResultSizes;
+    private int mHead = 0;
+    private int mSize = 0;
+    private long mTotal = 0;
+
+    public ScanLog(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        mTimestamps = new long[capacity];
+        mCounts = new int[capacity];
+        mResultSizes = new int[capacity];
+    }
+
+    /**
+     * @param timestamp  wall clock millis of the event
+     * @param count      scans requested so far
+     * @param resultSize results the scan returned
+     */
+    public void append(long timestamp, int count, int resultSize) {
+        mTimestamps[mHead] = timestamp;
+        mCounts[mHead] = count;
+        mResultSizes[mHead] = resultSize;
+        mHead = (mHead + 1) % mTimestamps.length;
+        if (mSize < mTimestamps.length) {
+            mSize++;
+        }
+        mTotal++;
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public int capacity() {
+        return mTimestamps.length;
+    }
+
+    /**
+     * @return events appended since creation, including the ones overwritten
+     */
+    public long getTotal() {
+        return mTotal;
+    }
+
+    public long getTimestamp(int index) {
+        return mTimestamps[slot(index)];
+    }
+
+    public int getCount(int index) {
+        return mCounts[slot(index)];
+    }
+
+    public int getResultSize(int index) {
+        return mResultSizes[slot(index)];
+    }
+
+    /**
+     * Writes the newest {@code window} events, oldest first, one per line, replacing the content
+     * of {@code out}. Reuse {@code out} across calls to keep rendering allocation free.
+     */
+    public void formatWindow(int window, StringBuilder out) {
+        out.setLength(0);
+        int from = Math.max(0, mSize - window);
+        for (int i = from; i < mSize; i++) {
+            int slot = slot(i);
+            out.append("Time: ").append(mTimestamps[slot])
+                    .append(" ScanCount: ").append(mCounts[slot])
+                    .append(" Results: ").append(mResultSizes[slot])
+                    .append('\n');
+        }
+    }
+
+    private int slot(int index) {
+        if (index < 0 || index >= mSize) {
+            throw new IndexOutOfBoundsException("index " + index + " size " + mSize);
+        }
+        int slot = mHead - mSize + index;
+        return slot < 0 ? slot + mTimestamps.length : slot;
+    }
+}
@@ -0,0 +1,168 @@
+package com.cyh.wifiinforeader.scan;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Scan results keyed by BSSID, diffed scan over scan.
+ * <p>
+ * A scan is fed as {@link #beginScan()}, one {@link #put} per result and {@link #endScan()},
+ * which returns the entries that were added, removed or changed. Entries and the delta are
+ * reused, so a scan of mostly unchanged access points allocates next to nothing here.
+ * Not thread safe.
+ */
+public class ScanStore {
+
+    public static final int CHANGED_RSSI = 1;
+    public static final int CHANGED_FREQUENCY = 1 << 1;
+    public static final int CHANGED_CAPABILITIES = 1 << 2;
+    public static final int CHANGED_SSID = 1 << 3;
+    /** Channel width or center frequency, the primary frequency is {@link #CHANGED_FREQUENCY}. */
+    public static final int CHANGED_WIDTH = 1 << 4;
+
+    private final int mRssiThreshold;
+    private final Map<String, ScanEntry> mEntries = new LinkedHashMap<>();
+    private final List<ScanEntry> mFree = new ArrayList<>();
+    private final ScanDelta mDelta = new ScanDelta();
+    private int mGeneration = 0;
+    private boolean mInScan = false;
+
+    /**
+     * @param rssiThreshold dB an RSSI has to move from its last reported value to count as a
+     *                      change, scans jitter by a dB or two all the time
+     */
+    public ScanStore(int rssiThreshold) {
+        mRssiThreshold = rssiThreshold;
+    }
+
+    public void beginScan() {
+        // Entries removed by the previous scan are no longer referenced by its delta.
+        mFree.addAll(mDelta.mRemoved);
+        mDelta.clear();
+        mGeneration++;
+        mInScan = true;
+    }
+
+    /**
+     * Records a 20 MHz scan result, see {@link #put(String, String, int, int, String, int, int)}.
+     */
+    public void put(String bssid, String ssid, int rssi, int frequency, String capabilities) {
+        put(bssid, ssid, rssi, frequency, capabilities, 20, frequency);
+    }
+
+    /**
+     * Records one scan result. A BSSID seen twice in the same scan keeps the last values.
+     *
+     * @param channelWidth    width of the whole channel in MHz
+     * @param centerFrequency center of the whole channel in MHz
+     */
+    public void put(String bssid, String ssid, int rssi, int frequency, String capabilities,
+                    int channelWidth, int centerFrequency) {
+        if (!mInScan) {
+            throw new IllegalStateException("put() outside beginScan()/endScan()");
+        }
+        if (bssid == null) {
+            return;
+        }
+        ScanEntry entry = mEntries.get(bssid);
+        if (entry == null) {
+            entry = mFree.isEmpty() ? new ScanEntry() : mFree.remove(mFree.size() - 1);
+            entry.mBssid = bssid;
+            entry.mSsid = ssid;
+            entry.mRssi = rssi;
+            entry.mReportedRssi = rssi;
+            entry.mFrequency = frequency;
+            entry.mChannelWidth = channelWidth;
+            entry.mCenterFrequency = centerFrequency;
+            entry.mCapabilities = capabilities;
+            entry.mAnalyzedSlot = -1;
+            entry.mGeneration = mGeneration;
+            entry.mChanges = 0;
+            entry.mInDelta = true;
+            mEntries.put(bssid, entry);
+            mDelta.mAdded.add(entry);
+            return;
+        }
+
+        if (entry.mGeneration != mGeneration) {
+            entry.mGeneration = mGeneration;
+            entry.mChanges = 0;
+            entry.mInDelta = false;
+            mDelta.mRssiMoveSum += Math.abs(rssi - entry.mRssi);
+            mDelta.mRssiMoveCount++;
+        }
+        entry.mRssi = rssi;
+        if (Math.abs(rssi - entry.mReportedRssi) >= mRssiThreshold && rssi != entry.mReportedRssi) {
+            entry.mReportedRssi = rssi;
+            entry.mChanges |= CHANGED_RSSI;
+        }
+        if (frequency != entry.mFrequency) {
+            entry.mFrequency = frequency;
+            entry.mChanges |= CHANGED_FREQUENCY;
+        }
+        // A 20 MHz center is the primary frequency, its move is already a frequency change.
+        if (channelWidth != entry.mChannelWidth || channelWidth > 20 && centerFrequency != entry.mCenterFrequency) {
+            entry.mChanges |= CHANGED_WIDTH;
+        }
+        entry.mChannelWidth = channelWidth;
+        entry.mCenterFrequency = centerFrequency;
+        if (!equals(capabilities, entry.mCapabilities)) {
+            entry.mCapabilities = capabilities;
+            entry.mChanges |= CHANGED_CAPABILITIES;
+        }
+        if (!equals(ssid, entry.mSsid)) {
+            entry.mSsid = ssid;
+            entry.mChanges |= CHANGED_SSID;
+        }
+        if (entry.mChanges != 0 && !entry.mInDelta) {
+            entry.mInDelta = true;
+            mDelta.mChanged.add(entry);
+        }
+    }
+
+    /**
+     * Drops every BSSID the scan did not report.
+     *
+     * @return the delta against the previous scan, valid until the next {@link #beginScan()}
+     */
+    public ScanDelta endScan() {
+        mInScan = false;
+        Iterator<ScanEntry> it = mEntries.values().iterator();
+        while (it.hasNext()) {
+            ScanEntry entry = it.next();
+            if (entry.mGeneration != mGeneration) {
+                it.remove();
+                entry.mChanges = 0;
+                mDelta.mRemoved.add(entry);
+            }
+        }
+        return mDelta;
+    }
+
+    public int size() {
+        return mEntries.size();
+    }
+
+    /**
+     * @return the entry for {@code bssid}, null if the last scan did not report it
+     */
+    public ScanEntry get(String bssid) {
+        return mEntries.get(bssid);
+    }
+
+    /**
+     * @return the entries of the last scan, in the order their BSSIDs were first seen
+     */
+    public Collection<ScanEntry> getEntries() {
+        return Collections.unmodifiableCollection(mEntries.values());
+    }
+
+    private static boolean equals(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+}
@@ -0,0 +1,168 @@
+package com.cyh.wifiinforeader.status;
+
+import com.cyh.wifiinforeader.util.Clock;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Holds the latest {@link StatusSnapshot} and renders it at most once per frame.
+ * <p>
+ * Any thread may change fields; each change publishes a whole new snapshot and asks for a
+ * frame unless one is already pending. On the frame the {@link Renderer} gets the latest
+ * snapshot with only the fields that differ from the one it rendered last, so a burst of RSSI
+ * updates costs one {@code setText} rather than one per broadcast.
+ */
+public class StatusModel {
+
+    /**
+     * Called on the frame thread, the main thread on a device.
+     */
+    public interface Renderer {
+        /**
+         * @param changed a bit per field to update, {@code 1 << field}; never 0
+         */
+        void render(StatusSnapshot snapshot, int changed);
+    }
+
+    /**
+     * Runs a frame later, {@code Choreographer.postFrameCallback} on a device.
+     */
+    public interface FrameScheduler {
+        void scheduleFrame(Runnable frame);
+    }
+
+    private final FrameScheduler mScheduler;
+    private final Clock mClock;
+    private final AtomicBoolean mFramePending = new AtomicBoolean();
+    private volatile StatusSnapshot mCurrent = StatusSnapshot.EMPTY;
+
+    /** Frame thread only. */
+    private Renderer mRenderer;
+    private StatusSnapshot mRendered;
+
+    // Stats, written under the lock or on the frame thread.
+    private long mUpdates = 0;
+    private long mUnchangedUpdates = 0;
+    private volatile long mFrames = 0;
+    private volatile long mFieldsRendered = 0;
+    private volatile long mRenderNanos = 0;
+
+    private final Runnable mFrame = new Runnable() {
+        @Override
+        public void run() {
+            doFrame();
+        }
+    };
+
+    public StatusModel(FrameScheduler scheduler, Clock clock) {
+        mScheduler = scheduler;
+        mClock = clock;
+    }
+
+    /**
+     * Frame thread only. A new renderer gets every field on the next frame.
+     *
+     * @param renderer null to stop rendering
+     */
+    public void setRenderer(Renderer renderer) {
+        mRenderer = renderer;
+        mRendered = null;
+        if (renderer != null) {
+            requestFrame();
+        }
+    }
+
+    public StatusSnapshot get() {
+        return mCurrent;
+    }
+
+    public void set(int field, String value) {
+        synchronized (this) {
+            StatusSnapshot next = mCurrent.with(field, value);
+            if (next == mCurrent) {
+                mUnchangedUpdates++;
+                return;
+            }
+            mCurrent = next;
+            mUpdates++;
+        }
+        requestFrame();
+    }
+
+    /**
+     * Changes several fields in one snapshot, the frame never shows some of them without the
+     * others.
+     *
+     * @param mask   a bit per field to change, {@code 1 << field}
+     * @param values new text by field
+     */
+    public void set(int mask, String[] values) {
+        synchronized (this) {
+            StatusSnapshot next = mCurrent.with(mask, values);
+            if (next == mCurrent) {
+                mUnchangedUpdates++;
+                return;
+            }
+            mCurrent = next;
+            mUpdates++;
+        }
+        requestFrame();
+    }
+
+    /**
+     * @return changes that made a new snapshot
+     */
+    public synchronized long getUpdateCount() {
+        return mUpdates;
+    }
+
+    /**
+     * @return changes that set what the fields already held and were dropped
+     */
+    public synchronized long getUnchangedUpdateCount() {
+        return mUnchangedUpdates;
+    }
+
+    /**
+     * @return frames that rendered anything
+     */
+    public long getFrameCount() {
+        return mFrames;
+    }
+
+    public long getFieldsRendered() {
+        return mFieldsRendered;
+    }
+
+    /**
+     * @return time spent in {@link Renderer#render}
+     */
+    public long getRenderNanos() {
+        return mRenderNanos;
+    }
+
+    private void requestFrame() {
+        if (mFramePending.compareAndSet(false, true)) {
+            mScheduler.scheduleFrame(mFrame);
+        }
+    }
+
+    private void doFrame() {
+        // Cleared first: a change from now on asks for another frame.
+        mFramePending.set(false);
+        if (mRenderer == null) {
+            return;
+        }
+        StatusSnapshot snapshot = mCurrent;
+        int changed = snapshot.diff(mRendered);
+        if (changed == 0) {
+            return;
+        }
+        long start = mClock.nanoTime();
+        mRenderer.render(snapshot, changed);
+        mRenderNanos += mClock.nanoTime() - start;
+        mRendered = snapshot;
+        mFrames++;
+        mFieldsRendered += Integer.bitCount(changed);
+    }
+}
@@ -0,0 +1,101 @@
+package com.cyh.wifiinforeader.status;
+
+import java.util.Arrays;
+
+/**
+ * The text of every field of the status panel at one point in time. Immutable, a change makes
+ * a new snapshot through {@link #with}.
+ */
+public final class StatusSnapshot {
+
+    public static final int WIFI_STATE = 0;
+    public static final int NETWORK_STATE = 1;
+    public static final int SUPPLICANT_STATE = 2;
+    public static final int RSSI = 3;
+    public static final int BSSID = 4;
+    public static final int SSID = 5;
+    public static final int HIDDEN_SSID = 6;
+    public static final int IP_ADDRESS = 7;
+    public static final int MAC_ADDRESS = 8;
+    public static final int NETWORK_ID = 9;
+    public static final int LINK_SPEED = 10;
+    public static final int SCAN_LIST = 11;
+    public static final int SCAN_LOG = 12;
+    public static final int FIELD_COUNT = 13;
+
+    /** Every field null, nothing to show yet. */
+    public static final StatusSnapshot EMPTY = new StatusSnapshot(new String[FIELD_COUNT], 0);
+
+    private final String[] mFields;
+    private final long mVersion;
+
+    private StatusSnapshot(String[] fields, long version) {
+        mFields = fields;
+        mVersion = version;
+    }
+
+    /**
+     * @return the field's text, null if it was never set
+     */
+    public String get(int field) {
+        return mFields[field];
+    }
+
+    /**
+     * @return how many changes led to this snapshot
+     */
+    public long getVersion() {
+        return mVersion;
+    }
+
+    /**
+     * @return this snapshot if {@code field} already has {@code value}, otherwise a copy with it
+     */
+    public StatusSnapshot with(int field, String value) {
+        if (equal(mFields[field], value)) {
+            return this;
+        }
+        String[] fields = Arrays.copyOf(mFields, FIELD_COUNT);
+        fields[field] = value;
+        return new StatusSnapshot(fields, mVersion + 1);
+    }
+
+    /**
+     * @param values new text by field, only the fields in {@code mask} are taken
+     * @return this snapshot if none of them changed, otherwise one copy with all of them
+     */
+    public StatusSnapshot with(int mask, String[] values) {
+        String[] fields = null;
+        for (int field = 0; field < FIELD_COUNT; field++) {
+            if ((mask & (1 << field)) == 0 || equal(mFields[field], values[field])) {
+                continue;
+            }
+            if (fields == null) {
+                fields = Arrays.copyOf(mFields, FIELD_COUNT);
+            }
+            fields[field] = values[field];
+        }
+        return fields == null ? this : new StatusSnapshot(fields, mVersion + 1);
+    }
+
+    /**
+     * @param other the snapshot last shown, null if nothing was
+     * @return a bit per field that differs, {@code 1 << field}
+     */
+    public int diff(StatusSnapshot other) {
+        if (other == this) {
+            return 0;
+        }
+        int changed = 0;
+        for (int field = 0; field < FIELD_COUNT; field++) {
+            if (other == null || !equal(mFields[field], other.mFields[field])) {
+                changed |= 1 << field;
+            }
+        }
+        return changed;
+    }
+
+    private static boolean equal(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+}
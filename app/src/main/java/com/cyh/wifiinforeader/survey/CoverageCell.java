@@ -0,0 +1,97 @@
+package com.cyh.wifiinforeader.survey;
+
+/**
+ * RSSI samples of one grid cell, aggregated per BSSID in parallel primitive columns: a cell
+ * costs the same however many samples it holds, only a new BSSID grows it. The last strongest
+ * lookup is cached until the next sample, queries over a finished survey, tile after tile of
+ * the same SSID, only look at each cell once.
+ */
+final class CoverageCell {
+
+    private static final int NOT_CACHED = Integer.MIN_VALUE;
+
+    int mSize;
+    /** {@link CoverageMap} BSSID ids. */
+    int[] mIds = new int[4];
+    int[] mCounts = new int[4];
+    long[] mSums = new long[4];
+    int[] mMax = new int[4];
+
+    private int mCachedSsid = NOT_CACHED;
+    private int mCachedGeneration;
+    private int mCachedBest;
+
+    void add(int id, int rssi) {
+        mCachedSsid = NOT_CACHED;
+        int i = 0;
+        while (i < mSize && mIds[i] != id) {
+            i++;
+        }
+        if (i == mSize) {
+            if (mSize == mIds.length) {
+                grow();
+            }
+            mIds[i] = id;
+            mCounts[i] = 0;
+            mSums[i] = 0;
+            mMax[i] = rssi;
+            mSize++;
+        }
+        mCounts[i]++;
+        mSums[i] += rssi;
+        if (rssi > mMax[i]) {
+            mMax[i] = rssi;
+        }
+    }
+
+    /**
+     * @param ssidOfId   SSID id per BSSID id
+     * @param ssid       SSID id to consider, -1 for any; one no BSSID has matches none
+     * @param generation changes whenever {@code ssidOfId} does
+     * @return index of the BSSID with the strongest mean RSSI, -1 if none
+     */
+    int strongest(int[] ssidOfId, int ssid, int generation) {
+        if (ssid == mCachedSsid && generation == mCachedGeneration) {
+            return mCachedBest;
+        }
+        int best = -1;
+        double bestMean = 0;
+        for (int i = 0; i < mSize; i++) {
+            if (ssid != -1 && ssidOfId[mIds[i]] != ssid) {
+                continue;
+            }
+            double mean = (double) mSums[i] / mCounts[i];
+            if (best < 0 || mean > bestMean) {
+                best = i;
+                bestMean = mean;
+            }
+        }
+        mCachedSsid = ssid;
+        mCachedGeneration = generation;
+        mCachedBest = best;
+        return best;
+    }
+
+    /**
+     * @return mean RSSI of entry {@code i}, rounded to the nearest dB
+     */
+    int mean(int i) {
+        return (int) Math.round((double) mSums[i] / mCounts[i]);
+    }
+
+    private void grow() {
+        int capacity = mIds.length * 2;
+        int[] ids = new int[capacity];
+        int[] counts = new int[capacity];
+        long[] sums = new long[capacity];
+        int[] max = new int[capacity];
+        System.arraycopy(mIds, 0, ids, 0, mSize);
+        System.arraycopy(mCounts, 0, counts, 0, mSize);
+        System.arraycopy(mSums, 0, sums, 0, mSize);
+        System.arraycopy(mMax, 0, max, 0, mSize);
+        mIds = ids;
+        mCounts = counts;
+        mSums = sums;
+        mMax = max;
+    }
+}
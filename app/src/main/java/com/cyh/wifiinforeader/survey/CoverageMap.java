@@ -0,0 +1,469 @@
+package com.cyh.wifiinforeader.survey;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * RSSI per BSSID over a site, indexed by position for coverage queries: the strongest access
+ * point at a point, the coverage holes, and heatmap tiles.
+ * <p>
+ * The site is a grid of square cells, in meters on any plane, a floor plan or a projection of
+ * location fixes. Samples are aggregated per BSSID per cell as they come, so memory grows with
+ * the surveyed area and the access points heard in it, not with the samples: millions of them
+ * cost no more than the cells they fall in. Cells are kept in chunks of 16 by 16 found through
+ * an open addressing table, so an insert is one hash probe and a scan of the cell's BSSIDs, and
+ * a region query only visits the chunks it overlaps. Only surveyed chunks exist, the site can
+ * be any size and coordinates may be negative.
+ * <p>
+ * Not thread safe.
+ */
+public class CoverageMap {
+
+    /** Width and height of a heatmap tile in pixels. */
+    public static final int TILE_SIZE = 256;
+    /** Heatmap pixels no sample fell in; RSSI is always negative. */
+    public static final byte NO_DATA = 0;
+    /** RSSI of a hole where the SSID was not heard at all. */
+    public static final int NO_SIGNAL = -127;
+
+    private static final int CHUNK_BITS = 4;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    /**
+     * A surveyed cell whose best access point, of the SSID asked for, is below the threshold.
+     */
+    public static final class Hole {
+        private final int mCellX;
+        private final int mCellY;
+        private final double mCellMeters;
+        private final int mRssi;
+
+        Hole(int cellX, int cellY, double cellMeters, int rssi) {
+            mCellX = cellX;
+            mCellY = cellY;
+            mCellMeters = cellMeters;
+            mRssi = rssi;
+        }
+
+        public int getCellX() {
+            return mCellX;
+        }
+
+        public int getCellY() {
+            return mCellY;
+        }
+
+        public double getCenterX() {
+            return (mCellX + 0.5) * mCellMeters;
+        }
+
+        public double getCenterY() {
+            return (mCellY + 0.5) * mCellMeters;
+        }
+
+        /**
+         * @return mean RSSI of the strongest access point, {@link #NO_SIGNAL} if none was heard
+         */
+        public int getRssi() {
+            return mRssi;
+        }
+
+        @Override
+        public String toString() {
+            return "(" + mCellX + ", " + mCellY + ") " + mRssi + " dBm";
+        }
+    }
+
+    private static final class Chunk {
+        final int mX;
+        final int mY;
+        final CoverageCell[] mCells = new CoverageCell[CHUNK_SIZE * CHUNK_SIZE];
+
+        Chunk(int x, int y) {
+            mX = x;
+            mY = y;
+        }
+    }
+
+    private final double mCellMeters;
+
+    private final Map<String, Integer> mBssidIds = new HashMap<>();
+    private final List<String> mBssids = new ArrayList<>();
+    private int[] mSsidOfId = new int[64];
+    /** Bumped when a BSSID's SSID changes, cached lookups in the cells go stale. */
+    private int mSsidGeneration = 0;
+    private final Map<String, Integer> mSsidIds = new HashMap<>();
+    private final List<String> mSsids = new ArrayList<>();
+
+    /** Open addressing, chunk coordinates packed into a long, null slots empty. */
+    private long[] mKeys = new long[64];
+    private Chunk[] mSlots = new Chunk[64];
+    private final List<Chunk> mChunks = new ArrayList<>();
+
+    /** Consecutive samples usually fall in the same cell, the rest of a scan always does. */
+    private CoverageCell mLastCell;
+    private int mLastCellX;
+    private int mLastCellY;
+
+    private long mSamples = 0;
+    private int mCells = 0;
+
+    /**
+     * @param cellMeters side of a cell, the resolution of every query
+     */
+    public CoverageMap(double cellMeters) {
+        if (!(cellMeters > 0)) {
+            throw new IllegalArgumentException("cellMeters must be positive");
+        }
+        mCellMeters = cellMeters;
+    }
+
+    /**
+     * @param ssid null or empty for a hidden network
+     * @return false if the position was not a finite number and the sample dropped
+     */
+    public boolean add(double x, double y, String bssid, String ssid, int rssi) {
+        int cellX = cellOf(x);
+        int cellY = cellOf(y);
+        if (bssid == null || cellX == Integer.MIN_VALUE || cellY == Integer.MIN_VALUE) {
+            return false;
+        }
+        CoverageCell cell = mLastCell;
+        if (cell == null || cellX != mLastCellX || cellY != mLastCellY) {
+            cell = cell(cellX, cellY, true);
+            mLastCell = cell;
+            mLastCellX = cellX;
+            mLastCellY = cellY;
+        }
+        cell.add(idOf(bssid, ssid), rssi);
+        mSamples++;
+        return true;
+    }
+
+    /**
+     * @param ssid only consider access points of this SSID, null for any
+     * @return false if nothing of it was heard in the cell at the point, or it was not surveyed
+     */
+    public boolean strongestAt(double x, double y, String ssid, CoverageReading out) {
+        int cellX = cellOf(x);
+        int cellY = cellOf(y);
+        if (cellX == Integer.MIN_VALUE || cellY == Integer.MIN_VALUE) {
+            return false;
+        }
+        CoverageCell cell = cell(cellX, cellY, false);
+        if (cell == null) {
+            return false;
+        }
+        int best = cell.strongest(mSsidOfId, ssidIdOf(ssid), mSsidGeneration);
+        if (best < 0) {
+            return false;
+        }
+        int id = cell.mIds[best];
+        int ssidId = mSsidOfId[id];
+        out.set(mBssids.get(id), ssidId < 0 ? null : mSsids.get(ssidId), cell.mean(best), cell.mMax[best],
+                cell.mCounts[best]);
+        return true;
+    }
+
+    /**
+     * @param ssid          the network to check coverage of, null for any
+     * @param thresholdDbm  cells whose strongest mean RSSI is below this are holes, e.g. -75
+     * @return every surveyed cell that is a hole, including ones where {@code ssid} was not heard
+     */
+    public List<Hole> findHoles(String ssid, int thresholdDbm) {
+        int ssidId = ssidIdOf(ssid);
+        List<Hole> holes = new ArrayList<>();
+        for (int c = 0; c < mChunks.size(); c++) {
+            Chunk chunk = mChunks.get(c);
+            for (int i = 0; i < chunk.mCells.length; i++) {
+                CoverageCell cell = chunk.mCells[i];
+                if (cell == null) {
+                    continue;
+                }
+                int best = cell.strongest(mSsidOfId, ssidId, mSsidGeneration);
+                int rssi = best < 0 ? NO_SIGNAL : cell.mean(best);
+                if (rssi < thresholdDbm) {
+                    holes.add(new Hole(chunk.mX << CHUNK_BITS | i & CHUNK_MASK,
+                            chunk.mY << CHUNK_BITS | i >>> CHUNK_BITS, mCellMeters, rssi));
+                }
+            }
+        }
+        return holes;
+    }
+
+    /**
+     * Renders the {@link #TILE_SIZE} square tile at ({@code tileX}, {@code tileY}) counted from
+     * the origin, see {@link #rasterize}.
+     */
+    public void renderTile(int tileX, int tileY, double metersPerPixel, String ssid, byte[] out) {
+        double tileMeters = TILE_SIZE * metersPerPixel;
+        rasterize(tileX * tileMeters, tileY * tileMeters, metersPerPixel, TILE_SIZE, TILE_SIZE, ssid, out);
+    }
+
+    /**
+     * Fills {@code out}, row by row from {@code minY} and each row from {@code minX}, with the
+     * strongest mean RSSI of the cells under every pixel, or {@link #NO_DATA}. A pixel may be
+     * smaller than a cell or cover many of them.
+     *
+     * @param ssid only consider access points of this SSID, null for any
+     * @param out  at least {@code width * height} pixels
+     */
+    public void rasterize(double minX, double minY, double metersPerPixel, int width, int height, String ssid,
+                          byte[] out) {
+        if (!(metersPerPixel > 0) || width < 0 || height < 0 || out.length < width * height) {
+            throw new IllegalArgumentException("Bad raster " + width + "x" + height + " at " + metersPerPixel);
+        }
+        for (int i = 0; i < width * height; i++) {
+            out[i] = NO_DATA;
+        }
+        int cellX0 = cellOf(minX);
+        int cellY0 = cellOf(minY);
+        int cellX1 = lastCellBefore(minX + width * metersPerPixel);
+        int cellY1 = lastCellBefore(minY + height * metersPerPixel);
+        if (width == 0 || height == 0 || cellX0 == Integer.MIN_VALUE || cellY0 == Integer.MIN_VALUE
+                || cellX1 == Integer.MIN_VALUE || cellY1 == Integer.MIN_VALUE) {
+            return;
+        }
+        int ssidId = ssidIdOf(ssid);
+        int chunkX0 = cellX0 >> CHUNK_BITS;
+        int chunkY0 = cellY0 >> CHUNK_BITS;
+        int chunkX1 = cellX1 >> CHUNK_BITS;
+        int chunkY1 = cellY1 >> CHUNK_BITS;
+        long overlapped = ((long) chunkX1 - chunkX0 + 1) * ((long) chunkY1 - chunkY0 + 1);
+        if (overlapped > mChunks.size()) {
+            // Zoomed far out over a small survey, cheaper to filter what exists.
+            for (int c = 0; c < mChunks.size(); c++) {
+                Chunk chunk = mChunks.get(c);
+                if (chunk.mX >= chunkX0 && chunk.mX <= chunkX1 && chunk.mY >= chunkY0 && chunk.mY <= chunkY1) {
+                    rasterize(chunk, cellX0, cellY0, cellX1, cellY1, minX, minY, metersPerPixel, width, height,
+                            ssidId, out);
+                }
+            }
+            return;
+        }
+        for (int chunkY = chunkY0; chunkY <= chunkY1; chunkY++) {
+            for (int chunkX = chunkX0; chunkX <= chunkX1; chunkX++) {
+                Chunk chunk = chunk(chunkX, chunkY, false);
+                if (chunk != null) {
+                    rasterize(chunk, cellX0, cellY0, cellX1, cellY1, minX, minY, metersPerPixel, width, height,
+                            ssidId, out);
+                }
+            }
+        }
+    }
+
+    /**
+     * Drops every sample, BSSID and SSID, the tables shrink back to their initial size.
+     */
+    public void clear() {
+        mBssidIds.clear();
+        mBssids.clear();
+        mSsidOfId = new int[64];
+        mSsidGeneration = 0;
+        mSsidIds.clear();
+        mSsids.clear();
+        mKeys = new long[64];
+        mSlots = new Chunk[64];
+        mChunks.clear();
+        mLastCell = null;
+        mSamples = 0;
+        mCells = 0;
+    }
+
+    public double getCellMeters() {
+        return mCellMeters;
+    }
+
+    public long getSampleCount() {
+        return mSamples;
+    }
+
+    public int getCellCount() {
+        return mCells;
+    }
+
+    public int getBssidCount() {
+        return mBssids.size();
+    }
+
+    private void rasterize(Chunk chunk, int cellX0, int cellY0, int cellX1, int cellY1, double minX, double minY,
+                           double metersPerPixel, int width, int height, int ssidId, byte[] out) {
+        int baseX = chunk.mX << CHUNK_BITS;
+        int baseY = chunk.mY << CHUNK_BITS;
+        int fromX = Math.max(cellX0, baseX);
+        int toX = Math.min(cellX1, baseX + CHUNK_MASK);
+        int fromY = Math.max(cellY0, baseY);
+        int toY = Math.min(cellY1, baseY + CHUNK_MASK);
+        for (int cellY = fromY; cellY <= toY; cellY++) {
+            for (int cellX = fromX; cellX <= toX; cellX++) {
+                CoverageCell cell = chunk.mCells[(cellY - baseY) << CHUNK_BITS | (cellX - baseX)];
+                if (cell == null) {
+                    continue;
+                }
+                int best = cell.strongest(mSsidOfId, ssidId, mSsidGeneration);
+                if (best < 0) {
+                    continue;
+                }
+                byte value = (byte) Math.max(-127, Math.min(-1, cell.mean(best)));
+                int px0 = pixelOf(cellX * mCellMeters, minX, metersPerPixel, width);
+                int px1 = lastPixelBefore((cellX + 1) * mCellMeters, minX, metersPerPixel, width);
+                int py0 = pixelOf(cellY * mCellMeters, minY, metersPerPixel, height);
+                int py1 = lastPixelBefore((cellY + 1) * mCellMeters, minY, metersPerPixel, height);
+                for (int py = py0; py <= py1; py++) {
+                    int row = py * width;
+                    for (int px = px0; px <= px1; px++) {
+                        byte current = out[row + px];
+                        if (current == NO_DATA || value > current) {
+                            out[row + px] = value;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static int pixelOf(double meters, double min, double metersPerPixel, int size) {
+        return clamp((int) Math.floor((meters - min) / metersPerPixel), size);
+    }
+
+    /**
+     * @return the last pixel that starts before {@code meters}, a cell's far edge is not in it
+     */
+    private static int lastPixelBefore(double meters, double min, double metersPerPixel, int size) {
+        return clamp((int) Math.ceil((meters - min) / metersPerPixel) - 1, size);
+    }
+
+    private static int clamp(int pixel, int size) {
+        return pixel < 0 ? 0 : pixel >= size ? size - 1 : pixel;
+    }
+
+    /**
+     * @return the cell index of a coordinate, {@link Integer#MIN_VALUE} if not finite or too far out
+     */
+    private int cellOf(double meters) {
+        double cell = Math.floor(meters / mCellMeters);
+        // Room for the chunk arithmetic either side.
+        if (!(cell > Integer.MIN_VALUE / 2 && cell < Integer.MAX_VALUE / 2)) {
+            return Integer.MIN_VALUE;
+        }
+        return (int) cell;
+    }
+
+    /**
+     * @return the last cell that starts before {@code meters}, as {@link #cellOf}
+     */
+    private int lastCellBefore(double meters) {
+        double cell = Math.ceil(meters / mCellMeters) - 1;
+        if (!(cell > Integer.MIN_VALUE / 2 && cell < Integer.MAX_VALUE / 2)) {
+            return Integer.MIN_VALUE;
+        }
+        return (int) cell;
+    }
+
+    private int idOf(String bssid, String ssid) {
+        Integer id = mBssidIds.get(bssid);
+        int ssidId = ssid == null || ssid.isEmpty() ? -1 : ssidIdOf(ssid, true);
+        if (id == null) {
+            id = mBssids.size();
+            mBssidIds.put(bssid, id);
+            mBssids.add(bssid);
+            if (id == mSsidOfId.length) {
+                int[] ssidOfId = new int[id * 2];
+                System.arraycopy(mSsidOfId, 0, ssidOfId, 0, id);
+                mSsidOfId = ssidOfId;
+            }
+            mSsidOfId[id] = ssidId;
+        } else if (ssidId >= 0 && mSsidOfId[id] != ssidId) {
+            // A hidden network's name may only show up later.
+            mSsidOfId[id] = ssidId;
+            mSsidGeneration++;
+        }
+        return id;
+    }
+
+    /**
+     * @return -1 for null, any SSID; -2 for one never seen, which matches nothing
+     */
+    private int ssidIdOf(String ssid) {
+        return ssid == null ? -1 : ssidIdOf(ssid, false);
+    }
+
+    private int ssidIdOf(String ssid, boolean create) {
+        Integer id = mSsidIds.get(ssid);
+        if (id == null) {
+            if (!create) {
+                return -2;
+            }
+            id = mSsids.size();
+            mSsidIds.put(ssid, id);
+            mSsids.add(ssid);
+        }
+        return id;
+    }
+
+    private CoverageCell cell(int cellX, int cellY, boolean create) {
+        Chunk chunk = chunk(cellX >> CHUNK_BITS, cellY >> CHUNK_BITS, create);
+        if (chunk == null) {
+            return null;
+        }
+        int index = (cellY & CHUNK_MASK) << CHUNK_BITS | (cellX & CHUNK_MASK);
+        CoverageCell cell = chunk.mCells[index];
+        if (cell == null && create) {
+            cell = new CoverageCell();
+            chunk.mCells[index] = cell;
+            mCells++;
+        }
+        return cell;
+    }
+
+    private Chunk chunk(int chunkX, int chunkY, boolean create) {
+        long key = (long) chunkX << 32 | (chunkY & 0xffffffffL);
+        int mask = mSlots.length - 1;
+        int slot = hash(key) & mask;
+        while (mSlots[slot] != null) {
+            if (mKeys[slot] == key) {
+                return mSlots[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (!create) {
+            return null;
+        }
+        Chunk chunk = new Chunk(chunkX, chunkY);
+        mKeys[slot] = key;
+        mSlots[slot] = chunk;
+        mChunks.add(chunk);
+        // Kept at most half full, probes stay short.
+        if (mChunks.size() * 2 > mSlots.length) {
+            rehash();
+        }
+        return chunk;
+    }
+
+    private void rehash() {
+        long[] keys = new long[mKeys.length * 2];
+        Chunk[] slots = new Chunk[mSlots.length * 2];
+        int mask = slots.length - 1;
+        for (int i = 0; i < mSlots.length; i++) {
+            if (mSlots[i] == null) {
+                continue;
+            }
+            int slot = hash(mKeys[i]) & mask;
+            while (slots[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = mKeys[i];
+            slots[slot] = mSlots[i];
+        }
+        mKeys = keys;
+        mSlots = slots;
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9e3779b97f4a7c15L;
+        return (int) (h >>> 32);
+    }
+}
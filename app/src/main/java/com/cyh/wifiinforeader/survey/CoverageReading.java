@@ -0,0 +1,53 @@
+package com.cyh.wifiinforeader.survey;
+
+/**
+ * One access point's samples in one cell, filled by {@link CoverageMap#strongestAt}. Reuse one
+ * instance across queries.
+ */
+public class CoverageReading {
+
+    private String mBssid;
+    private String mSsid;
+    private int mMeanRssi;
+    private int mMaxRssi;
+    private int mSamples;
+
+    void set(String bssid, String ssid, int meanRssi, int maxRssi, int samples) {
+        mBssid = bssid;
+        mSsid = ssid;
+        mMeanRssi = meanRssi;
+        mMaxRssi = maxRssi;
+        mSamples = samples;
+    }
+
+    public String getBssid() {
+        return mBssid;
+    }
+
+    /**
+     * @return the SSID last seen with the BSSID, null if it never had one
+     */
+    public String getSsid() {
+        return mSsid;
+    }
+
+    /**
+     * @return mean of the samples, rounded to the nearest dB
+     */
+    public int getMeanRssi() {
+        return mMeanRssi;
+    }
+
+    public int getMaxRssi() {
+        return mMaxRssi;
+    }
+
+    public int getSampleCount() {
+        return mSamples;
+    }
+
+    @Override
+    public String toString() {
+        return mBssid + " " + mSsid + " " + mMeanRssi + " dBm (max " + mMaxRssi + ", " + mSamples + " samples)";
+    }
+}
@@ -0,0 +1,146 @@
+package com.cyh.wifiinforeader.survey;
+
+import com.cyh.wifiinforeader.util.Clock;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tags scan results with where they were taken and adds them to a {@link CoverageMap}.
+ * <p>
+ * The position is either set by hand, in meters on a floor plan, or comes from location fixes,
+ * projected to meters east and north of the first fix. Whichever was given last is used. A fix
+ * tags scans only while it is fresh and accurate enough, so a stale one from a passive provider
+ * never smears a scan over the wrong cell; scans with no usable position are only counted.
+ * <p>
+ * Not thread safe.
+ */
+public class SiteSurvey {
+
+    /** Mean earth radius, plenty for a site a few kilometers across. */
+    private static final double EARTH_RADIUS_METERS = 6371008.8;
+
+    private final CoverageMap mMap;
+    private final Clock mClock;
+    private final long mMaxFixAgeNanos;
+    private final double mMaxAccuracyMeters;
+
+    private boolean mManual = false;
+    private boolean mHasFix = false;
+    private double mX;
+    private double mY;
+    private double mAccuracyMeters;
+    private long mFixNanos;
+
+    private boolean mHasOrigin = false;
+    private double mOriginLatitude;
+    private double mOriginLongitude;
+    private double mMetersPerDegreeLongitude;
+
+    /** Position of the scan being added, taken once at its start. */
+    private boolean mScanTagged = false;
+    private double mScanX;
+    private double mScanY;
+
+    private int mTaggedScans = 0;
+    private int mUntaggedScans = 0;
+
+    /**
+     * @param maxFixAgeMillis    fixes older than this do not tag scans
+     * @param maxAccuracyMeters  fixes less accurate than this do not tag scans
+     */
+    public SiteSurvey(CoverageMap map, Clock clock, long maxFixAgeMillis, double maxAccuracyMeters) {
+        mMap = map;
+        mClock = clock;
+        mMaxFixAgeNanos = TimeUnit.MILLISECONDS.toNanos(maxFixAgeMillis);
+        mMaxAccuracyMeters = maxAccuracyMeters;
+    }
+
+    /**
+     * Places the surveyor on a floor plan until the next call or fix.
+     */
+    public void setFloorPlanPosition(double x, double y) {
+        mManual = true;
+        mX = x;
+        mY = y;
+    }
+
+    /**
+     * @param accuracyMeters radius of 68% confidence, as {@code Location.getAccuracy()}
+     */
+    public void onFix(double latitude, double longitude, double accuracyMeters) {
+        if (!mHasOrigin) {
+            mHasOrigin = true;
+            mOriginLatitude = latitude;
+            mOriginLongitude = longitude;
+            mMetersPerDegreeLongitude = Math.toRadians(EARTH_RADIUS_METERS) * Math.cos(Math.toRadians(latitude));
+        }
+        mManual = false;
+        mHasFix = true;
+        // Equirectangular around the origin, well under a meter off across a site.
+        mX = (longitude - mOriginLongitude) * mMetersPerDegreeLongitude;
+        mY = (latitude - mOriginLatitude) * Math.toRadians(EARTH_RADIUS_METERS);
+        mAccuracyMeters = accuracyMeters;
+        mFixNanos = mClock.nanoTime();
+    }
+
+    /**
+     * Forgets the position, scans go untagged until the next one.
+     */
+    public void clearPosition() {
+        mManual = false;
+        mHasFix = false;
+    }
+
+    /**
+     * Starts over: clears the map and the counts and forgets the position and the origin, the
+     * next fix becomes the new one.
+     */
+    public void reset() {
+        mMap.clear();
+        clearPosition();
+        mHasOrigin = false;
+        mScanTagged = false;
+        mTaggedScans = 0;
+        mUntaggedScans = 0;
+    }
+
+    public boolean hasPosition() {
+        return mManual || (mHasFix && mAccuracyMeters <= mMaxAccuracyMeters
+                && mClock.nanoTime() - mFixNanos <= mMaxFixAgeNanos);
+    }
+
+    /**
+     * Takes the position every result of the scan starting now is tagged with.
+     *
+     * @return false if there is none and the scan's results will be ignored
+     */
+    public boolean beginScan() {
+        mScanTagged = hasPosition();
+        if (mScanTagged) {
+            mScanX = mX;
+            mScanY = mY;
+            mTaggedScans++;
+        } else {
+            mUntaggedScans++;
+        }
+        return mScanTagged;
+    }
+
+    public void onScanResult(String bssid, String ssid, int rssi) {
+        if (mScanTagged) {
+            mMap.add(mScanX, mScanY, bssid, ssid, rssi);
+        }
+    }
+
+    public CoverageMap getMap() {
+        return mMap;
+    }
+
+    public int getTaggedScanCount() {
+        return mTaggedScans;
+    }
+
+    public int getUntaggedScanCount() {
+        return mUntaggedScans;
+    }
+}
@@ -0,0 +1,19 @@
+package com.cyh.wifiinforeader.util;
+
+/**
+ * Monotonic time source, replaced by a fake in tests.
+ */
+public interface Clock {
+
+    Clock SYSTEM = new Clock() {
+        @Override
+        public long nanoTime() {
+            return System.nanoTime();
+        }
+    };
+
+    /**
+     * @return nanoseconds from an arbitrary origin, only differences are meaningful
+     */
+    long nanoTime();
+}
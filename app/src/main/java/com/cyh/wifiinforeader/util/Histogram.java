@@ -0,0 +1,126 @@
+package com.cyh.wifiinforeader.util;
+
+import java.util.Arrays;
+
+/**
+ * Counts of values in fixed buckets, each bucket holding the values up to and including its
+ * bound that are above the previous one, plus a last bucket for everything larger.
+ * Not thread safe.
+ */
+public class Histogram {
+
+    /** Roughly 1-2-5 steps from 1 ms to a minute, for latencies in millis. */
+    public static final long[] LATENCY_MILLIS = {
+            1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000, 20000, 60000};
+
+    private final long[] mBounds;
+    private final long[] mCounts;
+    private long mCount = 0;
+    private long mSum = 0;
+    private long mMax = Long.MIN_VALUE;
+
+    /**
+     * @param bounds inclusive upper bounds, ascending, at least one
+     */
+    public Histogram(long[] bounds) {
+        if (bounds.length == 0) {
+            throw new IllegalArgumentException("no bounds");
+        }
+        for (int i = 1; i < bounds.length; i++) {
+            if (bounds[i] <= bounds[i - 1]) {
+                throw new IllegalArgumentException("bounds not ascending at " + i);
+            }
+        }
+        mBounds = bounds.clone();
+        mCounts = new long[bounds.length + 1];
+    }
+
+    public void record(long value) {
+        int bucket = Arrays.binarySearch(mBounds, value);
+        mCounts[bucket >= 0 ? bucket : -bucket - 1]++;
+        mCount++;
+        mSum += value;
+        if (value > mMax) {
+            mMax = value;
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(mCounts, 0);
+        mCount = 0;
+        mSum = 0;
+        mMax = Long.MIN_VALUE;
+    }
+
+    /**
+     * @return buckets including the last, unbounded one
+     */
+    public int getBucketCount() {
+        return mCounts.length;
+    }
+
+    /**
+     * @return the bucket's inclusive upper bound, {@link Long#MAX_VALUE} for the last one
+     */
+    public long getBound(int bucket) {
+        return bucket < mBounds.length ? mBounds[bucket] : Long.MAX_VALUE;
+    }
+
+    public long getCount(int bucket) {
+        return mCounts[bucket];
+    }
+
+    public long getCount() {
+        return mCount;
+    }
+
+    public long getSum() {
+        return mSum;
+    }
+
+    /**
+     * @return the largest value recorded, {@link Long#MIN_VALUE} if none
+     */
+    public long getMax() {
+        return mMax;
+    }
+
+    /**
+     * @param fraction 0.5 for the median
+     * @return the upper bound of the bucket holding that quantile, {@link #getMax()} for the
+     * last bucket, 0 if nothing was recorded
+     */
+    public long getQuantileBound(double fraction) {
+        if (mCount == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(fraction * mCount));
+        long seen = 0;
+        for (int bucket = 0; bucket < mCounts.length; bucket++) {
+            seen += mCounts[bucket];
+            if (seen >= rank) {
+                return bucket < mBounds.length ? Math.min(mBounds[bucket], mMax) : mMax;
+            }
+        }
+        return mMax;
+    }
+
+    /**
+     * Appends the non-empty buckets as {@code <=bound:count} pairs.
+     */
+    public void format(StringBuilder out) {
+        out.append("n=").append(mCount);
+        for (int bucket = 0; bucket < mCounts.length; bucket++) {
+            if (mCounts[bucket] == 0) {
+                continue;
+            }
+            out.append(' ');
+            if (bucket < mBounds.length) {
+                out.append("<=").append(mBounds[bucket]);
+            } else {
+                out.append('>').append(mBounds[mBounds.length - 1]);
+            }
+            out.append(':').append(mCounts[bucket]);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.cyh.wifiinforeader.collector;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CachedConnectivitySourceTest {
+
+    private CountingSource mSource;
+    private CachedConnectivitySource mCache;
+
+    @Before
+    public void setUp() {
+        mSource = new CountingSource();
+        mCache = new CachedConnectivitySource(mSource, 2);
+    }
+
+    @Test
+    public void looksUpOnceUntilInvalidated() {
+        mSource.mValidation = ConnectivitySource.VALIDATED;
+        for (int i = 0; i < 10; i++) {
+            assertEquals(ConnectivitySource.VALIDATED, mCache.getWifiValidation());
+        }
+        assertEquals(1, mSource.mLookups);
+        assertEquals(9, mCache.getHitCount());
+        assertEquals(18, mCache.getAvoidedCalls());
+
+        mSource.mValidation = ConnectivitySource.NOT_VALIDATED;
+        mCache.invalidate();
+        assertEquals(ConnectivitySource.NOT_VALIDATED, mCache.getWifiValidation());
+        assertEquals(2, mSource.mLookups);
+    }
+
+    @Test
+    public void updateNeedsNoLookup() {
+        mCache.update(ConnectivitySource.NOT_VALIDATED);
+        assertEquals(ConnectivitySource.NOT_VALIDATED, mCache.getWifiValidation());
+        assertEquals(0, mSource.mLookups);
+    }
+
+    @Test
+    public void updateDuringLookupWins() {
+        mSource.mValidation = ConnectivitySource.NOT_VALIDATED;
+        mSource.mDuringLookup = new Runnable() {
+            @Override
+            public void run() {
+                mCache.update(ConnectivitySource.VALIDATED);
+            }
+        };
+        // The lookup started before the update, its answer is returned but not kept.
+        assertEquals(ConnectivitySource.NOT_VALIDATED, mCache.getWifiValidation());
+        mSource.mDuringLookup = null;
+        assertEquals(ConnectivitySource.VALIDATED, mCache.getWifiValidation());
+        assertEquals(1, mSource.mLookups);
+    }
+
+    private static class CountingSource implements ConnectivitySource {
+        int mValidation = VALIDATION_UNKNOWN;
+        int mLookups = 0;
+        Runnable mDuringLookup;
+
+        @Override
+        public int getWifiValidation() {
+            mLookups++;
+            if (mDuringLookup != null) {
+                mDuringLookup.run();
+            }
+            return mValidation;
+        }
+    }
+}
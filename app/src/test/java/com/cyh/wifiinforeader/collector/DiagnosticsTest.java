@@ -0,0 +1,34 @@
+package com.cyh.wifiinforeader.collector;
+
+import com.cyh.wifiinforeader.ping.PingSession;
+import com.cyh.wifiinforeader.reachability.ReachabilityTarget;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class DiagnosticsTest {
+
+    @Test
+    public void linkHostsFollowTheConfiguredTargets() {
+        Diagnostics diagnostics = new Diagnostics(ReachabilityTarget.parseList("https://example.com 10.0.0.1"),
+                PingSession.RUNTIME, EventRecorder.NONE);
+        diagnostics.setLinkHosts(Arrays.asList("10.0.0.1", "10.0.0.53", "EXAMPLE.com"));
+        List<ReachabilityTarget> targets = diagnostics.getTargets();
+        assertEquals("[https://example.com, 10.0.0.1, 10.0.0.53]", targets.toString());
+
+        diagnostics.setTargets(ReachabilityTarget.parseList("example.org"));
+        diagnostics.setLinkHosts(Collections.<String>emptyList());
+        assertEquals("[example.org]", diagnostics.getTargets().toString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void targetsCannotBeEmpty() {
+        new Diagnostics(ReachabilityTarget.parseList("example.com"), PingSession.RUNTIME, EventRecorder.NONE)
+                .setTargets(Collections.<ReachabilityTarget>emptyList());
+    }
+}
@@ -0,0 +1,173 @@
+package com.cyh.wifiinforeader.collector;
+
+import com.cyh.wifiinforeader.util.FakeClock;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class EventRouterTest {
+
+    private static final String RSSI = "android.net.wifi.RSSI_CHANGED";
+    private static final String STATE = "android.net.wifi.STATE_CHANGE";
+
+    private FakeClock mClock;
+    private QueueWorker mWorker;
+    private EventRouter<Integer> mRouter;
+    private List<String> mHandled;
+
+    @Before
+    public void setUp() {
+        mClock = new FakeClock();
+        mWorker = new QueueWorker();
+        mRouter = new EventRouter<>(mWorker, mClock, 16);
+        mHandled = new ArrayList<>();
+        mRouter.register(RSSI, new EventRouter.Handler<Integer>() {
+            @Override
+            public void handle(Integer event, long receivedNanos) {
+                mHandled.add("rssi " + event);
+                mClock.advanceMillis(2);
+            }
+        }, true);
+        mRouter.register(STATE, new EventRouter.Handler<Integer>() {
+            @Override
+            public void handle(Integer event, long receivedNanos) {
+                mHandled.add("state " + event);
+            }
+        }, false);
+    }
+
+    @Test
+    public void handlersRunOnWorkerOnly() {
+        assertTrue(mRouter.dispatch(STATE, 1));
+        assertTrue(mHandled.isEmpty());
+
+        mWorker.runAll();
+        assertEquals("[state 1]", mHandled.toString());
+    }
+
+    @Test
+    public void burstCoalescesToLatestPerFrame() {
+        for (int rssi = -70; rssi < -60; rssi++) {
+            mRouter.dispatch(RSSI, rssi);
+        }
+        assertEquals(1, mWorker.mTasks.size());
+        assertEquals(16, mWorker.mLastDelay);
+
+        mWorker.runAll();
+        assertEquals("[rssi -61]", mHandled.toString());
+        assertEquals(10, mRouter.getReceivedCount(RSSI));
+        assertEquals(9, mRouter.getCoalescedCount(RSSI));
+        assertEquals(1, mRouter.getHandledCount(RSSI));
+
+        // The next event starts a new frame.
+        mRouter.dispatch(RSSI, -50);
+        mWorker.runAll();
+        assertEquals("[rssi -61, rssi -50]", mHandled.toString());
+    }
+
+    @Test
+    public void nonCoalescingRouteKeepsEveryEventInOrder() {
+        mRouter.dispatch(STATE, 1);
+        mRouter.dispatch(STATE, 2);
+        mRouter.dispatch(STATE, 3);
+        mWorker.runAll();
+
+        assertEquals("[state 1, state 2, state 3]", mHandled.toString());
+        assertEquals(0, mRouter.getCoalescedCount(STATE));
+        assertEquals(3, mRouter.getHandledCount(STATE));
+    }
+
+    @Test
+    public void handlersGetTheDispatchTime() {
+        final List<Long> received = new ArrayList<>();
+        EventRouter<Integer> router = new EventRouter<>(mWorker, mClock, 16);
+        router.register(RSSI, new EventRouter.Handler<Integer>() {
+            @Override
+            public void handle(Integer event, long receivedNanos) {
+                received.add(receivedNanos);
+            }
+        }, true);
+        router.register(STATE, new EventRouter.Handler<Integer>() {
+            @Override
+            public void handle(Integer event, long receivedNanos) {
+                received.add(receivedNanos);
+            }
+        }, false);
+
+        long first = mClock.nanoTime();
+        router.dispatch(STATE, 1);
+        mClock.advanceMillis(5);
+        router.dispatch(RSSI, -60);
+        mClock.advanceMillis(5);
+        long latest = mClock.nanoTime();
+        router.dispatch(RSSI, -61);
+        mClock.advanceMillis(100);
+        mWorker.runAll();
+
+        // A coalesced event carries the time of the one handled.
+        assertEquals(2, received.size());
+        assertEquals(first, (long) received.get(0));
+        assertEquals(latest, (long) received.get(1));
+    }
+
+    @Test
+    public void unknownActionIsCounted() {
+        assertFalse(mRouter.dispatch("android.net.wifi.SOMETHING_ELSE", 1));
+        assertFalse(mRouter.dispatch(null, 1));
+        assertEquals(2, mRouter.getUnroutedCount());
+        assertEquals(0, mWorker.mTasks.size());
+    }
+
+    @Test
+    public void handlerTimeIsMeasured() {
+        mRouter.dispatch(RSSI, -60);
+        mWorker.runAll();
+        mRouter.dispatch(RSSI, -61);
+        mWorker.runAll();
+
+        assertEquals(4000000, mRouter.getHandlerNanos(RSSI));
+        assertEquals(2000000, mRouter.getMaxHandlerNanos(RSSI));
+
+        StringBuilder stats = new StringBuilder();
+        mRouter.formatStats(stats);
+        assertEquals("RSSI_CHANGED received 2 coalesced 0 handled 2 avg 2000us max 2000us\n"
+                + "STATE_CHANGE received 0 coalesced 0 handled 0 avg 0us max 0us\n"
+                + "unrouted 0\n", stats.toString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void actionRoutedOnce() {
+        mRouter.register(STATE, new EventRouter.Handler<Integer>() {
+            @Override
+            public void handle(Integer event, long receivedNanos) {
+            }
+        }, false);
+    }
+
+    private static class QueueWorker implements EventRouter.Worker {
+        final List<Runnable> mTasks = new ArrayList<>();
+        long mLastDelay = -1;
+
+        @Override
+        public void post(Runnable task) {
+            mTasks.add(task);
+        }
+
+        @Override
+        public void postDelayed(Runnable task, long delayMillis) {
+            mLastDelay = delayMillis;
+            mTasks.add(task);
+        }
+
+        void runAll() {
+            while (!mTasks.isEmpty()) {
+                mTasks.remove(0).run();
+            }
+        }
+    }
+}
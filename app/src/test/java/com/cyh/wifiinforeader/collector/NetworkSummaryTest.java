@@ -0,0 +1,30 @@
+package com.cyh.wifiinforeader.collector;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class NetworkSummaryTest {
+
+    private final NetworkSummary mSummary = new NetworkSummary(
+            new String[]{"", "Scanning", "Connected"},
+            new String[]{"", "Scanning", "Connected to %1$s"},
+            "Connected, no internet");
+
+    @Test
+    public void formatsOncePerSsid() {
+        String first = mSummary.format(2, true, "home", ConnectivitySource.VALIDATED);
+        assertEquals("Connected to home", first);
+        assertSame(first, mSummary.format(2, true, "home", ConnectivitySource.VALIDATED));
+
+        assertEquals("Connected to cafe", mSummary.format(2, true, "cafe", ConnectivitySource.VALIDATED));
+        assertEquals("Connected", mSummary.format(2, true, null, ConnectivitySource.VALIDATION_UNKNOWN));
+    }
+
+    @Test
+    public void noInternetAndUnknownStates() {
+        assertEquals("Connected, no internet", mSummary.format(2, true, "home", ConnectivitySource.NOT_VALIDATED));
+        assertEquals("", mSummary.format(0, false, "home", ConnectivitySource.VALIDATION_UNKNOWN));
+        assertEquals("", mSummary.format(12, false, "home", ConnectivitySource.VALIDATION_UNKNOWN));
+    }
+}
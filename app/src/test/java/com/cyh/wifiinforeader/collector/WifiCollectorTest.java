@@ -0,0 +1,277 @@
+package com.cyh.wifiinforeader.collector;
+
+import com.cyh.wifiinforeader.eventlog.EventLog;
+import com.cyh.wifiinforeader.rssi.RssiHistory;
+import com.cyh.wifiinforeader.rssi.RssiStats;
+import com.cyh.wifiinforeader.util.FakeClock;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class WifiCollectorTest {
+
+    private static final int CONNECTED = 5;
+
+    private FakeWifi mWifi;
+    private FakeConnectivity mConnectivity;
+    private FakeTimer mTimer;
+    private FakeClock mClock;
+    private RecordingListener mListener;
+    private WifiCollector mCollector;
+
+    @Before
+    public void setUp() {
+        mWifi = new FakeWifi();
+        mConnectivity = new FakeConnectivity();
+        mTimer = new FakeTimer();
+        mClock = new FakeClock();
+        mListener = new RecordingListener();
+        NetworkSummary summary = new NetworkSummary(
+                new String[]{"", "Scanning", "Connecting", "Authenticating", "Obtaining address", "Connected"},
+                new String[]{"", "Scanning", "Connecting to %1$s", "Authenticating with %1$s", "Obtaining address from %1$s", "Connected to %1$s"},
+                "Connected, no internet");
+        mCollector = new WifiCollector(mWifi, mConnectivity, summary, mTimer, mClock, EventRecorder.NONE);
+        mCollector.setListener(mListener);
+    }
+
+    @Test
+    public void scanTickRequestsScanAndResultsReachListener() {
+        mCollector.startScanning();
+        assertEquals(0, mTimer.mDelay);
+
+        mCollector.onScanTick();
+        assertEquals(1, mWifi.mScans);
+        assertTrue(mTimer.mDelay > 0);
+
+        mWifi.mResults.add(new String[]{"00:00:00:00:00:01", "home", "-50"});
+        mWifi.mResults.add(new String[]{"00:00:00:00:00:02", "cafe", "-70"});
+        mClock.advanceMillis(1500);
+        mCollector.onScanResultsAvailable();
+
+        assertEquals(2, mCollector.getScanStore().size());
+        assertEquals("home cafe ", mListener.mSsids);
+        assertEquals("+home +cafe ", mListener.mChanges);
+        assertTrue(mListener.mScanLog.startsWith("Time: "));
+
+        // Same access points again do not redraw the list.
+        mListener.mSsids = null;
+        mCollector.onScanResultsAvailable();
+        assertNull(mListener.mSsids);
+    }
+
+    @Test
+    public void stoppedCollectorIgnoresTicks() {
+        mCollector.startScanning();
+        mCollector.stopScanning();
+        assertTrue(mTimer.mCancelled);
+
+        mCollector.onScanTick();
+        assertEquals(0, mWifi.mScans);
+
+        // Late results are still recorded but do not restart the timer.
+        mTimer.mDelay = -1;
+        mCollector.onScanResultsAvailable();
+        assertEquals(-1, mTimer.mDelay);
+    }
+
+    @Test
+    public void onlyRequestedScansLogALatency() {
+        final List<Long> latencies = new ArrayList<>();
+        mCollector = new WifiCollector(mWifi, mConnectivity, new NetworkSummary(new String[6], new String[6], ""),
+                mTimer, mClock, new EventRecorder(null) {
+            @Override
+            public void record(int type, String key, int arg0, int arg1, long arg2) {
+                if (type == EventLog.SCAN) {
+                    latencies.add(arg2);
+                }
+            }
+        });
+        mCollector.startScanning();
+        mCollector.onScanTick();
+        mClock.advanceMillis(1500);
+        mCollector.onScanResultsAvailable();
+        // Another app's scan.
+        mCollector.onScanResultsAvailable();
+
+        assertEquals(2, latencies.size());
+        assertEquals(1500L, (long) latencies.get(0));
+        assertEquals(-1L, (long) latencies.get(1));
+    }
+
+    @Test
+    public void connectedWithoutValidationSaysNoInternet() {
+        mWifi.mLink.setSsid("home");
+        mConnectivity.mValidation = ConnectivitySource.NOT_VALIDATED;
+        mCollector.onNetworkStateChanged(CONNECTED, true, null);
+        assertEquals("Connected, no internet", mListener.mSummary);
+
+        mConnectivity.mValidation = ConnectivitySource.VALIDATED;
+        mCollector.onNetworkStateChanged(CONNECTED, true, null);
+        assertEquals("Connected to home", mListener.mSummary);
+    }
+
+    @Test
+    public void unknownDetailedStateIsEmpty() {
+        mCollector.onNetworkStateChanged(12, false, null);
+        assertEquals("", mListener.mSummary);
+    }
+
+    @Test
+    public void rssiChangesGoToHistory() {
+        mWifi.mLink.setBssid("00:00:00:00:00:01");
+        long from = mClock.nanoTime() / 1000000;
+        for (int i = 0; i < 6; i++) {
+            mCollector.onRssiChanged(-60 + i);
+            mClock.advanceMillis(10000);
+        }
+
+        assertEquals(-55, mListener.mRssi);
+        RssiStats stats = new RssiStats();
+        assertEquals(RssiHistory.Resolution.RAW,
+                mCollector.getRssiHistory().aggregate("00:00:00:00:00:01", from, from + 60000, stats));
+        assertEquals(6, stats.getCount());
+        assertEquals(-60, stats.getMin());
+        assertEquals(-55, stats.getMax());
+    }
+
+    @Test
+    public void supplicantStateText() {
+        assertEquals("FOUR WAY HANDSHAKE", WifiCollector.supplicantStateText("FOUR_WAY_HANDSHAKE"));
+        assertEquals("BAD", WifiCollector.supplicantStateText(null));
+
+        mCollector.onSupplicantStateChanged("DISCONNECTED", 1, 1, mClock.nanoTime());
+        assertEquals("ERROR AUTHENTICATING", mListener.mSupplicant);
+    }
+
+    @Test
+    public void supplicantTransitionsFeedRoamTracker() {
+        mWifi.mLink.setBssid("00:00:00:00:00:01");
+        mCollector.onSupplicantStateChanged("COMPLETED", 9, -1, mClock.nanoTime());
+        mClock.advanceMillis(60000);
+        long associating = mClock.nanoTime();
+        mClock.advanceMillis(40);
+        long completed = mClock.nanoTime();
+        // Both handled late, behind other work on the collector thread.
+        mClock.advanceMillis(500);
+        mCollector.onSupplicantStateChanged("ASSOCIATING", 5, -1, associating);
+        mWifi.mLink.setBssid("00:00:00:00:00:02");
+        mCollector.onSupplicantStateChanged("COMPLETED", 9, -1, completed);
+
+        assertEquals(1, mCollector.getRoamTracker().getRoamCount());
+        assertEquals(40, mCollector.getRoamTracker().getLatencyHistogram().getMax());
+        assertEquals("00:00:00:00:00:02", mCollector.getRoamTracker().getBssid());
+    }
+
+    private static class FakeWifi implements WifiSource {
+        final WifiLink mLink = new WifiLink();
+        final List<String[]> mResults = new ArrayList<>();
+        int mScans = 0;
+
+        @Override
+        public boolean isWifiEnabled() {
+            return true;
+        }
+
+        @Override
+        public int getWifiState() {
+            return 3;
+        }
+
+        @Override
+        public boolean readConnectionInfo(WifiLink out) {
+            out.setSsid(mLink.getSsid());
+            out.setBssid(mLink.getBssid());
+            return true;
+        }
+
+        @Override
+        public boolean startScan() {
+            mScans++;
+            return true;
+        }
+
+        @Override
+        public int readScanResults(ScanResultSink sink) {
+            for (String[] result : mResults) {
+                sink.onScanResult(result[0], result[1], Integer.parseInt(result[2]), 2412, "[ESS]", 20, 2412);
+            }
+            return mResults.size();
+        }
+    }
+
+    private static class FakeConnectivity implements ConnectivitySource {
+        int mValidation = VALIDATION_UNKNOWN;
+
+        @Override
+        public int getWifiValidation() {
+            return mValidation;
+        }
+    }
+
+    private static class FakeTimer implements WifiCollector.ScanTimer {
+        long mDelay = -1;
+        boolean mCancelled = false;
+
+        @Override
+        public void schedule(long delayMillis) {
+            mDelay = delayMillis;
+        }
+
+        @Override
+        public void cancel() {
+            mCancelled = true;
+        }
+    }
+
+    private static class RecordingListener implements WifiCollector.Listener {
+        String mSummary;
+        String mSupplicant;
+        int mRssi;
+        String mScanLog;
+        String mSsids;
+        String mChanges;
+
+        @Override
+        public void onWifiStateChanged(int wifiState) {
+        }
+
+        @Override
+        public void onNetworkStateChanged(String summary) {
+            mSummary = summary;
+        }
+
+        @Override
+        public void onSupplicantStateChanged(String state) {
+            mSupplicant = state;
+        }
+
+        @Override
+        public void onSupplicantConnectionChanged(boolean connected) {
+        }
+
+        @Override
+        public void onNetworkIdsChanged() {
+        }
+
+        @Override
+        public void onRssiChanged(int rssi) {
+            mRssi = rssi;
+        }
+
+        @Override
+        public void onScanLogChanged(CharSequence log) {
+            mScanLog = log.toString();
+        }
+
+        @Override
+        public void onScanListChanged(CharSequence ssids, CharSequence changes) {
+            mSsids = ssids.toString();
+            mChanges = changes.toString();
+        }
+    }
+}
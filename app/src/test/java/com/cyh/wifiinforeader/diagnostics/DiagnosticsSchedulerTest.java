@@ -0,0 +1,123 @@
+package com.cyh.wifiinforeader.diagnostics;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class DiagnosticsSchedulerTest {
+
+    private DiagnosticsScheduler mScheduler;
+    private final CountDownLatch mRelease = new CountDownLatch(1);
+    private final AtomicInteger mRuns = new AtomicInteger();
+
+    @Before
+    public void setUp() {
+        mScheduler = new DiagnosticsScheduler(2, 4);
+    }
+
+    @After
+    public void tearDown() {
+        mRelease.countDown();
+        mScheduler.shutdown();
+    }
+
+    @Test
+    public void rapidTriggersJoinTheRunningTest() throws Exception {
+        int threadsBefore = Thread.activeCount();
+
+        Future<?> first = mScheduler.submit("ping", blockingTask());
+        Future<?> firstHttp = mScheduler.submit("http", blockingTask());
+        for (int i = 0; i < 1000; i++) {
+            assertSame(first, mScheduler.submit("ping", blockingTask()));
+            assertSame(firstHttp, mScheduler.submit("http", blockingTask()));
+        }
+
+        assertTrue(Thread.activeCount() - threadsBefore <= 2);
+        assertEquals(2, mScheduler.getPoolSize());
+        assertEquals(0, mScheduler.getQueueDepth());
+        assertEquals(2000, mScheduler.getJoinedCount());
+
+        mRelease.countDown();
+        first.get(1, TimeUnit.SECONDS);
+        firstHttp.get(1, TimeUnit.SECONDS);
+        assertEquals(2, mRuns.get());
+    }
+
+    @Test
+    public void keyCanRunAgainOnceFinished() throws Exception {
+        mRelease.countDown();
+        for (int i = 0; i < 100; i++) {
+            mScheduler.submit("ping", blockingTask()).get(1, TimeUnit.SECONDS);
+        }
+
+        assertEquals(100, mRuns.get());
+        assertTrue(mScheduler.getPoolSize() <= 2);
+        assertFalse(mScheduler.isInFlight("ping"));
+        assertTrue(mScheduler.getLastRunTimeMillis("ping") >= 0);
+    }
+
+    @Test
+    public void queueIsBoundedAndReportsDepth() {
+        for (int i = 0; i < 6; i++) {
+            mScheduler.submit("target-" + i, blockingTask());
+        }
+        assertEquals(4, mScheduler.getQueueDepth());
+
+        try {
+            mScheduler.submit("target-6", blockingTask());
+            fail("queue should be full");
+        } catch (RejectedExecutionException expected) {
+        }
+        assertFalse(mScheduler.isInFlight("target-6"));
+    }
+
+    @Test
+    public void cancelAllInterruptsRunningAndDropsQueued() throws Exception {
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        final CountDownLatch started = new CountDownLatch(1);
+        Future<?> running = mScheduler.submit("ping", new Runnable() {
+            @Override
+            public void run() {
+                started.countDown();
+                try {
+                    Thread.sleep(10000);
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                }
+            }
+        });
+        mScheduler.submit("a", blockingTask());
+        mScheduler.submit("b", blockingTask());
+        assertTrue(started.await(1, TimeUnit.SECONDS));
+
+        mScheduler.cancelAll();
+
+        assertTrue(interrupted.await(1, TimeUnit.SECONDS));
+        assertTrue(running.isCancelled());
+        assertEquals(0, mScheduler.getQueueDepth());
+        assertFalse(mScheduler.isInFlight("ping"));
+        assertFalse(mScheduler.isInFlight("b"));
+    }
+
+    private Runnable blockingTask() {
+        return new Runnable() {
+            @Override
+            public void run() {
+                mRuns.incrementAndGet();
+                try {
+                    mRelease.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,229 @@
+package com.cyh.wifiinforeader.eventlog;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class EventLogTest {
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void recordsAndKeysRoundTrip() throws IOException {
+        File dir = mFolder.newFolder("log");
+        EventLogWriter writer = new EventLogWriter(dir, 4);
+        writer.append(1000, EventLog.WIFI_STATE, null, 3, 0, 0);
+        writer.append(2000, EventLog.RSSI, "aa:aa:aa:aa:aa:aa", -55, 0, 0);
+        writer.append(3000, EventLog.SCAN_ENTRY, "bb:bb:bb:bb:bb:bb", -70, 5180, 1);
+        writer.append(4000, EventLog.RSSI, "aa:aa:aa:aa:aa:aa", -57, 0, 0);
+        writer.append(5000, EventLog.PING, "www.baidu.com", 19, 20, 31250L);
+        writer.close();
+
+        EventLogReader reader = new EventLogReader(dir);
+
+        assertEquals(5, reader.size());
+        assertEquals(3, reader.getStringCount());
+        assertEquals(EventLog.NO_KEY, reader.getKeyId(0));
+        assertNull(reader.getKey(0));
+        assertEquals(3, reader.getArg0(0));
+        assertEquals(reader.getKeyId(1), reader.getKeyId(3));
+        assertEquals("bb:bb:bb:bb:bb:bb", reader.getKey(2));
+        assertEquals(5180, reader.getArg1(2));
+        assertEquals(5000, reader.getTime(4));
+        assertEquals(EventLog.PING, reader.getType(4));
+        assertEquals(31250L, reader.getArg2(4));
+        assertEquals(reader.getKeyId(4), reader.findString("www.baidu.com"));
+    }
+
+    @Test
+    public void recordsReachTheFileOneBatchAtATime() throws IOException {
+        File dir = mFolder.newFolder("log");
+        EventLogWriter writer = new EventLogWriter(dir, 4);
+        for (int i = 0; i < 6; i++) {
+            writer.append(i, EventLog.RSSI, "aa", -50, 0, 0);
+        }
+
+        assertEquals(1, writer.getFlushCount());
+        assertEquals(4, new EventLogReader(dir).size());
+
+        writer.flush();
+        assertEquals(6, new EventLogReader(dir).size());
+        assertEquals(6, writer.getCount());
+        writer.close();
+    }
+
+    @Test
+    public void reopenedLogContinuesAndKeepsDictionary() throws IOException {
+        File dir = mFolder.newFolder("log");
+        EventLogWriter writer = new EventLogWriter(dir, 16);
+        writer.append(1, EventLog.RSSI, "aa", -50, 0, 0);
+        writer.append(2, EventLog.RSSI, "bb", -60, 0, 0);
+        writer.close();
+
+        writer = new EventLogWriter(dir, 16);
+        assertEquals(2, writer.getCount());
+        writer.append(3, EventLog.RSSI, "bb", -61, 0, 0);
+        writer.append(4, EventLog.RSSI, "cc", -70, 0, 0);
+        writer.close();
+
+        EventLogReader reader = new EventLogReader(dir);
+        assertEquals(4, reader.size());
+        assertEquals(3, reader.getStringCount());
+        assertEquals(reader.getKeyId(1), reader.getKeyId(2));
+        assertEquals("cc", reader.getKey(3));
+    }
+
+    @Test
+    public void tornTailIsCutOnOpen() throws IOException {
+        File dir = mFolder.newFolder("log");
+        EventLogWriter writer = new EventLogWriter(dir, 16);
+        writer.append(1, EventLog.RSSI, "aa", -50, 0, 0);
+        writer.close();
+        File segment = EventLogReader.listSegments(dir).get(0);
+        appendBytes(new File(segment, EventLog.EVENTS_FILE), new byte[]{1, 2, 3, 4, 5});
+        appendBytes(new File(segment, EventLog.STRINGS_FILE), new byte[]{0, 10, 'x'});
+
+        assertEquals(1, new EventLogReader(dir).size());
+
+        writer = new EventLogWriter(dir, 16);
+        writer.append(2, EventLog.RSSI, "dd", -40, 0, 0);
+        writer.close();
+
+        EventLogReader reader = new EventLogReader(dir);
+        assertEquals(2, reader.size());
+        assertEquals("dd", reader.getKey(1));
+        assertEquals(-40, reader.getArg0(1));
+        assertEquals(EventLog.HEADER_BYTES + 2 * EventLog.RECORD_BYTES, new File(segment, EventLog.EVENTS_FILE).length());
+    }
+
+    @Test
+    public void fullSegmentsRotateAndTheOldestArePruned() throws IOException {
+        File dir = mFolder.newFolder("log");
+        // Room for four records a segment, three segments kept.
+        EventLogWriter writer = new EventLogWriter(dir, 2, EventLog.HEADER_BYTES + 4 * EventLog.RECORD_BYTES,
+                Long.MAX_VALUE, 3);
+        for (int i = 0; i < 18; i++) {
+            writer.append(1000 + i, EventLog.RSSI, i % 2 == 0 ? "aa" : "b" + i, -50 - i, 0, i);
+        }
+        writer.close();
+
+        assertEquals(5, writer.getSegmentCount());
+        assertEquals(10, writer.getCount());
+        List<File> segments = EventLogReader.listSegments(dir);
+        assertEquals(3, segments.size());
+        assertEquals(EventLog.SEGMENT_PREFIX + "0000000001008", segments.get(0).getName());
+
+        EventLogReader reader = new EventLogReader(dir);
+        assertEquals(10, reader.size());
+        assertEquals(3, reader.getSegmentCount());
+        for (int i = 0; i < reader.size(); i++) {
+            assertEquals(1008 + i, reader.getTime(i));
+            assertEquals(8 + i, reader.getArg2(i));
+            assertEquals(i % 2 == 0 ? "aa" : "b" + (8 + i), reader.getKey(i));
+        }
+        // One id for a key in every segment.
+        assertEquals(reader.getKeyId(0), reader.getKeyId(8));
+        final List<String> keys = new ArrayList<>();
+        final EventLogReader replayed = reader;
+        reader.replay(3, 9, new EventLogReader.Visitor() {
+            @Override
+            public void onEvent(long timeMillis, int type, int key, int arg0, int arg1, long arg2) {
+                keys.add(arg2 + " " + replayed.getString(key));
+            }
+        });
+        assertEquals("[11 b11, 12 aa, 13 b13, 14 aa, 15 b15, 16 aa]", keys.toString());
+    }
+
+    @Test
+    public void oldSegmentsRotateByAgeAndReopenContinuesTheNewest() throws IOException {
+        File dir = mFolder.newFolder("log");
+        EventLogWriter writer = new EventLogWriter(dir, 16, Long.MAX_VALUE, 60000, 10);
+        writer.append(0, EventLog.RSSI, "aa", -50, 0, 0);
+        writer.append(59999, EventLog.RSSI, "aa", -51, 0, 0);
+        writer.append(60000, EventLog.RSSI, "aa", -52, 0, 0);
+        writer.close();
+        assertEquals(2, EventLogReader.listSegments(dir).size());
+
+        writer = new EventLogWriter(dir, 16, Long.MAX_VALUE, 60000, 10);
+        assertEquals(3, writer.getCount());
+        writer.append(119999, EventLog.RSSI, "cc", -53, 0, 0);
+        writer.append(120000, EventLog.RSSI, "aa", -54, 0, 0);
+        writer.close();
+
+        assertEquals(3, EventLogReader.listSegments(dir).size());
+        EventLogReader reader = new EventLogReader(dir);
+        assertEquals(5, reader.size());
+        assertEquals("cc", reader.getKey(3));
+        assertEquals(-54, reader.getArg0(4));
+    }
+
+    @Test
+    public void emptyLogHasNoRecords() throws IOException {
+        File dir = mFolder.newFolder("log");
+        new EventLogWriter(dir, 16).close();
+
+        EventLogReader reader = new EventLogReader(dir);
+        assertEquals(0, reader.size());
+        reader.replay(0, 0, null);
+    }
+
+    @Test(expected = IOException.class)
+    public void foreignFileIsRefused() throws IOException {
+        File dir = mFolder.newFolder("log");
+        File segment = new File(dir, EventLog.SEGMENT_PREFIX + "0000000000000");
+        assertTrue(segment.mkdir());
+        appendBytes(new File(segment, EventLog.EVENTS_FILE), new byte[64]);
+        new EventLogReader(dir);
+    }
+
+    @Test
+    public void replaysAMillionRecords() throws IOException {
+        final int records = 1000000;
+        File dir = mFolder.newFolder("log");
+        EventLogWriter writer = new EventLogWriter(dir, 1024);
+        String[] bssids = new String[64];
+        for (int i = 0; i < bssids.length; i++) {
+            bssids[i] = "02:00:00:00:00:" + Integer.toHexString(i);
+        }
+        for (int i = 0; i < records; i++) {
+            writer.append(i, EventLog.RSSI, bssids[i % bssids.length], -30 - i % 60, 0, i);
+        }
+        writer.close();
+
+        EventLogReader reader = new EventLogReader(dir);
+        final long[] totals = new long[3];
+        reader.replay(0, reader.size(), new EventLogReader.Visitor() {
+            @Override
+            public void onEvent(long timeMillis, int type, int key, int arg0, int arg1, long arg2) {
+                totals[0]++;
+                totals[1] += arg2;
+                if (key == 5) {
+                    totals[2]++;
+                }
+            }
+        });
+
+        assertEquals(records, totals[0]);
+        assertEquals((long) records * (records - 1) / 2, totals[1]);
+        assertEquals(records / bssids.length, totals[2]);
+        assertEquals(bssids.length, reader.getStringCount());
+    }
+
+    private static void appendBytes(File file, byte[] bytes) throws IOException {
+        FileOutputStream out = new FileOutputStream(file, true);
+        try {
+            out.write(bytes);
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,304 @@
+package com.cyh.wifiinforeader.export;
+
+import com.cyh.wifiinforeader.eventlog.EventLog;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.*;
+
+public class ExportTest {
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private static class Record {
+        final long mTime;
+        final int mType;
+        final String mKey;
+        final int mArg0;
+        final int mArg1;
+        final long mArg2;
+
+        Record(long time, int type, String key, int arg0, int arg1, long arg2) {
+            mTime = time;
+            mType = type;
+            mKey = key;
+            mArg0 = arg0;
+            mArg1 = arg1;
+            mArg2 = arg2;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Record)) {
+                return false;
+            }
+            Record r = (Record) o;
+            return mTime == r.mTime && mType == r.mType && (mKey == null ? r.mKey == null : mKey.equals(r.mKey))
+                    && mArg0 == r.mArg0 && mArg1 == r.mArg1 && mArg2 == r.mArg2;
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) mTime;
+        }
+
+        @Override
+        public String toString() {
+            return toJson();
+        }
+
+        /** The plain JSON a naive exporter would write, one object per line. */
+        String toJson() {
+            return "{\"time\":" + mTime + ",\"type\":\"" + EventLog.typeName(mType) + "\",\"key\":"
+                    + (mKey == null ? "null" : "\"" + mKey + "\"") + ",\"arg0\":" + mArg0 + ",\"arg1\":" + mArg1
+                    + ",\"arg2\":" + mArg2 + "}\n";
+        }
+    }
+
+    private static class Collector implements ExportReader.Visitor {
+        final List<Record> mRecords = new ArrayList<>();
+
+        @Override
+        public void onRecord(long timeMillis, int type, String key, int arg0, int arg1, long arg2) {
+            mRecords.add(new Record(timeMillis, type, key, arg0, arg1, arg2));
+        }
+    }
+
+    /**
+     * An hour of what the collector records: a scan of 20 access points every 10 s, the link's
+     * RSSI every 3 s, a ping and an HTTP test every minute.
+     */
+    private static List<Record> hourOfEvents(long start) {
+        Random random = new Random(3);
+        List<Record> records = new ArrayList<>();
+        String[] bssids = new String[20];
+        int[] rssi = new int[bssids.length];
+        for (int i = 0; i < bssids.length; i++) {
+            bssids[i] = String.format("%02x:1b:2c:3d:%02x:%02x", i * 7, i, 255 - i);
+            rssi[i] = -40 - random.nextInt(50);
+        }
+        for (long t = start; t < start + 3600000; t += 1000) {
+            long jitter = random.nextInt(40);
+            if ((t - start) % 3000 == 0) {
+                records.add(new Record(t + jitter, EventLog.RSSI, bssids[0], -52 + random.nextInt(5), 0, 0));
+            }
+            if ((t - start) % 10000 == 0) {
+                records.add(new Record(t + jitter, EventLog.SCAN, null, bssids.length, random.nextInt(2), 900 + random.nextInt(400)));
+                for (int i = 0; i < bssids.length; i++) {
+                    rssi[i] += random.nextInt(5) - 2;
+                    records.add(new Record(t + jitter + 1, EventLog.SCAN_ENTRY, bssids[i], rssi[i],
+                            i % 2 == 0 ? 2412 + 5 * (i % 13) : 5180 + 20 * (i % 8), random.nextInt(4) == 0 ? 1 : 0));
+                }
+            }
+            if ((t - start) % 60000 == 0) {
+                records.add(new Record(t + jitter, EventLog.PING, "www.baidu.com", 20 - random.nextInt(2), 20,
+                        30000 + random.nextInt(5000)));
+                records.add(new Record(t + jitter + 900, EventLog.HTTP, "https://www.baidu.com/", 200, 10,
+                        80000 + random.nextInt(20000)));
+            }
+        }
+        return records;
+    }
+
+    private static void writeAll(ExportWriter writer, List<Record> records, int batchSize) throws IOException {
+        RecordBatch batch = new RecordBatch(batchSize);
+        for (Record r : records) {
+            if (batch.add(r.mTime, r.mType, r.mKey, r.mArg0, r.mArg1, r.mArg2)) {
+                writer.write(batch);
+                batch.clear();
+            }
+        }
+        writer.write(batch);
+    }
+
+    private static long directorySize(File dir) {
+        long bytes = 0;
+        for (File file : ExportReader.listFiles(dir)) {
+            bytes += file.length();
+        }
+        return bytes;
+    }
+
+    @Test
+    public void hourOfEventsRoundTripsInAFractionOfJson() throws IOException {
+        File dir = mFolder.newFolder("export");
+        List<Record> records = hourOfEvents(1500000000000L);
+        ExportWriter writer = new ExportWriter(dir, 1 << 20, 3600000, 10);
+        writeAll(writer, records, 512);
+        writer.close();
+
+        Collector read = new Collector();
+        assertEquals(records.size(), ExportReader.readAll(dir, read));
+        assertEquals(records, read.mRecords);
+
+        long json = 0;
+        ByteArrayOutputStream gzippedJson = new ByteArrayOutputStream();
+        GZIPOutputStream gzip = new GZIPOutputStream(gzippedJson);
+        for (Record r : records) {
+            byte[] line = r.toJson().getBytes(StandardCharsets.UTF_8);
+            json += line.length;
+            gzip.write(line);
+        }
+        gzip.close();
+        double perRecord = (double) directorySize(dir) / records.size();
+        double jsonPerRecord = (double) json / records.size();
+        double gzippedJsonPerRecord = (double) gzippedJson.size() / records.size();
+        // Measured: about 2.2 bytes a record, against 99 as JSON and 6.0 as gzipped JSON.
+        assertTrue(perRecord + " bytes a record", perRecord < jsonPerRecord / 20);
+        assertTrue(perRecord + " against " + gzippedJsonPerRecord, perRecord < gzippedJsonPerRecord / 2);
+    }
+
+    @Test
+    public void edgeValuesRoundTrip() throws IOException {
+        File dir = mFolder.newFolder("export");
+        List<Record> records = new ArrayList<>();
+        records.add(new Record(Long.MAX_VALUE, Integer.MIN_VALUE, "", Integer.MIN_VALUE, Integer.MAX_VALUE, Long.MIN_VALUE));
+        records.add(new Record(Long.MIN_VALUE, Integer.MIN_VALUE, "\u00e9\u4e2d", Integer.MAX_VALUE, Integer.MIN_VALUE, Long.MAX_VALUE));
+        records.add(new Record(0, -1, null, -1, 0, -1));
+        records.add(new Record(-5, EventLog.RSSI, "", 0, -1, 1));
+        ExportWriter writer = new ExportWriter(dir, 1 << 20, Long.MAX_VALUE, 10);
+        writeAll(writer, records, 3);
+        writer.close();
+
+        Collector read = new Collector();
+        ExportReader.readAll(dir, read);
+        assertEquals(records, read.mRecords);
+    }
+
+    @Test
+    public void filesRotateBySizeAndTimeAndOldOnesGo() throws IOException {
+        File dir = mFolder.newFolder("export");
+        List<Record> records = hourOfEvents(1000);
+        ExportWriter writer = new ExportWriter(dir, 2000, 600000, 1000);
+        writeAll(writer, records, 256);
+        writer.close();
+
+        List<File> files = ExportReader.listFiles(dir);
+        assertTrue(files.size() > 6);
+        for (File file : files) {
+            assertTrue(file.getName().endsWith(ExportFormat.FILE_SUFFIX));
+            // One batch, well under 2000 bytes, past the limit at most.
+            assertTrue(file.length() < 4000);
+            final long[] span = {Long.MAX_VALUE, Long.MIN_VALUE};
+            ExportReader.read(file, new ExportReader.Visitor() {
+                @Override
+                public void onRecord(long timeMillis, int type, String key, int arg0, int arg1, long arg2) {
+                    span[0] = Math.min(span[0], timeMillis);
+                    span[1] = Math.max(span[1], timeMillis);
+                }
+            });
+            // Ten minutes from the file's first batch, plus that of the last.
+            assertTrue(span[1] - span[0] < 600000 + 256 * 1000);
+        }
+        Collector read = new Collector();
+        ExportReader.readAll(dir, read);
+        assertEquals(records, read.mRecords);
+
+        writer = new ExportWriter(dir, 2000, 600000, 3);
+        writeAll(writer, records.subList(0, 10), 256);
+        writer.close();
+        assertEquals(3, ExportReader.listFiles(dir).size());
+    }
+
+    @Test
+    public void filesAreStandardGzip() throws IOException {
+        File dir = mFolder.newFolder("export");
+        ExportWriter writer = new ExportWriter(dir, 1 << 20, 3600000, 10);
+        writeAll(writer, hourOfEvents(0).subList(0, 100), 30);
+        writer.close();
+
+        InputStream in = new GZIPInputStream(new FileInputStream(ExportReader.listFiles(dir).get(0)));
+        int bytes = 0;
+        int magic = 0;
+        for (int b; (b = in.read()) >= 0; bytes++) {
+            if (bytes < 4) {
+                magic = magic << 8 | b;
+            }
+        }
+        in.close();
+        assertEquals(ExportFormat.MAGIC, magic);
+        assertTrue(bytes > 100);
+    }
+
+    @Test
+    public void tornLastBatchIsSkippedAndPartialFileCompletedOnOpen() throws IOException {
+        File dir = mFolder.newFolder("export");
+        List<Record> records = hourOfEvents(0).subList(0, 300);
+        ExportWriter writer = new ExportWriter(dir, 1 << 20, 3600000, 10);
+        writeAll(writer, records.subList(0, 200), 100);
+        writer.close();
+        File file = ExportReader.listFiles(dir).get(0);
+        long complete = file.length();
+        File other = mFolder.newFolder("other");
+        writer = new ExportWriter(other, 1 << 20, 3600000, 10);
+        writeAll(writer, records, 100);
+        writer.close();
+        File longer = ExportReader.listFiles(other).get(0);
+        assertTrue(longer.length() > complete + 10);
+
+        // A crash in the middle of writing the third batch.
+        File partial = new File(dir, file.getName().replace(ExportFormat.FILE_SUFFIX, ExportFormat.PARTIAL_SUFFIX));
+        assertTrue(file.delete());
+        RandomAccessFile in = new RandomAccessFile(longer, "r");
+        byte[] bytes = new byte[(int) (complete + longer.length()) / 2];
+        in.readFully(bytes);
+        in.close();
+        Files.write(partial.toPath(), bytes);
+
+        Collector read = new Collector();
+        assertEquals(200, ExportReader.readAll(dir, read));
+        assertEquals(records.subList(0, 200), read.mRecords);
+
+        new ExportWriter(dir, 1 << 20, 3600000, 10).close();
+        assertFalse(partial.exists());
+        assertEquals(1, ExportReader.listFiles(dir).size());
+    }
+
+    @Test
+    public void exporterWritesInTheBackground() throws Exception {
+        File dir = mFolder.newFolder("export");
+        List<Record> records = hourOfEvents(0);
+        MeasurementExporter exporter = new MeasurementExporter(new ExportWriter(dir, 1 << 20, 3600000, 10), 64, 64);
+        for (int i = 0; i < 1000; i++) {
+            Record r = records.get(i);
+            exporter.append(r.mTime, r.mType, r.mKey, r.mArg0, r.mArg1, r.mArg2);
+        }
+        exporter.flush();
+        for (int wait = 0; exporter.getWrittenCount() + exporter.getDroppedCount() < 1000 && wait < 500; wait++) {
+            Thread.sleep(10);
+        }
+        assertEquals(1000, exporter.getWrittenCount() + exporter.getDroppedCount());
+        for (int i = 1000; i < records.size(); i++) {
+            Record r = records.get(i);
+            exporter.append(r.mTime, r.mType, r.mKey, r.mArg0, r.mArg1, r.mArg2);
+        }
+        exporter.close();
+        exporter.append(0, EventLog.RSSI, null, 0, 0, 0);
+
+        Collector read = new Collector();
+        ExportReader.readAll(dir, read);
+        assertEquals(0, exporter.getFailureCount());
+        assertEquals(records.size(), exporter.getWrittenCount() + exporter.getDroppedCount());
+        assertEquals(exporter.getWrittenCount(), read.mRecords.size());
+        if (exporter.getDroppedCount() == 0) {
+            assertEquals(records, read.mRecords);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.cyh.wifiinforeader.http;
+
+import com.cyh.wifiinforeader.testing.LocalHttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class HttpTimingProbeTest {
+
+    private LocalHttpServer mServer;
+    private HttpTimingProbe mProbe;
+
+    @Before
+    public void setUp() throws Exception {
+        mServer = new LocalHttpServer(0);
+        mProbe = new HttpTimingProbe(mServer.url("/generate_204"), 2000);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mProbe.close();
+        mServer.close();
+    }
+
+    @Test
+    public void repeatedRequestsReuseOneConnection() throws Exception {
+        HttpTimingReport report = mProbe.run(20);
+
+        assertEquals(1, mServer.getConnectionCount());
+        assertEquals(20, mServer.getRequestCount());
+        assertEquals(1, report.getColdCount());
+        assertEquals(19, report.getWarmCount());
+        assertTrue(report.isAllSuccessful());
+
+        HttpTiming first = report.getFirst();
+        assertFalse(first.isReused());
+        assertTrue(first.get(HttpTiming.Phase.CONNECT) > 0);
+        assertEquals(0, first.get(HttpTiming.Phase.TLS));
+        for (HttpTiming timing : report.getTimings().subList(1, 20)) {
+            assertTrue(timing.isReused());
+            assertEquals(0, timing.get(HttpTiming.Phase.DNS));
+            assertEquals(0, timing.get(HttpTiming.Phase.CONNECT));
+            assertTrue(timing.get(HttpTiming.Phase.TOTAL) >= timing.get(HttpTiming.Phase.TTFB));
+        }
+    }
+
+    @Test
+    public void ttfbCoversServerTime() throws Exception {
+        mServer.setDelayMillis(50);
+
+        HttpTimingReport report = mProbe.run(3);
+
+        long p50 = report.percentile(HttpTiming.Phase.TTFB, 50, true);
+        assertTrue("ttfb " + p50, p50 >= 50000);
+        assertTrue(report.percentile(HttpTiming.Phase.TOTAL, 99, false) >= p50);
+    }
+
+    @Test
+    public void chunkedBodyKeepsConnectionUsable() throws Exception {
+        mServer.setChunked(true);
+
+        HttpTimingReport report = mProbe.run(5);
+
+        assertEquals(1, mServer.getConnectionCount());
+        assertEquals(4, report.getWarmCount());
+    }
+
+    @Test
+    public void connectionCloseForcesColdRequests() throws Exception {
+        mServer.setCloseAfterResponse(true);
+
+        HttpTimingReport report = mProbe.run(4);
+
+        assertEquals(4, mServer.getConnectionCount());
+        assertEquals(4, report.getColdCount());
+        assertEquals(-1, report.percentile(HttpTiming.Phase.TOTAL, 50, true));
+    }
+
+    @Test
+    public void errorStatusIsReported() throws Exception {
+        mServer.setStatus(503);
+
+        HttpTiming timing = mProbe.request();
+
+        assertEquals(503, timing.getStatus());
+        assertFalse(new HttpTimingReport(Collections.singletonList(timing)).isAllSuccessful());
+    }
+
+    @Test
+    public void percentilesUseNearestRank() {
+        List<HttpTiming> timings = new ArrayList<>();
+        for (int i = 1; i <= 100; i++) {
+            timings.add(new HttpTiming(200, i > 1, 0, 0, 0, i, i));
+        }
+        HttpTimingReport report = new HttpTimingReport(timings);
+
+        assertEquals(50, report.percentile(HttpTiming.Phase.TOTAL, 50, false));
+        assertEquals(95, report.percentile(HttpTiming.Phase.TOTAL, 95, false));
+        assertEquals(99, report.percentile(HttpTiming.Phase.TOTAL, 99, false));
+        assertEquals(100, report.percentile(HttpTiming.Phase.TOTAL, 100, false));
+        // Warm requests are 2..100.
+        assertEquals(51, report.percentile(HttpTiming.Phase.TTFB, 50, true));
+    }
+}
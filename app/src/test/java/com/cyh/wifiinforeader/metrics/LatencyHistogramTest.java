@@ -0,0 +1,67 @@
+package com.cyh.wifiinforeader.metrics;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void everyValueFallsWithinItsBucket() {
+        Random random = new Random(7);
+        for (int i = 0; i < 100000; i++) {
+            long value = random.nextLong() >>> (1 + random.nextInt(63));
+            int bucket = LatencyHistogram.bucketOf(value);
+            assertTrue(value <= LatencyHistogram.upperBound(bucket));
+            if (bucket > 0) {
+                assertTrue(value > LatencyHistogram.upperBound(bucket - 1));
+            }
+        }
+        for (long value = 0; value < 4096; value++) {
+            int bucket = LatencyHistogram.bucketOf(value);
+            assertTrue(value <= LatencyHistogram.upperBound(bucket));
+            assertTrue(bucket == 0 || value > LatencyHistogram.upperBound(bucket - 1));
+        }
+    }
+
+    @Test
+    public void bucketsAreWithinAnEighth() {
+        for (int bucket = 9; bucket < LatencyHistogram.BUCKET_COUNT - 1; bucket++) {
+            long lower = LatencyHistogram.upperBound(bucket - 1) + 1;
+            long width = LatencyHistogram.upperBound(bucket) - lower + 1;
+            assertTrue(width * 8 <= lower);
+        }
+        assertEquals(LatencyHistogram.BUCKET_COUNT - 1, LatencyHistogram.bucketOf(1L << 32));
+        assertEquals((1L << 32) - 1, LatencyHistogram.upperBound(LatencyHistogram.BUCKET_COUNT - 2));
+        assertEquals(Long.MAX_VALUE, LatencyHistogram.upperBound(LatencyHistogram.BUCKET_COUNT - 1));
+    }
+
+    @Test
+    public void concurrentRecordsAllCount() throws InterruptedException {
+        final LatencyHistogram histogram = new MetricsRegistry().histogram("test_seconds", "test");
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 100000; i++) {
+                        histogram.record(i % 1000);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        long[] counts = new long[LatencyHistogram.BUCKET_COUNT];
+        assertEquals(4L * 100 * 499500, histogram.snapshot(counts));
+        assertEquals(400000, histogram.getCount());
+        long median = LatencyHistogram.quantile(counts, 0.5);
+        assertTrue(median >= 499 && median <= 499 + 499 / 8);
+        assertEquals(-1, LatencyHistogram.quantile(new long[LatencyHistogram.BUCKET_COUNT], 0.5));
+    }
+}
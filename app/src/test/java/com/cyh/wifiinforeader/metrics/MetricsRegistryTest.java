@@ -0,0 +1,108 @@
+package com.cyh.wifiinforeader.metrics;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+public class MetricsRegistryTest {
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void sameNameAndLabelsIsSameMetric() {
+        MetricsRegistry registry = new MetricsRegistry();
+        Counter rssi = registry.counter("events_total", "type=\"rssi\"", "Events");
+        assertSame(rssi, registry.counter("events_total", "type=\"rssi\"", "Events"));
+        assertNotSame(rssi, registry.counter("events_total", "type=\"scan\"", "Events"));
+
+        rssi.increment();
+        rssi.add(2);
+        assertEquals(3, rssi.get());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nameKeepsItsType() {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("latency", "help");
+        registry.histogram("latency", "help");
+    }
+
+    @Test
+    public void prometheusText() {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("events_total", "type=\"rssi\"", "Events").add(5);
+        registry.counter("events_total", "type=\"scan\"", "Events");
+        LatencyHistogram latency = registry.histogram("scan_latency_seconds", "Scan latency");
+        latency.record(3);
+        latency.record(1500000);
+
+        StringBuilder sb = new StringBuilder();
+        registry.format(sb);
+        String text = sb.toString();
+
+        assertTrue(text.startsWith("# HELP events_total Events\n"
+                + "# TYPE events_total counter\n"
+                + "events_total{type=\"rssi\"} 5\n"
+                + "events_total{type=\"scan\"} 0\n"
+                + "# HELP scan_latency_seconds Scan latency\n"
+                + "# TYPE scan_latency_seconds histogram\n"
+                + "scan_latency_seconds_bucket{le=\"0\"} 0\n"
+                + "scan_latency_seconds_bucket{le=\"0.000001\"} 0\n"
+                + "scan_latency_seconds_bucket{le=\"0.000003\"} 1\n"
+                + "scan_latency_seconds_bucket{le=\"0.000007\"} 1\n"));
+        assertTrue(text.contains("scan_latency_seconds_bucket{le=\"1.048575\"} 1\n"
+                + "scan_latency_seconds_bucket{le=\"2.097151\"} 2\n"));
+        assertTrue(text.endsWith("scan_latency_seconds_bucket{le=\"4294.967295\"} 2\n"
+                + "scan_latency_seconds_bucket{le=\"+Inf\"} 2\n"
+                + "scan_latency_seconds_sum 1.500003\n"
+                + "scan_latency_seconds_count 2\n"));
+    }
+
+    @Test
+    public void labelsComeBeforeLe() {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.histogram("http_seconds", "phase=\"dns\"", "HTTP").record(100);
+
+        StringBuilder sb = new StringBuilder();
+        registry.format(sb);
+        assertTrue(sb.toString().contains("http_seconds_bucket{phase=\"dns\",le=\"0.000127\"} 1\n"));
+        assertTrue(sb.toString().contains("http_seconds_sum{phase=\"dns\"} 0.0001\n"));
+    }
+
+    @Test
+    public void exportReplacesFile() throws IOException {
+        MetricsRegistry registry = new MetricsRegistry();
+        Counter counter = registry.counter("events_total", "Events");
+        File file = new File(mFolder.getRoot(), "metrics.prom");
+
+        counter.increment();
+        registry.export(file);
+        counter.increment();
+        registry.export(file);
+
+        String text = new String(Files.readAllBytes(file.toPath()), Charset.forName("UTF-8"));
+        assertTrue(text.endsWith("events_total 2\n"));
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+    }
+
+    @Test
+    public void appendSeconds() {
+        StringBuilder sb = new StringBuilder();
+        MetricsRegistry.appendSeconds(sb, 0);
+        sb.append(' ');
+        MetricsRegistry.appendSeconds(sb, 2000000);
+        sb.append(' ');
+        MetricsRegistry.appendSeconds(sb, 2500000);
+        sb.append(' ');
+        MetricsRegistry.appendSeconds(sb, 1020);
+        assertEquals("0 2 2.5 0.00102", sb.toString());
+    }
+}
@@ -0,0 +1,140 @@
+package com.cyh.wifiinforeader.ping;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs {@link PingOutputParser} over captured ping outputs in {@code src/test/resources/ping}.
+ */
+public class PingOutputParserTest {
+
+    @Test
+    public void iputils_repliesAndSummary() throws Exception {
+        PingReport report = parse("iputils_linux.txt");
+
+        assertEquals(4, report.getReplyCount());
+        assertEquals(1, report.getSeq(0));
+        assertEquals(54, report.getTtl(0));
+        assertEquals(58600, report.getRttMicros(0));
+        assertEquals(39887, report.getRttMicros(2));
+        assertEquals(120000, report.getRttMicros(3));
+
+        assertEquals(4, report.getTransmitted());
+        assertEquals(4, report.getReceived());
+        assertEquals(0d, report.getLossPercent(), 0d);
+        assertEquals(3004, report.getTimeMillis());
+
+        assertEquals(39887, report.getMinMicros());
+        assertEquals(64921, report.getAvgMicros());
+        assertEquals(120002, report.getMaxMicros());
+        assertEquals(32540, report.getMdevMicros());
+    }
+
+    @Test
+    public void iputils_reverseLookupAndFractionalLoss() throws Exception {
+        PingReport report = parse("iputils_hostname_loss.txt");
+
+        assertEquals(2, report.getReplyCount());
+        assertEquals(3, report.getSeq(1));
+        assertEquals(117, report.getTtl(1));
+        assertEquals(11000, report.getRttMicros(1));
+        assertEquals(2, report.getReceived());
+        assertEquals(33.333, report.getLossPercent(), 0.001);
+    }
+
+    @Test
+    public void iputils_unreachableHasNoReplies() throws Exception {
+        PingReport report = parse("iputils_unreachable.txt");
+
+        assertEquals(0, report.getReplyCount());
+        assertEquals(3, report.getTransmitted());
+        assertEquals(0, report.getReceived());
+        assertEquals(100d, report.getLossPercent(), 0d);
+        assertEquals(2031, report.getTimeMillis());
+        assertFalse(report.hasRtt());
+    }
+
+    @Test
+    public void iputils_duplicatesAreReported() throws Exception {
+        PingReport report = parse("iputils_duplicates.txt");
+
+        assertEquals(3, report.getReplyCount());
+        assertEquals(1, report.getSeq(1));
+        assertEquals(301, report.getRttMicros(1));
+        assertEquals(0d, report.getLossPercent(), 0d);
+    }
+
+    @Test
+    public void busybox_shortSeqAndNoMdev() throws Exception {
+        PingReport report = parse("busybox.txt");
+
+        assertEquals(2, report.getReplyCount());
+        assertEquals(0, report.getSeq(0));
+        assertEquals(987, report.getRttMicros(1));
+        assertEquals(2, report.getReceived());
+        assertEquals(-1, report.getTimeMillis());
+        assertEquals(1234, report.getMaxMicros());
+        assertEquals(-1, report.getMdevMicros());
+    }
+
+    @Test
+    public void bsd_crlfAndUnterminatedLastLine() throws Exception {
+        PingReport report = parse("bsd_crlf_unterminated.txt");
+
+        assertEquals(2, report.getReplyCount());
+        assertEquals(12500, report.getRttMicros(1));
+        assertEquals(2, report.getReceived());
+        assertEquals(688, report.getMdevMicros());
+    }
+
+    @Test
+    public void feed_linesSplitAcrossChunks() throws Exception {
+        byte[] output = read("iputils_linux.txt");
+        PingReport whole = new PingReport();
+        new PingOutputParser(whole).feed(output, 0, output.length);
+
+        PingReport split = new PingReport();
+        PingOutputParser parser = new PingOutputParser(split);
+        for (int i = 0; i < output.length; i += 3) {
+            parser.feed(output, i, Math.min(3, output.length - i));
+        }
+        parser.finish();
+
+        assertEquals(whole.getReplyCount(), split.getReplyCount());
+        for (int i = 0; i < whole.getReplyCount(); i++) {
+            assertEquals(whole.getRttMicros(i), split.getRttMicros(i));
+        }
+        assertEquals(whole.getAvgMicros(), split.getAvgMicros());
+    }
+
+    private PingReport parse(String name) throws IOException {
+        PingReport report = new PingReport();
+        InputStream in = getClass().getResourceAsStream("/ping/" + name);
+        try {
+            new PingOutputParser(report).parse(in);
+        } finally {
+            in.close();
+        }
+        return report;
+    }
+
+    private byte[] read(String name) throws IOException {
+        InputStream in = getClass().getResourceAsStream("/ping/" + name);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buff = new byte[1024];
+            int length;
+            while (-1 != (length = in.read(buff))) {
+                out.write(buff, 0, length);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package com.cyh.wifiinforeader.ping;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class PingSessionTest {
+
+    private ExecutorService mExecutor;
+
+    @Before
+    public void setUp() {
+        mExecutor = Executors.newSingleThreadExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        mExecutor.shutdownNow();
+    }
+
+    @Test
+    public void replyIsDeliveredWhileProcessIsStillRunning() throws Exception {
+        final FakeProcess process = new FakeProcess();
+        RecordingCallback callback = new RecordingCallback();
+        new PingSession(100, 10, 24, "10.0.0.1", starter(process), callback).start(mExecutor);
+
+        process.write("PING 10.0.0.1 (10.0.0.1) 24(52) bytes of data.\n");
+        process.write("32 bytes from 10.0.0.1: icmp_seq=1 ttl=64 time=0.5 ms\n");
+
+        assertTrue(callback.firstReply.await(1, TimeUnit.SECONDS));
+        assertEquals(1, callback.finished.getCount());
+        assertFalse(process.mDestroyed);
+
+        process.write("\n--- 10.0.0.1 ping statistics ---\n1 packets transmitted, 1 received, 0% packet loss, time 0ms\n");
+        process.exit(0);
+
+        assertTrue(callback.done.await(1, TimeUnit.SECONDS));
+        assertEquals(0, callback.finishedStatus.get());
+        assertEquals(1, callback.mReport.getReceived());
+    }
+
+    @Test
+    public void cancelKillsProcessAndSilencesCallbacks() throws Exception {
+        final FakeProcess process = new FakeProcess();
+        RecordingCallback callback = new RecordingCallback();
+        PingSession session = new PingSession(100, 10, 24, "10.0.0.1", starter(process), callback);
+        session.start(mExecutor);
+
+        process.write("32 bytes from 10.0.0.1: icmp_seq=1 ttl=64 time=0.5 ms\n");
+        assertTrue(callback.firstReply.await(1, TimeUnit.SECONDS));
+
+        session.cancel();
+
+        assertTrue(process.mDestroyed);
+        mExecutor.shutdown();
+        assertTrue(mExecutor.awaitTermination(1, TimeUnit.SECONDS));
+        assertEquals(1, callback.replies.get());
+        assertEquals(1, callback.done.getCount());
+    }
+
+    @Test
+    public void startFailureIsReported() throws Exception {
+        RecordingCallback callback = new RecordingCallback();
+        new PingSession(1, 1, 24, "10.0.0.1", new PingSession.ProcessStarter() {
+            @Override
+            public Process start(String[] command) throws IOException {
+                throw new IOException("no ping binary");
+            }
+        }, callback).start(mExecutor);
+
+        assertTrue(callback.done.await(1, TimeUnit.SECONDS));
+        assertTrue(callback.mFailure instanceof IOException);
+    }
+
+    @Test
+    public void commandIsBuiltFromArguments() {
+        PingSession session = new PingSession(20, 2000, 24, "www.baidu.com", PingSession.RUNTIME, new RecordingCallback());
+
+        assertArrayEquals(new String[]{"ping", "-c", "20", "-w", "2000", "-s", "24", "www.baidu.com"}, session.getCommand());
+    }
+
+    private static PingSession.ProcessStarter starter(final Process process) {
+        return new PingSession.ProcessStarter() {
+            @Override
+            public Process start(String[] command) {
+                return process;
+            }
+        };
+    }
+
+    private static class RecordingCallback implements PingSession.Callback {
+        final CountDownLatch firstReply = new CountDownLatch(1);
+        final CountDownLatch finished = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(1);
+        final AtomicInteger replies = new AtomicInteger();
+        final AtomicInteger finishedStatus = new AtomicInteger(-1);
+        volatile PingReport mReport;
+        volatile Exception mFailure;
+
+        @Override
+        public void onReply(int seq, int ttl, long rttMicros) {
+            replies.incrementAndGet();
+            firstReply.countDown();
+        }
+
+        @Override
+        public void onFinished(PingReport report, int exitStatus) {
+            mReport = report;
+            finishedStatus.set(exitStatus);
+            finished.countDown();
+            done.countDown();
+        }
+
+        @Override
+        public void onFailed(Exception e) {
+            mFailure = e;
+            done.countDown();
+        }
+    }
+
+    /**
+     * A ping process whose stdout is written by the test.
+     */
+    static class FakeProcess extends Process {
+        private final PipedOutputStream mOut = new PipedOutputStream();
+        private final PipedInputStream mIn;
+        private final CountDownLatch mExited = new CountDownLatch(1);
+        private volatile int mExitValue = -1;
+        volatile boolean mDestroyed = false;
+
+        FakeProcess() {
+            try {
+                mIn = new PipedInputStream(mOut, 64 * 1024);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        void write(String text) throws IOException {
+            mOut.write(text.getBytes("US-ASCII"));
+            mOut.flush();
+        }
+
+        void exit(int status) throws IOException {
+            mExitValue = status;
+            mOut.close();
+            mExited.countDown();
+        }
+
+        @Override
+        public OutputStream getOutputStream() {
+            return new ByteArrayOutputStream();
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return mIn;
+        }
+
+        @Override
+        public InputStream getErrorStream() {
+            return new ByteArrayInputStream(new byte[0]);
+        }
+
+        @Override
+        public int waitFor() throws InterruptedException {
+            mExited.await();
+            return mExitValue;
+        }
+
+        @Override
+        public int exitValue() {
+            if (mExited.getCount() > 0) {
+                throw new IllegalThreadStateException();
+            }
+            return mExitValue;
+        }
+
+        @Override
+        public void destroy() {
+            mDestroyed = true;
+            try {
+                exit(143);
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
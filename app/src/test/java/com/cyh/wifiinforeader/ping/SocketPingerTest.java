@@ -0,0 +1,156 @@
+package com.cyh.wifiinforeader.ping;
+
+import com.cyh.wifiinforeader.testing.LocalEchoServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SocketPingerTest {
+
+    private LocalEchoServer mEcho;
+    private Recorder mRecorder;
+
+    @Before
+    public void setUp() throws Exception {
+        mEcho = new LocalEchoServer();
+        mRecorder = new Recorder();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mEcho.close();
+    }
+
+    private SocketPinger udp(int count, long intervalMillis, long timeoutMillis) {
+        return new SocketPinger(SocketPinger.Mode.UDP_ECHO, "127.0.0.1", mEcho.getPort(), count,
+                intervalMillis, timeoutMillis, 24, mRecorder);
+    }
+
+    @Test
+    public void udpEchoRepliesAll() {
+        udp(5, 10, 1000).run();
+
+        assertEquals(0, mRecorder.mStatus);
+        assertEquals(5, mEcho.getReceived());
+        assertEquals("1 2 3 4 5 ", mRecorder.mSeqs.toString());
+        PingReport report = mRecorder.mReport;
+        assertEquals(5, report.getTransmitted());
+        assertEquals(5, report.getReceived());
+        assertEquals(0, report.getLossPercent(), 0);
+        assertTrue(report.hasRtt());
+        assertTrue(report.getMinMicros() <= report.getAvgMicros());
+        assertTrue(report.getAvgMicros() <= report.getMaxMicros());
+        assertTrue(report.getMaxMicros() < 1000000);
+    }
+
+    @Test
+    public void probesArePacedFromTheStart() {
+        mEcho.setDelayMillis(30);
+        long start = System.nanoTime();
+        udp(4, 50, 1000).run();
+        long elapsedMillis = (System.nanoTime() - start) / 1000000;
+
+        // Sent at 0, 50, 100, 150; not waiting on the 30 ms echo each.
+        assertEquals(4, mRecorder.mReport.getReceived());
+        assertTrue(elapsedMillis >= 150);
+        assertTrue(elapsedMillis < 400);
+        assertTrue(mRecorder.mReport.getMinMicros() >= 30000);
+    }
+
+    @Test
+    public void droppedEchoesTimeOutAsLoss() {
+        mEcho.setDropEvery(2);
+        udp(6, 5, 200).run();
+
+        assertEquals(0, mRecorder.mStatus);
+        assertEquals("1 3 5 ", mRecorder.mSeqs.toString());
+        assertEquals(6, mRecorder.mReport.getTransmitted());
+        assertEquals(3, mRecorder.mReport.getReceived());
+        assertEquals(50, mRecorder.mReport.getLossPercent(), 0.001);
+    }
+
+    @Test
+    public void nothingAnsweringExitsWithOne() {
+        mEcho.setDropEvery(1);
+        udp(2, 5, 100).run();
+
+        assertEquals(1, mRecorder.mStatus);
+        assertEquals(0, mRecorder.mReport.getReceived());
+        assertFalse(mRecorder.mReport.hasRtt());
+    }
+
+    @Test
+    public void tcpConnectTimesHandshake() throws Exception {
+        ServerSocket server = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        try {
+            new SocketPinger(SocketPinger.Mode.TCP_CONNECT, "127.0.0.1", server.getLocalPort(), 3, 10, 1000, 0,
+                    mRecorder).run();
+        } finally {
+            server.close();
+        }
+
+        assertEquals(0, mRecorder.mStatus);
+        assertEquals("1 2 3 ", mRecorder.mSeqs.toString());
+    }
+
+    @Test
+    public void tcpRefusalIsAnAnswer() throws Exception {
+        ServerSocket server = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        int port = server.getLocalPort();
+        server.close();
+
+        new SocketPinger(SocketPinger.Mode.TCP_CONNECT, "127.0.0.1", port, 2, 10, 1000, 0, mRecorder).run();
+
+        assertEquals(0, mRecorder.mStatus);
+        assertEquals(2, mRecorder.mReport.getReceived());
+    }
+
+    @Test
+    public void cancelSilencesCallbacks() throws Exception {
+        final SocketPinger pinger = udp(100, 50, 1000);
+        Thread thread = new Thread(pinger);
+        thread.start();
+        Thread.sleep(120);
+        pinger.cancel();
+        thread.join(1000);
+
+        assertFalse(thread.isAlive());
+        assertTrue(pinger.isCancelled());
+        assertNull(mRecorder.mReport);
+        int replies = mRecorder.mReplies.size();
+        Thread.sleep(100);
+        assertEquals(replies, mRecorder.mReplies.size());
+    }
+
+    private static class Recorder implements PingSession.Callback {
+        final StringBuilder mSeqs = new StringBuilder();
+        final List<Long> mReplies = new ArrayList<>();
+        volatile PingReport mReport;
+        volatile int mStatus = -1;
+
+        @Override
+        public synchronized void onReply(int seq, int ttl, long rttMicros) {
+            mSeqs.append(seq).append(' ');
+            mReplies.add(rttMicros);
+        }
+
+        @Override
+        public void onFinished(PingReport report, int exitStatus) {
+            mReport = report;
+            mStatus = exitStatus;
+        }
+
+        @Override
+        public void onFailed(Exception e) {
+            throw new AssertionError(e);
+        }
+    }
+}
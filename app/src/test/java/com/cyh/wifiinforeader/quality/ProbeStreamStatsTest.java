@@ -0,0 +1,226 @@
+package com.cyh.wifiinforeader.quality;
+
+import com.cyh.wifiinforeader.metrics.LatencyHistogram;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class ProbeStreamStatsTest {
+
+    private static final int WINDOW = ProbeStreamStats.REORDER_WINDOW;
+
+    /** The same statistics computed the slow way, over the whole stream at once. */
+    private static class Reference {
+        int received;
+        int reordered;
+        int duplicates;
+        int late;
+        int lost;
+        int bursts;
+        int maxBurst;
+        double jitter;
+        double meanRtt;
+        long minRtt = -1;
+        long maxRtt;
+        List<Long> accepted = new ArrayList<>();
+
+        Reference(int firstSeq, int lastSeq, int[] seqs, long[] rtts) {
+            Set<Integer> seen = new HashSet<>();
+            int highest = firstSeq - 1;
+            long sum = 0;
+            for (int i = 0; i < seqs.length; i++) {
+                int seq = seqs[i];
+                if (seq < Math.max(firstSeq, highest - WINDOW + 1)) {
+                    late++;
+                    continue;
+                }
+                if (!seen.add(seq)) {
+                    duplicates++;
+                    continue;
+                }
+                if (seq < highest) {
+                    reordered++;
+                }
+                highest = Math.max(highest, seq);
+                if (!accepted.isEmpty()) {
+                    jitter += (Math.abs(rtts[i] - accepted.get(accepted.size() - 1)) - jitter) / 16;
+                }
+                accepted.add(rtts[i]);
+                sum += rtts[i];
+                minRtt = minRtt < 0 ? rtts[i] : Math.min(minRtt, rtts[i]);
+                maxRtt = Math.max(maxRtt, rtts[i]);
+            }
+            received = accepted.size();
+            meanRtt = received == 0 ? 0 : (double) sum / received;
+
+            int run = 0;
+            for (int seq = firstSeq; seq <= Math.max(lastSeq, highest) + 1; seq++) {
+                if (seq <= Math.max(lastSeq, highest) && !seen.contains(seq)) {
+                    lost++;
+                    run++;
+                } else if (run > 0) {
+                    bursts++;
+                    maxBurst = Math.max(maxBurst, run);
+                    run = 0;
+                }
+            }
+        }
+
+        long quantile(int window, double fraction) {
+            List<Long> last = accepted.subList(Math.max(0, accepted.size() - window), accepted.size());
+            if (last.isEmpty()) {
+                return -1;
+            }
+            long[] sorted = new long[last.size()];
+            for (int i = 0; i < sorted.length; i++) {
+                sorted[i] = last.get(i);
+            }
+            Arrays.sort(sorted);
+            int rank = Math.max(1, (int) Math.ceil(fraction * sorted.length));
+            return LatencyHistogram.upperBound(LatencyHistogram.bucketOf(sorted[rank - 1]));
+        }
+    }
+
+    private static ProbeStreamStats feed(int firstSeq, int quantileWindow, int[] seqs, long[] rtts) {
+        ProbeStreamStats stats = new ProbeStreamStats(firstSeq, quantileWindow);
+        for (int i = 0; i < seqs.length; i++) {
+            stats.onReply(seqs[i], rtts[i]);
+        }
+        return stats;
+    }
+
+    private static void assertMatches(Reference expected, ProbeStreamStats actual, int quantileWindow) {
+        assertEquals(expected.received, actual.getReceived());
+        assertEquals(expected.reordered, actual.getReordered());
+        assertEquals(expected.duplicates, actual.getDuplicates());
+        assertEquals(expected.late, actual.getLate());
+        assertEquals(expected.lost, actual.getLost());
+        assertEquals(expected.bursts, actual.getBurstCount());
+        assertEquals(expected.maxBurst, actual.getMaxBurst());
+        assertEquals(expected.jitter, actual.getJitterMicros(), 0);
+        assertEquals(expected.meanRtt, actual.getMeanRttMicros(), 0);
+        assertEquals(expected.minRtt, actual.getMinRttMicros());
+        assertEquals(expected.maxRtt, actual.getMaxRttMicros());
+        for (double fraction : new double[]{0.01, 0.5, 0.9, 0.99, 1}) {
+            assertEquals(expected.quantile(quantileWindow, fraction), actual.getRttQuantileMicros(fraction));
+        }
+    }
+
+    @Test
+    public void matchesBatchReferenceOnRandomStreams() {
+        Random random = new Random(7);
+        for (int round = 0; round < 300; round++) {
+            int first = random.nextInt(3);
+            int sent = 1 + random.nextInt(400);
+            double lossRate = random.nextDouble() * 0.3;
+            double burstiness = random.nextDouble();
+            int reorderSpan = random.nextInt(2 * WINDOW);
+            List<int[]> arrivals = new ArrayList<>();
+            boolean losing = false;
+            for (int seq = first; seq < first + sent; seq++) {
+                losing = losing ? random.nextDouble() < burstiness : random.nextDouble() < lossRate;
+                if (losing) {
+                    continue;
+                }
+                int delay = random.nextInt(8) == 0 ? random.nextInt(reorderSpan + 1) : 0;
+                arrivals.add(new int[]{seq, seq + delay});
+                if (random.nextInt(50) == 0) {
+                    arrivals.add(new int[]{seq, seq + delay + 1});
+                }
+            }
+            // Stable sort by arrival slot keeps sequence order among equal slots.
+            Collections.sort(arrivals, new Comparator<int[]>() {
+                @Override
+                public int compare(int[] a, int[] b) {
+                    return a[1] < b[1] ? -1 : a[1] == b[1] ? 0 : 1;
+                }
+            });
+            int[] seqs = new int[arrivals.size()];
+            long[] rtts = new long[arrivals.size()];
+            for (int i = 0; i < seqs.length; i++) {
+                seqs[i] = arrivals.get(i)[0];
+                rtts[i] = 1000 + random.nextInt(50000);
+            }
+            int quantileWindow = 1 + random.nextInt(100);
+
+            ProbeStreamStats stats = feed(first, quantileWindow, seqs, rtts);
+            stats.finish(first + sent - 1);
+            Reference expected = new Reference(first, first + sent - 1, seqs, rtts);
+            assertMatches(expected, stats, quantileWindow);
+            assertEquals(sent, stats.getExpected());
+            assertEquals(QualityScore.rFactor(expected.meanRtt / 1000, expected.jitter / 1000,
+                    100.0 * expected.lost / sent), stats.getRFactor(), 0);
+        }
+    }
+
+    @Test
+    public void lossCountsBeforeFinish() {
+        ProbeStreamStats stats = feed(1, 10, new int[]{1, 2, 5, 6}, new long[]{10, 10, 10, 10});
+        assertEquals(2, stats.getLost());
+        assertEquals(6, stats.getExpected());
+        // Still inside the reorder window, so not a final burst yet.
+        assertEquals(0, stats.getBurstCount());
+
+        stats.onReply(3, 10);
+        assertEquals(1, stats.getLost());
+        assertEquals(1, stats.getReordered());
+        stats.finish(8);
+        assertEquals(3, stats.getLost());
+        assertEquals(2, stats.getBurstCount());
+        assertEquals(2, stats.getMaxBurst());
+    }
+
+    @Test
+    public void jumpPastWindowLosesEverythingSkipped() {
+        ProbeStreamStats stats = feed(1, 10, new int[]{1, 1 + 3 * WINDOW, 2}, new long[]{10, 10, 10});
+        assertEquals(3 * WINDOW - 1, stats.getLost());
+        // The last WINDOW - 1 of them are not final yet.
+        assertEquals(2 * WINDOW, stats.getMaxBurst());
+        assertEquals(1, stats.getLate());
+        stats.finish(1 + 3 * WINDOW);
+        assertEquals(1, stats.getBurstCount());
+        assertEquals(3 * WINDOW - 1, stats.getMaxBurst());
+        assertEquals(3 * WINDOW - 1, stats.getLost());
+    }
+
+    @Test
+    public void jitterFollowsRfc3550() {
+        ProbeStreamStats stats = feed(1, 10, new int[]{1, 2, 3}, new long[]{1000, 2600, 1000});
+        double jitter = 1600 / 16.0;
+        jitter += (1600 - jitter) / 16;
+        assertEquals(jitter, stats.getJitterMicros(), 1e-9);
+    }
+
+    @Test
+    public void resetStartsOver() {
+        ProbeStreamStats stats = feed(1, 10, new int[]{3, 1}, new long[]{5000, 9000});
+        stats.reset();
+        assertEquals(0, stats.getReceived());
+        assertEquals(0, stats.getLost());
+        assertEquals(-1, stats.getRttQuantileMicros(0.5));
+        stats.onReply(1, 10);
+        assertEquals(0, stats.getReordered());
+    }
+
+    @Test
+    public void scoreFallsWithLossAndLatency() {
+        double clean = QualityScore.rFactor(20, 1, 0);
+        assertEquals(93.2 - 32 / 40.0, clean, 1e-9);
+        assertTrue(QualityScore.rFactor(20, 1, 5) < clean);
+        assertTrue(QualityScore.rFactor(300, 1, 0) < QualityScore.rFactor(100, 1, 0));
+        assertEquals(0, QualityScore.rFactor(2000, 500, 50), 0);
+        assertEquals(1, QualityScore.mos(0), 0);
+        assertEquals(4.5, QualityScore.mos(100), 0);
+        assertTrue(QualityScore.mos(clean) > 4.3);
+    }
+}
@@ -0,0 +1,183 @@
+package com.cyh.wifiinforeader.quality;
+
+import com.cyh.wifiinforeader.util.FakeClock;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class QualityMonitorTest {
+
+    private FakeClock mClock;
+    private QualityMonitor mMonitor;
+    private final List<String> mAlerts = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        mClock = new FakeClock();
+        mMonitor = new QualityMonitor(mClock, 30000, 2);
+        mMonitor.setListener(new QualityMonitor.Listener() {
+            @Override
+            public void onQualityChanged(String alert) {
+                mAlerts.add(alert);
+            }
+        });
+    }
+
+    @Test
+    public void firstSamplesOnlySetTheLevels() {
+        mMonitor.onLink(-80, 6);
+        mMonitor.onValidation(false);
+        assertEquals(2, mMonitor.getLevel(QualityMonitor.RSSI));
+        assertEquals(2, mMonitor.getLevel(QualityMonitor.LINK_SPEED));
+        assertEquals(1, mMonitor.getLevel(QualityMonitor.VALIDATION));
+        assertEquals(-1, mMonitor.getLevel(QualityMonitor.PING_LOSS));
+        assertTrue(mAlerts.isEmpty());
+        assertEquals(0, mMonitor.getTransitionCount());
+    }
+
+    @Test
+    public void hysteresisKeepsSamplesAroundAThresholdQuiet() {
+        mMonitor.onLink(-60, 300);
+        for (int i = 0; i < 100; i++) {
+            mClock.advanceMillis(1000);
+            // -67 is the good/fair boundary, neither side by the 3 dB margin.
+            mMonitor.onLink(i % 2 == 0 ? -66 : -69, 300);
+        }
+        assertEquals(0, mMonitor.getLevel(QualityMonitor.RSSI));
+        assertTrue(mAlerts.isEmpty());
+
+        mMonitor.onLink(-71, 300);
+        mClock.advanceMillis(5000);
+        mMonitor.onLink(-71, 300);
+        assertEquals(1, mMonitor.getLevel(QualityMonitor.RSSI));
+        assertEquals("[Signal good -> fair (-71 dBm)]", mAlerts.toString());
+
+        // Back up only once clear of the boundary by the margin, -67 + 3.
+        mClock.advanceMillis(60000);
+        mMonitor.onLink(-65, 300);
+        mClock.advanceMillis(10000);
+        mMonitor.onLink(-65, 300);
+        assertEquals(1, mMonitor.getLevel(QualityMonitor.RSSI));
+        mMonitor.onLink(-64, 300);
+        mClock.advanceMillis(5000);
+        mMonitor.poll();
+        assertEquals(0, mMonitor.getLevel(QualityMonitor.RSSI));
+        assertEquals("Signal fair -> good (-64 dBm)", mAlerts.get(1));
+    }
+
+    @Test
+    public void dipsShorterThanTheDebounceAreIgnored() {
+        mMonitor.onLink(-55, 300);
+        mMonitor.onValidation(true);
+        mClock.advanceMillis(1000);
+        mMonitor.onLink(-85, 300);
+        mMonitor.onValidation(false);
+        mClock.advanceMillis(2000);
+        mMonitor.poll();
+        mMonitor.onLink(-56, 300);
+        mMonitor.onValidation(true);
+        mClock.advanceMillis(60000);
+        mMonitor.poll();
+        assertTrue(mAlerts.isEmpty());
+        assertEquals(0, mMonitor.getTransitionCount());
+
+        // Settles with no further sample, committed by a poll.
+        mMonitor.onValidation(false);
+        mClock.advanceMillis(3000);
+        mMonitor.poll();
+        assertEquals("[Internet validated -> not validated]", mAlerts.toString());
+    }
+
+    @Test
+    public void pingLossIsCommittedRightAway() {
+        mMonitor.onPingLoss(0, 20);
+        mMonitor.onPingLoss(5, 20);
+        assertEquals("[Ping loss low -> high (25%)]", mAlerts.toString());
+        // No replies at all from a failed test without a loss line is not a sample.
+        mMonitor.onPingLoss(0, 0);
+        assertEquals(2, mMonitor.getSampleCount());
+    }
+
+    @Test
+    public void alertsOverTheRateAreHeldAndCoalesced() {
+        mMonitor.onLink(-55, 300);
+        mMonitor.onPingLoss(0, 20);
+        // The burst of two.
+        mMonitor.onPingLoss(20, 20);
+        mMonitor.onPingLoss(0, 20);
+        assertEquals(2, mAlerts.size());
+
+        mMonitor.onPingLoss(20, 20);
+        mMonitor.onLink(-80, 6);
+        mClock.advanceMillis(5000);
+        mMonitor.onLink(-80, 6);
+        assertEquals(2, mAlerts.size());
+        assertEquals(1, mMonitor.getDeferredCount());
+
+        // Both changes in the one alert once the rate allows.
+        mClock.advanceMillis(25000);
+        mMonitor.poll();
+        assertEquals("Signal good -> poor (-80 dBm)\nLink speed good -> poor (6 Mbps)\nPing loss low -> high (100%)",
+                mAlerts.get(2));
+
+        // Held, then gone back before it could go out: nothing to say.
+        mMonitor.onPingLoss(0, 20);
+        mMonitor.onPingLoss(20, 20);
+        mClock.advanceMillis(30000);
+        mMonitor.poll();
+        assertEquals(3, mAlerts.size());
+        assertEquals(2, mMonitor.getDeferredCount());
+    }
+
+    @Test
+    public void disconnectForgetsTheLinkLevels() {
+        mMonitor.onLink(-55, 300);
+        mMonitor.onValidation(true);
+        mMonitor.onPingLoss(0, 20);
+        mMonitor.onDisconnected();
+        assertEquals(-1, mMonitor.getLevel(QualityMonitor.RSSI));
+        assertEquals(-1, mMonitor.getLevel(QualityMonitor.VALIDATION));
+        assertEquals(0, mMonitor.getLevel(QualityMonitor.PING_LOSS));
+
+        // The next network starts afresh, not as a drop from the last one.
+        mMonitor.onLink(-80, 6);
+        mClock.advanceMillis(10000);
+        mMonitor.onLink(-80, 6);
+        assertTrue(mAlerts.isEmpty());
+    }
+
+    @Test
+    public void noisyReplayStaysWithinTheRate() {
+        Random random = new Random(22);
+        int crossings = 0;
+        int previousLevel = 0;
+        long hour = 3600 * 1000;
+        // Ten RSSI broadcasts a second for an hour, a slow swing over both thresholds with 6 dB of
+        // noise on it, validation flapping now and then.
+        for (long t = 0; t < hour; t += 100) {
+            double swing = -71 + 10 * Math.sin(2 * Math.PI * t / 600000.0);
+            int rssi = (int) Math.round(swing + 6 * random.nextGaussian());
+            mMonitor.onLink(rssi, rssi > -70 ? 300 : 24);
+            if (random.nextInt(200) == 0) {
+                mMonitor.onValidation(random.nextInt(4) != 0);
+            }
+            int level = rssi >= -67 ? 0 : rssi >= -75 ? 1 : 2;
+            if (level != previousLevel) {
+                crossings++;
+                previousLevel = level;
+            }
+            mClock.advanceMillis(100);
+        }
+        assertTrue("crossings " + crossings, crossings > 10000);
+        // At most the burst plus one per 30 s.
+        assertTrue("alerts " + mMonitor.getAlertCount(), mMonitor.getAlertCount() <= 2 + hour / 30000);
+        assertTrue("transitions " + mMonitor.getTransitionCount(), mMonitor.getTransitionCount() < crossings / 20);
+        assertEquals(mMonitor.getAlertCount(), mAlerts.size());
+    }
+}
@@ -0,0 +1,144 @@
+package com.cyh.wifiinforeader.reachability;
+
+import com.cyh.wifiinforeader.ping.PingSession;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.*;
+
+public class IcmpProbeTest {
+
+    private static final ReachabilityTarget TARGET = new ReachabilityTarget("10.0.0.1", null);
+
+    @Test
+    public void deadlineIsRoundedUpToWholeSeconds() throws Exception {
+        CannedStarter starter = new CannedStarter("");
+        IcmpProbe probe = new IcmpProbe(3, 24, starter);
+
+        probe.probe(TARGET, 1500);
+        assertArrayEquals(new String[]{"ping", "-c", "3", "-w", "2", "-s", "24", "10.0.0.1"}, starter.mCommand);
+        probe.probe(TARGET, 2000);
+        assertEquals("2", starter.mCommand[4]);
+        // Never zero, ping would wait forever.
+        probe.probe(TARGET, 0);
+        assertEquals("1", starter.mCommand[4]);
+    }
+
+    @Test
+    public void latencyIsTheRttSummaryAverage() throws Exception {
+        ReachabilityResult result = new IcmpProbe(3, 24, new CannedStarter(
+                "64 bytes from 10.0.0.1: icmp_seq=1 ttl=64 time=1.00 ms\n"
+                        + "64 bytes from 10.0.0.1: icmp_seq=3 ttl=64 time=2.00 ms\n"
+                        + "\n--- 10.0.0.1 ping statistics ---\n"
+                        + "3 packets transmitted, 2 received, 33% packet loss, time 2002ms\n"
+                        + "rtt min/avg/max/mdev = 1.000/1.250/2.000/0.500 ms\n"))
+                .probe(TARGET, 5000);
+
+        assertEquals(ReachabilityResult.Check.ICMP, result.getCheck());
+        assertEquals(ReachabilityResult.Status.OK, result.getStatus());
+        assertEquals(1250, result.getLatencyMicros());
+        assertEquals("loss 33.0%", result.getDetail());
+    }
+
+    @Test
+    public void repliesAreAveragedWithoutASummary() throws Exception {
+        // Killed by the deadline before it printed its statistics.
+        ReachabilityResult result = new IcmpProbe(3, 24, new CannedStarter(
+                "64 bytes from 10.0.0.1: icmp_seq=1 ttl=64 time=1.00 ms\n"
+                        + "64 bytes from 10.0.0.1: icmp_seq=2 ttl=64 time=2.00 ms\n"
+                        + "64 bytes from 10.0.0.1: icmp_seq=3 ttl=64 time=6.00 ms\n"))
+                .probe(TARGET, 5000);
+
+        assertEquals(ReachabilityResult.Status.OK, result.getStatus());
+        assertEquals(3000, result.getLatencyMicros());
+        assertEquals("3 replies", result.getDetail());
+    }
+
+    @Test
+    public void noReplyIsUnreachable() throws Exception {
+        ReachabilityResult result = new IcmpProbe(3, 24, new CannedStarter(
+                "3 packets transmitted, 0 received, 100% packet loss, time 2002ms\n"))
+                .probe(TARGET, 5000);
+
+        assertEquals(ReachabilityResult.Status.FAILED, result.getStatus());
+        assertEquals("Host unreachable", result.getDetail());
+    }
+
+    @Test
+    public void startFailureIsThrown() {
+        final IOException failure = new IOException("no ping binary");
+        try {
+            new IcmpProbe(3, 24, new PingSession.ProcessStarter() {
+                @Override
+                public Process start(String[] command) throws IOException {
+                    throw failure;
+                }
+            }).probe(TARGET, 5000);
+            fail();
+        } catch (Exception e) {
+            assertSame(failure, e);
+        }
+    }
+
+    private static class CannedStarter implements PingSession.ProcessStarter {
+        private final String mOutput;
+        String[] mCommand;
+
+        CannedStarter(String output) {
+            mOutput = output;
+        }
+
+        @Override
+        public Process start(String[] command) {
+            mCommand = command;
+            return new CannedProcess(mOutput);
+        }
+    }
+
+    /**
+     * A ping process that has already exited, its whole stdout buffered.
+     */
+    private static class CannedProcess extends Process {
+        private final byte[] mOutput;
+
+        CannedProcess(String output) {
+            mOutput = output.getBytes(Charset.forName("US-ASCII"));
+        }
+
+        @Override
+        public OutputStream getOutputStream() {
+            return new ByteArrayOutputStream();
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return new ByteArrayInputStream(mOutput);
+        }
+
+        @Override
+        public InputStream getErrorStream() {
+            return new ByteArrayInputStream(new byte[0]);
+        }
+
+        @Override
+        public int waitFor() {
+            return 0;
+        }
+
+        @Override
+        public int exitValue() {
+            return 0;
+        }
+
+        @Override
+        public void destroy() {
+        }
+    }
+}
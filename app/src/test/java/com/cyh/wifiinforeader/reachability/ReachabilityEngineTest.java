@@ -0,0 +1,132 @@
+package com.cyh.wifiinforeader.reachability;
+
+import com.cyh.wifiinforeader.testing.LocalHttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ReachabilityEngineTest {
+
+    private static final long DELAY_MILLIS = 200;
+
+    private LocalHttpServer mServer;
+
+    @Before
+    public void setUp() throws Exception {
+        mServer = new LocalHttpServer(DELAY_MILLIS);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mServer.close();
+    }
+
+    @Test
+    public void wallClockScalesWithConcurrencyCap() throws Exception {
+        List<ReachabilityTarget> targets = targets(16);
+
+        ReachabilityTable serialish = engine(2, 5000).run(targets);
+        ReachabilityTable wide = engine(16, 5000).run(targets);
+
+        assertEquals(16, serialish.count(ReachabilityResult.Status.OK));
+        assertEquals(16, wide.count(ReachabilityResult.Status.OK));
+        // 16 targets in 8 rounds of 2 against a single round of 16.
+        assertTrue(serialish.getElapsedMillis() >= 8 * DELAY_MILLIS);
+        assertTrue("wide run took " + wide.getElapsedMillis() + "ms",
+                wide.getElapsedMillis() < 4 * DELAY_MILLIS);
+    }
+
+    @Test
+    public void rowsFollowTargetOrder() throws Exception {
+        List<ReachabilityTarget> targets = targets(5);
+
+        ReachabilityTable table = engine(3, 5000).run(targets);
+
+        assertEquals(5, table.getRows().size());
+        for (int i = 0; i < targets.size(); i++) {
+            ReachabilityResult row = table.getRows().get(i);
+            assertSame(targets.get(i), row.getTarget());
+            assertSame(row, table.get(targets.get(i), ReachabilityResult.Check.HTTP));
+            assertEquals("HTTP 200", row.getDetail());
+            assertTrue(row.getLatencyMicros() >= DELAY_MILLIS * 1000);
+        }
+    }
+
+    @Test
+    public void slowTargetTimesOutWithoutHoldingUpOthers() throws Exception {
+        mServer.setDelayMillis(2000);
+        List<ReachabilityTarget> targets = targets(4);
+
+        ReachabilityTable table = engine(4, 300).run(targets);
+
+        assertEquals(4, table.count(ReachabilityResult.Status.TIMEOUT));
+        assertTrue(table.getElapsedMillis() < 1500);
+    }
+
+    @Test
+    public void engineInterruptsProbeThatIgnoresItsTimeout() throws Exception {
+        ReachabilityProbe stuck = new ReachabilityProbe() {
+            @Override
+            public ReachabilityResult.Check getCheck() {
+                return ReachabilityResult.Check.ICMP;
+            }
+
+            @Override
+            public boolean accepts(ReachabilityTarget target) {
+                return true;
+            }
+
+            @Override
+            public ReachabilityResult probe(ReachabilityTarget target, long timeoutMillis) throws Exception {
+                Thread.sleep(10000);
+                return ReachabilityResult.ok(target, getCheck(), 0, null);
+            }
+        };
+        ReachabilityEngine engine = new ReachabilityEngine(2, 100, Collections.singletonList(stuck));
+
+        ReachabilityTable table = engine.run(targets(4));
+
+        assertEquals(4, table.count(ReachabilityResult.Status.TIMEOUT));
+        assertTrue(table.getElapsedMillis() < 1000);
+    }
+
+    @Test
+    public void errorStatusIsFailure() throws Exception {
+        mServer.setStatus(503);
+
+        ReachabilityTable table = engine(2, 5000).run(targets(1));
+
+        assertEquals(ReachabilityResult.Status.FAILED, table.getRows().get(0).getStatus());
+        assertEquals("HTTP 503", table.getRows().get(0).getDetail());
+    }
+
+    @Test
+    public void parseTarget() {
+        ReachabilityTarget url = ReachabilityTarget.parse(" https://www.baidu.com/index.html ");
+        assertEquals("www.baidu.com", url.getHost());
+        assertEquals("https://www.baidu.com/index.html", url.getUrl());
+
+        ReachabilityTarget host = ReachabilityTarget.parse("192.168.1.1");
+        assertEquals("192.168.1.1", host.getHost());
+        assertNull(host.getUrl());
+    }
+
+    private ReachabilityEngine engine(int cap, long timeoutMillis) {
+        return new ReachabilityEngine(cap, timeoutMillis, Collections.<ReachabilityProbe>singletonList(new HttpProbe()));
+    }
+
+    private List<ReachabilityTarget> targets(int count) {
+        List<ReachabilityTarget> targets = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            targets.add(new ReachabilityTarget(null, mServer.url("/generate_204?target=" + i)));
+        }
+        return targets;
+    }
+}
@@ -0,0 +1,29 @@
+package com.cyh.wifiinforeader.reachability;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ReachabilityTargetTest {
+
+    @Test
+    public void listIsSplitOnWhitespaceAndCommas() {
+        List<ReachabilityTarget> targets = ReachabilityTarget.parseList(
+                "  https://example.com/x,\n192.168.1.1 ,, http://[fe80::1]:8080/\n");
+        assertEquals(3, targets.size());
+        assertEquals("example.com", targets.get(0).getHost());
+        assertEquals("https://example.com/x", targets.get(0).getUrl());
+        assertEquals("192.168.1.1", targets.get(1).getHost());
+        assertNull(targets.get(1).getUrl());
+        assertEquals("[fe80::1]", targets.get(2).getHost());
+
+        assertTrue(ReachabilityTarget.parseList(" \n ").isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void urlWithoutAHostIsRefused() {
+        ReachabilityTarget.parseList("example.com https://");
+    }
+}
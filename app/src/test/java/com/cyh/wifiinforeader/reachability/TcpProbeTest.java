@@ -0,0 +1,37 @@
+package com.cyh.wifiinforeader.reachability;
+
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.ServerSocket;
+
+import static org.junit.Assert.*;
+
+public class TcpProbeTest {
+
+    @Test
+    public void portComesFromUrl() {
+        assertEquals(443, TcpProbe.portOf(ReachabilityTarget.parse("https://example.com/x"), 7));
+        assertEquals(80, TcpProbe.portOf(ReachabilityTarget.parse("http://example.com"), 7));
+        assertEquals(8080, TcpProbe.portOf(ReachabilityTarget.parse("http://example.com:8080/"), 7));
+        assertEquals(7, TcpProbe.portOf(ReachabilityTarget.parse("example.com"), 7));
+    }
+
+    @Test
+    public void listeningPortIsReachable() throws Exception {
+        ServerSocket server = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        ReachabilityResult result;
+        try {
+            ReachabilityTarget target = new ReachabilityTarget("127.0.0.1",
+                    "http://127.0.0.1:" + server.getLocalPort() + "/");
+            result = new TcpProbe(3, 10, 80).probe(target, 1000);
+        } finally {
+            server.close();
+        }
+
+        assertEquals(ReachabilityResult.Check.TCP, result.getCheck());
+        assertEquals(ReachabilityResult.Status.OK, result.getStatus());
+        assertEquals("3 replies", result.getDetail());
+        assertTrue(result.getLatencyMicros() >= 0);
+    }
+}
@@ -0,0 +1,125 @@
+package com.cyh.wifiinforeader.roam;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.cyh.wifiinforeader.roam.RoamTracker.*;
+import static org.junit.Assert.*;
+
+public class RoamTrackerTest {
+
+    private RoamTracker mTracker;
+    private long mNanos;
+    private String mRoamedTo;
+    private long mRoamLatency;
+    private long[] mRoamPhases;
+
+    @Before
+    public void setUp() {
+        mTracker = new RoamTracker(30000);
+        mTracker.setListener(new Listener() {
+            @Override
+            public void onRoam(String fromBssid, String toBssid, long latencyNanos, long[] phaseNanos) {
+                mRoamedTo = toBssid;
+                mRoamLatency = latencyNanos;
+                mRoamPhases = phaseNanos.clone();
+            }
+        });
+    }
+
+    /**
+     * Feeds {@code script} as state, millis spent in it pairs; COMPLETED takes the next
+     * element as BSSID.
+     */
+    private void play(Object... script) {
+        for (int i = 0; i < script.length; ) {
+            int state = (Integer) script[i++];
+            String bssid = state == COMPLETED ? (String) script[i++] : null;
+            mTracker.onStateChanged(state, bssid, mNanos);
+            mNanos += TimeUnit.MILLISECONDS.toNanos((Integer) script[i++]);
+        }
+    }
+
+    @Test
+    public void roamIsTimedPerPhase() {
+        play(COMPLETED, "a", 1000);
+        play(AUTHENTICATING, 4, ASSOCIATING, 3, ASSOCIATED, 2, FOUR_WAY_HANDSHAKE, 15,
+                GROUP_HANDSHAKE, 5, COMPLETED, "b", 0);
+
+        assertEquals(1, mTracker.getRoamCount());
+        assertEquals("b", mRoamedTo);
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(29), mRoamLatency);
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(4), mRoamPhases[PHASE_AUTHENTICATION]);
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(5), mRoamPhases[PHASE_ASSOCIATION]);
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(20), mRoamPhases[PHASE_HANDSHAKE]);
+        assertEquals(0, mRoamPhases[PHASE_SEARCH]);
+        assertEquals(1, mTracker.getLatencyHistogram().getCount());
+        assertEquals(29, mTracker.getLatencyHistogram().getQuantileBound(0.5));
+        assertEquals(20, mTracker.getPhaseHistogram(PHASE_HANDSHAKE).getMax());
+        assertEquals("b", mTracker.getBssid());
+        assertFalse(mTracker.isHandoverInProgress());
+    }
+
+    @Test
+    public void searchAfterDisconnectCounts() {
+        play(COMPLETED, "a", 1000, DISCONNECTED, 100, SCANNING, 400, AUTHENTICATING, 10,
+                ASSOCIATING, 10, FOUR_WAY_HANDSHAKE, 30, COMPLETED, "b", 0);
+
+        assertEquals(1, mTracker.getRoamCount());
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(500), mRoamPhases[PHASE_SEARCH]);
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(550), mRoamLatency);
+    }
+
+    @Test
+    public void sameBssidIsReconnect() {
+        play(COMPLETED, "a", 1000, ASSOCIATING, 10, FOUR_WAY_HANDSHAKE, 10, COMPLETED, "a", 0);
+
+        assertEquals(0, mTracker.getRoamCount());
+        assertEquals(1, mTracker.getReconnectCount());
+        assertEquals(0, mTracker.getLatencyHistogram().getCount());
+        assertNull(mRoamedTo);
+    }
+
+    @Test
+    public void firstConnectionAndWifiOffAreNotRoams() {
+        play(SCANNING, 2000, ASSOCIATING, 10, COMPLETED, "a", 500, INTERFACE_DISABLED, 5000,
+                DISCONNECTED, 100, ASSOCIATING, 10, COMPLETED, "b", 0);
+
+        assertEquals(0, mTracker.getRoamCount());
+        assertEquals(2, mTracker.getConnectCount());
+        assertEquals("b", mTracker.getBssid());
+    }
+
+    @Test
+    public void longHandoverIsOutage() {
+        play(COMPLETED, "a", 1000, DISCONNECTED, 45000, ASSOCIATING, 10, COMPLETED, "b", 0);
+
+        assertEquals(0, mTracker.getRoamCount());
+        assertEquals(1, mTracker.getOutageCount());
+    }
+
+    @Test
+    public void bssidChangeWithoutStepsIsUntimed() {
+        play(COMPLETED, "a", 1000, COMPLETED, "b", 1000, COMPLETED, "b", 0);
+
+        assertEquals(0, mTracker.getRoamCount());
+        assertEquals(1, mTracker.getUntimedRoamCount());
+        assertEquals("b", mTracker.getBssid());
+    }
+
+    @Test
+    public void format() {
+        play(COMPLETED, "a", 1000, ASSOCIATING, 3, COMPLETED, "b", 0);
+
+        StringBuilder sb = new StringBuilder();
+        mTracker.format(sb);
+        assertEquals("roams 1 untimed 0 reconnects 0 connects 0 outages 0\n"
+                + "latency n=1 <=5:1\n"
+                + "search n=1 <=1:1\n"
+                + "auth n=1 <=1:1\n"
+                + "assoc n=1 <=5:1\n"
+                + "handshake n=1 <=1:1\n", sb.toString());
+    }
+}
@@ -0,0 +1,131 @@
+package com.cyh.wifiinforeader.rssi;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class RssiHistoryTest {
+
+    private static final long MINUTE = 60 * 1000;
+
+    private RssiHistory mHistory;
+    private RssiStats mStats;
+
+    @Before
+    public void setUp() {
+        mHistory = new RssiHistory(4, 8, 30, 12);
+        mStats = new RssiStats();
+    }
+
+    @Test
+    public void minuteBucketsHoldMinAvgMax() {
+        mHistory.record("aa", 0, -50);
+        mHistory.record("aa", 20 * 1000, -60);
+        mHistory.record("aa", 40 * 1000, -55);
+        mHistory.record("aa", MINUTE + 5000, -70);
+
+        List<long[]> points = collect("aa", RssiHistory.Resolution.MINUTE, 0, Long.MAX_VALUE);
+
+        assertEquals(2, points.size());
+        assertArrayEquals(new long[]{0, -60, -55, -50}, points.get(0));
+        assertArrayEquals(new long[]{MINUTE, -70, -70, -70}, points.get(1));
+    }
+
+    @Test
+    public void rangeIsHalfOpenAndOldestFirst() {
+        for (int i = 0; i < 6; i++) {
+            mHistory.record("aa", i * 1000, -40 - i);
+        }
+
+        List<long[]> points = collect("aa", RssiHistory.Resolution.RAW, 2000, 5000);
+
+        assertEquals(3, points.size());
+        assertEquals(2000, points.get(0)[0]);
+        assertEquals(-44, points.get(2)[2]);
+    }
+
+    @Test
+    public void aggregateFallsBackToCoarserTiers() {
+        // One sample every 10 s for an hour: raw keeps the last 8, minutes the last 30.
+        for (long t = 0; t < 60 * MINUTE; t += 10 * 1000) {
+            mHistory.record("aa", t, (t / MINUTE) % 2 == 0 ? -50 : -70);
+        }
+        long now = 60 * MINUTE;
+
+        assertEquals(RssiHistory.Resolution.RAW, mHistory.aggregate("aa", now - MINUTE, now, mStats));
+        assertEquals(6, mStats.getCount());
+        assertEquals(-70, mStats.getMin());
+        assertEquals(-70, mStats.getMax());
+
+        assertEquals(RssiHistory.Resolution.MINUTE, mHistory.aggregate("aa", now - 10 * MINUTE, now, mStats));
+        assertEquals(60, mStats.getCount());
+        assertEquals(-60.0, mStats.getAverage(), 0);
+
+        assertEquals(RssiHistory.Resolution.TEN_MINUTES, mHistory.aggregate("aa", 0, now, mStats));
+        assertEquals(360, mStats.getCount());
+        assertEquals(-70, mStats.getMin());
+        assertEquals(-50, mStats.getMax());
+    }
+
+    @Test
+    public void olderSampleIsDropped() {
+        mHistory.record("aa", 5000, -50);
+
+        assertFalse(mHistory.record("aa", 4000, -40));
+        assertEquals(1, mHistory.getDroppedCount());
+        mHistory.aggregate("aa", 0, 10000, mStats);
+        assertEquals(1, mStats.getCount());
+    }
+
+    @Test
+    public void unknownBssidAggregatesNothing() {
+        assertNull(mHistory.aggregate("zz", 0, 1, mStats));
+        assertTrue(mStats.isEmpty());
+        assertEquals(0, collect("zz", RssiHistory.Resolution.RAW, 0, 1).size());
+    }
+
+    @Test
+    public void leastRecentlyUsedSeriesIsRecycled() {
+        for (int i = 0; i < 4; i++) {
+            mHistory.record("ap" + i, 0, -50);
+        }
+        long footprint = mHistory.getFootprintBytes();
+        mHistory.record("ap0", 1000, -50);
+
+        mHistory.record("ap4", 1000, -60);
+
+        assertEquals(4, mHistory.size());
+        assertFalse(mHistory.contains("ap1"));
+        assertTrue(mHistory.contains("ap0"));
+        assertEquals(1, mHistory.getEvictedCount());
+        assertEquals(footprint, mHistory.getFootprintBytes());
+        mHistory.aggregate("ap4", 0, 2000, mStats);
+        assertEquals(1, mStats.getCount());
+    }
+
+    @Test
+    public void dayOfHistoryForThreeHundredApsFitsInAFewMegabytes() {
+        RssiHistory history = new RssiHistory(300, 256, 360, 144);
+        for (int ap = 0; ap < 300; ap++) {
+            history.record("ap" + ap, 0, -60);
+        }
+
+        assertTrue(history.getFootprintBytes() < 4 * 1024 * 1024);
+    }
+
+    private List<long[]> collect(String bssid, RssiHistory.Resolution resolution, long from, long to) {
+        final List<long[]> points = new ArrayList<>();
+        int visited = mHistory.forEach(bssid, resolution, from, to, new RssiHistory.Visitor() {
+            @Override
+            public void onPoint(long timeMillis, int min, int avg, int max) {
+                points.add(new long[]{timeMillis, min, avg, max});
+            }
+        });
+        assertEquals(points.size(), visited);
+        return points;
+    }
+}
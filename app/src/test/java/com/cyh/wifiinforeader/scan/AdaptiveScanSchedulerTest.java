@@ -0,0 +1,105 @@
+package com.cyh.wifiinforeader.scan;
+
+import com.cyh.wifiinforeader.util.FakeClock;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class AdaptiveScanSchedulerTest {
+
+    private FakeClock mClock;
+    private AdaptiveScanScheduler mScheduler;
+
+    @Before
+    public void setUp() {
+        mClock = new FakeClock();
+        mScheduler = new AdaptiveScanScheduler(2000, 5000, 60000, 15000, 1.0, 4.0, mClock);
+    }
+
+    @Test
+    public void waitsForResultsBeforeNextScan() {
+        assertTrue(mScheduler.shouldRequestScan());
+        mScheduler.onScanRequested(true);
+
+        mClock.advanceMillis(5000);
+        assertFalse(mScheduler.shouldRequestScan());
+        assertEquals(10000, mScheduler.getNextDelayMillis());
+
+        mClock.advanceMillis(1200);
+        mScheduler.onScanResults(false, 2.0);
+
+        assertTrue(mScheduler.shouldRequestScan());
+        assertEquals(6200, mScheduler.getLastLatencyMillis());
+    }
+
+    @Test
+    public void unchangedQuietScansBackOffToMax() {
+        long delay = 0;
+        for (int i = 0; i < 10; i++) {
+            mScheduler.onScanRequested(true);
+            mClock.advanceMillis(800);
+            delay = mScheduler.onScanResults(true, 0.5);
+        }
+
+        assertEquals(60000, delay);
+        assertEquals(10, mScheduler.getResultCount());
+        assertEquals(800, mScheduler.getMeanLatencyMillis());
+    }
+
+    @Test
+    public void volatileRssiSpeedsUpToMin() {
+        assertEquals(2500, mScheduler.onScanResults(true, 6.0));
+        assertEquals(2000, mScheduler.onScanResults(true, 6.0));
+        assertEquals(2000, mScheduler.onScanResults(false, 9.0));
+    }
+
+    @Test
+    public void moderateScansDriftBackToBase() {
+        for (int i = 0; i < 4; i++) {
+            mScheduler.onScanResults(true, 0);
+        }
+        assertEquals(60000, mScheduler.getIntervalMillis());
+
+        mScheduler.onScanResults(false, 2.0);
+        assertEquals(30000, mScheduler.getIntervalMillis());
+        mScheduler.onScanResults(false, 2.0);
+        mScheduler.onScanResults(false, 2.0);
+        mScheduler.onScanResults(false, 2.0);
+        assertEquals(5000, mScheduler.getIntervalMillis());
+
+        mScheduler.onScanResults(true, 5.0);
+        assertEquals(2500, mScheduler.getIntervalMillis());
+        mScheduler.onScanResults(false, 2.0);
+        assertEquals(5000, mScheduler.getIntervalMillis());
+    }
+
+    @Test
+    public void lostScanTimesOutAndBacksOff() {
+        mScheduler.onScanRequested(true);
+        mClock.advanceMillis(15000);
+
+        assertTrue(mScheduler.shouldRequestScan());
+        assertEquals(1, mScheduler.getTimeoutCount());
+        assertEquals(10000, mScheduler.getIntervalMillis());
+        assertEquals(-1, mScheduler.getLastLatencyMillis());
+    }
+
+    @Test
+    public void rejectedRequestBacksOff() {
+        mScheduler.onScanRequested(false);
+
+        assertFalse(mScheduler.isScanInFlight());
+        assertEquals(1, mScheduler.getRejectedCount());
+        assertEquals(10000, mScheduler.getNextDelayMillis());
+    }
+
+    @Test
+    public void unrequestedResultsRecordNoLatency() {
+        mScheduler.onScanResults(false, 2.0);
+
+        assertEquals(-1, mScheduler.getLastLatencyMillis());
+        assertEquals(1, mScheduler.getResultCount());
+    }
+}
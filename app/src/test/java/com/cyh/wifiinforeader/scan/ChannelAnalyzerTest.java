@@ -0,0 +1,134 @@
+package com.cyh.wifiinforeader.scan;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ChannelAnalyzerTest {
+
+    private ScanStore mStore;
+    private ChannelAnalyzer mAnalyzer;
+
+    @Before
+    public void setUp() {
+        mStore = new ScanStore(5);
+        mAnalyzer = new ChannelAnalyzer();
+    }
+
+    private void scan(Object[]... results) {
+        mStore.beginScan();
+        for (Object[] r : results) {
+            mStore.put((String) r[0], "ssid", (Integer) r[1], (Integer) r[2], "[ESS]", (Integer) r[3], (Integer) r[4]);
+        }
+        mAnalyzer.apply(mStore.endScan());
+    }
+
+    private static Object[] ap(String bssid, int rssi, int frequency) {
+        return new Object[]{bssid, rssi, frequency, 20, frequency};
+    }
+
+    private int slot(int channel) {
+        return ChannelAnalyzer.slotOf(channel);
+    }
+
+    @Test
+    public void channelNumbers() {
+        assertEquals(1, ChannelAnalyzer.channelOf(2412));
+        assertEquals(13, ChannelAnalyzer.channelOf(2472));
+        assertEquals(14, ChannelAnalyzer.channelOf(2484));
+        assertEquals(36, ChannelAnalyzer.channelOf(5180));
+        assertEquals(165, ChannelAnalyzer.channelOf(5825));
+        assertEquals(-1, ChannelAnalyzer.channelOf(60480));
+        assertEquals(-1, ChannelAnalyzer.slotOf(-1));
+    }
+
+    @Test
+    public void overlappingChannelsIn24Ghz() {
+        scan(ap("a", -50, 2412), ap("b", -60, 2437), ap("c", -70, 2422));
+
+        // Channel 1 spans 2402-2422, channel 3 2412-2432, channel 6 2427-2447.
+        assertEquals(1, mAnalyzer.getApCount(slot(1)));
+        assertEquals(2, mAnalyzer.getOverlapCount(slot(1)));
+        assertEquals(45 + 25, mAnalyzer.getCongestion(slot(1)));
+        assertEquals(3, mAnalyzer.getOverlapCount(slot(4)));
+        assertEquals(2, mAnalyzer.getOverlapCount(slot(6)));
+        assertEquals(1, mAnalyzer.getOverlapCount(slot(8)));
+        assertEquals(0, mAnalyzer.getOverlapCount(slot(11)));
+        assertEquals(0, mAnalyzer.getOverlapCount(slot(14)));
+
+        assertEquals(11, mAnalyzer.recommendChannel(ChannelAnalyzer.BAND_24_GHZ));
+        assertEquals(36, mAnalyzer.recommendChannel(ChannelAnalyzer.BAND_5_GHZ));
+    }
+
+    @Test
+    public void wideChannelCoversItsSubchannels() {
+        // 80 MHz on 36-48, 40 MHz on 149-153.
+        scan(new Object[]{"a", -55, 5180, 80, 5210}, new Object[]{"b", -65, 5745, 40, 5755});
+
+        for (int channel : new int[]{36, 40, 44, 48}) {
+            assertEquals(1, mAnalyzer.getOverlapCount(slot(channel)));
+            assertEquals(40, mAnalyzer.getCongestion(slot(channel)));
+        }
+        assertEquals(0, mAnalyzer.getOverlapCount(slot(52)));
+        assertEquals(1, mAnalyzer.getApCount(slot(36)));
+        assertEquals(0, mAnalyzer.getApCount(slot(40)));
+        assertEquals(1, mAnalyzer.getOverlapCount(slot(153)));
+        assertEquals(0, mAnalyzer.getOverlapCount(slot(157)));
+        assertEquals(52, mAnalyzer.recommendChannel(ChannelAnalyzer.BAND_5_GHZ));
+    }
+
+    @Test
+    public void jitterBelowThresholdCostsNothing() {
+        scan(ap("a", -50, 2412), ap("b", -60, 2437));
+        int updates = mAnalyzer.getUpdateCount();
+
+        scan(ap("a", -52, 2412), ap("b", -58, 2437));
+        assertEquals(updates, mAnalyzer.getUpdateCount());
+
+        scan(ap("a", -40, 2412), ap("b", -58, 2437));
+        assertEquals(updates + 2, mAnalyzer.getUpdateCount());
+        assertEquals(55, mAnalyzer.getCongestion(slot(1)));
+    }
+
+    @Test
+    public void removedAndMovedApsAreTakenOut() {
+        scan(ap("a", -50, 2412), ap("b", -60, 2437));
+        scan(ap("b", -60, 2462));
+
+        assertEquals(1, mAnalyzer.getAnalyzedCount());
+        assertEquals(0, mAnalyzer.getOverlapCount(slot(1)));
+        assertEquals(0, mAnalyzer.getOverlapCount(slot(6)));
+        assertEquals(1, mAnalyzer.getApCount(slot(11)));
+    }
+
+    @Test
+    public void incrementalMatchesRebuild() {
+        int[] frequencies = {2412, 2417, 2437, 2462, 2484, 5180, 5200, 5260, 5500, 5745, 5825, 5955};
+        Random random = new Random(3);
+        for (int s = 0; s < 200; s++) {
+            mStore.beginScan();
+            for (int i = 0; i < 60; i++) {
+                if (random.nextInt(10) == 0) {
+                    continue;
+                }
+                int frequency = frequencies[random.nextInt(4) == 0 ? random.nextInt(frequencies.length) : i % frequencies.length];
+                boolean wide = frequency > 5000 && i % 3 == 0;
+                mStore.put("ap" + i, "ssid", -90 + random.nextInt(60), frequency, "[ESS]",
+                        wide ? 40 : 20, wide ? frequency + 10 : frequency);
+            }
+            mAnalyzer.apply(mStore.endScan());
+        }
+
+        ChannelAnalyzer rebuilt = new ChannelAnalyzer();
+        rebuilt.rebuild(mStore);
+        for (int slot = 0; slot < mAnalyzer.getSlotCount(); slot++) {
+            assertEquals(rebuilt.getApCount(slot), mAnalyzer.getApCount(slot));
+            assertEquals(rebuilt.getOverlapCount(slot), mAnalyzer.getOverlapCount(slot));
+            assertEquals(rebuilt.getCongestion(slot), mAnalyzer.getCongestion(slot));
+        }
+        assertEquals(rebuilt.getAnalyzedCount(), mAnalyzer.getAnalyzedCount());
+    }
+}
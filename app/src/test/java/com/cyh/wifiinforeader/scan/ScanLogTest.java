@@ -0,0 +1,91 @@
+package com.cyh.wifiinforeader.scan;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ScanLogTest {
+
+    @Test
+    public void keepsNewestEventsOldestFirst() {
+        ScanLog log = new ScanLog(3);
+        for (int i = 1; i <= 5; i++) {
+            log.append(1000L * i, i, 10 + i);
+        }
+
+        assertEquals(3, log.size());
+        assertEquals(5, log.getTotal());
+        assertEquals(3000, log.getTimestamp(0));
+        assertEquals(3, log.getCount(0));
+        assertEquals(15, log.getResultSize(2));
+    }
+
+    @Test
+    public void windowShowsNewestLines() {
+        ScanLog log = new ScanLog(8);
+        for (int i = 1; i <= 5; i++) {
+            log.append(i, i, i);
+        }
+        StringBuilder out = new StringBuilder("stale");
+
+        log.formatWindow(2, out);
+
+        assertEquals("Time: 4 ScanCount: 4 Results: 4\nTime: 5 ScanCount: 5 Results: 5\n", out.toString());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void indexPastSizeFails() {
+        ScanLog log = new ScanLog(4);
+        log.append(1, 1, 1);
+        log.getTimestamp(1);
+    }
+
+    @Test
+    public void memoryAndTickCostStayFlatOver100kTicks() {
+        final int ticks = 100000;
+        final int chunk = 10000;
+        ScanLog log = new ScanLog(256);
+        StringBuilder out = new StringBuilder();
+        long timestamp = 1500000000000L;
+
+        // Warm up so the first chunk is not paying for class loading and the JIT.
+        for (int i = 0; i < chunk; i++) {
+            log.append(timestamp++, i, 150);
+            log.formatWindow(20, out);
+        }
+        int windowCapacity = out.capacity();
+
+        long[] chunkNanos = new long[ticks / chunk];
+        for (int c = 0; c < chunkNanos.length; c++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < chunk; i++) {
+                log.append(timestamp++, c * chunk + i, 150);
+                log.formatWindow(20, out);
+            }
+            chunkNanos[c] = System.nanoTime() - start;
+        }
+
+        assertEquals(256, log.size());
+        assertEquals(ticks + chunk, log.getTotal());
+        // The rendered window, and the buffer it is rendered into, do not grow with history.
+        assertEquals(20, countLines(out));
+        assertEquals(windowCapacity, out.capacity());
+
+        long best = Long.MAX_VALUE;
+        for (long nanos : chunkNanos) {
+            best = Math.min(best, nanos);
+        }
+        long last = chunkNanos[chunkNanos.length - 1];
+        assertTrue("last chunk " + last + "ns against best " + best + "ns", last < best * 10);
+    }
+
+    private static int countLines(CharSequence text) {
+        int lines = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '\n') {
+                lines++;
+            }
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,142 @@
+package com.cyh.wifiinforeader.scan;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ScanStoreTest {
+
+    private ScanStore mStore;
+
+    @Before
+    public void setUp() {
+        mStore = new ScanStore(3);
+    }
+
+    @Test
+    public void firstScanAddsEverything() {
+        mStore.beginScan();
+        mStore.put("aa:aa", "office", -50, 2412, "[WPA2-PSK-CCMP][ESS]");
+        mStore.put("bb:bb", "guest", -70, 5180, "[ESS]");
+        ScanDelta delta = mStore.endScan();
+
+        assertEquals(2, delta.getAdded().size());
+        assertTrue(delta.getRemoved().isEmpty());
+        assertTrue(delta.getChanged().isEmpty());
+        assertTrue(delta.isMembershipChanged());
+        assertEquals(2, mStore.size());
+    }
+
+    @Test
+    public void unchangedScanIsEmptyDelta() {
+        scan(-50);
+        ScanDelta delta = scan(-51);
+
+        assertTrue(delta.isEmpty());
+        assertEquals(-51, mStore.get("aa:aa").getRssi());
+    }
+
+    @Test
+    public void rssiChangeIsMeasuredFromLastReportedValue() {
+        scan(-50);
+        assertTrue(scan(-52).isEmpty());
+
+        // Drifting 1 dB per scan still adds up to a reported change.
+        ScanDelta delta = scan(-53);
+        assertEquals(1, delta.getChanged().size());
+        assertEquals(ScanStore.CHANGED_RSSI, delta.getChanged().get(0).getChanges());
+        assertFalse(delta.isMembershipChanged());
+
+        assertTrue(scan(-54).isEmpty());
+    }
+
+    @Test
+    public void frequencyCapabilitiesAndSsidChanges() {
+        mStore.beginScan();
+        mStore.put("aa:aa", "office", -50, 2412, "[WPA2-PSK-CCMP][ESS]");
+        mStore.endScan();
+
+        mStore.beginScan();
+        mStore.put("aa:aa", "office-5g", -50, 5180, "[WPA3-SAE][ESS]");
+        ScanDelta delta = mStore.endScan();
+
+        assertEquals(1, delta.getChanged().size());
+        ScanEntry entry = delta.getChanged().get(0);
+        assertEquals(ScanStore.CHANGED_FREQUENCY | ScanStore.CHANGED_CAPABILITIES | ScanStore.CHANGED_SSID, entry.getChanges());
+        assertEquals(5180, entry.getFrequency());
+        assertEquals("office-5g", entry.getSsid());
+        assertTrue(delta.isMembershipChanged());
+    }
+
+    @Test
+    public void missingBssidIsRemovedAndEntryRecycled() {
+        mStore.beginScan();
+        mStore.put("aa:aa", "office", -50, 2412, "[ESS]");
+        mStore.put("bb:bb", "guest", -70, 2437, "[ESS]");
+        mStore.endScan();
+
+        mStore.beginScan();
+        mStore.put("aa:aa", "office", -50, 2412, "[ESS]");
+        ScanDelta delta = mStore.endScan();
+
+        assertEquals(1, delta.getRemoved().size());
+        ScanEntry removed = delta.getRemoved().get(0);
+        assertEquals("bb:bb", removed.getBssid());
+        assertNull(mStore.get("bb:bb"));
+
+        mStore.beginScan();
+        mStore.put("aa:aa", "office", -50, 2412, "[ESS]");
+        mStore.put("cc:cc", "lab", -60, 2462, "[ESS]");
+        delta = mStore.endScan();
+
+        assertSame(removed, delta.getAdded().get(0));
+        assertEquals("cc:cc", removed.getBssid());
+    }
+
+    @Test
+    public void duplicateBssidInOneScanIsListedOnce() {
+        scan(-50);
+
+        mStore.beginScan();
+        mStore.put("aa:aa", "office", -40, 2412, "[ESS]");
+        mStore.put("aa:aa", "office", -30, 2412, "[ESS]");
+        ScanDelta delta = mStore.endScan();
+
+        assertEquals(1, delta.getChanged().size());
+        assertEquals(-30, mStore.get("aa:aa").getRssi());
+    }
+
+    @Test
+    public void volatilityAveragesRssiMovesOfKnownBssids() {
+        mStore.beginScan();
+        mStore.put("aa:aa", "office", -50, 2412, "[ESS]");
+        mStore.put("bb:bb", "guest", -70, 2437, "[ESS]");
+        mStore.endScan();
+
+        mStore.beginScan();
+        mStore.put("aa:aa", "office", -52, 2412, "[ESS]");
+        mStore.put("bb:bb", "guest", -64, 2437, "[ESS]");
+        ScanDelta delta = mStore.endScan();
+        assertEquals(4.0, delta.getRssiVolatility(), 0);
+        assertTrue(delta.isSameBssidSet());
+
+        mStore.beginScan();
+        mStore.put("aa:aa", "office", -52, 2412, "[ESS]");
+        mStore.put("cc:cc", "lab", -20, 2462, "[ESS]");
+        delta = mStore.endScan();
+        assertEquals(0.0, delta.getRssiVolatility(), 0);
+        assertFalse(delta.isSameBssidSet());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void putOutsideScanFails() {
+        mStore.put("aa:aa", "office", -50, 2412, "[ESS]");
+    }
+
+    private ScanDelta scan(int rssi) {
+        mStore.beginScan();
+        mStore.put("aa:aa", "office", rssi, 2412, "[ESS]");
+        return mStore.endScan();
+    }
+}
@@ -0,0 +1,123 @@
+package com.cyh.wifiinforeader.status;
+
+import com.cyh.wifiinforeader.util.FakeClock;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class StatusModelTest {
+
+    private List<Runnable> mFrames;
+    private List<String> mRendered;
+    private StatusModel mModel;
+
+    private final StatusModel.Renderer mRenderer = new StatusModel.Renderer() {
+        @Override
+        public void render(StatusSnapshot snapshot, int changed) {
+            for (int field = 0; field < StatusSnapshot.FIELD_COUNT; field++) {
+                if ((changed & (1 << field)) != 0) {
+                    mRendered.add(field + "=" + snapshot.get(field));
+                }
+            }
+        }
+    };
+
+    @Before
+    public void setUp() {
+        mFrames = new ArrayList<>();
+        mRendered = new ArrayList<>();
+        mModel = new StatusModel(new StatusModel.FrameScheduler() {
+            @Override
+            public void scheduleFrame(Runnable frame) {
+                mFrames.add(frame);
+            }
+        }, new FakeClock());
+    }
+
+    private void runFrames() {
+        while (!mFrames.isEmpty()) {
+            mFrames.remove(0).run();
+        }
+    }
+
+    @Test
+    public void burstRendersLatestOnce() {
+        mModel.setRenderer(mRenderer);
+        runFrames();
+        mRendered.clear();
+
+        for (int rssi = -80; rssi <= -50; rssi++) {
+            mModel.set(StatusSnapshot.RSSI, String.valueOf(rssi));
+        }
+        assertEquals(1, mFrames.size());
+        runFrames();
+
+        assertEquals("[3=-50]", mRendered.toString());
+        assertEquals(31, mModel.getUpdateCount());
+    }
+
+    @Test
+    public void onlyChangedFieldsAreRendered() {
+        mModel.setRenderer(mRenderer);
+        mModel.set(StatusSnapshot.RSSI, "-60");
+        mModel.set(StatusSnapshot.SSID, "home");
+        runFrames();
+        mRendered.clear();
+
+        mModel.set(StatusSnapshot.RSSI, "-61");
+        mModel.set(StatusSnapshot.SSID, "home");
+        runFrames();
+
+        assertEquals("[3=-61]", mRendered.toString());
+        assertEquals(1, mModel.getUnchangedUpdateCount());
+    }
+
+    @Test
+    public void changeBackWithinFrameRendersNothing() {
+        mModel.setRenderer(mRenderer);
+        mModel.set(StatusSnapshot.RSSI, "-60");
+        runFrames();
+        mRendered.clear();
+
+        mModel.set(StatusSnapshot.RSSI, "-61");
+        mModel.set(StatusSnapshot.RSSI, "-60");
+        runFrames();
+
+        assertTrue(mRendered.isEmpty());
+        assertEquals(1, mModel.getFrameCount());
+    }
+
+    @Test
+    public void multiFieldUpdateIsOneSnapshot() {
+        String[] values = new String[StatusSnapshot.FIELD_COUNT];
+        values[StatusSnapshot.SSID] = "home";
+        values[StatusSnapshot.BSSID] = "00:00:00:00:00:01";
+        values[StatusSnapshot.RSSI] = "ignored";
+        long version = mModel.get().getVersion();
+
+        mModel.set(1 << StatusSnapshot.SSID | 1 << StatusSnapshot.BSSID, values);
+
+        StatusSnapshot snapshot = mModel.get();
+        assertEquals(version + 1, snapshot.getVersion());
+        assertEquals("home", snapshot.get(StatusSnapshot.SSID));
+        assertEquals("00:00:00:00:00:01", snapshot.get(StatusSnapshot.BSSID));
+        assertNull(snapshot.get(StatusSnapshot.RSSI));
+    }
+
+    @Test
+    public void newRendererGetsEveryField() {
+        mModel.set(StatusSnapshot.RSSI, "-60");
+        runFrames();
+        assertTrue(mRendered.isEmpty());
+
+        mModel.setRenderer(mRenderer);
+        runFrames();
+        assertEquals(StatusSnapshot.FIELD_COUNT, mRendered.size());
+        assertTrue(mRendered.contains("3=-60"));
+    }
+}
@@ -0,0 +1,194 @@
+package com.cyh.wifiinforeader.survey;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class CoverageMapTest {
+
+    @Test
+    public void strongestAtAveragesSamplesPerCell() {
+        CoverageMap map = new CoverageMap(2);
+        map.add(0.5, 0.5, "a", "corp", -50);
+        map.add(1.5, 1.9, "a", "corp", -60);
+        map.add(1.0, 1.0, "b", "corp", -56);
+        map.add(1.0, 1.0, "c", "guest", -40);
+        // The next cell over.
+        map.add(2.0, 0.5, "b", "corp", -30);
+
+        CoverageReading reading = new CoverageReading();
+        assertTrue(map.strongestAt(1, 1, null, reading));
+        assertEquals("c", reading.getBssid());
+        assertEquals("guest", reading.getSsid());
+
+        assertTrue(map.strongestAt(1, 1, "corp", reading));
+        assertEquals("a", reading.getBssid());
+        assertEquals(-55, reading.getMeanRssi());
+        assertEquals(-50, reading.getMaxRssi());
+        assertEquals(2, reading.getSampleCount());
+
+        assertTrue(map.strongestAt(3.9, 1.9, "corp", reading));
+        assertEquals("b", reading.getBssid());
+        assertFalse(map.strongestAt(1, 1, "nobody", reading));
+        assertFalse(map.strongestAt(100, 100, null, reading));
+
+        assertEquals(5, map.getSampleCount());
+        assertEquals(2, map.getCellCount());
+        assertEquals(3, map.getBssidCount());
+    }
+
+    @Test
+    public void lookupsSeeNewSamplesAndLateSsids() {
+        CoverageMap map = new CoverageMap(1);
+        CoverageReading reading = new CoverageReading();
+        map.add(0, 0, "a", "corp", -60);
+        map.add(0, 0, "b", null, -50);
+        assertTrue(map.strongestAt(0, 0, "corp", reading));
+        assertEquals("a", reading.getBssid());
+        assertTrue(map.strongestAt(0, 0, null, reading));
+        assertEquals("b", reading.getBssid());
+        assertNull(reading.getSsid());
+
+        // The hidden network turns out to be corp too, seen elsewhere.
+        map.add(5, 5, "b", "corp", -20);
+        assertTrue(map.strongestAt(0, 0, "corp", reading));
+        assertEquals("b", reading.getBssid());
+        assertEquals("corp", reading.getSsid());
+
+        map.add(0, 0, "a", "corp", -30);
+        map.add(0, 0, "a", "corp", -30);
+        assertTrue(map.strongestAt(0, 0, "corp", reading));
+        assertEquals("a", reading.getBssid());
+        assertEquals(-40, reading.getMeanRssi());
+    }
+
+    @Test
+    public void clearForgetsEverything() {
+        CoverageMap map = new CoverageMap(1);
+        for (int i = 0; i < 1000; i++) {
+            map.add(i * 16, 0, "ap" + i, "ssid" + i, -50);
+        }
+        map.clear();
+        CoverageReading reading = new CoverageReading();
+        assertEquals(0, map.getSampleCount());
+        assertEquals(0, map.getCellCount());
+        assertEquals(0, map.getBssidCount());
+        assertFalse(map.strongestAt(0, 0, null, reading));
+        assertTrue(map.findHoles(null, -40).isEmpty());
+
+        // The last cell written is not reused either.
+        map.add(999 * 16, 0, "b", "corp", -60);
+        assertTrue(map.strongestAt(999 * 16, 0, "corp", reading));
+        assertEquals("b", reading.getBssid());
+        assertEquals(1, reading.getSampleCount());
+        assertEquals(1, map.getCellCount());
+    }
+
+    @Test
+    public void negativeCoordinatesAndManyChunks() {
+        CoverageMap map = new CoverageMap(1);
+        for (int y = -100; y < 100; y += 7) {
+            for (int x = -100; x < 100; x += 7) {
+                map.add(x + 0.5, y + 0.5, "ap", "corp", -40 - Math.abs(x) / 4 - Math.abs(y) / 4);
+            }
+        }
+        CoverageReading reading = new CoverageReading();
+        for (int y = -100; y < 100; y += 7) {
+            for (int x = -100; x < 100; x += 7) {
+                assertTrue(x + "," + y, map.strongestAt(x + 0.9, y + 0.1, null, reading));
+                assertEquals(-40 - Math.abs(x) / 4 - Math.abs(y) / 4, reading.getMeanRssi());
+            }
+        }
+        // Just outside a sampled cell.
+        assertFalse(map.strongestAt(-101, -100 + 0.5, null, reading));
+        assertFalse(map.add(Double.NaN, 0, "ap", "corp", -50));
+        assertFalse(map.add(0, Double.POSITIVE_INFINITY, "ap", "corp", -50));
+    }
+
+    @Test
+    public void holesAreSurveyedCellsBelowTheThreshold() {
+        CoverageMap map = new CoverageMap(1);
+        map.add(0, 0, "a", "corp", -60);
+        map.add(1, 0, "a", "corp", -80);
+        map.add(1, 0, "b", "guest", -50);
+        map.add(-5, 3, "c", "guest", -70);
+
+        List<CoverageMap.Hole> holes = map.findHoles("corp", -75);
+        assertEquals(2, holes.size());
+        CoverageMap.Hole weak = holes.get(0).getCellX() == 1 ? holes.get(0) : holes.get(1);
+        CoverageMap.Hole missing = holes.get(0).getCellX() == 1 ? holes.get(1) : holes.get(0);
+        assertEquals(-80, weak.getRssi());
+        assertEquals(0, weak.getCellY());
+        assertEquals(1.5, weak.getCenterX(), 0);
+        assertEquals(-5, missing.getCellX());
+        assertEquals(3, missing.getCellY());
+        assertEquals(CoverageMap.NO_SIGNAL, missing.getRssi());
+
+        // Any network: the guest AP covers the weak cell.
+        assertEquals(0, map.findHoles(null, -75).size());
+        assertEquals(1, map.findHoles(null, -65).size());
+    }
+
+    @Test
+    public void rasterizeZoomedInAndOut() {
+        CoverageMap map = new CoverageMap(2);
+        map.add(0, 0, "a", "corp", -50);
+        map.add(2, 0, "a", "corp", -70);
+        map.add(2, 2, "b", "corp", -60);
+
+        // Half a meter a pixel, every cell is 4x4 pixels.
+        byte[] pixels = new byte[8 * 8];
+        map.rasterize(0, 0, 0.5, 8, 8, null, pixels);
+        assertEquals(-50, pixels[0]);
+        assertEquals(-50, pixels[3 * 8 + 3]);
+        assertEquals(-70, pixels[4]);
+        assertEquals(-70, pixels[3 * 8 + 7]);
+        assertEquals(CoverageMap.NO_DATA, pixels[4 * 8]);
+        assertEquals(-60, pixels[7 * 8 + 7]);
+
+        // Eight meters a pixel, the strongest of all cells under it.
+        byte[] one = new byte[4];
+        map.rasterize(-8, -8, 8, 2, 2, null, one);
+        assertEquals(CoverageMap.NO_DATA, one[0]);
+        assertEquals(-50, one[3]);
+        map.rasterize(-8, -8, 8, 2, 2, "guest", one);
+        assertEquals(CoverageMap.NO_DATA, one[3]);
+    }
+
+    @Test
+    public void tilesMatchARasterOfTheWholeArea() {
+        CoverageMap map = new CoverageMap(1.5);
+        Random random = new Random(23);
+        for (int i = 0; i < 20000; i++) {
+            map.add(random.nextDouble() * 700 - 200, random.nextDouble() * 500 - 100,
+                    "ap" + random.nextInt(30), "corp", -40 - random.nextInt(60));
+        }
+        double metersPerPixel = 1.25;
+        byte[] whole = new byte[4 * CoverageMap.TILE_SIZE * 4 * CoverageMap.TILE_SIZE];
+        int width = 4 * CoverageMap.TILE_SIZE;
+        double origin = -2 * CoverageMap.TILE_SIZE * metersPerPixel;
+        map.rasterize(origin, origin, metersPerPixel, width, width, null, whole);
+        byte[] tile = new byte[CoverageMap.TILE_SIZE * CoverageMap.TILE_SIZE];
+        int painted = 0;
+        for (int tileY = -2; tileY < 2; tileY++) {
+            for (int tileX = -2; tileX < 2; tileX++) {
+                map.renderTile(tileX, tileY, metersPerPixel, null, tile);
+                for (int y = 0; y < CoverageMap.TILE_SIZE; y++) {
+                    for (int x = 0; x < CoverageMap.TILE_SIZE; x++) {
+                        int wx = (tileX + 2) * CoverageMap.TILE_SIZE + x;
+                        int wy = (tileY + 2) * CoverageMap.TILE_SIZE + y;
+                        byte expected = whole[wy * width + wx];
+                        assertEquals(tileX + "," + tileY + " " + x + "," + y, expected, tile[y * CoverageMap.TILE_SIZE + x]);
+                        if (expected != CoverageMap.NO_DATA) {
+                            painted++;
+                        }
+                    }
+                }
+            }
+        }
+        assertTrue(painted > 0);
+    }
+}
@@ -0,0 +1,106 @@
+package com.cyh.wifiinforeader.survey;
+
+import com.cyh.wifiinforeader.util.FakeClock;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SiteSurveyTest {
+
+    private FakeClock mClock;
+    private CoverageMap mMap;
+    private SiteSurvey mSurvey;
+    private final CoverageReading mReading = new CoverageReading();
+
+    @Before
+    public void setUp() {
+        mClock = new FakeClock();
+        mMap = new CoverageMap(1);
+        mSurvey = new SiteSurvey(mMap, mClock, 10000, 10);
+    }
+
+    @Test
+    public void scansWithoutAPositionAreOnlyCounted() {
+        assertFalse(mSurvey.beginScan());
+        mSurvey.onScanResult("a", "corp", -50);
+        assertEquals(0, mMap.getSampleCount());
+        assertEquals(1, mSurvey.getUntaggedScanCount());
+    }
+
+    @Test
+    public void floorPlanPositionTagsEveryScanUntilMoved() {
+        mSurvey.setFloorPlanPosition(12.5, 3.5);
+        assertTrue(mSurvey.beginScan());
+        mSurvey.onScanResult("a", "corp", -50);
+        // Moving mid scan does not split it.
+        mSurvey.setFloorPlanPosition(40, 40);
+        mSurvey.onScanResult("b", "corp", -60);
+        mClock.advanceMillis(3600 * 1000);
+        assertTrue(mSurvey.beginScan());
+        mSurvey.onScanResult("a", "corp", -70);
+
+        assertTrue(mMap.strongestAt(12, 3, null, mReading));
+        assertEquals("a", mReading.getBssid());
+        assertTrue(mMap.strongestAt(12, 3, "corp", mReading));
+        assertEquals(1, mReading.getSampleCount());
+        assertTrue(mMap.strongestAt(40, 40, null, mReading));
+        assertEquals(-70, mReading.getMeanRssi());
+
+        mSurvey.clearPosition();
+        assertFalse(mSurvey.beginScan());
+        assertEquals(2, mSurvey.getTaggedScanCount());
+    }
+
+    @Test
+    public void fixesAreProjectedAroundTheFirstAndExpire() {
+        mSurvey.onFix(31.2304, 121.4737, 5);
+        assertTrue(mSurvey.beginScan());
+        mSurvey.onScanResult("a", "corp", -50);
+        assertTrue(mMap.strongestAt(0.5, 0.5, null, mReading));
+
+        // A ten thousandth of a degree north is about 11 m, east about 9.5 m at this latitude.
+        mSurvey.onFix(31.2305, 121.4738, 5);
+        assertTrue(mSurvey.beginScan());
+        mSurvey.onScanResult("b", "corp", -55);
+        assertTrue(mMap.strongestAt(9.5, 11.1, null, mReading));
+        assertEquals("b", mReading.getBssid());
+
+        mClock.advanceMillis(10001);
+        assertFalse(mSurvey.hasPosition());
+        mSurvey.onFix(31.2305, 121.4738, 50);
+        assertFalse(mSurvey.beginScan());
+
+        // A fix replaces a floor plan position and the other way around.
+        mSurvey.setFloorPlanPosition(100, 100);
+        assertTrue(mSurvey.hasPosition());
+        mSurvey.onFix(31.2305, 121.4738, 5);
+        assertTrue(mSurvey.beginScan());
+        mSurvey.onScanResult("c", "corp", -45);
+        assertTrue(mMap.strongestAt(9.5, 11.1, null, mReading));
+        assertEquals("c", mReading.getBssid());
+    }
+
+    @Test
+    public void resetStartsASurveyOver() {
+        mSurvey.onFix(31.2304, 121.4737, 5);
+        mSurvey.beginScan();
+        mSurvey.onScanResult("a", "corp", -50);
+        mSurvey.reset();
+
+        assertFalse(mSurvey.hasPosition());
+        assertFalse(mSurvey.beginScan());
+        mSurvey.onScanResult("a", "corp", -50);
+        assertEquals(0, mMap.getSampleCount());
+        assertEquals(0, mSurvey.getTaggedScanCount());
+        assertEquals(1, mSurvey.getUntaggedScanCount());
+
+        // The next fix is the new origin.
+        mSurvey.onFix(31.2305, 121.4738, 5);
+        assertTrue(mSurvey.beginScan());
+        mSurvey.onScanResult("b", "corp", -55);
+        assertTrue(mMap.strongestAt(0.5, 0.5, null, mReading));
+        assertEquals("b", mReading.getBssid());
+    }
+}
@@ -0,0 +1,80 @@
+package com.cyh.wifiinforeader.testing;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.SocketException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * UDP echo service, RFC 862, on the loopback interface for prober tests.
+ * <p>
+ * Every {@code dropEvery}-th datagram is dropped instead of echoed, 0 to echo them all, and
+ * echoes can be held back by {@code delayMillis}.
+ */
+public class LocalEchoServer {
+
+    private final DatagramSocket mSocket;
+    private final Thread mThread;
+    private final AtomicInteger mReceived = new AtomicInteger();
+    private volatile int mDropEvery = 0;
+    private volatile long mDelayMillis = 0;
+
+    public LocalEchoServer() throws IOException {
+        mSocket = new DatagramSocket(0, InetAddress.getByName("127.0.0.1"));
+        mThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                echoLoop();
+            }
+        }, "echo");
+        mThread.start();
+    }
+
+    public int getPort() {
+        return mSocket.getLocalPort();
+    }
+
+    public int getReceived() {
+        return mReceived.get();
+    }
+
+    public void setDropEvery(int dropEvery) {
+        mDropEvery = dropEvery;
+    }
+
+    public void setDelayMillis(long delayMillis) {
+        mDelayMillis = delayMillis;
+    }
+
+    public void close() throws InterruptedException {
+        mSocket.close();
+        mThread.join();
+    }
+
+    private void echoLoop() {
+        byte[] buffer = new byte[2048];
+        DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+        try {
+            while (true) {
+                packet.setLength(buffer.length);
+                mSocket.receive(packet);
+                int received = mReceived.incrementAndGet();
+                if (mDropEvery > 0 && received % mDropEvery == 0) {
+                    continue;
+                }
+                if (mDelayMillis > 0) {
+                    Thread.sleep(mDelayMillis);
+                }
+                mSocket.send(packet);
+            }
+        } catch (SocketException e) {
+            // Closed.
+        } catch (IOException e) {
+            e.printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
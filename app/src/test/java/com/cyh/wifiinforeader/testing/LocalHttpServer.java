@@ -0,0 +1,152 @@
+package com.cyh.wifiinforeader.testing;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Minimal HTTP/1.1 server on the loopback interface for probe tests.
+ * <p>
+ * Every request is answered with a short 200 after {@code delayMillis}; connections are kept
+ * alive so clients can reuse them. Each connection gets its own thread, so concurrent requests
+ * are served concurrently.
+ */
+public class LocalHttpServer {
+
+    private final ServerSocket mServerSocket;
+    private final ExecutorService mExecutor = Executors.newCachedThreadPool();
+    private final AtomicInteger mConnections = new AtomicInteger();
+    private final AtomicInteger mRequests = new AtomicInteger();
+    private volatile long mDelayMillis;
+    private volatile int mStatus = 200;
+    private volatile boolean mChunked = false;
+    private volatile boolean mCloseAfterResponse = false;
+
+    public LocalHttpServer(long delayMillis) throws IOException {
+        mDelayMillis = delayMillis;
+        mServerSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                acceptLoop();
+            }
+        });
+    }
+
+    public String url(String path) {
+        return "http://127.0.0.1:" + mServerSocket.getLocalPort() + path;
+    }
+
+    public int getPort() {
+        return mServerSocket.getLocalPort();
+    }
+
+    public void setDelayMillis(long delayMillis) {
+        mDelayMillis = delayMillis;
+    }
+
+    public void setStatus(int status) {
+        mStatus = status;
+    }
+
+    /**
+     * Sends bodies with chunked transfer encoding instead of a Content-Length.
+     */
+    public void setChunked(boolean chunked) {
+        mChunked = chunked;
+    }
+
+    /**
+     * Answers with "Connection: close" and drops each connection after one response.
+     */
+    public void setCloseAfterResponse(boolean close) {
+        mCloseAfterResponse = close;
+    }
+
+    public int getConnectionCount() {
+        return mConnections.get();
+    }
+
+    public int getRequestCount() {
+        return mRequests.get();
+    }
+
+    public void close() throws IOException {
+        mServerSocket.close();
+        mExecutor.shutdownNow();
+    }
+
+    private void acceptLoop() {
+        while (!mServerSocket.isClosed()) {
+            try {
+                final Socket socket = mServerSocket.accept();
+                mConnections.incrementAndGet();
+                mExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        serve(socket);
+                    }
+                });
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), "US-ASCII"));
+            OutputStream out = socket.getOutputStream();
+            String requestLine;
+            while ((requestLine = reader.readLine()) != null) {
+                if (requestLine.isEmpty()) {
+                    continue;
+                }
+                String header;
+                while ((header = reader.readLine()) != null && !header.isEmpty()) {
+                    // Requests in these tests carry no body, headers are skipped.
+                }
+                mRequests.incrementAndGet();
+                if (mDelayMillis > 0) {
+                    Thread.sleep(mDelayMillis);
+                }
+                String body = "ok";
+                String framing = mChunked
+                        ? "Transfer-Encoding: chunked\r\n"
+                        : "Content-Length: " + body.length() + "\r\n";
+                String content = mChunked
+                        ? Integer.toHexString(body.length()) + "\r\n" + body + "\r\n0\r\n\r\n"
+                        : body;
+                String response = "HTTP/1.1 " + mStatus + " Status\r\n"
+                        + "Content-Type: text/plain\r\n"
+                        + framing
+                        + "Connection: " + (mCloseAfterResponse ? "close" : "keep-alive") + "\r\n"
+                        + "\r\n" + content;
+                out.write(response.getBytes("US-ASCII"));
+                out.flush();
+                if (mCloseAfterResponse) {
+                    break;
+                }
+            }
+        } catch (SocketException e) {
+            // Client went away.
+        } catch (IOException e) {
+            e.printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.cyh.wifiinforeader.util;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link Clock} that only moves when told to.
+ */
+public class FakeClock implements Clock {
+
+    private long mNanos = TimeUnit.SECONDS.toNanos(1000);
+
+    @Override
+    public synchronized long nanoTime() {
+        return mNanos;
+    }
+
+    public synchronized void advanceMillis(long millis) {
+        mNanos += TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    public synchronized void advanceNanos(long nanos) {
+        mNanos += nanos;
+    }
+}
@@ -0,0 +1,60 @@
+package com.cyh.wifiinforeader.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class HistogramTest {
+
+    @Test
+    public void valuesLandInInclusiveBuckets() {
+        Histogram histogram = new Histogram(new long[]{10, 20, 50});
+        for (long value : new long[]{-5, 10, 11, 20, 50, 51, 1000}) {
+            histogram.record(value);
+        }
+
+        assertEquals(4, histogram.getBucketCount());
+        assertEquals(2, histogram.getCount(0));
+        assertEquals(2, histogram.getCount(1));
+        assertEquals(1, histogram.getCount(2));
+        assertEquals(2, histogram.getCount(3));
+        assertEquals(Long.MAX_VALUE, histogram.getBound(3));
+        assertEquals(7, histogram.getCount());
+        assertEquals(1137, histogram.getSum());
+        assertEquals(1000, histogram.getMax());
+    }
+
+    @Test
+    public void quantileBounds() {
+        Histogram histogram = new Histogram(Histogram.LATENCY_MILLIS);
+        assertEquals(0, histogram.getQuantileBound(0.5));
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i);
+        }
+
+        assertEquals(50, histogram.getQuantileBound(0.5));
+        assertEquals(100, histogram.getQuantileBound(0.99));
+        assertEquals(1, histogram.getQuantileBound(0));
+    }
+
+    @Test
+    public void formatAndClear() {
+        Histogram histogram = new Histogram(new long[]{1, 5});
+        histogram.record(3);
+        histogram.record(9);
+        StringBuilder sb = new StringBuilder();
+        histogram.format(sb);
+        assertEquals("n=2 <=5:1 >5:1", sb.toString());
+
+        histogram.clear();
+        sb.setLength(0);
+        histogram.format(sb);
+        assertEquals("n=0", sb.toString());
+        assertEquals(Long.MIN_VALUE, histogram.getMax());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void boundsMustAscend() {
+        new Histogram(new long[]{5, 5});
+    }
+}
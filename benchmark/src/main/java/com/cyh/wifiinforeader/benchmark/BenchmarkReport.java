@@ -0,0 +1,195 @@
+package com.cyh.wifiinforeader.benchmark;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Compares a JMH CSV result file against a baseline one, benchmark by benchmark and parameter
+ * set by parameter set, and exits with status 1 if any got slower by more than the threshold.
+ * <p>
+ * A change only counts as a regression if it is also larger than the two runs' score errors
+ * together, so noise on a busy machine does not fail the build. Benchmarks missing from either
+ * file are listed and otherwise ignored.
+ * <p>
+ * Usage: {@code BenchmarkReport <baseline.csv> <results.csv> [threshold, 0.10 for 10%]}
+ */
+public final class BenchmarkReport {
+
+    static final class Result {
+        final String mMode;
+        final double mScore;
+        final double mError;
+        final String mUnit;
+
+        Result(String mode, double score, double error, String unit) {
+            mMode = mode;
+            mScore = score;
+            mError = error;
+            mUnit = unit;
+        }
+
+        /** Throughput modes are better higher, time modes lower. */
+        boolean isHigherBetter() {
+            return "thrpt".equals(mMode);
+        }
+    }
+
+    private BenchmarkReport() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: BenchmarkReport <baseline.csv> <results.csv> [threshold]");
+            System.exit(2);
+        }
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 0.10;
+        File baselineFile = new File(args[0]);
+        Map<String, Result> results = read(new File(args[1]));
+        if (!baselineFile.exists()) {
+            System.out.println("No baseline at " + baselineFile + ", nothing to compare");
+            return;
+        }
+        StringBuilder out = new StringBuilder();
+        int regressions = compare(read(baselineFile), results, threshold, out);
+        System.out.print(out);
+        if (regressions > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Appends one line per benchmark to {@code out}.
+     *
+     * @return number of regressions
+     */
+    static int compare(Map<String, Result> baseline, Map<String, Result> results, double threshold,
+                       StringBuilder out) {
+        int regressions = 0;
+        for (Map.Entry<String, Result> entry : results.entrySet()) {
+            Result now = entry.getValue();
+            Result before = baseline.get(entry.getKey());
+            if (before == null || !before.mUnit.equals(now.mUnit)) {
+                out.append(String.format(Locale.US, "  new      %s %.3f %s%n", entry.getKey(), now.mScore, now.mUnit));
+                continue;
+            }
+            // Positive when worse, whichever way the mode counts.
+            double change = (now.mScore - before.mScore) / before.mScore;
+            if (now.isHigherBetter()) {
+                change = -change;
+            }
+            boolean beyondNoise = Math.abs(now.mScore - before.mScore) > finite(now.mError) + finite(before.mError);
+            String verdict;
+            if (change > threshold && beyondNoise) {
+                verdict = "SLOWER  ";
+                regressions++;
+            } else if (change < -threshold && beyondNoise) {
+                verdict = "faster  ";
+            } else {
+                verdict = "same    ";
+            }
+            out.append(String.format(Locale.US, "  %s %s %.3f -> %.3f %s (%+.1f%%)%n", verdict, entry.getKey(),
+                    before.mScore, now.mScore, now.mUnit, 100 * change));
+        }
+        for (String key : baseline.keySet()) {
+            if (!results.containsKey(key)) {
+                out.append("  missing  ").append(key).append('\n');
+            }
+        }
+        out.append(regressions).append(regressions == 1 ? " regression" : " regressions")
+                .append(String.format(Locale.US, " beyond %.0f%%%n", 100 * threshold));
+        return regressions;
+    }
+
+    /**
+     * @return results by benchmark name and parameters, e.g. {@code ScanLogBenchmark.scanLog history=720}
+     */
+    static Map<String, Result> read(File file) throws IOException {
+        BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8));
+        try {
+            return parse(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    static Map<String, Result> parse(BufferedReader in) throws IOException {
+        Map<String, Result> results = new LinkedHashMap<>();
+        String headerLine = in.readLine();
+        if (headerLine == null) {
+            return results;
+        }
+        List<String> header = splitCsv(headerLine);
+        int name = header.indexOf("Benchmark");
+        int mode = header.indexOf("Mode");
+        int score = header.indexOf("Score");
+        int error = header.indexOf("Score Error (99.9%)");
+        int unit = header.indexOf("Unit");
+        if (name < 0 || mode < 0 || score < 0 || error < 0 || unit < 0) {
+            throw new IOException("Not a JMH CSV result file: " + headerLine);
+        }
+        for (String line; (line = in.readLine()) != null; ) {
+            if (line.isEmpty()) {
+                continue;
+            }
+            List<String> row = splitCsv(line);
+            StringBuilder key = new StringBuilder(shortName(row.get(name)));
+            for (int column = unit + 1; column < header.size() && column < row.size(); column++) {
+                String param = header.get(column);
+                if (param.startsWith("Param: ") && !row.get(column).isEmpty()) {
+                    key.append(' ').append(param.substring(7)).append('=').append(row.get(column));
+                }
+            }
+            results.put(key.toString(), new Result(row.get(mode), parseNumber(row.get(score)),
+                    parseNumber(row.get(error)), row.get(unit)));
+        }
+        return results;
+    }
+
+    /** Splits one CSV line the way JMH writes it: quoted strings, bare numbers. */
+    static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                if (quoted && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = !quoted;
+                }
+            } else if (c == ',' && !quoted) {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static String shortName(String benchmark) {
+        int method = benchmark.lastIndexOf('.');
+        int type = method > 0 ? benchmark.lastIndexOf('.', method - 1) : -1;
+        return benchmark.substring(type + 1);
+    }
+
+    private static double parseNumber(String value) {
+        return value.isEmpty() || "NaN".equals(value) ? Double.NaN : Double.parseDouble(value);
+    }
+
+    private static double finite(double value) {
+        return Double.isNaN(value) || Double.isInfinite(value) ? 0 : value;
+    }
+}
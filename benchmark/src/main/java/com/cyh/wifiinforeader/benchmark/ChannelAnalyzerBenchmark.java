@@ -0,0 +1,74 @@
+package com.cyh.wifiinforeader.benchmark;
+
+import com.cyh.wifiinforeader.scan.ChannelAnalyzer;
+import com.cyh.wifiinforeader.scan.ScanDelta;
+import com.cyh.wifiinforeader.scan.ScanStore;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per scan cost of keeping {@link ChannelAnalyzer} current over dense synthetic scans, applying
+ * each delta against recounting every access point. Both include the {@link ScanStore} diff,
+ * {@code ScanDiffBenchmark.storeDiff} is the baseline to subtract.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ChannelAnalyzerBenchmark {
+
+    @Param({"300", "600"})
+    public int accessPoints;
+
+    private SyntheticScans mScans;
+    private ScanStore mStore;
+    private ChannelAnalyzer mAnalyzer;
+    private int mScan;
+
+    @Setup
+    public void setUp() {
+        mScans = new SyntheticScans(accessPoints, 64, 7);
+        mStore = new ScanStore(5);
+        mAnalyzer = new ChannelAnalyzer();
+        mScan = 0;
+    }
+
+    @Benchmark
+    public int incremental() {
+        mAnalyzer.apply(diff());
+        return mAnalyzer.recommendChannel(ChannelAnalyzer.BAND_5_GHZ);
+    }
+
+    @Benchmark
+    public int rebuild() {
+        diff();
+        mAnalyzer.rebuild(mStore);
+        return mAnalyzer.recommendChannel(ChannelAnalyzer.BAND_5_GHZ);
+    }
+
+    private ScanDelta diff() {
+        int[] rssi = mScans.rssi[mScan++ % mScans.scans()];
+        mStore.beginScan();
+        for (int i = 0; i < mScans.size(); i++) {
+            if (rssi[i] != 0) {
+                mStore.put(mScans.bssid[i], mScans.ssid[i], rssi[i], mScans.frequency[i], mScans.capabilities[i],
+                        mScans.channelWidth[i], mScans.centerFrequency[i]);
+            }
+        }
+        return mStore.endScan();
+    }
+}
@@ -0,0 +1,132 @@
+package com.cyh.wifiinforeader.benchmark;
+
+import com.cyh.wifiinforeader.collector.ConnectivitySource;
+import com.cyh.wifiinforeader.collector.EventRecorder;
+import com.cyh.wifiinforeader.collector.NetworkSummary;
+import com.cyh.wifiinforeader.collector.WifiCollector;
+import com.cyh.wifiinforeader.util.Clock;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The collector's broadcast handlers end to end over a {@link FakeWifiSource}, with a screen
+ * attached: a scan result broadcast (store diff, channel counts, scan log, RSSI history, list
+ * rendering when membership changed) and a network state broadcast (connection info and the
+ * summary line).
+ * <p>
+ * {@link #legacySummary} is the old getSummary's formatting, a fresh string array and a
+ * {@code String.format} every broadcast, against the cached {@link NetworkSummary}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CollectorBenchmark {
+
+    /** R.array.wifi_status and wifi_status_with_ssid, by DetailedState ordinal. */
+    private static final String[] FORMATS = {"", "Scanning\u2026", "Connecting\u2026", "Authenticating\u2026",
+            "Obtaining IP address\u2026", "Connected", "Suspended", "Disconnecting\u2026", "Disconnected",
+            "Unsuccessful", "Blocked", "Temporarily avoiding poor connection"};
+    private static final String[] FORMATS_WITH_SSID = {"", "Scanning\u2026", "Connecting to %1$s\u2026",
+            "Authenticating with %1$s\u2026", "Obtaining IP address from %1$s\u2026", "Connected to %1$s",
+            "Suspended", "Disconnecting from %1$s\u2026", "Disconnected", "Unsuccessful", "Blocked",
+            "Temporarily avoiding poor connection"};
+    private static final int CONNECTED = 5;
+
+    @Param({"150", "300"})
+    public int accessPoints;
+
+    private WifiCollector mCollector;
+    private NetworkSummary mSummary;
+    private final BlackholeListener mListener = new BlackholeListener();
+
+    private static class BlackholeListener implements WifiCollector.Listener {
+        int mChars;
+
+        @Override
+        public void onWifiStateChanged(int wifiState) {
+        }
+
+        @Override
+        public void onNetworkStateChanged(String summary) {
+            mChars += summary.length();
+        }
+
+        @Override
+        public void onSupplicantStateChanged(String state) {
+        }
+
+        @Override
+        public void onSupplicantConnectionChanged(boolean connected) {
+        }
+
+        @Override
+        public void onNetworkIdsChanged() {
+        }
+
+        @Override
+        public void onRssiChanged(int rssi) {
+        }
+
+        @Override
+        public void onScanLogChanged(CharSequence log) {
+            mChars += log.length();
+        }
+
+        @Override
+        public void onScanListChanged(CharSequence ssids, CharSequence changes) {
+            mChars += ssids.length() + changes.length();
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        mSummary = new NetworkSummary(FORMATS, FORMATS_WITH_SSID, "Connected, no Internet");
+        mCollector = new WifiCollector(new FakeWifiSource(new SyntheticScans(accessPoints, 64, 7)),
+                FakeWifiSource.ALWAYS_VALIDATED, new NetworkSummary(FORMATS, FORMATS_WITH_SSID, "Connected, no Internet"),
+                FakeWifiSource.NO_TIMER, Clock.SYSTEM, EventRecorder.NONE);
+        mCollector.setListener(mListener);
+        // Past the first scans, where every access point is new.
+        for (int i = 0; i < 64; i++) {
+            mCollector.onScanResultsAvailable();
+        }
+    }
+
+    @Benchmark
+    public int scanResults() {
+        mCollector.onScanResultsAvailable();
+        return mListener.mChars;
+    }
+
+    @Benchmark
+    public int networkState() {
+        mCollector.onNetworkStateChanged(CONNECTED, true, "02:00:00:00:00:00");
+        return mListener.mChars;
+    }
+
+    @Benchmark
+    public String legacySummary() {
+        // getResources().getStringArray() built a new array every call.
+        String[] formats = FORMATS_WITH_SSID.clone();
+        return String.format(formats[CONNECTED], "\"corp-0\"");
+    }
+
+    @Benchmark
+    public String cachedSummary() {
+        return mSummary.format(CONNECTED, true, "\"corp-0\"", ConnectivitySource.VALIDATED);
+    }
+}
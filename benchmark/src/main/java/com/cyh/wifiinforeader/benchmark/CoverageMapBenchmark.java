@@ -0,0 +1,161 @@
+package com.cyh.wifiinforeader.benchmark;
+
+import com.cyh.wifiinforeader.survey.CoverageMap;
+import com.cyh.wifiinforeader.survey.CoverageReading;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Insert and query cost of {@link CoverageMap} on a synthetic site survey: 300 by 300 m with
+ * 80 access points of four SSIDs, RSSI from a log-distance path loss model with 4 dB of
+ * shadowing, surveyed on a random walk in 2 m cells. {@code samples} are inserted before the
+ * queries run; {@link #addScan} keeps adding to the same map, one scan at a time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CoverageMapBenchmark {
+
+    private static final double SITE_METERS = 300;
+    private static final int ACCESS_POINTS = 80;
+    private static final String[] SSIDS = {"corp", "guest", "iot", "lab"};
+    /** Weaker than this is not in a scan. */
+    private static final int SENSITIVITY = -92;
+    private static final int SCANS = 4096;
+    private static final int QUERIES = 4096;
+
+    @Param({"100000", "1000000"})
+    public int samples;
+
+    private final String[] mBssids = new String[ACCESS_POINTS];
+    private final String[] mSsids = new String[ACCESS_POINTS];
+    private final double[] mApX = new double[ACCESS_POINTS];
+    private final double[] mApY = new double[ACCESS_POINTS];
+
+    /** Pre-generated scans along the walk: position, then the access points heard and their RSSI. */
+    private final double[] mScanX = new double[SCANS];
+    private final double[] mScanY = new double[SCANS];
+    private final int[][] mScanAps = new int[SCANS][];
+    private final int[][] mScanRssi = new int[SCANS][];
+    private final double[] mQueryX = new double[QUERIES];
+    private final double[] mQueryY = new double[QUERIES];
+
+    private CoverageMap mMap;
+    private final CoverageReading mReading = new CoverageReading();
+    private final byte[] mTile = new byte[CoverageMap.TILE_SIZE * CoverageMap.TILE_SIZE];
+    private int mNextScan;
+    private int mNextQuery;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(23);
+        for (int i = 0; i < ACCESS_POINTS; i++) {
+            mBssids[i] = String.format("02:00:00:00:%02x:%02x", i >> 8, i & 0xff);
+            mSsids[i] = SSIDS[i % SSIDS.length];
+            mApX[i] = random.nextDouble() * SITE_METERS;
+            mApY[i] = random.nextDouble() * SITE_METERS;
+        }
+        double x = SITE_METERS / 2;
+        double y = SITE_METERS / 2;
+        int[] aps = new int[ACCESS_POINTS];
+        int[] rssi = new int[ACCESS_POINTS];
+        for (int scan = 0; scan < SCANS; scan++) {
+            // A few meters a scan, bouncing off the walls.
+            x = bounce(x + random.nextGaussian() * 3);
+            y = bounce(y + random.nextGaussian() * 3);
+            mScanX[scan] = x;
+            mScanY[scan] = y;
+            int heard = 0;
+            for (int i = 0; i < ACCESS_POINTS; i++) {
+                double distance = Math.max(1, Math.hypot(x - mApX[i], y - mApY[i]));
+                int value = (int) Math.round(-40 - 30 * Math.log10(distance) + 4 * random.nextGaussian());
+                if (value >= SENSITIVITY) {
+                    aps[heard] = i;
+                    rssi[heard] = Math.min(-1, value);
+                    heard++;
+                }
+            }
+            mScanAps[scan] = Arrays.copyOf(aps, heard);
+            mScanRssi[scan] = Arrays.copyOf(rssi, heard);
+        }
+        for (int i = 0; i < QUERIES; i++) {
+            mQueryX[i] = random.nextDouble() * SITE_METERS;
+            mQueryY[i] = random.nextDouble() * SITE_METERS;
+        }
+
+        mMap = new CoverageMap(2);
+        while (mMap.getSampleCount() < samples) {
+            addScan();
+        }
+    }
+
+    private static double bounce(double v) {
+        return v < 0 ? -v : v > SITE_METERS ? 2 * SITE_METERS - v : v;
+    }
+
+    @Benchmark
+    public CoverageMap addScan() {
+        int scan = mNextScan++;
+        int i = scan % SCANS;
+        // Each pass over the walk shifts it, so the survey covers the site rather than one path.
+        double shift = (scan / SCANS) * 7.3 % SITE_METERS;
+        double x = (mScanX[i] + shift) % SITE_METERS;
+        double y = (mScanY[i] + shift * 0.61) % SITE_METERS;
+        int[] aps = mScanAps[i];
+        int[] rssi = mScanRssi[i];
+        for (int j = 0; j < aps.length; j++) {
+            mMap.add(x, y, mBssids[aps[j]], mSsids[aps[j]], rssi[j]);
+        }
+        return mMap;
+    }
+
+    @Benchmark
+    public boolean strongestAt() {
+        int i = mNextQuery++ & (QUERIES - 1);
+        return mMap.strongestAt(mQueryX[i], mQueryY[i], null, mReading);
+    }
+
+    @Benchmark
+    public boolean strongestOfSsidAt() {
+        int i = mNextQuery++ & (QUERIES - 1);
+        return mMap.strongestAt(mQueryX[i], mQueryY[i], "corp", mReading);
+    }
+
+    @Benchmark
+    public List<CoverageMap.Hole> findHoles() {
+        return mMap.findHoles("corp", -75);
+    }
+
+    /** A tile at half a meter a pixel, each 2 m cell 4 by 4 pixels. */
+    @Benchmark
+    public byte[] renderTile() {
+        int i = mNextQuery++ & 3;
+        mMap.renderTile(i & 1, i >> 1, 0.5, "corp", mTile);
+        return mTile;
+    }
+
+    /** The whole site in one tile, about 1.2 m a pixel. */
+    @Benchmark
+    public byte[] renderOverviewTile() {
+        mMap.renderTile(0, 0, SITE_METERS / CoverageMap.TILE_SIZE, null, mTile);
+        return mTile;
+    }
+}
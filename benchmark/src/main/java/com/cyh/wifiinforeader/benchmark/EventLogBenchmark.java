@@ -0,0 +1,135 @@
+package com.cyh.wifiinforeader.benchmark;
+
+import com.cyh.wifiinforeader.eventlog.EventLog;
+import com.cyh.wifiinforeader.eventlog.EventLogReader;
+import com.cyh.wifiinforeader.eventlog.EventLogWriter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per record cost of writing a million RSSI events to a fresh log, and of replaying and
+ * random-reading a million-record log through the mapping. Files go to the temp directory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class EventLogBenchmark {
+
+    private static final int RECORDS = 1000000;
+
+    private final String[] mBssids = new String[300];
+    private File mReadDir;
+    private File mWriteDir;
+    private EventLogReader mReader;
+    private final Sum mSum = new Sum();
+
+    @Setup
+    public void setUp() throws IOException {
+        for (int i = 0; i < mBssids.length; i++) {
+            mBssids[i] = String.format("02:00:00:00:%02x:%02x", i >> 8, i & 0xff);
+        }
+        mReadDir = createTempDir();
+        write(mReadDir);
+        mReader = new EventLogReader(mReadDir);
+    }
+
+    @Setup(Level.Invocation)
+    public void newWriteDir() throws IOException {
+        mWriteDir = createTempDir();
+    }
+
+    @TearDown(Level.Invocation)
+    public void deleteWriteDir() {
+        delete(mWriteDir);
+    }
+
+    @TearDown
+    public void tearDown() {
+        delete(mReadDir);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public long append() throws IOException {
+        return write(mWriteDir);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public long replay() {
+        mSum.mTotal = 0;
+        mReader.replay(0, mReader.size(), mSum);
+        return mSum.mTotal;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public long readByIndex() {
+        long total = 0;
+        for (int i = 0; i < RECORDS; i++) {
+            // Stride through the log so reads do not just follow the prefetcher.
+            int index = (int) ((i * 7919L) % RECORDS);
+            total += mReader.getArg0(index) + mReader.getTime(index);
+        }
+        return total;
+    }
+
+    private long write(File dir) throws IOException {
+        EventLogWriter writer = new EventLogWriter(dir, 1024);
+        try {
+            for (int i = 0; i < RECORDS; i++) {
+                writer.append(i, EventLog.RSSI, mBssids[i % mBssids.length], -30 - i % 60, 0, 0);
+            }
+        } finally {
+            writer.close();
+        }
+        return writer.getCount();
+    }
+
+    private static File createTempDir() throws IOException {
+        File dir = File.createTempFile("eventlog", "");
+        if (!dir.delete() || !dir.mkdir()) {
+            throw new IOException("Cannot create " + dir);
+        }
+        return dir;
+    }
+
+    private static void delete(File dir) {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            // The log's segments are directories.
+            for (File file : files) {
+                delete(file);
+            }
+        }
+        dir.delete();
+    }
+
+    private static class Sum implements EventLogReader.Visitor {
+        long mTotal;
+
+        @Override
+        public void onEvent(long timeMillis, int type, int key, int arg0, int arg1, long arg2) {
+            mTotal += arg0 + key;
+        }
+    }
+}
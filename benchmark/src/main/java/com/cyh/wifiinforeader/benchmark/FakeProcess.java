@@ -0,0 +1,66 @@
+package com.cyh.wifiinforeader.benchmark;
+
+import com.cyh.wifiinforeader.ping.PingSession;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A finished ping process whose stdout is canned output, so a {@link PingSession} runs its
+ * whole read, parse and report path without forking anything.
+ */
+final class FakeProcess extends Process {
+
+    private static final InputStream EMPTY = new ByteArrayInputStream(new byte[0]);
+
+    private final InputStream mOutput;
+    private final int mExitStatus;
+
+    FakeProcess(byte[] output, int exitStatus) {
+        mOutput = new ByteArrayInputStream(output);
+        mExitStatus = exitStatus;
+    }
+
+    /**
+     * @return a starter handing out a fresh process over {@code output} for every session
+     */
+    static PingSession.ProcessStarter starter(final byte[] output) {
+        return new PingSession.ProcessStarter() {
+            @Override
+            public Process start(String[] command) {
+                return new FakeProcess(output, 0);
+            }
+        };
+    }
+
+    @Override
+    public OutputStream getOutputStream() {
+        return new ByteArrayOutputStream();
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        return mOutput;
+    }
+
+    @Override
+    public InputStream getErrorStream() {
+        return EMPTY;
+    }
+
+    @Override
+    public int waitFor() {
+        return mExitStatus;
+    }
+
+    @Override
+    public int exitValue() {
+        return mExitStatus;
+    }
+
+    @Override
+    public void destroy() {
+    }
+}
@@ -0,0 +1,91 @@
+package com.cyh.wifiinforeader.benchmark;
+
+import com.cyh.wifiinforeader.collector.ConnectivitySource;
+import com.cyh.wifiinforeader.collector.WifiCollector;
+import com.cyh.wifiinforeader.collector.WifiLink;
+import com.cyh.wifiinforeader.collector.WifiSource;
+
+/**
+ * {@code WifiManager} for the benchmarks: every {@link #readScanResults} hands out the next of
+ * {@link SyntheticScans}' scans the way {@code getScanResults()} hands out {@code ScanResult}s,
+ * and the connection is to the first access point. Nothing here costs what a binder call does,
+ * so the benchmarks measure the app's side of each call only.
+ */
+final class FakeWifiSource implements WifiSource {
+
+    /** Connectivity that is always validated. */
+    static final ConnectivitySource ALWAYS_VALIDATED = new ConnectivitySource() {
+        @Override
+        public int getWifiValidation() {
+            return ConnectivitySource.VALIDATED;
+        }
+    };
+
+    /** A timer that never fires, the benchmark drives the collector itself. */
+    static final WifiCollector.ScanTimer NO_TIMER = new WifiCollector.ScanTimer() {
+        @Override
+        public void schedule(long delayMillis) {
+        }
+
+        @Override
+        public void cancel() {
+        }
+    };
+
+    private final SyntheticScans mScans;
+    private int mScan;
+    private int mRssi;
+
+    FakeWifiSource(SyntheticScans scans) {
+        mScans = scans;
+    }
+
+    /**
+     * @return index of the scan the next {@link #readScanResults} hands out
+     */
+    int nextScan() {
+        return mScan % mScans.scans();
+    }
+
+    @Override
+    public boolean isWifiEnabled() {
+        return true;
+    }
+
+    @Override
+    public int getWifiState() {
+        // WIFI_STATE_ENABLED.
+        return 3;
+    }
+
+    @Override
+    public boolean readConnectionInfo(WifiLink out) {
+        out.setSsid(mScans.ssid[0]);
+        out.setBssid(mScans.bssid[0]);
+        out.setRssi(-50 - (mRssi++ & 7));
+        out.setLinkSpeedMbps(866);
+        out.setNetworkId(1);
+        out.setSupplicantState("COMPLETED");
+        return true;
+    }
+
+    @Override
+    public boolean startScan() {
+        return true;
+    }
+
+    @Override
+    public int readScanResults(ScanResultSink sink) {
+        int[] rssi = mScans.rssi[mScan++ % mScans.scans()];
+        int results = 0;
+        for (int i = 0; i < rssi.length; i++) {
+            if (rssi[i] == 0) {
+                continue;
+            }
+            sink.onScanResult(mScans.bssid[i], mScans.ssid[i], rssi[i], mScans.frequency[i], mScans.capabilities[i],
+                    mScans.channelWidth[i], mScans.centerFrequency[i]);
+            results++;
+        }
+        return results;
+    }
+}
@@ -0,0 +1,96 @@
+package com.cyh.wifiinforeader.benchmark;
+
+import com.cyh.wifiinforeader.metrics.Counter;
+import com.cyh.wifiinforeader.metrics.LatencyHistogram;
+import com.cyh.wifiinforeader.metrics.MetricsRegistry;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cost of one sample with four threads recording into the same metrics at once: a striped
+ * {@link Counter} against one shared {@link AtomicLong}, and a {@link LatencyHistogram}.
+ * {@link #format} is the cost of one export of a registry the size of the app's.
+ * Run with {@code -t 1} for the uncontended cost.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@Threads(4)
+public class MetricsBenchmark {
+
+    private final MetricsRegistry mRegistry = new MetricsRegistry();
+    private final AtomicLong mShared = new AtomicLong();
+    private Counter mCounter;
+    private LatencyHistogram mHistogram;
+
+    @State(Scope.Thread)
+    public static class Samples {
+        /** Ping-like RTTs in micros, 1 to about 500 ms. */
+        final long[] mMicros = new long[1024];
+        int mNext;
+
+        @Setup
+        public void setUp() {
+            Random random = new Random(Thread.currentThread().getId());
+            for (int i = 0; i < mMicros.length; i++) {
+                mMicros[i] = 1000 + (long) (random.nextDouble() * random.nextDouble() * 500000);
+            }
+        }
+
+        long next() {
+            return mMicros[mNext++ & (mMicros.length - 1)];
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        mCounter = mRegistry.counter("wifi_events_total", "type=\"rssi\"", "Events");
+        mHistogram = mRegistry.histogram("ping_rtt_seconds", "Ping round trip time");
+        for (int i = 0; i < 13; i++) {
+            mRegistry.counter("wifi_events_total", "type=\"" + i + "\"", "Events").add(i);
+        }
+        for (int i = 0; i < 12; i++) {
+            mRegistry.histogram("broadcast_handler_seconds", "action=\"" + i + "\"", "Handler").record(i * 100);
+        }
+    }
+
+    @Benchmark
+    public void sharedAtomicLong() {
+        mShared.incrementAndGet();
+    }
+
+    @Benchmark
+    public void stripedCounter() {
+        mCounter.increment();
+    }
+
+    @Benchmark
+    public void histogramRecord(Samples samples) {
+        mHistogram.record(samples.next());
+    }
+
+    @Benchmark
+    @Threads(1)
+    public int format() {
+        StringBuilder out = new StringBuilder(32768);
+        mRegistry.format(out);
+        return out.length();
+    }
+}
@@ -0,0 +1,31 @@
+package com.cyh.wifiinforeader.benchmark;
+
+import java.nio.charset.Charset;
+import java.util.Random;
+
+/**
+ * Synthetic ping stdout for the benchmarks, shaped like iputils output.
+ */
+final class PingOutputs {
+
+    private PingOutputs() {
+    }
+
+    static byte[] iputils(int probes, int packSize) {
+        Random random = new Random(42);
+        StringBuilder sb = new StringBuilder();
+        sb.append("PING www.a.shifen.com (180.97.33.108) ").append(packSize - 8)
+                .append('(').append(packSize + 20).append(") bytes of data.\n");
+        for (int seq = 1; seq <= probes; seq++) {
+            int micros = 20000 + random.nextInt(60000);
+            sb.append(packSize).append(" bytes from 180.97.33.108: icmp_seq=").append(seq)
+                    .append(" ttl=54 time=").append(micros / 1000).append('.')
+                    .append(micros % 1000 / 100).append(" ms\n");
+        }
+        sb.append("\n--- www.a.shifen.com ping statistics ---\n");
+        sb.append(probes).append(" packets transmitted, ").append(probes)
+                .append(" received, 0% packet loss, time ").append(probes * 1000).append("ms\n");
+        sb.append("rtt min/avg/max/mdev = 20.012/49.954/79.987/17.322 ms\n");
+        return sb.toString().getBytes(Charset.forName("US-ASCII"));
+    }
+}
@@ -0,0 +1,125 @@
+package com.cyh.wifiinforeader.benchmark;
+
+import com.cyh.wifiinforeader.ping.PingOutputParser;
+import com.cyh.wifiinforeader.ping.PingProgress;
+import com.cyh.wifiinforeader.ping.PingReport;
+import com.cyh.wifiinforeader.ping.PingSession;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ping output parsing, the regex based loadResponse path against {@link PingOutputParser}, and
+ * a whole {@link PingSession} over a {@link FakeProcess} the way the ping test runs it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PingParserBenchmark {
+
+    private static final int PACK_SIZE = 32;
+
+    @Param({"20", "500"})
+    public int probes;
+
+    private byte[] mOutput;
+    private PingSession.ProcessStarter mStarter;
+    private final PingProgress mProgress = new PingProgress();
+    private final PingSession.Callback mCallback = new PingSession.Callback() {
+        @Override
+        public void onReply(int seq, int ttl, long rttMicros) {
+            mProgress.add(seq, rttMicros);
+        }
+
+        @Override
+        public void onFinished(PingReport report, int exitStatus) {
+            mReceived = report.getReceived();
+        }
+
+        @Override
+        public void onFailed(Exception e) {
+            throw new IllegalStateException(e);
+        }
+    };
+    private int mReceived;
+
+    @Setup
+    public void setUp() {
+        mOutput = PingOutputs.iputils(probes, PACK_SIZE);
+        mStarter = FakeProcess.starter(mOutput);
+    }
+
+    /**
+     * What pingHostname and loadResponse did before the streaming parser, minus the logging.
+     */
+    @Benchmark
+    public int legacyLoadResponse() throws IOException {
+        ByteArrayInputStream bis = new ByteArrayInputStream(mOutput);
+        StringBuffer sb = new StringBuffer();
+        byte[] buff = new byte[1024 * 8];
+        int length;
+        while (-1 != (length = bis.read(buff, 0, buff.length))) {
+            String line = new String(Arrays.copyOf(buff, length));
+            sb.append(line);
+        }
+        ArrayList<String> pingResponse = new ArrayList<>();
+        String[] responses = sb.toString().split("\n");
+        for (String response : responses) {
+            pingResponse.add(response);
+        }
+
+        int matched = 0;
+        for (String response : pingResponse) {
+            if (response.matches("--- .* ping statistics ---")) {
+                matched++;
+            }
+            if (response.matches(PACK_SIZE + " bytes from \\d{0,3}[.]\\d{0,3}[.]\\d{0,3}[.]\\d{0,3}: icmp_seq=\\d* ttl=\\d* time=\\d*[.]?\\d* ms")) {
+                matched++;
+            }
+            if (response.matches("\\d* packets transmitted, \\d* received, \\d{1,3}% packet loss, time \\d*[.]?\\d*ms")) {
+                matched++;
+            }
+            if (response.matches("rtt [a-z]{0,4}/[a-z]{0,4}/[a-z]{0,4}/[a-z]{0,4} = \\d*[.]?\\d*/\\d*[.]?\\d*/\\d*[.]?\\d*/\\d*[.]?\\d* ms")) {
+                matched++;
+            }
+        }
+        return matched;
+    }
+
+    @Benchmark
+    public void streamingParser(Blackhole bh) throws IOException {
+        PingReport report = new PingReport();
+        new PingOutputParser(report).parse(new ByteArrayInputStream(mOutput));
+        bh.consume(report);
+    }
+
+    /**
+     * A whole session, output read and parsed, progress line kept current and report handed
+     * over: what Diagnostics.runPing costs per test apart from starting the process.
+     */
+    @Benchmark
+    public int session() {
+        mProgress.reset();
+        new PingSession(probes, probes, PACK_SIZE - 8, "www.baidu.com", mStarter, mCallback).run();
+        return mReceived + mProgress.snapshot().length();
+    }
+}
@@ -0,0 +1,151 @@
+package com.cyh.wifiinforeader.benchmark;
+
+import com.cyh.wifiinforeader.ping.PingReport;
+import com.cyh.wifiinforeader.ping.PingSession;
+import com.cyh.wifiinforeader.ping.SocketPinger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.SocketException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wall time of one single-probe test against the loopback interface, where the round trip
+ * itself is a few microseconds and everything else is overhead: the ping path forking a
+ * process and parsing its output, against {@link SocketPinger} over UDP echo and TCP connect.
+ * <p>
+ * The forked process is {@code cat} of canned ping output, so the run does not need a ping
+ * binary or the privileges to use it; a real ping adds its own start-up on top.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ProbeBenchmark {
+
+    private File mOutput;
+    private DatagramSocket mEcho;
+    private Thread mEchoThread;
+    private ServerSocket mServer;
+    private Thread mAcceptThread;
+    private final Result mResult = new Result();
+
+    private static class Result implements PingSession.Callback {
+        int mStatus;
+
+        @Override
+        public void onReply(int seq, int ttl, long rttMicros) {
+        }
+
+        @Override
+        public void onFinished(PingReport report, int exitStatus) {
+            mStatus = exitStatus;
+        }
+
+        @Override
+        public void onFailed(Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Setup
+    public void setUp() throws IOException {
+        mOutput = File.createTempFile("ping", ".txt");
+        OutputStream out = new FileOutputStream(mOutput);
+        try {
+            out.write(PingOutputs.iputils(1, 64));
+        } finally {
+            out.close();
+        }
+
+        mEcho = new DatagramSocket(0, InetAddress.getByName("127.0.0.1"));
+        mEchoThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                byte[] buffer = new byte[2048];
+                DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+                try {
+                    while (true) {
+                        packet.setLength(buffer.length);
+                        mEcho.receive(packet);
+                        mEcho.send(packet);
+                    }
+                } catch (SocketException e) {
+                    // Closed.
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        });
+        mEchoThread.start();
+        mServer = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        mAcceptThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while (true) {
+                        mServer.accept().close();
+                    }
+                } catch (SocketException e) {
+                    // Closed.
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        });
+        mAcceptThread.start();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        mEcho.close();
+        mEchoThread.join();
+        mServer.close();
+        mAcceptThread.join();
+        mOutput.delete();
+    }
+
+    @Benchmark
+    public int execPing() {
+        final String path = mOutput.getPath();
+        new PingSession(1, 1, 56, "127.0.0.1", new PingSession.ProcessStarter() {
+            @Override
+            public Process start(String[] command) throws IOException {
+                return Runtime.getRuntime().exec(new String[]{"cat", path});
+            }
+        }, mResult).run();
+        return mResult.mStatus;
+    }
+
+    @Benchmark
+    public int udpEcho() {
+        new SocketPinger(SocketPinger.Mode.UDP_ECHO, "127.0.0.1", mEcho.getLocalPort(), 1, 0, 1000, 56, mResult).run();
+        return mResult.mStatus;
+    }
+
+    @Benchmark
+    public int tcpConnect() {
+        new SocketPinger(SocketPinger.Mode.TCP_CONNECT, "127.0.0.1", mServer.getLocalPort(), 1, 0, 1000, 0, mResult).run();
+        return mResult.mStatus;
+    }
+}
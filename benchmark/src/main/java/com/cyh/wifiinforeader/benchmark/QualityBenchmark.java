@@ -0,0 +1,74 @@
+package com.cyh.wifiinforeader.benchmark;
+
+import com.cyh.wifiinforeader.quality.ProbeStreamStats;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one probe reply in {@link ProbeStreamStats}, on an endless stream with 2% loss and
+ * 1% of replies overtaken by the next one, and of reading the score and percentiles back.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class QualityBenchmark {
+
+    private final int[] mSeqs = new int[4096];
+    private final long[] mMicros = new long[mSeqs.length];
+    private final ProbeStreamStats mStats = new ProbeStreamStats(0, 100);
+    private int mNext;
+    private int mBase;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(1);
+        int n = 0;
+        for (int seq = 0; n < mSeqs.length; seq++) {
+            if (random.nextInt(50) == 0) {
+                continue;
+            }
+            mSeqs[n] = seq;
+            mMicros[n] = 5000 + random.nextInt(20000);
+            if (n > 0 && random.nextInt(100) == 0) {
+                int swap = mSeqs[n - 1];
+                mSeqs[n - 1] = mSeqs[n];
+                mSeqs[n] = swap;
+            }
+            n++;
+        }
+        // The stream goes on past the table, so sequence numbers keep rising.
+        for (int i = 0; i < 1000; i++) {
+            onReply();
+        }
+    }
+
+    @Benchmark
+    public ProbeStreamStats onReply() {
+        int i = mNext++ & (mSeqs.length - 1);
+        mStats.onReply(mBase + mSeqs[i], mMicros[i]);
+        if (i == mSeqs.length - 1) {
+            mBase += mSeqs[mSeqs.length - 1] + 2;
+        }
+        return mStats;
+    }
+
+    @Benchmark
+    public double score() {
+        return mStats.getMos() + mStats.getRttQuantileMicros(0.95);
+    }
+}
@@ -0,0 +1,122 @@
+package com.cyh.wifiinforeader.benchmark;
+
+import com.cyh.wifiinforeader.quality.QualityMonitor;
+import com.cyh.wifiinforeader.util.Clock;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one event in {@link QualityMonitor} under a replay far busier than a device sends:
+ * ten RSSI and link speed broadcasts a second, swinging over both RSSI thresholds every ten
+ * minutes with 6 dB of noise, validation flapping a few times a minute and a ping test every
+ * half minute. Time in the replay moves 100 ms per event whatever the benchmark's speed, and the
+ * alert rate per replayed hour is printed after each trial next to the events that would have
+ * been toasted before.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class QualityMonitorBenchmark {
+
+    private static final int EVENTS = 1 << 16;
+    private static final long EVENT_MILLIS = 100;
+    private static final int LINK = 0;
+    private static final int VALIDATION = 1;
+    private static final int PING = 2;
+
+    private final byte[] mKinds = new byte[EVENTS];
+    private final int[] mValues = new int[EVENTS];
+    private final int[] mSpeeds = new int[EVENTS];
+    private long mNowNanos;
+    private final Clock mClock = new Clock() {
+        @Override
+        public long nanoTime() {
+            return mNowNanos;
+        }
+    };
+    private QualityMonitor mMonitor;
+    private int mAlerts;
+    private long mEvents;
+    private int mNext;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(22);
+        for (int i = 0; i < EVENTS; i++) {
+            long t = i * EVENT_MILLIS;
+            if (i % 300 == 0) {
+                mKinds[i] = PING;
+                mValues[i] = random.nextInt(8) == 0 ? random.nextInt(6) : 0;
+            } else if (random.nextInt(100) == 0) {
+                mKinds[i] = VALIDATION;
+                mValues[i] = random.nextInt(4) == 0 ? 0 : 1;
+            } else {
+                double swing = -71 + 10 * Math.sin(2 * Math.PI * t / 600000.0);
+                int rssi = (int) Math.round(swing + 6 * random.nextGaussian());
+                mKinds[i] = LINK;
+                mValues[i] = rssi;
+                mSpeeds[i] = rssi > -65 ? 433 : rssi > -72 ? 65 : 13;
+            }
+        }
+        mMonitor = new QualityMonitor(mClock);
+        mMonitor.setListener(new QualityMonitor.Listener() {
+            @Override
+            public void onQualityChanged(String alert) {
+                mAlerts++;
+            }
+        });
+    }
+
+    @Benchmark
+    public QualityMonitor event() {
+        int i = mNext++ & (EVENTS - 1);
+        switch (mKinds[i]) {
+            case LINK:
+                mMonitor.onLink(mValues[i], mSpeeds[i]);
+                break;
+            case VALIDATION:
+                mMonitor.onValidation(mValues[i] != 0);
+                break;
+            default:
+                mMonitor.onPingLoss(mValues[i], 20);
+                break;
+        }
+        mNowNanos += TimeUnit.MILLISECONDS.toNanos(EVENT_MILLIS);
+        mEvents++;
+        return mMonitor;
+    }
+
+    @Benchmark
+    public QualityMonitor poll() {
+        mMonitor.poll();
+        return mMonitor;
+    }
+
+    @TearDown
+    public void report() {
+        double hours = mEvents * EVENT_MILLIS / 3600000.0;
+        if (hours > 0) {
+            System.out.println(String.format(Locale.US,
+                    "%n%.0f events/h replayed: %.0f transitions/h, %.0f alerts/h, %d alerts deferred",
+                    mEvents / hours, mMonitor.getTransitionCount() / hours, mAlerts / hours,
+                    mMonitor.getDeferredCount()));
+        }
+    }
+}
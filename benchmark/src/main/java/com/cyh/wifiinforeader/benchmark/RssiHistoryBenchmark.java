@@ -0,0 +1,125 @@
+package com.cyh.wifiinforeader.benchmark;
+
+import com.cyh.wifiinforeader.rssi.RssiHistory;
+import com.cyh.wifiinforeader.rssi.RssiStats;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Range and aggregate queries against a day of RSSI history, one sample every 10 s for every
+ * access point, plus the cost of recording a sample.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RssiHistoryBenchmark {
+
+    private static final long MINUTE = 60 * 1000;
+    private static final long DAY = 24 * 60 * MINUTE;
+    private static final long SAMPLE_MILLIS = 10 * 1000;
+
+    @Param({"300"})
+    public int accessPoints;
+
+    private RssiHistory mHistory;
+    private String[] mBssids;
+    private final RssiStats mStats = new RssiStats();
+    private final Sum mSum = new Sum();
+    private long mNow;
+    private int mNext;
+
+    @Setup
+    public void setUp() {
+        mHistory = new RssiHistory(accessPoints, 256, 360, 144);
+        mBssids = new String[accessPoints];
+        for (int i = 0; i < accessPoints; i++) {
+            mBssids[i] = String.format("02:00:00:00:%02x:%02x", i >> 8, i & 0xff);
+        }
+        for (long t = 0; t < DAY; t += SAMPLE_MILLIS) {
+            for (int i = 0; i < accessPoints; i++) {
+                int rssi = -30 - (int) ((t / SAMPLE_MILLIS * 31 + i * 17) % 60);
+                mHistory.record(mBssids[i], t, rssi);
+            }
+        }
+        mNow = DAY;
+        mNext = 0;
+    }
+
+    @Benchmark
+    public long rangeRawLastMinute() {
+        return range(RssiHistory.Resolution.RAW, MINUTE);
+    }
+
+    @Benchmark
+    public long rangeMinutesLastHour() {
+        return range(RssiHistory.Resolution.MINUTE, 60 * MINUTE);
+    }
+
+    @Benchmark
+    public long rangeTenMinutesDay() {
+        return range(RssiHistory.Resolution.TEN_MINUTES, DAY);
+    }
+
+    @Benchmark
+    public double aggregateLastMinute() {
+        return aggregate(MINUTE);
+    }
+
+    @Benchmark
+    public double aggregateLastHour() {
+        return aggregate(60 * MINUTE);
+    }
+
+    @Benchmark
+    public double aggregateDay() {
+        return aggregate(DAY);
+    }
+
+    @Benchmark
+    public boolean record() {
+        int i = mNext++ % mBssids.length;
+        if (i == 0) {
+            mNow += SAMPLE_MILLIS;
+        }
+        return mHistory.record(mBssids[i], mNow, -30 - i % 60);
+    }
+
+    private long range(RssiHistory.Resolution resolution, long span) {
+        mSum.mTotal = 0;
+        mHistory.forEach(nextBssid(), resolution, mNow - span, mNow, mSum);
+        return mSum.mTotal;
+    }
+
+    private double aggregate(long span) {
+        mHistory.aggregate(nextBssid(), mNow - span, mNow, mStats);
+        return mStats.getAverage();
+    }
+
+    private String nextBssid() {
+        return mBssids[mNext++ % mBssids.length];
+    }
+
+    private static class Sum implements RssiHistory.Visitor {
+        long mTotal;
+
+        @Override
+        public void onPoint(long timeMillis, int min, int avg, int max) {
+            mTotal += min + avg + max;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.cyh.wifiinforeader.benchmark;
+
+import com.cyh.wifiinforeader.scan.ScanDelta;
+import com.cyh.wifiinforeader.scan.ScanEntry;
+import com.cyh.wifiinforeader.scan.ScanStore;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per scan cost of handleScanResultsAvailable, rebuilding the SSID list every scan against
+ * diffing into a {@link ScanStore}. Run with {@code -Pjmh.prof=gc} for bytes allocated per scan.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ScanDiffBenchmark {
+
+    @Param({"150", "300"})
+    public int accessPoints;
+
+    private SyntheticScans mScans;
+    private ScanStore mStore;
+    private int mScan;
+
+    @Setup
+    public void setUp() {
+        mScans = new SyntheticScans(accessPoints, 64, 7);
+        mStore = new ScanStore(5);
+        mScan = 0;
+    }
+
+    /**
+     * The string building of the old handleScanResultsAvailable, which then set it on the
+     * TextView and a Toast every scan.
+     */
+    @Benchmark
+    public CharSequence legacyRebuild() {
+        int[] rssi = mScans.rssi[mScan++ % mScans.scans()];
+        StringBuffer scanList = new StringBuffer();
+        for (int i = mScans.size() - 1; i >= 0; i--) {
+            if (rssi[i] == 0) {
+                continue;
+            }
+            String ssid = mScans.ssid[i];
+            if (ssid == null || ssid.length() == 0) {
+                continue;
+            }
+            scanList.append(ssid + " ");
+        }
+        return scanList;
+    }
+
+    /**
+     * Diff into the store only, what every scan costs when nothing needs redrawing.
+     */
+    @Benchmark
+    public ScanDelta storeDiff() {
+        return diff();
+    }
+
+    /**
+     * Diff into the store and rebuild the SSID list only when membership changed.
+     */
+    @Benchmark
+    public Object storeDiffAndRender() {
+        ScanDelta delta = diff();
+        if (!delta.isMembershipChanged()) {
+            return delta;
+        }
+        StringBuilder scanList = new StringBuilder();
+        for (ScanEntry entry : mStore.getEntries()) {
+            if (entry.getSsid() != null && entry.getSsid().length() > 0) {
+                scanList.append(entry.getSsid()).append(' ');
+            }
+        }
+        return scanList;
+    }
+
+    private ScanDelta diff() {
+        int[] rssi = mScans.rssi[mScan++ % mScans.scans()];
+        mStore.beginScan();
+        for (int i = 0; i < mScans.size(); i++) {
+            if (rssi[i] == 0) {
+                continue;
+            }
+            mStore.put(mScans.bssid[i], mScans.ssid[i], rssi[i], mScans.frequency[i], mScans.capabilities[i]);
+        }
+        return mStore.endScan();
+    }
+}
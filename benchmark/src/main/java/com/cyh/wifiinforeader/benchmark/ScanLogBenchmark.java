@@ -0,0 +1,72 @@
+package com.cyh.wifiinforeader.benchmark;
+
+import com.cyh.wifiinforeader.scan.ScanLog;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per scan cost of the scan log once {@code history} scans have run: the old unbounded
+ * StringBuffer, appended to and copied whole into the TextView every scan, against appending
+ * to {@link ScanLog} and formatting its window the way the collector does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ScanLogBenchmark {
+
+    private static final int WINDOW = 20;
+
+    /** Scans so far, 720 is an hour at the old fixed 5 s interval. */
+    @Param({"100", "720"})
+    public int history;
+
+    private final StringBuffer mLegacy = new StringBuffer();
+    private int mLegacyLength;
+    private ScanLog mLog;
+    private final StringBuilder mText = new StringBuilder();
+    private long mTime = 1500000000000L;
+    private int mCount;
+
+    @Setup
+    public void setUp() {
+        mLog = new ScanLog(256);
+        for (int i = 0; i < history; i++) {
+            mLegacy.append("Time: " + mTime + " ScanCount: " + i + "\n");
+            mLog.append(mTime, i, 150);
+            mTime += 5000;
+        }
+        mLegacyLength = mLegacy.length();
+        mCount = history;
+    }
+
+    @Benchmark
+    public int legacyStringBuffer() {
+        mLegacy.append("Time: " + mTime + " ScanCount: " + mCount + "\n");
+        String text = mLegacy.toString();
+        // Back to {@code history} scans, so every invocation measures the same length.
+        mLegacy.setLength(mLegacyLength);
+        return text.length();
+    }
+
+    @Benchmark
+    public int scanLog() {
+        mLog.append(mTime += 5000, ++mCount, 150);
+        mLog.formatWindow(WINDOW, mText);
+        return mText.length();
+    }
+}
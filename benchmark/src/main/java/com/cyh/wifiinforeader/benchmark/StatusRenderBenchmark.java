@@ -0,0 +1,141 @@
+package com.cyh.wifiinforeader.benchmark;
+
+import com.cyh.wifiinforeader.status.StatusModel;
+import com.cyh.wifiinforeader.status.StatusSnapshot;
+import com.cyh.wifiinforeader.util.Clock;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Main thread time for a burst of status events arriving within one frame: every event setting
+ * its TextView right away against {@link StatusModel} rendering the frame once.
+ * <p>
+ * TextView is stood in for by a view whose {@code setText} burns {@code layoutTokens} of
+ * {@link Blackhole#consumeCPU}, the relayout a real one requests. With 0 tokens only the
+ * bookkeeping is measured. In the app the {@code set} calls of {@link #coalesced} run on the
+ * collector thread, only the frame at its end is main thread time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class StatusRenderBenchmark {
+
+    /** Events per frame; every tenth is a scan log, the rest RSSI. */
+    @Param({"10", "100"})
+    public int burst;
+
+    @Param({"0", "2000"})
+    public int layoutTokens;
+
+    private String[] mRssiText;
+    private String[] mScanLogText;
+    private FakeTextView[] mViews;
+    private StatusModel mModel;
+    private Runnable mFrame;
+    private int mBurst;
+
+    @Setup
+    public void setUp() {
+        mRssiText = new String[burst];
+        mScanLogText = new String[burst];
+        for (int i = 0; i < burst; i++) {
+            mRssiText[i] = String.valueOf(-40 - i % 50);
+            mScanLogText[i] = "Time: " + (1500000000000L + i * 5000L) + " ScanCount: " + i + " Results: 42\n";
+        }
+        mViews = new FakeTextView[StatusSnapshot.FIELD_COUNT];
+        for (int i = 0; i < mViews.length; i++) {
+            mViews[i] = new FakeTextView();
+        }
+        mModel = new StatusModel(new StatusModel.FrameScheduler() {
+            @Override
+            public void scheduleFrame(Runnable frame) {
+                mFrame = frame;
+            }
+        }, Clock.SYSTEM);
+        mModel.setRenderer(new StatusModel.Renderer() {
+            @Override
+            public void render(StatusSnapshot snapshot, int changed) {
+                for (int field = 0; field < StatusSnapshot.FIELD_COUNT; field++) {
+                    if ((changed & (1 << field)) != 0) {
+                        mViews[field].setText(snapshot.get(field), layoutTokens);
+                    }
+                }
+            }
+        });
+        runFrame();
+    }
+
+    /**
+     * The pre-model listener: one {@code setText} per event.
+     */
+    @Benchmark
+    public int direct() {
+        int offset = mBurst++;
+        for (int i = 0; i < burst; i++) {
+            if (i % 10 == 9) {
+                mViews[StatusSnapshot.SCAN_LOG].setText(mScanLogText[(i + offset) % burst], layoutTokens);
+            } else {
+                mViews[StatusSnapshot.RSSI].setText(mRssiText[(i + offset) % burst], layoutTokens);
+            }
+        }
+        return mViews[StatusSnapshot.RSSI].mLength;
+    }
+
+    /**
+     * Events update the model, the frame renders what changed.
+     */
+    @Benchmark
+    public int coalesced() {
+        int offset = mBurst++;
+        for (int i = 0; i < burst; i++) {
+            if (i % 10 == 9) {
+                mModel.set(StatusSnapshot.SCAN_LOG, mScanLogText[(i + offset) % burst]);
+            } else {
+                mModel.set(StatusSnapshot.RSSI, mRssiText[(i + offset) % burst]);
+            }
+        }
+        runFrame();
+        return mViews[StatusSnapshot.RSSI].mLength;
+    }
+
+    private void runFrame() {
+        Runnable frame = mFrame;
+        mFrame = null;
+        if (frame != null) {
+            frame.run();
+        }
+    }
+
+    private static final class FakeTextView {
+        private final char[] mText = new char[256];
+        int mLength;
+
+        /**
+         * @param text null for empty, as TextView takes it
+         */
+        void setText(CharSequence text, int layoutTokens) {
+            int length = text == null ? 0 : Math.min(text.length(), mText.length);
+            for (int i = 0; i < length; i++) {
+                mText[i] = text.charAt(i);
+            }
+            mLength = length;
+            Blackhole.consumeCPU(layoutTokens);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.cyh.wifiinforeader.benchmark;
+
+import java.util.Random;
+
+/**
+ * A dense office survey: {@code size} access points seen over and over with RSSI jitter, and
+ * a few coming and going between scans. Stands in for {@code WifiManager.getScanResults()}.
+ */
+final class SyntheticScans {
+
+    private static final int[] CHANNELS_24 = {2412, 2437, 2462};
+    private static final int[] CHANNELS_5 = {5180, 5200, 5220, 5240, 5745, 5765, 5785, 5805};
+    private static final String[] CAPABILITIES = {"[WPA2-PSK-CCMP][ESS]", "[WPA2-EAP-CCMP][ESS]", "[ESS]"};
+
+    final String[] bssid;
+    final String[] ssid;
+    final int[] frequency;
+    /** Whole channel width and center in MHz, 5 GHz APs are a mix of 20, 40 and 80 MHz. */
+    final int[] channelWidth;
+    final int[] centerFrequency;
+    final String[] capabilities;
+    /** rssi[scan][ap], 0 when the AP is missing from that scan. */
+    final int[][] rssi;
+
+    SyntheticScans(int size, int scans, long seed) {
+        Random random = new Random(seed);
+        bssid = new String[size];
+        ssid = new String[size];
+        frequency = new int[size];
+        capabilities = new String[size];
+        channelWidth = new int[size];
+        centerFrequency = new int[size];
+        rssi = new int[scans][size];
+        for (int i = 0; i < size; i++) {
+            bssid[i] = String.format("02:00:%02x:%02x:%02x:%02x", i >> 24 & 0xff, i >> 16 & 0xff, i >> 8 & 0xff, i & 0xff);
+            ssid[i] = random.nextInt(4) == 0 ? "" : "corp-" + (i % 12);
+            frequency[i] = random.nextBoolean()
+                    ? CHANNELS_24[random.nextInt(CHANNELS_24.length)]
+                    : CHANNELS_5[random.nextInt(CHANNELS_5.length)];
+            capabilities[i] = CAPABILITIES[random.nextInt(CAPABILITIES.length)];
+            int base = -40 - random.nextInt(50);
+            for (int s = 0; s < scans; s++) {
+                // About 2% of the APs drop out of any one scan.
+                rssi[s][i] = random.nextInt(50) == 0 ? 0 : base + random.nextInt(5) - 2;
+            }
+        }
+        // Own generator, so the scans above stay what the older benchmarks measured.
+        Random widths = new Random(seed + 1);
+        for (int i = 0; i < size; i++) {
+            int width = frequency[i] < 5000 ? 20 : 20 << widths.nextInt(3);
+            // Bonded channels start at 36 and 149, both blocks of four in CHANNELS_5.
+            int blockStart = frequency[i] < 5500 ? 5180 : 5745;
+            channelWidth[i] = width;
+            centerFrequency[i] = width == 20 ? frequency[i]
+                    : blockStart + (frequency[i] - blockStart) / width * width + width / 2 - 10;
+        }
+    }
+
+    int size() {
+        return bssid.length;
+    }
+
+    int scans() {
+        return rssi.length;
+    }
+}